@@ -0,0 +1,111 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.numbering;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Benchmarks for the comparison of {@link DLN} node ids, which
+ * dominates the sorting and structural joins of node sets.
+ *
+ * The node ids are those of a complete tree with the given
+ * fan-out and depth, pairs of them are compared at random.
+ */
+@State(Scope.Thread)
+public class DLNBenchmark {
+
+    private static final int PAIRS = 1 << 16;
+
+    @Param({"8"})
+    private int fanOut;
+
+    @Param({"5"})
+    private int depth;
+
+    private DLN[] left;
+    private DLN[] right;
+    private int cursor = 0;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final List<DLN> ids = new ArrayList<>();
+        addTree(new DLN(1), 1, ids);
+
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        left = new DLN[PAIRS];
+        right = new DLN[PAIRS];
+        for (int i = 0; i < PAIRS; i++) {
+            left[i] = ids.get(random.nextInt(ids.size()));
+            right[i] = ids.get(random.nextInt(ids.size()));
+        }
+    }
+
+    private void addTree(final DLN id, final int level, final List<DLN> ids) {
+        ids.add(id);
+        if (level < depth) {
+            DLN child = (DLN) id.newChild();
+            for (int i = 0; i < fanOut; i++) {
+                addTree(child, level + 1, ids);
+                child = (DLN) child.nextSibling();
+            }
+        }
+    }
+
+    private int next() {
+        final int i = cursor;
+        cursor = (cursor + 1) & (PAIRS - 1);
+        return i;
+    }
+
+    @Benchmark
+    public int compareTo() {
+        final int i = next();
+        return left[i].compareTo(right[i]);
+    }
+
+    @Benchmark
+    public boolean isDescendantOf() {
+        final int i = next();
+        return left[i].isDescendantOf(right[i]);
+    }
+
+    @Benchmark
+    public int computeRelation() {
+        final int i = next();
+        return left[i].computeRelation(right[i]);
+    }
+
+    @Benchmark
+    public boolean equalTo() {
+        final int i = next();
+        return left[i].equals(right[i]);
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.storage;
+
+import org.exist.EXistException;
+import org.exist.test.ExistEmbeddedServer;
+import org.exist.util.DatabaseConfigurationException;
+import org.exist.util.FileUtils;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * JMH state which runs a database on temporary storage
+ * for the duration of a benchmark trial.
+ *
+ * Benchmarks of the paged files create their own files in
+ * {@link #getDataDir()}, apart from those of the database.
+ */
+@State(Scope.Benchmark)
+public class BenchmarkDatabase {
+
+    private ExistEmbeddedServer server;
+    private Path dataDir;
+
+    @Setup(Level.Trial)
+    public void start() throws DatabaseConfigurationException, EXistException, IOException {
+        server = new ExistEmbeddedServer(null, null, null, true, true);
+        server.startDb();
+        dataDir = Files.createTempDirectory("exist-core-jmh");
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        server.stopDb();
+        FileUtils.deleteQuietly(dataDir);
+    }
+
+    public BrokerPool getBrokerPool() {
+        return server.getBrokerPool();
+    }
+
+    public Path getDataDir() {
+        return dataDir;
+    }
+}
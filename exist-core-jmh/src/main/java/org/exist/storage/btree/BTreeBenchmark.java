@@ -0,0 +1,143 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.storage.btree;
+
+import org.exist.storage.BenchmarkDatabase;
+import org.exist.storage.BrokerPool;
+import org.exist.util.ByteConversion;
+import org.exist.xquery.TerminatedException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Benchmarks for inserts, point lookups and range scans
+ * of a {@link BTree} with fixed length (8 byte) keys.
+ *
+ * NOTE: the callers of the B+-tree are responsible for locking,
+ * so no locks are taken here.
+ */
+@State(Scope.Benchmark)
+public class BTreeBenchmark {
+
+    private static final byte BTREE_BENCHMARK_FILE_ID = 0x7E;
+    private static final short BTREE_BENCHMARK_FILE_VERSION = Short.MIN_VALUE;
+
+    @Param({"100000"})
+    private int keys;
+
+    @Param({"1000"})
+    private int rangeSize;
+
+    private BrokerPool pool;
+    private BTree btree;
+    private Value[] lookupKeys;
+
+    private BTree insertBtree;
+    private int insertBtreeCount = 0;
+
+    @Setup(Level.Trial)
+    public void setUp(final BenchmarkDatabase database) throws DBException, IOException, BTreeException {
+        this.pool = database.getBrokerPool();
+        this.btree = new BTree(pool, BTREE_BENCHMARK_FILE_ID, BTREE_BENCHMARK_FILE_VERSION, false,
+                pool.getCacheManager(), database.getDataDir().resolve("btree-benchmark.dbx"));
+        btree.create((short) -1);
+
+        // insert in random order, so that the tree is not just built by appending
+        final long[] shuffled = shuffled(keys);
+        for (final long key : shuffled) {
+            btree.addValue(key(key), key);
+        }
+        btree.flush();
+
+        lookupKeys = new Value[keys];
+        for (int i = 0; i < keys; i++) {
+            lookupKeys[i] = key(shuffled[i]);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void setUpInsert(final BenchmarkDatabase database) throws DBException {
+        this.insertBtree = new BTree(pool, (byte) (BTREE_BENCHMARK_FILE_ID + 1), BTREE_BENCHMARK_FILE_VERSION, false,
+                pool.getCacheManager(), database.getDataDir().resolve("btree-insert-benchmark-" + insertBtreeCount++ + ".dbx"));
+        insertBtree.create((short) -1);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDownInsert() throws DBException {
+        insertBtree.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws DBException {
+        btree.close();
+    }
+
+    @Benchmark
+    public long insertRandom() throws IOException, BTreeException {
+        final long key = ThreadLocalRandom.current().nextLong(Long.MAX_VALUE);
+        return insertBtree.addValue(key(key), key);
+    }
+
+    @Benchmark
+    public long lookup() throws IOException, BTreeException {
+        return btree.findValue(lookupKeys[ThreadLocalRandom.current().nextInt(keys)]);
+    }
+
+    @Benchmark
+    public long rangeScan() throws IOException, BTreeException, TerminatedException {
+        final long first = ThreadLocalRandom.current().nextInt(keys - rangeSize);
+        final IndexQuery query = new IndexQuery(IndexQuery.BW, key(first), key(first + rangeSize - 1));
+        final long[] sum = new long[1];
+        btree.query(query, (value, pointer) -> {
+            sum[0] += pointer;
+            return true;
+        });
+        return sum[0];
+    }
+
+    static Value key(final long key) {
+        return new Value(ByteConversion.longToByte(key));
+    }
+
+    static long[] shuffled(final int count) {
+        final long[] values = new long[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = i;
+        }
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = count - 1; i > 0; i--) {
+            final int j = random.nextInt(i + 1);
+            final long tmp = values[i];
+            values[i] = values[j];
+            values[j] = tmp;
+        }
+        return values;
+    }
+}
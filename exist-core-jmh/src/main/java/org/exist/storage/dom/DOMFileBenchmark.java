@@ -0,0 +1,123 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.storage.dom;
+
+import org.exist.EXistException;
+import org.exist.storage.BenchmarkDatabase;
+import org.exist.storage.BrokerPool;
+import org.exist.storage.DBBroker;
+import org.exist.storage.NativeBroker;
+import org.exist.storage.btree.DBException;
+import org.exist.storage.btree.Value;
+import org.exist.storage.lock.ManagedLock;
+import org.exist.util.LockException;
+import org.exist.util.ReadOnlyException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Benchmarks for reading node records from the {@link DOMFile}
+ * of the database, either sequentially in document order, as
+ * when serializing a document, or at random, as when resolving
+ * the results of an index lookup.
+ *
+ * Each invocation reads {@link #BATCH} records whilst holding
+ * the read lock of the DOMFile.
+ */
+@State(Scope.Benchmark)
+public class DOMFileBenchmark {
+
+    private static final int BATCH = 1000;
+
+    @Param({"100000"})
+    private int nodes;
+
+    @Param({"32"})
+    private int nodeSize;
+
+    private BrokerPool pool;
+    private DOMFile domFile;
+    private long[] addresses;
+    private long[] shuffledAddresses;
+
+    @Setup(Level.Trial)
+    public void setUp(final BenchmarkDatabase database) throws EXistException, LockException, ReadOnlyException, DBException {
+        this.pool = database.getBrokerPool();
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()))) {
+            this.domFile = ((NativeBroker) broker).getDOMFile();
+        }
+
+        final byte[] node = new byte[nodeSize];
+        ThreadLocalRandom.current().nextBytes(node);
+
+        addresses = new long[nodes];
+        try (final ManagedLock<ReentrantReadWriteLock> domFileLock = pool.getLockManager().acquireBtreeWriteLock(domFile.getLockName())) {
+            domFile.setOwnerObject(this);
+            for (int i = 0; i < nodes; i++) {
+                addresses[i] = domFile.add(null, node);
+            }
+            domFile.closeDocument();
+            domFile.flush();
+        }
+
+        shuffledAddresses = addresses.clone();
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = shuffledAddresses.length - 1; i > 0; i--) {
+            final int j = random.nextInt(i + 1);
+            final long tmp = shuffledAddresses[i];
+            shuffledAddresses[i] = shuffledAddresses[j];
+            shuffledAddresses[j] = tmp;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public long sequentialRead() throws LockException {
+        return read(addresses, ThreadLocalRandom.current().nextInt(nodes - BATCH));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public long randomRead() throws LockException {
+        return read(shuffledAddresses, ThreadLocalRandom.current().nextInt(nodes - BATCH));
+    }
+
+    private long read(final long[] addresses, final int start) throws LockException {
+        long length = 0;
+        try (final ManagedLock<ReentrantReadWriteLock> domFileLock = pool.getLockManager().acquireBtreeReadLock(domFile.getLockName())) {
+            for (int i = start; i < start + BATCH; i++) {
+                final Value value = domFile.get(addresses[i]);
+                length += value.getLength();
+            }
+        }
+        return length;
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.storage.index;
+
+import org.exist.storage.BenchmarkDatabase;
+import org.exist.storage.BrokerPool;
+import org.exist.storage.btree.DBException;
+import org.exist.storage.btree.Value;
+import org.exist.util.ByteConversion;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Benchmarks for key lookups in a {@link BFile}, keyed
+ * like the entries of the value index, i.e. a collection
+ * id followed by the indexed value.
+ */
+@State(Scope.Benchmark)
+public class BFileBenchmark {
+
+    private static final byte BFILE_BENCHMARK_FILE_ID = 0x7C;
+    private static final short BFILE_BENCHMARK_FILE_VERSION = Short.MIN_VALUE;
+
+    @Param({"100000"})
+    private int keys;
+
+    @Param({"64"})
+    private int valueSize;
+
+    private BFile bfile;
+    private Value[] lookupKeys;
+
+    @Setup(Level.Trial)
+    public void setUp(final BenchmarkDatabase database) throws DBException {
+        final BrokerPool pool = database.getBrokerPool();
+        this.bfile = new BFile(pool, BFILE_BENCHMARK_FILE_ID, BFILE_BENCHMARK_FILE_VERSION, false,
+                database.getDataDir().resolve("bfile-benchmark.dbx"), pool.getCacheManager(), 1.4, 0.01);
+
+        final byte[] data = new byte[valueSize];
+        ThreadLocalRandom.current().nextBytes(data);
+
+        lookupKeys = new Value[keys];
+        for (int i = 0; i < keys; i++) {
+            lookupKeys[i] = key(i);
+            bfile.put(null, lookupKeys[i], data, true);
+        }
+        bfile.flush();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws DBException {
+        bfile.close();
+    }
+
+    @Benchmark
+    public Value lookup() {
+        return bfile.get(lookupKeys[ThreadLocalRandom.current().nextInt(keys)]);
+    }
+
+    @Benchmark
+    public boolean lookupMissing() {
+        return bfile.containsKey(key(keys + ThreadLocalRandom.current().nextInt(keys)));
+    }
+
+    private static Value key(final int i) {
+        final byte[] value = ("value-" + i).getBytes(StandardCharsets.UTF_8);
+        final byte[] key = new byte[4 + value.length];
+        ByteConversion.intToByte(1, key, 0);
+        System.arraycopy(value, 0, key, 4, value.length);
+        return new Value(key);
+    }
+}
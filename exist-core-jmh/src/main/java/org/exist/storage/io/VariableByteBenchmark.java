@@ -0,0 +1,123 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.storage.io;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Benchmarks for the variable byte encoding used by the
+ * index and DOM storage, {@link VariableByteOutputStream}
+ * and {@link VariableByteArrayInput}.
+ *
+ * The values are drawn uniformly at random below 2^bits, the
+ * longs below 2^(2 * bits).
+ */
+@State(Scope.Thread)
+public class VariableByteBenchmark {
+
+    private static final int COUNT = 1024;
+
+    @Param({"7", "14", "28"})
+    private int bits;
+
+    private int[] ints;
+    private long[] longs;
+    private byte[] encodedInts;
+    private byte[] encodedLongs;
+
+    private final VariableByteOutputStream os = new VariableByteOutputStream(COUNT * 10);
+    private final VariableByteArrayInput is = new VariableByteArrayInput();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        ints = new int[COUNT];
+        longs = new long[COUNT];
+        for (int i = 0; i < COUNT; i++) {
+            ints[i] = random.nextInt(1 << bits);
+            longs[i] = random.nextLong(1L << (bits * 2));
+        }
+
+        os.clear();
+        for (final int value : ints) {
+            os.writeInt(value);
+        }
+        encodedInts = os.toByteArray();
+
+        os.clear();
+        for (final long value : longs) {
+            os.writeLong(value);
+        }
+        encodedLongs = os.toByteArray();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public int writeInt() {
+        os.clear();
+        for (final int value : ints) {
+            os.writeInt(value);
+        }
+        return os.size();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public int writeLong() {
+        os.clear();
+        for (final long value : longs) {
+            os.writeLong(value);
+        }
+        return os.size();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public long readInt() throws IOException {
+        is.initialize(encodedInts, 0, encodedInts.length);
+        long sum = 0;
+        for (int i = 0; i < COUNT; i++) {
+            sum += is.readInt();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public long readLong() throws IOException {
+        is.initialize(encodedLongs, 0, encodedLongs.length);
+        long sum = 0;
+        for (int i = 0; i < COUNT; i++) {
+            sum += is.readLong();
+        }
+        return sum;
+    }
+}
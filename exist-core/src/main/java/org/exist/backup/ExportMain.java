@@ -93,6 +93,10 @@ public class ExportMain {
             .description("do not zip the output, overrides argument --zip")
             .defaultValue(false)
             .build();
+    private static final Argument<Integer> parallelismArg = integerArgument("-p", "--parallel")
+            .description("the number of collections to export concurrently (use with --export|-x)")
+            .defaultValue(1)
+            .build();
 
     /* export parameters */
     private static final Argument<File> configArg = fileArgument("-c", "--config")
@@ -104,6 +108,10 @@ public class ExportMain {
             .build();
 
     protected static BrokerPool startDB(final Optional<Path> configFile) {
+        return startDB(configFile, 1);
+    }
+
+    protected static BrokerPool startDB(final Optional<Path> configFile, final int parallelism) {
         try {
             final Configuration config;
 
@@ -113,7 +121,8 @@ public class ExportMain {
                 config = new Configuration();
             }
             config.setProperty(BrokerPool.PROPERTY_EXPORT_ONLY, Boolean.TRUE);
-            BrokerPool.configure(1, 5, config);
+            // one broker for each worker of a parallel export, in addition to the main broker
+            BrokerPool.configure(1, Math.max(5, parallelism + 1), config);
             return (BrokerPool.getInstance());
         } catch (final DatabaseConfigurationException | EXistException e) {
             System.err.println("ERROR: Failed to open database: " + e.getMessage());
@@ -128,7 +137,7 @@ public class ExportMain {
             CompatibleJavaVersionCheck.checkForCompatibleJavaVersion();
 
             final ParsedArguments arguments = CommandLineParser
-                    .withArguments(noCheckArg, checkDocsArg, directAccessArg, exportArg, noExportArg, incrementalArg, zipArg, noZipArg)
+                    .withArguments(noCheckArg, checkDocsArg, directAccessArg, exportArg, noExportArg, incrementalArg, zipArg, noZipArg, parallelismArg)
                     .andArguments(configArg, outputDirArg)
                     .andArguments(helpArg, verboseArg)
                     .programName("export" + (OSUtil.isWindows() ? ".bat" : ".sh"))
@@ -165,10 +174,12 @@ public class ExportMain {
             zip = false;
         }
 
+        final int parallelism = arguments.get(parallelismArg);
+
         final Optional<Path> dbConfig = getOpt(arguments, configArg).map(File::toPath);
         final Path exportTarget = arguments.get(outputDirArg).toPath();
 
-        final BrokerPool pool = startDB(dbConfig);
+        final BrokerPool pool = startDB(dbConfig, parallelism);
 
         if (pool == null) {
             System.exit(SystemExitCodes.CATCH_ALL_GENERAL_ERROR_EXIT_CODE);
@@ -200,6 +211,7 @@ public class ExportMain {
                     System.exit(SystemExitCodes.INVALID_ARGUMENT_EXIT_CODE);
                 }
                 final SystemExport sysexport = new SystemExport(broker, transaction, new Callback(verbose), null, direct);
+                sysexport.setParallelism(parallelism);
                 sysexport.export(exportTarget.toAbsolutePath().toString(), incremental, zip, errors);
             }
 
@@ -76,7 +76,10 @@ public class FileSystemWriter implements BackupWriter {
         }
 
         if (Files.exists(file)) {
-            FileUtils.deleteQuietly(file);
+            // keep the directories of sub-collections, a parallel export may have written them already
+            for (final Path entry : FileUtils.list(file, Files::isRegularFile)) {
+                FileUtils.deleteQuietly(entry);
+            }
         }
         Files.createDirectories(file);
         dataWritten = true;
@@ -132,6 +132,10 @@ public class Main {
             .description("Overwrite newer applications installed in the database.")
             .defaultValue(false)
             .build();
+    private static final Argument<Integer> restoreParallelismArg = integerArgument("--parallel")
+            .description("The number of threads to restore sub-collections with. Only used for restoring into an embedded database.")
+            .defaultValue(1)
+            .build();
 
     private static Properties loadProperties() {
         try {
@@ -261,7 +265,7 @@ public class Main {
                         restoreWithGui(username, optionPass, optionDbaPass, path, dbUri, overwriteApps);
                     } else {
                         restoreWithoutGui(username, optionPass, optionDbaPass, path, dbUri,
-                                rebuildRepo, quiet, overwriteApps);
+                                rebuildRepo, quiet, overwriteApps, arguments.get(restoreParallelismArg));
                     }
                 } catch (final Exception e) {
                     reportError(e);
@@ -285,11 +289,12 @@ public class Main {
 
     private static void restoreWithoutGui(final String username, final String password,
             final Optional<String> dbaPassword, final Path f, final XmldbURI uri, final boolean rebuildRepo,
-            final boolean quiet, final boolean overwriteApps) {
+            final boolean quiet, final boolean overwriteApps, final int parallelism) {
         final AggregatingConsoleRestoreServiceTaskListener listener = new AggregatingConsoleRestoreServiceTaskListener(quiet);
         try {
             final Collection collection = DatabaseManager.getCollection(uri.toString(), username, password);
             final EXistRestoreService service = collection.getService(EXistRestoreService.class);
+            service.setProperty(LocalRestoreService.PROPERTY_PARALLELISM, Integer.toString(parallelism));
             service.restore(f.toAbsolutePath().toString(), dbaPassword.orElse(null), listener, overwriteApps);
 
         } catch (final XMLDBException e) {
@@ -460,7 +465,7 @@ public class Main {
             final ParsedArguments arguments = CommandLineParser
                     .withArguments(userArg, passwordArg, dbaPasswordArg, useSslArg)
                     .andArguments(backupCollectionArg, backupOutputDirArg, backupDeduplicateBlobs)
-                    .andArguments(restoreArg, rebuildExpathRepoArg, overwriteAppsArg)
+                    .andArguments(restoreArg, rebuildExpathRepoArg, overwriteAppsArg, restoreParallelismArg)
                     .andArguments(helpArg, guiArg, quietArg, optionArg)
                     .programName("backup" + (OSUtil.isWindows() ? ".bat" : ".sh"))
                     .parse(args);
@@ -23,6 +23,7 @@ package org.exist.backup;
 
 import org.exist.EXistException;
 import org.exist.backup.restore.AppRestoreUtils;
+import org.exist.backup.restore.ParallelRestore;
 import org.exist.backup.restore.RestoreHandler;
 import org.exist.backup.restore.listener.RestoreListener;
 import org.exist.security.Account;
@@ -56,6 +57,24 @@ public class Restore {
 
     private static final byte[] ZIP_FILE_MAGIC_NUMBER = {0x50, 0x4B, 0x03, 0x04};
 
+    private final int parallelism;
+
+    public Restore() {
+        this(1);
+    }
+
+    /**
+     * @param parallelism the number of worker threads which restore
+     *                    sub-collections concurrently, each with its own broker.
+     *                    1 restores sequentially on the calling thread.
+     *                    The workers store each collection and resource in its own
+     *                    transaction, rather than in the transaction passed
+     *                    to {@link #restore(DBBroker, Txn, String, Path, RestoreListener, boolean)}.
+     */
+    public Restore(final int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
     public void restore(final DBBroker broker, @Nullable final Txn transaction, final String newAdminPass, final Path f,
                         final RestoreListener listener, final boolean overwriteApps) throws EXistException, IOException, SAXException, PermissionDeniedException {
         
@@ -76,6 +95,19 @@ public class Restore {
         }
 
         // continue restore
+        final int workers = Math.min(parallelism, broker.getBrokerPool().getMax() - 1);
+        if (workers > 1) {
+            try (final ParallelRestore parallelRestore = new ParallelRestore(broker.getBrokerPool(), broker.getCurrentSubject(), workers)) {
+                restore(broker, null, descriptors, appsToSkip, totalNrOfFiles, ParallelRestore.synchronizedListener(listener), parallelRestore);
+            }
+        } else {
+            restore(broker, transaction, descriptors, appsToSkip, totalNrOfFiles, listener, null);
+        }
+    }
+
+    private void restore(final DBBroker broker, @Nullable final Txn transaction, final Deque<BackupDescriptor> descriptors,
+            final Set<String> appsToSkip, final long totalNrOfFiles, final RestoreListener listener,
+            @Nullable final ParallelRestore parallelRestore) throws EXistException, IOException, SAXException {
         final XMLReaderPool parserPool = broker.getBrokerPool().getParserPool();
         XMLReader reader = null;
         try {
@@ -91,10 +123,15 @@ public class Restore {
                     final EXistInputSource is = descriptor.getInputSource();
                     is.setEncoding(UTF_8.displayName());
 
-                    final RestoreHandler handler = new RestoreHandler(broker, transaction, descriptor, listener, appsToSkip);
+                    final RestoreHandler handler = new RestoreHandler(broker, transaction, descriptor, listener, appsToSkip, parallelRestore);
 
                     reader.setContentHandler(handler);
                     reader.parse(is);
+
+                    if (parallelRestore != null) {
+                        // e.g. /db/system/security must be complete before the next descriptor is restored
+                        parallelRestore.awaitCompletion();
+                    }
                 }
             }
 
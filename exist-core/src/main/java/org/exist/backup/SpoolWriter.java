@@ -0,0 +1,221 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.backup;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Implementation of BackupWriter that records everything written to it
+ * in a temporary file, so that it can later be copied to another
+ * BackupWriter in one go.
+ *
+ * Used by {@link SystemExport} to export several collections concurrently
+ * into a single zip file or directory.
+ */
+class SpoolWriter implements BackupWriter {
+
+    private enum OperationType {
+        NEW_COLLECTION,
+        CLOSE_COLLECTION,
+        CONTENTS,
+        ENTRY,
+        BLOB_ENTRY
+    }
+
+    private static class Operation {
+        private final OperationType type;
+        private final String value;
+        private long length;
+
+        private Operation(final OperationType type, final String value) {
+            this.type = type;
+            this.value = value;
+        }
+    }
+
+    private final Path file;
+    private final CountingOutputStream out;
+    private final List<Operation> operations = new ArrayList<>();
+    private StringWriter contents;
+    private Operation currentEntry;
+
+    SpoolWriter(final Path dir) throws IOException {
+        this.file = Files.createTempFile(dir, "export-", ".spool");
+        this.out = new CountingOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+    }
+
+    @Override
+    public Writer newContents() {
+        contents = new StringWriter();
+        return contents;
+    }
+
+    @Override
+    public void closeContents() {
+        operations.add(new Operation(OperationType.CONTENTS, contents.toString()));
+        contents = null;
+    }
+
+    @Override
+    public OutputStream newEntry(final String name) {
+        return startEntry(OperationType.ENTRY, name);
+    }
+
+    @Override
+    public OutputStream newBlobEntry(final String blobId) {
+        return startEntry(OperationType.BLOB_ENTRY, blobId);
+    }
+
+    private OutputStream startEntry(final OperationType type, final String name) {
+        currentEntry = new Operation(type, name);
+        currentEntry.length = out.count;
+        return out;
+    }
+
+    @Override
+    public void closeEntry() {
+        if (currentEntry != null) {
+            currentEntry.length = out.count - currentEntry.length;
+            operations.add(currentEntry);
+            currentEntry = null;
+        }
+    }
+
+    @Override
+    public void newCollection(final String name) {
+        operations.add(new Operation(OperationType.NEW_COLLECTION, name));
+    }
+
+    @Override
+    public void closeCollection() {
+        operations.add(new Operation(OperationType.CLOSE_COLLECTION, null));
+    }
+
+    @Override
+    public void setProperties(final Properties properties) throws IOException {
+        throw new IOException("Backup properties cannot be spooled");
+    }
+
+    /**
+     * Copies everything written so far to another backup writer.
+     *
+     * @param output the backup writer to copy to
+     *
+     * @throws IOException if the spool cannot be read or the output cannot be written
+     */
+    void writeTo(final BackupWriter output) throws IOException {
+        out.flush();
+
+        try (final InputStream is = new BufferedInputStream(Files.newInputStream(file))) {
+            final byte[] buf = new byte[8192];
+            for (final Operation operation : operations) {
+                switch (operation.type) {
+                    case NEW_COLLECTION:
+                        output.newCollection(operation.value);
+                        break;
+
+                    case CLOSE_COLLECTION:
+                        output.closeCollection();
+                        break;
+
+                    case CONTENTS:
+                        final Writer writer = output.newContents();
+                        writer.write(operation.value);
+                        output.closeContents();
+                        break;
+
+                    case ENTRY:
+                    case BLOB_ENTRY:
+                        // do not close the OutputStream, it may close the entire backup
+                        try {
+                            final OutputStream os = operation.type == OperationType.ENTRY ? output.newEntry(operation.value) : output.newBlobEntry(operation.value);
+                            long remaining = operation.length;
+                            int len;
+                            while (remaining > 0 && (len = is.read(buf, 0, (int) Math.min(buf.length, remaining))) > 0) {
+                                os.write(buf, 0, len);
+                                remaining -= len;
+                            }
+                            if (remaining > 0) {
+                                throw new IOException("Spool file: " + file.toAbsolutePath() + " is truncated");
+                            }
+                        } finally {
+                            output.closeEntry();
+                        }
+                        break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes the temporary file.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            out.closeSpool();
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+        private long count = 0;
+
+        private CountingOutputStream(final OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        @Override
+        public void close() {
+            // entries must not close the spool, see SpoolWriter#close()
+        }
+
+        private void closeSpool() throws IOException {
+            super.close();
+        }
+    }
+}
@@ -24,6 +24,7 @@ package org.exist.backup;
 import com.evolvedbinary.j8fu.function.FunctionE;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.exist.EXistException;
 import org.exist.Namespaces;
 import org.exist.collections.Collection;
 import org.exist.collections.MutableCollection;
@@ -45,11 +46,13 @@ import org.exist.storage.btree.BTreeCallback;
 import org.exist.storage.btree.Value;
 import org.exist.storage.index.CollectionStore;
 import org.exist.storage.io.VariableByteInput;
+import org.exist.storage.lock.ManagedLock;
 import org.exist.storage.serializers.ChainOfReceiversFactory;
 import org.exist.storage.serializers.EXistOutputKeys;
 import org.exist.storage.txn.Txn;
 import org.exist.util.FileUtils;
 import org.exist.util.LockException;
+import org.exist.util.NamedThreadFactory;
 import org.exist.util.UTF8;
 import org.exist.util.serializer.AttrList;
 import org.exist.util.serializer.Receiver;
@@ -70,6 +73,7 @@ import org.xml.sax.helpers.AttributesImpl;
 import org.xml.sax.helpers.DefaultHandler;
 import org.xml.sax.helpers.NamespaceSupport;
 
+import javax.annotation.Nullable;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 import javax.xml.transform.OutputKeys;
@@ -79,6 +83,12 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 
@@ -122,6 +132,7 @@ public class SystemExport {
     private boolean directAccess = false;
     private ProcessMonitor.Monitor monitor = null;
     private ChainOfReceiversFactory chainFactory;
+    private int parallelism = 1;
 
     public SystemExport(final DBBroker broker, final Txn transaction, final StatusCallback callback, final ProcessMonitor.Monitor monitor,
             final boolean direct, final ChainOfReceiversFactory chainFactory) {
@@ -152,6 +163,21 @@ public class SystemExport {
         }
     }
 
+    /**
+     * Set the number of collections which are exported concurrently.
+     *
+     * Each collection is exported by a worker thread with its own broker
+     * into a temporary spool file next to the backup, which is then copied
+     * into the backup. The number is limited by the number of brokers of
+     * the database.
+     *
+     * @param parallelism the number of worker threads, 1 (the default) exports
+     *     all collections sequentially in the calling thread.
+     */
+    public void setParallelism(final int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
     public Path export(final String targetDir, final boolean incremental, final boolean zip, final List<ErrorReport> errorList) {
         return (export(targetDir, incremental, -1, zip, errorList));
     }
@@ -234,10 +260,22 @@ public class SystemExport {
 //            FileUtils.forceDelete(repoBackup);
 
                 final Date date = (prevBackup == null) ? null : prevBackup.getDate();
-                final CollectionCallback cb = new CollectionCallback(output, date, prevBackup, errorList, true);
-                broker.getCollectionsFailsafe(transaction, cb);
+                final int workers = Math.min(parallelism, broker.getBrokerPool().getMax() - 1);
+                if (workers > 1) {
+                    try (final ParallelExport parallelExport = new ParallelExport(output, backupFile.toAbsolutePath().getParent(), workers)) {
+                        final CollectionCallback cb = new CollectionCallback(output, date, prevBackup, errorList, true, parallelExport);
+                        broker.getCollectionsFailsafe(transaction, cb);
+                        cb.exportCollected();
+                        parallelExport.awaitCompletion();
+
+                        exportOrphans(output, cb.getDocs(), errorList);
+                    }
+                } else {
+                    final CollectionCallback cb = new CollectionCallback(output, date, prevBackup, errorList, true, null);
+                    broker.getCollectionsFailsafe(transaction, cb);
 
-                exportOrphans(output, cb.getDocs(), errorList);
+                    exportOrphans(output, cb.getDocs(), errorList);
+                }
             }
 
             return backupFile;
@@ -357,6 +395,7 @@ public class SystemExport {
     /**
      * Export a collection. Write out the collection metadata and save the resources stored in the collection.
      *
+     * @param broker     the broker to read the collection with
      * @param current    the collection
      * @param output     the output writer
      * @param date
@@ -367,7 +406,7 @@ public class SystemExport {
      * @throws SAXException
      * @throws TerminatedException DOCUMENT ME!
      */
-    private void export(final Collection current, final BackupWriter output, final Date date, final BackupDescriptor prevBackup, final List<ErrorReport> errorList, final MutableDocumentSet docs) throws IOException, SAXException, TerminatedException, PermissionDeniedException {
+    private void export(final DBBroker broker, final Collection current, final BackupWriter output, final Date date, final BackupDescriptor prevBackup, final List<ErrorReport> errorList, final MutableDocumentSet docs) throws IOException, SAXException, TerminatedException, PermissionDeniedException {
 //        if( callback != null ) {
 //            callback.startCollection( current.getURI().toString() );
 //        }
@@ -422,7 +461,7 @@ public class SystemExport {
                 if (doc.getFileURI().equalsInternal(CONTENTS_URI) || doc.getFileURI().equalsInternal(LOST_URI)) {
                     continue; // skip __contents__.xml documents
                 }
-                exportDocument(output, date, prevBackup, serializer, docsCount, count, doc);
+                exportDocument(broker, output, date, prevBackup, serializer, docsCount, count, doc);
                 docs.add(doc, false);
             }
 
@@ -449,7 +488,7 @@ public class SystemExport {
                 // Check which collections and resources have been deleted since
                 // the
                 // last backup
-                final CheckDeletedHandler check = new CheckDeletedHandler(current, serializer);
+                final CheckDeletedHandler check = new CheckDeletedHandler(broker, current, serializer);
 
                 try {
                     prevBackup.parse(broker.getBrokerPool().getParserPool(), check);
@@ -472,7 +511,7 @@ public class SystemExport {
     }
 
 
-    private void exportDocument(final BackupWriter output, final Date date, final BackupDescriptor prevBackup, final SAXSerializer serializer, final int docsCount, final int count, final DocumentImpl doc) throws IOException, SAXException, TerminatedException {
+    private void exportDocument(final DBBroker broker, final BackupWriter output, final Date date, final BackupDescriptor prevBackup, final SAXSerializer serializer, final int docsCount, final int count, final DocumentImpl doc) throws IOException, SAXException, TerminatedException {
         if (callback != null) {
             callback.startDocument(doc.getFileURI().toString(), count, docsCount);
         }
@@ -496,15 +535,15 @@ public class SystemExport {
                         // write resource to contentSerializer
                         contentSerializer.setOutput(writer, defaultOutputProperties);
 
-                        final Receiver receiver;
                         if (chainFactory != null) {
-                            chainFactory.getLast().setNextInChain(contentSerializer);
-                            receiver = chainFactory.getFirst();
+                            // the chain of receivers is shared by all workers of a parallel export
+                            synchronized (chainFactory) {
+                                chainFactory.getLast().setNextInChain(contentSerializer);
+                                writeXML(broker, doc, chainFactory.getFirst());
+                            }
                         } else {
-                            receiver = contentSerializer;
+                            writeXML(broker, doc, contentSerializer);
                         }
-
-                        writeXML(doc, receiver);
                     } finally {
                         SerializerPool.getInstance().returnObject(contentSerializer);
                         writer.flush();
@@ -576,10 +615,11 @@ public class SystemExport {
     /**
      * Serialize a document to XML, based on {@link XMLStreamReader}.
      *
+     * @param broker   the broker to read the document with
      * @param doc      the document to serialize
      * @param receiver the output handler
      */
-    private void writeXML(final DocumentImpl doc, final Receiver receiver) {
+    private void writeXML(final DBBroker broker, final DocumentImpl doc, final Receiver receiver) {
         try {
             char[] ch;
             int nsdecls;
@@ -686,7 +726,7 @@ public class SystemExport {
             AccountImpl.getSecurityProperties().enableCheckPasswords(false);
 
             try {
-                final CollectionCallback cb = new CollectionCallback(null, null, null, null, false);
+                final CollectionCallback cb = new CollectionCallback(null, null, null, null, false, null);
                 broker.getCollectionsFailsafe(transaction, cb);
                 collectionCount = cb.collectionCount;
             } finally {
@@ -716,13 +756,20 @@ public class SystemExport {
         private final boolean exportCollection;
         private int lastPercentage = -1;
         private final Agent jmxAgent = AgentFactory.getInstance();
+        @Nullable private final ParallelExport parallelExport;
 
-        private CollectionCallback(final BackupWriter writer, final Date date, final BackupDescriptor prevBackup, final List<ErrorReport> errorList, final boolean exportCollection) {
+        /**
+         * The collections found by the scan, if they are exported in parallel.
+         */
+        private final List<String> collectionUris = new ArrayList<>();
+
+        private CollectionCallback(final BackupWriter writer, final Date date, final BackupDescriptor prevBackup, final List<ErrorReport> errorList, final boolean exportCollection, @Nullable final ParallelExport parallelExport) {
             this.writer = writer;
             this.errors = errorList;
             this.date = date;
             this.prevBackup = prevBackup;
             this.exportCollection = exportCollection;
+            this.parallelExport = parallelExport;
         }
 
         public boolean indexInfo(final Value value, final long pointer) throws TerminatedException {
@@ -739,25 +786,20 @@ public class SystemExport {
                         return (true);
                     }
 
+                    if (parallelExport != null) {
+                        // exported by exportCollected() once the scan has released the lock on collections.dbx,
+                        // as submitting may have to wait for the workers, which need brokers and collections.dbx
+                        collectionUris.add(uri);
+                        return (true);
+                    }
+
                     if (callback != null) {
                         callback.startCollection(uri);
                     }
 
                     final VariableByteInput istream = store.getAsStream(pointer);
                     final Collection collection = MutableCollection.load(broker, XmldbURI.createInternal(uri), istream);
-
-                    BackupDescriptor bd = null;
-
-                    if (prevBackup != null) {
-                        bd = prevBackup.getBackupDescriptor(uri);
-                    }
-                    final int percentage = 100 * (collectionCount + 1) / (getCollectionCount() + 1);
-
-                    if ((jmxAgent != null) && (percentage != lastPercentage)) {
-                        lastPercentage = percentage;
-                        jmxAgent.updateStatus(broker.getBrokerPool(), percentage);
-                    }
-                    export(collection, writer, date, bd, errors, docs);
+                    exportCollection(uri, collection);
                 }
             } catch (final TerminatedException e) {
                 reportError("Terminating system export upon request", e);
@@ -771,6 +813,64 @@ public class SystemExport {
         }
 
 
+        /**
+         * Submits the collections found by the scan to the parallel export.
+         * Each collection is read with a short lock on collections.dbx,
+         * which is not held whilst waiting for the workers.
+         *
+         * @throws TerminatedException if the export is terminated.
+         */
+        private void exportCollected() throws TerminatedException {
+            final CollectionStore store = (CollectionStore) ((NativeBroker) broker).getStorage(NativeBroker.COLLECTIONS_DBX_ID);
+            collectionCount = 0;
+            for (final String uri : collectionUris) {
+                try {
+                    collectionCount++;
+
+                    if (callback != null) {
+                        callback.startCollection(uri);
+                    }
+
+                    final Collection collection;
+                    try (final ManagedLock<ReentrantReadWriteLock> collectionsDbLock = broker.getBrokerPool().getLockManager().acquireBtreeReadLock(store.getLockName())) {
+                        final VariableByteInput istream = store.getAsStream(new CollectionStore.CollectionKey(uri));
+                        if (istream == null) {
+                            // removed since the scan
+                            continue;
+                        }
+                        collection = MutableCollection.load(broker, XmldbURI.createInternal(uri), istream);
+                    }
+                    exportCollection(uri, collection);
+                } catch (final TerminatedException e) {
+                    reportError("Terminating system export upon request", e);
+
+                    // rethrow
+                    throw (e);
+                } catch (final Exception e) {
+                    reportError("Caught exception while scanning collections: " + uri, e);
+                }
+            }
+        }
+
+        private void exportCollection(final String uri, final Collection collection) throws TerminatedException, IOException, SAXException, PermissionDeniedException {
+            BackupDescriptor bd = null;
+
+            if (prevBackup != null) {
+                bd = prevBackup.getBackupDescriptor(uri);
+            }
+            final int percentage = 100 * (collectionCount + 1) / (getCollectionCount() + 1);
+
+            if ((jmxAgent != null) && (percentage != lastPercentage)) {
+                lastPercentage = percentage;
+                jmxAgent.updateStatus(broker.getBrokerPool(), percentage);
+            }
+            if (parallelExport != null) {
+                parallelExport.submit(collection, date, bd, errors, docs);
+            } else {
+                export(broker, collection, writer, date, bd, errors, docs);
+            }
+        }
+
         public DocumentSet getDocs() {
             return (docs);
         }
@@ -826,7 +926,7 @@ public class SystemExport {
                         doc.setFileURI(XmldbURI.createInternal(fileURI));
                         writtenDocs.add(fileURI);
                     }
-                    exportDocument(output, date, prevBackup, serializer, 0, 0, doc);
+                    exportDocument(broker, output, date, prevBackup, serializer, 0, 0, doc);
                 } catch (final Exception e) {
                     reportError("Caught an exception while scanning documents: " + e.getMessage(), e);
                 }
@@ -836,11 +936,128 @@ public class SystemExport {
     }
 
 
-    private class CheckDeletedHandler extends DefaultHandler {
+    /**
+     * Exports collections concurrently, see {@link #setParallelism(int)}.
+     */
+    private class ParallelExport implements AutoCloseable {
+        private final BackupWriter output;
+        private final Path spoolDir;
+        private final ExecutorService executor;
+
+        /**
+         * Limits the number of collections waiting to be exported.
+         */
+        private final Semaphore pending;
+
+        private final AtomicReference<Exception> failure = new AtomicReference<>();
+
+        private ParallelExport(final BackupWriter output, final Path spoolDir, final int workers) {
+            this.output = output;
+            this.spoolDir = spoolDir;
+            this.executor = Executors.newFixedThreadPool(workers, new NamedThreadFactory(broker.getBrokerPool(), "system-export"));
+            this.pending = new Semaphore(workers * 2);
+        }
+
+        private void submit(final Collection collection, final Date date, final BackupDescriptor prevBackup, final List<ErrorReport> errorList, final MutableDocumentSet docs) throws TerminatedException, IOException {
+            checkFailure();
+
+            try {
+                pending.acquire();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new TerminatedException((Expression) null, "system export interrupted");
+            }
+
+            executor.execute(() -> {
+                try {
+                    exportSpooled(collection, date, prevBackup, errorList, docs);
+                } catch (final TerminatedException | IOException | RuntimeException e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    pending.release();
+                }
+            });
+        }
+
+        private void exportSpooled(final Collection collection, final Date date, final BackupDescriptor prevBackup, final List<ErrorReport> errorList, final MutableDocumentSet docs) throws TerminatedException, IOException {
+            if (failure.get() != null) {
+                return;
+            }
+
+            final MutableDocumentSet exportedDocs = new DefaultDocumentSet();
+            try (final DBBroker workerBroker = broker.getBrokerPool().get(Optional.of(broker.getCurrentSubject()));
+                 final SpoolWriter spool = new SpoolWriter(spoolDir)) {
+                try {
+                    export(workerBroker, collection, spool, date, prevBackup, errorList, exportedDocs);
+                } catch (final SAXException | PermissionDeniedException | IOException e) {
+                    reportError("Caught exception while exporting collection: " + collection.getURI(), e);
+                }
+
+                if (failure.get() != null) {
+                    return;
+                }
+                synchronized (output) {
+                    spool.writeTo(output);
+                }
+                synchronized (docs) {
+                    docs.addAll(exportedDocs);
+                }
+            } catch (final EXistException e) {
+                throw new IOException("Unable to get a broker for exporting collection: " + collection.getURI(), e);
+            }
+        }
+
+        private void awaitCompletion() throws TerminatedException, IOException {
+            executor.shutdown();
+            try {
+                while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                    checkFailure();
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new TerminatedException((Expression) null, "system export interrupted");
+            }
+            checkFailure();
+        }
+
+        private void checkFailure() throws TerminatedException, IOException {
+            final Exception e = failure.get();
+            if (e instanceof TerminatedException) {
+                throw (TerminatedException) e;
+            } else if (e instanceof IOException) {
+                throw (IOException) e;
+            } else if (e != null) {
+                throw new IOException(e.getMessage(), e);
+            }
+        }
+
+        /**
+         * Stops the workers, and waits for the collections they are
+         * exporting, as the output may only be closed thereafter.
+         */
+        @Override
+        public void close() {
+            if (executor.isTerminated()) {
+                return;
+            }
+
+            failure.compareAndSet(null, new TerminatedException((Expression) null, "system export stopped"));
+            executor.shutdownNow();
+            try {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static class CheckDeletedHandler extends DefaultHandler {
+        private final DBBroker broker;
         private final Collection collection;
         private final SAXSerializer serializer;
 
-        private CheckDeletedHandler(final Collection collection, final SAXSerializer serializer) {
+        private CheckDeletedHandler(final DBBroker broker, final Collection collection, final SAXSerializer serializer) {
+            this.broker = broker;
             this.collection = collection;
             this.serializer = serializer;
         }
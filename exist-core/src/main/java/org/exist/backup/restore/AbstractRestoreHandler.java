@@ -91,6 +91,8 @@ public abstract class AbstractRestoreHandler extends DefaultHandler {
     private final RestoreListener listener;
 
     @Nullable private final Set<String> pathsToIgnore;
+    @Nullable private final ParallelRestore parallelRestore;
+    @Nullable private ParallelRestore.CollectionRestore collectionRestore;
 
     //handler state
     private int version = 0;
@@ -110,11 +112,35 @@ public abstract class AbstractRestoreHandler extends DefaultHandler {
     protected AbstractRestoreHandler(final DBBroker broker, @Nullable final Txn transaction,
             final BackupDescriptor descriptor, final RestoreListener listener,
             @Nullable final Set<String> pathsToIgnore) {
+        this(broker, transaction, descriptor, listener, pathsToIgnore, null);
+    }
+
+    /**
+     * @param broker the database broker
+     * @param transaction the transaction to use for the entire restore,
+     *                    or null if restoring each collection/resource
+     *                    should occur in its own transaction
+     * @param descriptor the backup descriptor to start restoring from
+     * @param listener the listener to report restore events to
+     * @param pathsToIgnore database paths to ignore in the backup
+     * @param parallelRestore the workers to restore sub-collections with,
+     *                        or null to restore them on the calling thread.
+     *                        Only used when {@code transaction} is null.
+     */
+    protected AbstractRestoreHandler(final DBBroker broker, @Nullable final Txn transaction,
+            final BackupDescriptor descriptor, final RestoreListener listener,
+            @Nullable final Set<String> pathsToIgnore, @Nullable final ParallelRestore parallelRestore) {
         this.broker = broker;
         this.transaction = transaction;
         this.listener = listener;
         this.descriptor = descriptor;
         this.pathsToIgnore = pathsToIgnore;
+        this.parallelRestore = transaction == null ? parallelRestore : null;
+        this.collectionRestore = this.parallelRestore != null ? new ParallelRestore.CollectionRestore(null) : null;
+    }
+
+    protected @Nullable ParallelRestore getParallelRestore() {
+        return parallelRestore;
     }
 
     /**
@@ -169,7 +195,7 @@ public abstract class AbstractRestoreHandler extends DefaultHandler {
         if (Namespaces.EXIST_NS.equals(namespaceURI) &&
                 (COLLECTION_ELEMENT_NAME.equals(localName)
                         || RESOURCE_ELEMENT_NAME.equals(localName))) {
-            setDeferredPermissions();
+            setDeferredPermissions(COLLECTION_ELEMENT_NAME.equals(localName));
         }
     }
 
@@ -272,32 +298,53 @@ public abstract class AbstractRestoreHandler extends DefaultHandler {
                         "is already installed.", subDescriptor.getNumberOfFiles());
                 return;
             }
-            final XMLReaderPool parserPool = broker.getBrokerPool().getXmlReaderPool();
-            XMLReader reader = null;
-            try {
-                reader = parserPool.borrowXMLReader();
-
-                final EXistInputSource is = subDescriptor.getInputSource();
-                is.setEncoding(UTF_8.displayName());
-
-                final AbstractRestoreHandler handler = newSelf(broker, transaction, subDescriptor, listener, pathsToIgnore);
-
-                reader.setContentHandler(handler);
-                reader.parse(is);
-            } catch(final SAXParseException se) {
-                listener.error("SAX exception while reading sub-collection " + subDescriptor.getSymbolicPath() + " for processing: " + se.getMessage());
-            } catch(final IOException ioe) {
-                listener.error("Could not read sub-collection for processing: " + ioe.getMessage());
-            } finally {
-                if (reader != null) {
-                    parserPool.returnXMLReader(reader);
-                }
+            if (parallelRestore != null) {
+                // the collection itself has already been created, so its sub-collection may be restored by a worker
+                final ParallelRestore.CollectionRestore parentRestore = collectionRestore;
+                parentRestore.subCollectionSubmitted();
+                parallelRestore.submit(workerBroker -> restoreSubCollection(workerBroker, subDescriptor, parentRestore));
+            } else {
+                restoreSubCollection(broker, subDescriptor, null);
             }
         } else {
             listener.error("Collection " + descriptor.getSymbolicPath(name, false) + " does not exist or is not readable.");
         }
     }
 
+    private void restoreSubCollection(final DBBroker broker, final BackupDescriptor subDescriptor,
+            @Nullable final ParallelRestore.CollectionRestore parentRestore) throws SAXException {
+        final XMLReaderPool parserPool = broker.getBrokerPool().getXmlReaderPool();
+        XMLReader reader = null;
+        @Nullable ParallelRestore.CollectionRestore subCollectionRestore = null;
+        try {
+            reader = parserPool.borrowXMLReader();
+
+            final EXistInputSource is = subDescriptor.getInputSource();
+            is.setEncoding(UTF_8.displayName());
+
+            final AbstractRestoreHandler handler = newSelf(broker, transaction, subDescriptor, listener, pathsToIgnore);
+            if (parentRestore != null) {
+                subCollectionRestore = new ParallelRestore.CollectionRestore(parentRestore);
+                handler.collectionRestore = subCollectionRestore;
+            }
+
+            reader.setContentHandler(handler);
+            reader.parse(is);
+        } catch(final SAXParseException se) {
+            listener.error("SAX exception while reading sub-collection " + subDescriptor.getSymbolicPath() + " for processing: " + se.getMessage());
+        } catch(final IOException ioe) {
+            listener.error("Could not read sub-collection for processing: " + ioe.getMessage());
+        } finally {
+            if (subCollectionRestore != null) {
+                // no-op if the descriptor was restored, otherwise the parent must not wait for it
+                subCollectionRestore.restored(broker, null);
+            }
+            if (reader != null) {
+                parserPool.returnXMLReader(reader);
+            }
+        }
+    }
+
     private DeferredPermission restoreResourceEntry(final Attributes attributes) throws SAXException {
         final EntryCommonMetadataAttributes commonAttributes = EntryCommonMetadataAttributes.fromAttributes(attributes);
 
@@ -519,9 +566,18 @@ public abstract class AbstractRestoreHandler extends DefaultHandler {
         deferredPermissions.peek().addACE(index, target, who, accessType, mode);
     }
 
-    private void setDeferredPermissions() {
+    private void setDeferredPermissions(final boolean collection) {
         final DeferredPermission deferredPermission = deferredPermissions.pop();
-        try (final Txn transaction = beginTransaction()) {
+        if (collection && collectionRestore != null) {
+            // sub-collections may still be being restored by the workers, which the permissions of the collection could deny
+            collectionRestore.restored(broker, completingBroker -> setDeferredPermission(completingBroker, completingBroker.continueOrBeginTransaction(), deferredPermission));
+        } else {
+            setDeferredPermission(broker, beginTransaction(), deferredPermission);
+        }
+    }
+
+    private void setDeferredPermission(final DBBroker broker, final Txn txn, final DeferredPermission deferredPermission) {
+        try (final Txn transaction = txn) {
             deferredPermission.apply(broker, transaction);
 
             transaction.commit();
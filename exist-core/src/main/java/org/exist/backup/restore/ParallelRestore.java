@@ -0,0 +1,297 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.backup.restore;
+
+import org.exist.EXistException;
+import org.exist.backup.restore.listener.RestoreListener;
+import org.exist.security.Subject;
+import org.exist.storage.BrokerPool;
+import org.exist.storage.DBBroker;
+import org.exist.util.NamedThreadFactory;
+import org.xml.sax.SAXException;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Restores the sub-collections of a backup concurrently.
+ *
+ * Each sub-collection descriptor is handed to a worker thread, which
+ * restores it with its own broker, storing each collection and resource
+ * in its own transaction. Sub-collections found by a worker are in turn
+ * submitted to the workers. The permissions of a collection are only
+ * applied once all of its sub-collections have been restored, see
+ * {@link CollectionRestore}.
+ */
+public class ParallelRestore implements AutoCloseable {
+
+    @FunctionalInterface
+    interface RestoreTask {
+        void restore(DBBroker broker) throws EXistException, IOException, SAXException;
+    }
+
+    private final BrokerPool pool;
+    private final Subject subject;
+    private final ExecutorService executor;
+    private final AtomicReference<Exception> failure = new AtomicReference<>();
+
+    /**
+     * The number of submitted tasks which have not yet completed, guarded by {@code this}.
+     */
+    private int pending = 0;
+
+    /**
+     * @param pool the database
+     * @param subject the subject to restore as
+     * @param workers the number of worker threads, each worker holds a broker
+     */
+    public ParallelRestore(final BrokerPool pool, final Subject subject, final int workers) {
+        this.pool = pool;
+        this.subject = subject;
+        this.executor = Executors.newFixedThreadPool(workers, new NamedThreadFactory(pool, "restore"));
+    }
+
+    void submit(final RestoreTask task) {
+        if (failure.get() != null) {
+            return;
+        }
+
+        synchronized (this) {
+            pending++;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    if (failure.get() == null) {
+                        try (final DBBroker broker = pool.get(Optional.of(subject))) {
+                            task.restore(broker);
+                        }
+                    }
+                } catch (final EXistException | IOException | SAXException | RuntimeException e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    taskCompleted();
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            // the workers have been stopped
+            taskCompleted();
+        }
+    }
+
+    private synchronized void taskCompleted() {
+        if (--pending == 0) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Waits until all submitted sub-collections, and the sub-collections
+     * submitted in turn by the workers, have been restored.
+     *
+     * @throws EXistException if a worker failed or the wait was interrupted
+     * @throws IOException if a worker could not read the backup
+     * @throws SAXException if a worker could not parse the backup
+     */
+    public void awaitCompletion() throws EXistException, IOException, SAXException {
+        synchronized (this) {
+            try {
+                while (pending > 0) {
+                    wait();
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failure.compareAndSet(null, new EXistException("Restore interrupted"));
+            }
+        }
+
+        final Exception e = failure.get();
+        if (e instanceof EXistException) {
+            throw (EXistException) e;
+        } else if (e instanceof IOException) {
+            throw (IOException) e;
+        } else if (e instanceof SAXException) {
+            throw (SAXException) e;
+        } else if (e != null) {
+            throw new EXistException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Stops the workers, any sub-collections which are still
+     * waiting to be restored are skipped.
+     */
+    @Override
+    public void close() {
+        failure.compareAndSet(null, new EXistException("Restore stopped"));
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Tracks the restore of a collection whose sub-collections are handed to the workers.
+     *
+     * The collection is complete once its own descriptor has been restored and
+     * each of its sub-collections is complete, only then are the deferred
+     * permissions of the collection applied and is its parent notified. This
+     * way a restrictive mode or ACL on a collection never prevents its
+     * sub-collections from being restored.
+     */
+    static final class CollectionRestore {
+        @Nullable private final CollectionRestore parent;
+
+        /**
+         * The collection itself, and each of its sub-collections which
+         * are not yet complete, guarded by {@code this}.
+         */
+        private int pending = 1;
+        private boolean restored = false;
+        @Nullable private Consumer<DBBroker> onCompletion = null;
+
+        /**
+         * @param parent the restore of the parent collection, or null for the
+         *               collection at which the restore started
+         */
+        CollectionRestore(@Nullable final CollectionRestore parent) {
+            this.parent = parent;
+        }
+
+        /**
+         * Records that a sub-collection has been submitted to the workers.
+         */
+        synchronized void subCollectionSubmitted() {
+            pending++;
+        }
+
+        /**
+         * Records that the descriptor of the collection has been restored.
+         * Subsequent calls have no effect.
+         *
+         * @param broker the broker of the calling thread
+         * @param onCompletion applies the deferred permissions of the collection, or null
+         */
+        void restored(final DBBroker broker, @Nullable final Consumer<DBBroker> onCompletion) {
+            synchronized (this) {
+                if (restored) {
+                    return;
+                }
+                restored = true;
+                this.onCompletion = onCompletion;
+            }
+            release(broker);
+        }
+
+        private void release(final DBBroker broker) {
+            final Consumer<DBBroker> action;
+            synchronized (this) {
+                if (--pending > 0) {
+                    return;
+                }
+                action = onCompletion;
+                onCompletion = null;
+            }
+
+            // the last sub-collection, or the collection itself, to complete runs the action with its own broker
+            if (action != null) {
+                action.accept(broker);
+            }
+            if (parent != null) {
+                parent.release(broker);
+            }
+        }
+    }
+
+    /**
+     * Wraps a listener so that it may be called by the workers.
+     *
+     * @param listener the listener to wrap
+     *
+     * @return a listener which serialises the calls to {@code listener}
+     */
+    public static RestoreListener synchronizedListener(final RestoreListener listener) {
+        return new SynchronizedRestoreListener(listener);
+    }
+
+    private static class SynchronizedRestoreListener implements RestoreListener {
+        private final RestoreListener listener;
+
+        private SynchronizedRestoreListener(final RestoreListener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public synchronized void started(final long numberOfFiles) {
+            listener.started(numberOfFiles);
+        }
+
+        @Override
+        public synchronized void processingDescriptor(final String backupDescriptor) {
+            listener.processingDescriptor(backupDescriptor);
+        }
+
+        @Override
+        public synchronized void createdCollection(final String collection) {
+            listener.createdCollection(collection);
+        }
+
+        @Override
+        public synchronized void restoredResource(final String resource) {
+            listener.restoredResource(resource);
+        }
+
+        @Override
+        public synchronized void skipResources(final String message, final long count) {
+            listener.skipResources(message, count);
+        }
+
+        @Override
+        public synchronized void info(final String message) {
+            listener.info(message);
+        }
+
+        @Override
+        public synchronized void warn(final String message) {
+            listener.warn(message);
+        }
+
+        @Override
+        public synchronized void error(final String message) {
+            listener.error(message);
+        }
+
+        @Override
+        public synchronized void finished() {
+            listener.finished();
+        }
+    }
+}
@@ -51,10 +51,27 @@ public class RestoreHandler extends AbstractRestoreHandler {
         super(broker, transaction, descriptor, listener, pathsToIgnore);
     }
 
+    /**
+     * @param broker the database broker
+     * @param transaction the transaction to use for the entire restore,
+     *                    or null if restoring each collection/resource
+     *                    should occur in its own transaction
+     * @param descriptor the backup descriptor to start restoring from
+     * @param listener the listener to report restore events to
+     * @param pathsToIgnore database paths to ignore in the backup
+     * @param parallelRestore the workers to restore sub-collections with,
+     *                        or null to restore them on the calling thread
+     */
+    public RestoreHandler(final DBBroker broker, @Nullable final Txn transaction, final BackupDescriptor descriptor,
+            final RestoreListener listener, final Set<String> pathsToIgnore,
+            @Nullable final ParallelRestore parallelRestore) {
+        super(broker, transaction, descriptor, listener, pathsToIgnore, parallelRestore);
+    }
+
     @Override
     protected AbstractRestoreHandler newSelf(final DBBroker broker, final @Nullable Txn transaction,
             final BackupDescriptor descriptor, final RestoreListener listener,
             @Nullable final Set<String> pathsToIgnore) {
-        return new RestoreHandler(broker, transaction, descriptor, listener, pathsToIgnore);
+        return new RestoreHandler(broker, transaction, descriptor, listener, pathsToIgnore, getParallelRestore());
     }
 }
@@ -47,7 +47,8 @@ public class AttrImpl extends NodeImpl implements Attr {
 
     @Override
     public NodeId getNodeId() {
-        return document.attrNodeId[nodeNumber];
+        // node ids are only available once they have been computed
+        return document.attrNodeId == null ? null : document.attrNodeId[nodeNumber];
     }
 
     @Override
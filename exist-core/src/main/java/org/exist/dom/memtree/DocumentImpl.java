@@ -110,7 +110,8 @@ public class DocumentImpl extends NodeImpl<DocumentImpl> implements Document {
     // pointer into the namePool
     protected QName[] nodeName;
 
-    protected NodeId[] nodeId;
+    // the node ids, only allocated once they are computed
+    protected NodeId[] nodeId = null;
 
     //alphanumeric content
     protected int[] alpha;
@@ -121,7 +122,7 @@ public class DocumentImpl extends NodeImpl<DocumentImpl> implements Document {
     // attributes
     protected QName[] attrName;
     protected int[] attrType;
-    protected NodeId[] attrNodeId;
+    protected NodeId[] attrNodeId = null;
     protected int[] attrParent;
     protected String[] attrValue;
     protected int nextAttr = 0;
@@ -188,7 +189,6 @@ public class DocumentImpl extends NodeImpl<DocumentImpl> implements Document {
         next = new int[NODE_SIZE];
         Arrays.fill(next, -1);
         nodeName = new QName[NODE_SIZE];
-        nodeId = new NodeId[NODE_SIZE];
         alpha = new int[NODE_SIZE];
         alphaLen = new int[NODE_SIZE];
         Arrays.fill(alphaLen, -1);
@@ -196,7 +196,6 @@ public class DocumentImpl extends NodeImpl<DocumentImpl> implements Document {
         attrParent = new int[ATTR_SIZE];
         attrValue = new String[ATTR_SIZE];
         attrType = new int[ATTR_SIZE];
-        attrNodeId = new NodeId[NODE_SIZE];
         treeLevel[0] = 0;
         nodeKind[0] = Node.DOCUMENT_NODE;
         document = this;
@@ -392,6 +391,57 @@ public class DocumentImpl extends NodeImpl<DocumentImpl> implements Document {
         return nextNamespace++;
     }
 
+    /**
+     * Discard the nodes starting at the given node number, together with
+     * their attributes, namespaces, characters and references. The nodes
+     * before it remain unchanged, but will get new node ids when they are
+     * next needed.
+     *
+     * Used by {@link MemTreeBuilder} to release the subtrees which have
+     * already been streamed.
+     *
+     * @param nodeNum the number of the first node to discard
+     */
+    void truncate(final int nodeNum) {
+        if(nodeKind == null || nodeNum >= size) {
+            return;
+        }
+        for(int i = nodeNum; i < size; i++) {
+            switch(nodeKind[i]) {
+                case Node.TEXT_NODE:
+                case Node.CDATA_SECTION_NODE:
+                case Node.COMMENT_NODE:
+                case Node.PROCESSING_INSTRUCTION_NODE:
+                    // characters are allocated in document order
+                    if(alpha[i] > -1 && alpha[i] < nextChar) {
+                        nextChar = alpha[i];
+                    }
+                    break;
+                case NodeImpl.REFERENCE_NODE:
+                    if(alpha[i] < nextReferenceIdx) {
+                        nextReferenceIdx = alpha[i];
+                    }
+                    break;
+            }
+            nodeName[i] = null;
+        }
+        while(nextAttr > 0 && attrParent[nextAttr - 1] >= nodeNum) {
+            attrName[--nextAttr] = null;
+            attrValue[nextAttr] = null;
+        }
+        while(nextNamespace > 0 && namespaceParent[nextNamespace - 1] >= nodeNum) {
+            namespaceCode[--nextNamespace] = null;
+        }
+        if(references != null) {
+            Arrays.fill(references, nextReferenceIdx, references.length, null);
+        }
+        Arrays.fill(next, nodeNum, size, -1);
+        Arrays.fill(alphaLen, nodeNum, size, -1);
+        size = nodeNum;
+        nodeId = null;
+        attrNodeId = null;
+    }
+
     public short getTreeLevel(final int nodeNum) {
         return treeLevel[nodeNum];
     }
@@ -435,9 +485,11 @@ public class DocumentImpl extends NodeImpl<DocumentImpl> implements Document {
         System.arraycopy(nodeName, 0, newNodeName, 0, size);
         nodeName = newNodeName;
 
-        final NodeId[] newNodeId = new NodeId[newSize];
-        System.arraycopy(nodeId, 0, newNodeId, 0, size);
-        nodeId = newNodeId;
+        if(nodeId != null) {
+            final NodeId[] newNodeId = new NodeId[newSize];
+            System.arraycopy(nodeId, 0, newNodeId, 0, Math.min(size, nodeId.length));
+            nodeId = newNodeId;
+        }
 
         final int[] newAlpha = new int[newSize];
         System.arraycopy(alpha, 0, newAlpha, 0, size);
@@ -469,9 +521,11 @@ public class DocumentImpl extends NodeImpl<DocumentImpl> implements Document {
         System.arraycopy(attrType, 0, newAttrType, 0, size);
         attrType = newAttrType;
 
-        final NodeId[] newNodeId = new NodeId[newSize];
-        System.arraycopy(attrNodeId, 0, newNodeId, 0, size);
-        attrNodeId = newNodeId;
+        if(attrNodeId != null) {
+            final NodeId[] newNodeId = new NodeId[newSize];
+            System.arraycopy(attrNodeId, 0, newNodeId, 0, Math.min(size, attrNodeId.length));
+            attrNodeId = newNodeId;
+        }
     }
 
     private void growReferences() {
@@ -1264,9 +1318,11 @@ public class DocumentImpl extends NodeImpl<DocumentImpl> implements Document {
     }
 
     private void computeNodeIds() throws EXistException {
-        if(nodeId[0] != null) {
+        if(nodeId != null) {
             return;
         }
+        nodeId = new NodeId[nodeKind == null ? 1 : nodeKind.length];
+        attrNodeId = new NodeId[attrName == null ? 0 : attrName.length];
         final NodeIdFactory nodeFactory = getDatabase().getNodeFactory();
         nodeId[0] = nodeFactory.documentNodeId();
         if(size == 1) {
@@ -1376,7 +1432,7 @@ public class DocumentImpl extends NodeImpl<DocumentImpl> implements Document {
         }
     }
 
-    private void startNode(final Serializer serializer, final NodeImpl node, final Receiver receiver)
+    void startNode(final Serializer serializer, final NodeImpl node, final Receiver receiver)
         throws SAXException {
         final int nr = node.nodeNumber;
         switch(node.getNodeType()) {
@@ -1433,7 +1489,7 @@ public class DocumentImpl extends NodeImpl<DocumentImpl> implements Document {
         }
     }
 
-    private void endNode(final NodeImpl node, final Receiver receiver) throws SAXException {
+    void endNode(final NodeImpl node, final Receiver receiver) throws SAXException {
         if(node.getNodeType() == Node.ELEMENT_NODE) {
             receiver.endElement(node.getQName());
             //End all prefix mappings used for the element
@@ -25,6 +25,8 @@ import org.exist.Indexer;
 import org.exist.Namespaces;
 import org.exist.dom.QName;
 import org.exist.dom.persistent.NodeProxy;
+import org.exist.storage.serializers.Serializer;
+import org.exist.util.serializer.Receiver;
 import org.exist.xquery.Constants;
 import org.exist.xquery.Expression;
 import org.exist.xquery.XQuery;
@@ -32,6 +34,7 @@ import org.exist.xquery.XQueryContext;
 import org.w3c.dom.DOMException;
 import org.w3c.dom.Node;
 import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
 
 import javax.annotation.Nullable;
 import javax.xml.XMLConstants;
@@ -52,6 +55,16 @@ public class MemTreeBuilder {
     private String defaultNamespaceURI = XMLConstants.NULL_NS_URI;
     private final Expression expression;
 
+    // streaming, see streamTo(Serializer, Receiver, int)
+    private @Nullable Receiver streamReceiver = null;
+    private @Nullable Serializer streamSerializer = null;
+    private int streamLevel = 0;
+    // the first node which has not been sent to the receiver yet
+    private int nextStreamNode = 1;
+    // the elements which have been started at the receiver, but not ended, by tree level
+    private int[] streamedElements = null;
+    private int streamedDepth = 0;
+
     public MemTreeBuilder() {
         this((Expression) null);
     }
@@ -84,6 +97,12 @@ public class MemTreeBuilder {
         Arrays.fill(prevNodeInLevel, -1);
         prevNodeInLevel[0] = 0;
         defaultNamespaceURI = XMLConstants.NULL_NS_URI;
+        streamReceiver = null;
+        streamSerializer = null;
+        streamLevel = 0;
+        nextStreamNode = 1;
+        streamedElements = null;
+        streamedDepth = 0;
     }
 
     /**
@@ -128,6 +147,91 @@ public class MemTreeBuilder {
      * End building the document.
      */
     public void endDocument() {
+        if(streamReceiver != null) {
+            flush();
+        }
+    }
+
+    /**
+     * Stream the nodes to a receiver while the document is being built, instead
+     * of holding the complete document in memory. Whenever an element at the given
+     * tree level, or above it, has been completed, all nodes which have not been
+     * sent yet are streamed to the receiver. The completed subtrees are then
+     * discarded from the document, only the open ancestor elements are kept.
+     *
+     * The receiver only gets the events of the nodes, the caller is responsible for
+     * starting and ending the document on the receiver. The remaining nodes are
+     * streamed by {@link #endDocument()}.
+     *
+     * Must be called after {@link #startDocument()} and before any node is added.
+     * As nodes are discarded, the document must not be accessed while streaming.
+     *
+     * @param serializer the serializer used to stream reference nodes, may be null if
+     *                   no reference nodes are added
+     * @param receiver the receiver of the nodes
+     * @param level the tree level of the subtrees which are streamed once completed,
+     *              1 for the children of the document node
+     */
+    public void streamTo(@Nullable final Serializer serializer, final Receiver receiver, final int level) {
+        if(doc == null || doc.getSize() > 1) {
+            throw new IllegalStateException("Streaming must be set up before any node is added");
+        }
+        if(level < 1) {
+            throw new IllegalArgumentException("Tree level must be at least 1: " + level);
+        }
+        this.streamSerializer = serializer;
+        this.streamReceiver = receiver;
+        this.streamLevel = level;
+        this.nextStreamNode = 1;
+        this.streamedElements = new int[level + 2];
+        this.streamedDepth = 0;
+    }
+
+    /**
+     * Send all nodes which have not been sent yet to the receiver, end the
+     * elements which are no longer open, and discard them from the document.
+     */
+    private void flush() {
+        final DocumentImpl document = doc;
+        try {
+            final int size = document.getSize();
+            for(int nr = nextStreamNode; nr < size; nr++) {
+                final short nodeLevel = document.getTreeLevel(nr);
+                endStreamedElements(nodeLevel);
+                final NodeImpl node = document.getNode(nr);
+                document.startNode(streamSerializer, node, streamReceiver);
+                if(document.getNodeType(nr) == Node.ELEMENT_NODE) {
+                    if(nodeLevel >= streamedElements.length) {
+                        streamedElements = Arrays.copyOf(streamedElements, nodeLevel + 2);
+                    }
+                    streamedElements[nodeLevel] = nr;
+                    streamedDepth = nodeLevel;
+                }
+            }
+            endStreamedElements(level);
+        } catch(final SAXException e) {
+            throw new DOMException(DOMException.INVALID_STATE_ERR, e.getMessage());
+        }
+
+        // only the open elements are still needed, they precede all completed nodes
+        final int keep = prevNodeInLevel[level - 1] + 1;
+        for(int l = level; l < prevNodeInLevel.length; l++) {
+            if(prevNodeInLevel[l] >= keep) {
+                prevNodeInLevel[l] = -1;
+            }
+        }
+        document.truncate(keep);
+        nextStreamNode = document.getSize();
+    }
+
+    /**
+     * End the streamed elements at the given tree level and below.
+     */
+    private void endStreamedElements(final int treeLevel) throws SAXException {
+        while(streamedDepth >= treeLevel && streamedDepth > 0) {
+            doc.endNode(doc.getNode(streamedElements[streamedDepth]), streamReceiver);
+            --streamedDepth;
+        }
     }
 
 
@@ -239,6 +343,9 @@ public class MemTreeBuilder {
 //      System.out.println("end-element: level = " + level);
         prevNodeInLevel[level] = -1;
         --level;
+        if(streamReceiver != null && level <= streamLevel) {
+            flush();
+        }
     }
 
 
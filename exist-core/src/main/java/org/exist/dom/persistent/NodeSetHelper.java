@@ -423,7 +423,7 @@ public final class NodeSetHelper {
                 }
             } else {
                 // same document: check if the nodes have the same parent
-                int cmp = candidate.getNodeId().getParentId().compareTo(reference.getNodeId().getParentId());
+                int cmp = candidate.getNodeId().compareParentTo(reference.getNodeId());
                 if(cmp > 0 && candidate.getNodeId().getTreeLevel() <= reference.getNodeId().getTreeLevel()) {
                     // wrong parent: proceed
                     firstCandidate = null;
@@ -534,7 +534,7 @@ public final class NodeSetHelper {
                 }
             } else {
                 // same document: check if the nodes have the same parent
-                int cmp = candidate.getNodeId().getParentId().compareTo(reference.getNodeId().getParentId());
+                int cmp = candidate.getNodeId().compareParentTo(reference.getNodeId());
                 if(cmp > 0 && candidate.getNodeId().getTreeLevel() <= reference.getNodeId().getTreeLevel()) {
                     //Do not proceed to the next "parent" if the candidate is a descendant  
                     // wrong parent: proceed
@@ -0,0 +1,1000 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.dom.persistent;
+
+import org.exist.collections.Collection;
+import org.exist.collections.ManagedLocks;
+import org.exist.dom.INode;
+import org.exist.dom.QName;
+import org.exist.numbering.NodeId;
+import org.exist.numbering.NodeIdFactory;
+import org.exist.storage.DBBroker;
+import org.exist.storage.RangeIndexSpec;
+import org.exist.storage.StorageAddress;
+import org.exist.storage.lock.LockManager;
+import org.exist.storage.lock.ManagedDocumentLock;
+import org.exist.util.LockException;
+import org.exist.xmldb.XmldbURI;
+import org.exist.xquery.Constants;
+import org.exist.xquery.Expression;
+import org.exist.xquery.XPathException;
+import org.exist.xquery.value.Item;
+import org.exist.xquery.value.SequenceIterator;
+import org.exist.xquery.value.Type;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A read-only node set of nodes with the same node type and name, as found
+ * by a scan of the structural index.
+ *
+ * Unlike {@link NewArrayNodeSet}, the nodes are not kept as {@link NodeProxy}
+ * objects, but in primitive arrays: the document ids are stored once for each
+ * document, the node ids are stored as their serialized bytes in one array,
+ * and the storage addresses in another one. A NodeProxy is only created for a
+ * node when it is first accessed, e.g. by {@link #get(int)} or an iterator, and
+ * is then kept, so that the same object is returned for further accesses.
+ *
+ * The size of the set, its document set, and lookups of nodes by their id do not
+ * create NodeProxy objects, and structural joins only create them for the nodes
+ * which are selected.
+ *
+ * The nodes have to be added in document order of each document, by
+ * {@link #add(DocumentImpl, int, byte[], int, long)}. The documents may be added
+ * in any order, but the nodes of a document have to be added in one go.
+ *
+ * Nodes may also be added as {@link NodeProxy} objects, by {@link #add(NodeProxy)}
+ * or {@link #addAll(NodeSet)}. The set is then converted into a
+ * {@link NewArrayNodeSet}, which all further calls are delegated to.
+ */
+public class PackedNodeSet extends AbstractNodeSet implements ExtNodeSet, DocumentSet {
+
+    private final NodeIdFactory nodeIdFactory;
+    private final short nodeType;
+    @Nullable private final QName qname;
+
+    private int size = 0;
+
+    private int documentCount = 0;
+    private int[] documentIds = new int[16];
+    private DocumentImpl[] documents = new DocumentImpl[16];
+
+    /**
+     * The index of the first node of each document.
+     */
+    private int[] documentNodesOffset = new int[16];
+
+    /**
+     * The number of units and the offset into {@link #nodeIdData} of the id of each node.
+     */
+    private int[] nodeIdUnits = new int[64];
+    private int[] nodeIdOffsets = new int[64];
+    private byte[] nodeIdData = new byte[256];
+    private int nodeIdDataLength = 0;
+
+    private long[] addresses = new long[64];
+
+    private boolean isSorted = true;
+
+    /**
+     * The nodes which have been accessed so far, created on demand.
+     */
+    @Nullable private NodeProxy[] proxies = null;
+
+    @Nullable private Set<Collection> cachedCollections = null;
+
+    /**
+     * The set which holds the nodes once nodes have been added as {@link NodeProxy}.
+     */
+    @Nullable private NewArrayNodeSet converted = null;
+
+    private int state = 0;
+
+    /**
+     * @param nodeIdFactory the factory to create the node ids.
+     * @param nodeType the DOM node type of all nodes, e.g. {@link Node#ELEMENT_NODE}.
+     * @param qname the name of all nodes, or null if it should be read on demand.
+     */
+    public PackedNodeSet(final NodeIdFactory nodeIdFactory, final short nodeType, @Nullable final QName qname) {
+        this.nodeIdFactory = nodeIdFactory;
+        this.nodeType = nodeType;
+        this.qname = qname;
+    }
+
+    /**
+     * Append a node to the set.
+     *
+     * @param doc the document of the node.
+     * @param units the number of units of the serialized node id.
+     * @param data the array which contains the serialized node id.
+     * @param offset the offset of the serialized node id in data.
+     * @param address the storage address of the node.
+     *
+     * @throws IllegalArgumentException if the node does not follow the last node of its document.
+     * @throws IllegalStateException if nodes of the set have already been accessed, or added as {@link NodeProxy}.
+     */
+    public void add(final DocumentImpl doc, final int units, final byte[] data, final int offset, final long address) {
+        if (converted != null || proxies != null) {
+            throw new IllegalStateException("Nodes of the set have already been accessed or added as NodeProxy");
+        }
+        final int len = byteLength(units);
+        if (documentCount == 0 || documentIds[documentCount - 1] != doc.getDocId()) {
+            addDocument(doc);
+        } else if (compare(size - 1, units, data, offset) >= 0) {
+            throw new IllegalArgumentException("Nodes have to be added in document order");
+        }
+
+        if (size == nodeIdUnits.length) {
+            final int newSize = size << 1;
+            nodeIdUnits = Arrays.copyOf(nodeIdUnits, newSize);
+            nodeIdOffsets = Arrays.copyOf(nodeIdOffsets, newSize);
+            addresses = Arrays.copyOf(addresses, newSize);
+        }
+        if (nodeIdDataLength + len > nodeIdData.length) {
+            nodeIdData = Arrays.copyOf(nodeIdData, Math.max(nodeIdData.length << 1, nodeIdDataLength + len));
+        }
+        System.arraycopy(data, offset, nodeIdData, nodeIdDataLength, len);
+        nodeIdUnits[size] = units;
+        nodeIdOffsets[size] = nodeIdDataLength;
+        addresses[size] = address;
+        nodeIdDataLength += len;
+        size++;
+
+        isEmpty = false;
+        hasOne = size == 1;
+    }
+
+    private void addDocument(final DocumentImpl doc) {
+        if (documentCount == documentIds.length) {
+            final int newSize = documentCount << 1;
+            documentIds = Arrays.copyOf(documentIds, newSize);
+            documents = Arrays.copyOf(documents, newSize);
+            documentNodesOffset = Arrays.copyOf(documentNodesOffset, newSize);
+        }
+        if (documentCount > 0 && documentIds[documentCount - 1] > doc.getDocId()) {
+            isSorted = false;
+        }
+        documentIds[documentCount] = doc.getDocId();
+        documents[documentCount] = doc;
+        documentNodesOffset[documentCount] = size;
+        documentCount++;
+        cachedCollections = null;
+    }
+
+    /**
+     * Put the documents in the order of their ids, by moving
+     * the nodes of each document as a whole.
+     */
+    private void sort() {
+        if (isSorted) {
+            return;
+        }
+        final Integer[] order = new Integer[documentCount];
+        for (int i = 0; i < documentCount; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingInt(i -> documentIds[i]));
+
+        final int[] newDocumentIds = new int[documentIds.length];
+        final DocumentImpl[] newDocuments = new DocumentImpl[documents.length];
+        final int[] newDocumentNodesOffset = new int[documentNodesOffset.length];
+        final int[] newNodeIdUnits = new int[nodeIdUnits.length];
+        final int[] newNodeIdOffsets = new int[nodeIdOffsets.length];
+        final long[] newAddresses = new long[addresses.length];
+        int pos = 0;
+        for (int i = 0; i < documentCount; i++) {
+            final int docIdx = order[i];
+            if (i > 0 && newDocumentIds[i - 1] == documentIds[docIdx]) {
+                throw new IllegalStateException("Nodes of document " + documentIds[docIdx] + " were not added in one go");
+            }
+            final int start = documentNodesOffset[docIdx];
+            final int count = getDocumentNodesCount(docIdx);
+            newDocumentIds[i] = documentIds[docIdx];
+            newDocuments[i] = documents[docIdx];
+            newDocumentNodesOffset[i] = pos;
+            System.arraycopy(nodeIdUnits, start, newNodeIdUnits, pos, count);
+            System.arraycopy(nodeIdOffsets, start, newNodeIdOffsets, pos, count);
+            System.arraycopy(addresses, start, newAddresses, pos, count);
+            pos += count;
+        }
+        documentIds = newDocumentIds;
+        documents = newDocuments;
+        documentNodesOffset = newDocumentNodesOffset;
+        nodeIdUnits = newNodeIdUnits;
+        nodeIdOffsets = newNodeIdOffsets;
+        addresses = newAddresses;
+        isSorted = true;
+    }
+
+    private int getDocumentNodesCount(final int docIdx) {
+        return (docIdx + 1 < documentCount ? documentNodesOffset[docIdx + 1] : size) - documentNodesOffset[docIdx];
+    }
+
+    private static int byteLength(final int units) {
+        return (units + 7) >>> 3;
+    }
+
+    /**
+     * Compare the id of a node in this set with a serialized node id,
+     * in the same way as {@link NodeId#compareTo(NodeId)}.
+     */
+    private int compare(final int pos, final int units, final byte[] data, final int offset) {
+        return nodeIdFactory.compare(nodeIdUnits[pos], nodeIdData, nodeIdOffsets[pos], units, data, offset);
+    }
+
+    /**
+     * Compute the relation of a node in this set to a serialized ancestor id,
+     * in the same way as {@link NodeId#computeRelation(NodeId)}.
+     */
+    private int computeRelation(final int pos, final int ancestorUnits, final byte[] ancestorData) {
+        return nodeIdFactory.computeRelation(nodeIdUnits[pos], nodeIdData, nodeIdOffsets[pos], ancestorUnits, ancestorData, 0);
+    }
+
+    private static byte[] serialize(final NodeId nodeId) {
+        final byte[] data = new byte[nodeId.size()];
+        nodeId.serialize(data, 0);
+        return data;
+    }
+
+    private NodeId getNodeId(final int pos) {
+        return nodeIdFactory.createFromData(nodeIdUnits[pos], nodeIdData, nodeIdOffsets[pos]);
+    }
+
+    private int findDoc(final int docId) {
+        sort();
+        int low = 0;
+        int high = documentCount - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final int midVal = documentIds[mid];
+            if (midVal < docId) {
+                low = mid + 1;
+            } else if (midVal > docId) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * Find the first node of a document whose id is greater than or equal
+     * to the serialized node id.
+     *
+     * @return the position of the node, which is the end of the document's nodes if there is none.
+     */
+    private int lowerBound(final int docIdx, final int units, final byte[] nodeId) {
+        int low = documentNodesOffset[docIdx];
+        int high = low + getDocumentNodesCount(docIdx);
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (compare(mid, units, nodeId, 0) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int indexOf(final int docIdx, final NodeId nodeId) {
+        final byte[] data = serialize(nodeId);
+        final int pos = lowerBound(docIdx, nodeId.units(), data);
+        if (pos < documentNodesOffset[docIdx] + getDocumentNodesCount(docIdx)
+                && compare(pos, nodeId.units(), data, 0) == 0) {
+            return pos;
+        }
+        return -1;
+    }
+
+    @Override
+    public NodeProxy get(final int pos) {
+        if (converted != null) {
+            return converted.get(pos);
+        }
+        if (pos < 0 || pos >= size) {
+            return null;
+        }
+        sort();
+        if (proxies == null) {
+            proxies = new NodeProxy[size];
+        }
+        NodeProxy proxy = proxies[pos];
+        if (proxy == null) {
+            proxy = new NodeProxy(null, documents[docIndexOf(pos)], getNodeId(pos), nodeType, addresses[pos]);
+            if (qname != null) {
+                proxy.setQName(qname);
+            }
+            proxies[pos] = proxy;
+        }
+        return proxy;
+    }
+
+    private int docIndexOf(final int pos) {
+        int low = 0;
+        int high = documentCount - 1;
+        while (low < high) {
+            final int mid = (low + high + 1) >>> 1;
+            if (documentNodesOffset[mid] <= pos) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    @Override
+    public NodeProxy get(final NodeProxy proxy) {
+        if (converted != null) {
+            return converted.get(proxy);
+        }
+        return get(proxy.getOwnerDocument(), proxy.getNodeId());
+    }
+
+    @Override
+    public NodeProxy get(final DocumentImpl doc, final NodeId nodeId) {
+        if (converted != null) {
+            return converted.get(doc, nodeId);
+        }
+        final int docIdx = findDoc(doc.getDocId());
+        if (docIdx < 0) {
+            return null;
+        }
+        final int pos = indexOf(docIdx, nodeId);
+        return pos < 0 ? null : get(pos);
+    }
+
+    @Override
+    public boolean contains(final NodeProxy proxy) {
+        if (converted != null) {
+            return converted.contains(proxy);
+        }
+        final int docIdx = findDoc(proxy.getOwnerDocument().getDocId());
+        return docIdx > -1 && indexOf(docIdx, proxy.getNodeId()) > -1;
+    }
+
+    @Override
+    public void add(final NodeProxy proxy) {
+        convert().add(proxy);
+        state++;
+    }
+
+    @Override
+    public void add(final NodeProxy proxy, final int sizeHint) {
+        convert().add(proxy, sizeHint);
+        state++;
+    }
+
+    @Override
+    public void addAll(final NodeSet other) {
+        convert().addAll(other);
+        state++;
+    }
+
+    /**
+     * Convert the set into a {@link NewArrayNodeSet}, so that nodes can be
+     * added as {@link NodeProxy}. The nodes which have been accessed so far
+     * are kept, together with their context and matches.
+     *
+     * @return the converted set, which all further calls are delegated to.
+     */
+    private NewArrayNodeSet convert() {
+        if (converted == null) {
+            final NewArrayNodeSet set = new NewArrayNodeSet();
+            for (int i = 0; i < size; i++) {
+                set.add(get(i));
+            }
+            converted = set;
+
+            // the packed data is not needed anymore
+            size = 0;
+            documentCount = 0;
+            documentIds = null;
+            documents = null;
+            documentNodesOffset = null;
+            nodeIdUnits = null;
+            nodeIdOffsets = null;
+            nodeIdData = null;
+            addresses = null;
+            proxies = null;
+            cachedCollections = null;
+        }
+        return converted;
+    }
+
+    @Override
+    public int getState() {
+        return state;
+    }
+
+    @Override
+    public boolean hasChanged(final int previousState) {
+        return state != previousState;
+    }
+
+    @Override
+    public NodeSet copy() {
+        final NewArrayNodeSet set = new NewArrayNodeSet();
+        set.addAll(this);
+        return set;
+    }
+
+    @Override
+    public int getItemType() {
+        if (converted != null) {
+            return converted.getItemType();
+        }
+        return size == 0 ? Type.NODE : NodeProxy.nodeType2XQuery(nodeType);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        if (converted != null) {
+            return converted.isEmpty();
+        }
+        return size == 0;
+    }
+
+    @Override
+    public boolean hasOne() {
+        if (converted != null) {
+            return converted.hasOne();
+        }
+        return size == 1;
+    }
+
+    @Override
+    public int getLength() {
+        if (converted != null) {
+            return converted.getLength();
+        }
+        return size;
+    }
+
+    @Override
+    public long getItemCountLong() {
+        if (converted != null) {
+            return converted.getItemCountLong();
+        }
+        return size;
+    }
+
+    @Override
+    public Node item(final int pos) {
+        if (converted != null) {
+            return converted.item(pos);
+        }
+        final NodeProxy p = get(pos);
+        return p == null ? null : p.getNode();
+    }
+
+    @Override
+    public Item itemAt(final int pos) {
+        if (converted != null) {
+            return converted.itemAt(pos);
+        }
+        return get(pos);
+    }
+
+    @Override
+    public int getSizeHint(final DocumentImpl doc) {
+        if (converted != null) {
+            return converted.getSizeHint(doc);
+        }
+        final int docIdx = findDoc(doc.getDocId());
+        return docIdx < 0 ? Constants.NO_SIZE_HINT : getDocumentNodesCount(docIdx);
+    }
+
+    @Override
+    public NodeSetIterator iterator() {
+        if (converted != null) {
+            return converted.iterator();
+        }
+        sort();
+        return new PackedIterator();
+    }
+
+    @Override
+    public SequenceIterator iterate() {
+        if (converted != null) {
+            return converted.iterate();
+        }
+        sort();
+        return new PackedIterator();
+    }
+
+    @Override
+    public SequenceIterator unorderedIterator() {
+        if (converted != null) {
+            return converted.unorderedIterator();
+        }
+        return iterate();
+    }
+
+    @Override
+    public NodeSet selectParentChild(final NodeSet al, final int mode, final int contextId) {
+        if (converted != null) {
+            return converted.selectParentChild(al, mode, contextId);
+        }
+        if (al instanceof VirtualNodeSet) {
+            return super.selectParentChild(al, mode, contextId);
+        }
+        return getDescendantsInSet(al, true, false, mode, contextId, true);
+    }
+
+    @Override
+    public NodeSet selectAncestorDescendant(final NodeSet al, final int mode, final boolean includeSelf,
+            final int contextId, final boolean copyMatches) {
+        if (converted != null) {
+            return converted.selectAncestorDescendant(al, mode, includeSelf, contextId, copyMatches);
+        }
+        if (al instanceof VirtualNodeSet) {
+            return super.selectAncestorDescendant(al, mode, includeSelf, contextId, copyMatches);
+        }
+        return getDescendantsInSet(al, false, includeSelf, mode, contextId, copyMatches);
+    }
+
+    /**
+     * Find the nodes of this set which are children or descendants of the nodes in another set.
+     * The descendants of a node are found by binary search in the serialized node ids, and only
+     * the nodes which are selected are created as NodeProxy objects.
+     */
+    private NodeSet getDescendantsInSet(final NodeSet al, final boolean childOnly, final boolean includeSelf,
+            final int mode, final int contextId, final boolean copyMatches) {
+        final NodeSet result = new NewArrayNodeSet();
+        for (final NodeProxy parent : al) {
+            final int docIdx = findDoc(parent.getOwnerDocument().getDocId());
+            if (docIdx < 0) {
+                continue;
+            }
+            final NodeId parentId = parent.getNodeId();
+            final byte[] parentData;
+            final int start;
+            final int end;
+            if (parentId == NodeId.DOCUMENT_NODE) {
+                parentData = null;
+                start = documentNodesOffset[docIdx];
+                end = start + getDocumentNodesCount(docIdx);
+            } else {
+                // the descendants of a node lie between the node and its next sibling,
+                // together with the siblings inserted after the node, which are filtered below
+                parentData = serialize(parentId);
+                final NodeId nextSibling = parentId.nextSibling();
+                start = lowerBound(docIdx, parentId.units(), parentData);
+                end = lowerBound(docIdx, nextSibling.units(), serialize(nextSibling));
+            }
+            for (int i = start; i < end; i++) {
+                final boolean add;
+                if (parentData == null) {
+                    add = !childOnly || nodeIdFactory.getTreeLevel(nodeIdUnits[i], nodeIdData, nodeIdOffsets[i]) == 1;
+                } else {
+                    final int relation = computeRelation(i, parentId.units(), parentData);
+                    if (childOnly) {
+                        add = relation == NodeId.IS_CHILD;
+                    } else if (relation == NodeId.IS_SELF) {
+                        add = includeSelf;
+                    } else {
+                        add = relation > -1;
+                    }
+                }
+                if (!add) {
+                    continue;
+                }
+                final NodeProxy node = get(i);
+                switch (mode) {
+                    case NodeSet.DESCENDANT:
+                        if (Expression.NO_CONTEXT_ID != contextId) {
+                            node.deepCopyContext(parent, contextId);
+                        } else {
+                            node.copyContext(parent);
+                        }
+                        if (copyMatches) {
+                            node.addMatches(parent);
+                        }
+                        result.add(node);
+                        break;
+                    case NodeSet.ANCESTOR:
+                        if (Expression.NO_CONTEXT_ID != contextId) {
+                            parent.deepCopyContext(node, contextId);
+                        } else {
+                            parent.copyContext(node);
+                        }
+                        if (copyMatches) {
+                            parent.addMatches(node);
+                        }
+                        result.add(parent, 1);
+                        break;
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public NodeProxy hasDescendantsInSet(final DocumentImpl doc, final NodeId ancestorId, final boolean includeSelf,
+            final int contextId, final boolean copyMatches) {
+        if (converted != null) {
+            return converted.hasDescendantsInSet(doc, ancestorId, includeSelf, contextId, copyMatches);
+        }
+        final int docIdx = findDoc(doc.getDocId());
+        if (docIdx < 0) {
+            return null;
+        }
+        final byte[] ancestorData;
+        final int start;
+        final int end;
+        if (ancestorId == NodeId.DOCUMENT_NODE) {
+            ancestorData = null;
+            start = documentNodesOffset[docIdx];
+            end = start + getDocumentNodesCount(docIdx);
+        } else {
+            ancestorData = serialize(ancestorId);
+            final NodeId nextSibling = ancestorId.nextSibling();
+            start = lowerBound(docIdx, ancestorId.units(), ancestorData);
+            end = lowerBound(docIdx, nextSibling.units(), serialize(nextSibling));
+        }
+        final NodeProxy ancestor = new NodeProxy(null, documents[docIdx], ancestorId, Node.ELEMENT_NODE);
+        boolean foundOne = false;
+        for (int i = start; i < end; i++) {
+            if (ancestorData != null) {
+                final int relation = computeRelation(i, ancestorId.units(), ancestorData);
+                if (relation == -1 || (relation == NodeId.IS_SELF && !includeSelf)) {
+                    continue;
+                }
+            }
+            final NodeProxy node = get(i);
+            if (Expression.NO_CONTEXT_ID != contextId) {
+                ancestor.deepCopyContext(node, contextId);
+            } else {
+                ancestor.copyContext(node);
+            }
+            if (copyMatches) {
+                ancestor.addMatches(node);
+            }
+            foundOne = true;
+        }
+        return foundOne ? ancestor : null;
+    }
+
+    @Override
+    public int getIndexType() {
+        if (converted != null) {
+            return converted.getIndexType();
+        }
+        if (indexType == Type.ANY_TYPE) {
+            sort();
+            for (int docIdx = 0; docIdx < documentCount && indexType != Type.ITEM; docIdx++) {
+                if (documents[docIdx].getCollection().isTempCollection()) {
+                    //Temporary nodes return default values
+                    indexType = Type.ITEM;
+                    break;
+                }
+                final int end = documentNodesOffset[docIdx] + getDocumentNodesCount(docIdx);
+                for (int i = documentNodesOffset[docIdx]; i < end; i++) {
+                    final int nodeIndexType = addresses[i] == -1 ? Type.ITEM :
+                            RangeIndexSpec.indexTypeToXPath(StorageAddress.indexTypeFromPointer(addresses[i]));
+                    if (indexType == Type.ANY_TYPE) {
+                        indexType = nodeIndexType;
+                    } else if (indexType != nodeIndexType) {
+                        indexType = Type.ITEM;
+                        break;
+                    }
+                }
+            }
+        }
+        return indexType;
+    }
+
+    @Override
+    public void clearContext(final int contextId) throws XPathException {
+        if (converted != null) {
+            converted.clearContext(contextId);
+            return;
+        }
+        if (proxies != null) {
+            for (final NodeProxy proxy : proxies) {
+                if (proxy != null) {
+                    proxy.clearContext(contextId);
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean containsReference(final Item item) {
+        if (converted != null) {
+            return converted.containsReference(item);
+        }
+        final NodeProxy proxy = find(item);
+        return proxy != null && proxy == item;
+    }
+
+    @Override
+    public boolean contains(final Item item) {
+        if (converted != null) {
+            return converted.contains(item);
+        }
+        final NodeProxy proxy = find(item);
+        return proxy != null && proxy.equals(item);
+    }
+
+    private @Nullable NodeProxy find(final Item item) {
+        if (!(item instanceof Node)) {
+            return null;
+        }
+        final Document doc = item instanceof Document ? (Document) item : ((Node) item).getOwnerDocument();
+        if (!(doc instanceof DocumentImpl)) {
+            return null;
+        }
+        return get((DocumentImpl) doc, ((INode) item).getNodeId());
+    }
+
+    @Override
+    public DocumentSet getDocumentSet() {
+        if (converted != null) {
+            return converted.getDocumentSet();
+        }
+        return this;
+    }
+
+    @Override
+    public Iterator<Collection> getCollectionIterator() {
+        if (converted != null) {
+            return converted.getCollectionIterator();
+        }
+        sort();
+        if (cachedCollections == null) {
+            cachedCollections = new HashSet<>();
+            for (int i = 0; i < documentCount; i++) {
+                cachedCollections.add(documents[i].getCollection());
+            }
+        }
+        return cachedCollections.iterator();
+    }
+
+    @Override
+    public Iterator<DocumentImpl> getDocumentIterator() {
+        if (converted != null) {
+            return converted.getDocumentIterator();
+        }
+        sort();
+        return new Iterator<DocumentImpl>() {
+            private int currentDoc = 0;
+
+            @Override
+            public boolean hasNext() {
+                return currentDoc < documentCount;
+            }
+
+            @Override
+            public DocumentImpl next() {
+                if (currentDoc == documentCount) {
+                    throw new NoSuchElementException();
+                }
+                return documents[currentDoc++];
+            }
+        };
+    }
+
+    @Override
+    public int getDocumentCount() {
+        if (converted != null) {
+            return converted.getDocumentCount();
+        }
+        return documentCount;
+    }
+
+    @Override
+    public DocumentImpl getDoc(final int docId) {
+        if (converted != null) {
+            return converted.getDoc(docId);
+        }
+        final int docIdx = findDoc(docId);
+        return docIdx < 0 ? null : documents[docIdx];
+    }
+
+    @Override
+    public XmldbURI[] getNames() {
+        if (converted != null) {
+            return converted.getNames();
+        }
+        sort();
+        final XmldbURI[] uris = new XmldbURI[documentCount];
+        for (int i = 0; i < documentCount; i++) {
+            uris[i] = documents[i].getURI();
+        }
+        return uris;
+    }
+
+    @Override
+    public DocumentSet intersection(final DocumentSet other) {
+        if (converted != null) {
+            return converted.intersection(other);
+        }
+        sort();
+        final DefaultDocumentSet set = new DefaultDocumentSet();
+        for (int i = 0; i < documentCount; i++) {
+            if (other.contains(documentIds[i])) {
+                set.add(documents[i]);
+            }
+        }
+        for (final Iterator<DocumentImpl> i = other.getDocumentIterator(); i.hasNext(); ) {
+            final DocumentImpl doc = i.next();
+            if (contains(doc.getDocId()) && !set.contains(doc.getDocId())) {
+                set.add(doc);
+            }
+        }
+        return set;
+    }
+
+    @Override
+    public boolean contains(final DocumentSet other) {
+        if (converted != null) {
+            return converted.contains(other);
+        }
+        if (other.getDocumentCount() > documentCount) {
+            return false;
+        }
+        for (final Iterator<DocumentImpl> i = other.getDocumentIterator(); i.hasNext(); ) {
+            if (!contains(i.next().getDocId())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean contains(final int docId) {
+        if (converted != null) {
+            return converted.contains(docId);
+        }
+        return findDoc(docId) > -1;
+    }
+
+    @Override
+    public boolean equalDocs(final DocumentSet other) {
+        if (converted != null) {
+            return converted.equalDocs(other);
+        }
+        if (this == other) {
+            return true;
+        }
+        if (documentCount != other.getDocumentCount()) {
+            return false;
+        }
+        for (int i = 0; i < documentCount; i++) {
+            if (!other.contains(documentIds[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public NodeSet docsToNodeSet() {
+        if (converted != null) {
+            return converted.docsToNodeSet();
+        }
+        sort();
+        final NodeSet result = new NewArrayNodeSet();
+        for (int i = 0; i < documentCount; i++) {
+            if (documents[i].getResourceType() == DocumentImpl.XML_FILE) { // skip binary resources
+                result.add(new NodeProxy(null, documents[i], NodeId.DOCUMENT_NODE));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public ManagedLocks<ManagedDocumentLock> lock(final DBBroker broker, final boolean exclusive) throws LockException {
+        if (converted != null) {
+            return converted.lock(broker, exclusive);
+        }
+        sort();
+        final LockManager lockManager = broker.getBrokerPool().getLockManager();
+        final ManagedDocumentLock[] managedDocumentLocks = new ManagedDocumentLock[documentCount];
+        try {
+            for (int idx = 0; idx < documentCount; idx++) {
+                final XmldbURI uri = documents[idx].getURI();
+                managedDocumentLocks[idx] = exclusive ? lockManager.acquireDocumentWriteLock(uri)
+                        : lockManager.acquireDocumentReadLock(uri);
+            }
+            return new ManagedLocks<>(managedDocumentLocks);
+        } catch (final LockException e) {
+            // unlock any previously locked documents
+            new ManagedLocks<>(managedDocumentLocks).close();
+            throw e;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "PackedNodeSet#" + super.toString();
+    }
+
+    private class PackedIterator implements NodeSetIterator, SequenceIterator {
+        private int pos = 0;
+
+        @Override
+        public boolean hasNext() {
+            return pos < size && pos > -1;
+        }
+
+        @Override
+        public NodeProxy next() {
+            if (pos == size || pos < 0) {
+                pos = -1;
+                throw new NoSuchElementException();
+            }
+            return get(pos++);
+        }
+
+        @Override
+        public long skippable() {
+            if (pos == -1) {
+                return 0;
+            }
+            return size - pos;
+        }
+
+        @Override
+        public long skip(final long n) {
+            final long skip = Math.min(n, pos == -1 ? 0 : size - pos);
+            pos += skip;
+            return skip;
+        }
+
+        @Override
+        public NodeProxy peekNode() {
+            if (pos == size || pos < 0) {
+                pos = -1;
+                return null;
+            }
+            return get(pos);
+        }
+
+        @Override
+        public Item nextItem() {
+            if (pos == size || pos < 0) {
+                pos = -1;
+                return null;
+            }
+            return get(pos++);
+        }
+
+        @Override
+        public void setPosition(final NodeProxy proxy) {
+            final int docIdx = findDoc(proxy.getOwnerDocument().getDocId());
+            pos = docIdx < 0 ? -1 : indexOf(docIdx, proxy.getNodeId());
+        }
+    }
+}
@@ -401,7 +401,7 @@ public class SymbolTable implements BrokerPoolService, Closeable {
         }
     }
 
-    public void backupSymbolsTo(final OutputStream os) throws IOException {
+    public synchronized void backupSymbolsTo(final OutputStream os) throws IOException {
         Files.copy(getFile(), os);
     }
 
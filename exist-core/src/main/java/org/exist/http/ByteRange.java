@@ -0,0 +1,127 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.http;
+
+import javax.annotation.Nullable;
+
+/**
+ * A single range of a HTTP Range request header, e.g. {@code bytes=0-499},
+ * see RFC 7233.
+ *
+ * Requests for multiple ranges are not supported, for those
+ * the complete representation is sent which RFC 7233 permits.
+ */
+final class ByteRange {
+
+    private static final String BYTES_UNIT = "bytes=";
+
+    /**
+     * The range can not be satisfied for the representation,
+     * i.e. it starts after its last byte.
+     */
+    static final ByteRange UNSATISFIABLE = new ByteRange(-1, -1);
+
+    /**
+     * Offset of the first byte of the range.
+     */
+    final long first;
+
+    /**
+     * Offset of the last byte of the range, inclusive.
+     */
+    final long last;
+
+    private ByteRange(final long first, final long last) {
+        this.first = first;
+        this.last = last;
+    }
+
+    /**
+     * Parse the value of a HTTP Range request header.
+     *
+     * @param header the value of the Range header, may be null.
+     * @param length the length of the complete representation.
+     *
+     * @return the range, {@link #UNSATISFIABLE}, or null if the
+     *     complete representation should be sent as the header is
+     *     absent, malformed or requests multiple ranges.
+     */
+    static @Nullable ByteRange parse(@Nullable final String header, final long length) {
+        if (header == null) {
+            return null;
+        }
+        final String value = header.trim();
+        if (!value.regionMatches(true, 0, BYTES_UNIT, 0, BYTES_UNIT.length())) {
+            return null;
+        }
+        final String spec = value.substring(BYTES_UNIT.length()).trim();
+        final int dash = spec.indexOf('-');
+        if (dash < 0 || spec.indexOf(',') >= 0) {
+            return null;
+        }
+
+        try {
+            if (dash == 0) {
+                // suffix range, i.e. the last n bytes
+                final long suffixLength = Long.parseLong(spec.substring(1));
+                if (suffixLength < 0) {
+                    return null;
+                }
+                if (suffixLength == 0 || length == 0) {
+                    return UNSATISFIABLE;
+                }
+                return new ByteRange(Math.max(0, length - suffixLength), length - 1);
+            }
+
+            final long first = Long.parseLong(spec.substring(0, dash));
+            final String lastSpec = spec.substring(dash + 1);
+            final long last = lastSpec.isEmpty() ? Long.MAX_VALUE : Long.parseLong(lastSpec);
+            if (first < 0 || last < first) {
+                return null;
+            }
+            if (first >= length) {
+                return UNSATISFIABLE;
+            }
+            return new ByteRange(first, Math.min(last, length - 1));
+        } catch (final NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return the number of bytes in the range.
+     */
+    long length() {
+        return last - first + 1;
+    }
+
+    /**
+     * Get the value for the HTTP Content-Range response header.
+     *
+     * @param length the length of the complete representation.
+     *
+     * @return the Content-Range header value.
+     */
+    String toContentRange(final long length) {
+        return "bytes " + first + "-" + last + "/" + length;
+    }
+}
@@ -96,6 +96,9 @@ import java.lang.invoke.LambdaMetafactory;
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.util.Properties;
 import java.util.*;
 import java.util.function.BiFunction;
@@ -1774,14 +1777,36 @@ public class RESTServer {
                 response.setContentType(asMimeType);
             }
 
+            // HTTP 1.1 RFC 7233, single byte ranges of binary resources
+            final long contentLength = resource.getContentLength();
+            response.setHeader("Accept-Ranges", "bytes");
+            final ByteRange range = isRangeApplicable(request, lastModified) ? ByteRange.parse(request.getHeader("Range"), contentLength) : null;
+            if (range == ByteRange.UNSATISFIABLE) {
+                response.setHeader("Content-Range", "bytes */" + contentLength);
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+
+            final long offset;
+            final long length;
+            if (range != null) {
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader("Content-Range", range.toContentRange(contentLength));
+                offset = range.first;
+                length = range.length();
+            } else {
+                offset = 0;
+                length = contentLength;
+            }
+
             // As HttpServletResponse.setContentLength is limited to integers,
             // (see http://bugs.sun.com/bugdatabase/view_bug.do?bug_id=4187336)
             // next sentence:
             //	response.setContentLength(resource.getContentLength());
             // must be set so
-            response.addHeader("Content-Length", Long.toString(resource.getContentLength()));
+            response.addHeader("Content-Length", Long.toString(length));
             final OutputStream os = response.getOutputStream();
-            broker.readBinaryResource((BinaryDocument) resource, os);
+            broker.readBinaryResource(transaction, (BinaryDocument) resource, offset, length, outputChannel(os));
             os.flush();
         } else {
             // xml resource
@@ -2264,6 +2289,65 @@ public class RESTServer {
         }
     }
 
+    /**
+     * Determines whether a Range request header should be honoured,
+     * i.e. there is no If-Range header, or the resource has not been
+     * modified since the date of the If-Range header.
+     */
+    private static boolean isRangeApplicable(final HttpServletRequest request, final long lastModified) {
+        if (request.getHeader("If-Range") == null) {
+            return true;
+        }
+        try {
+            return request.getDateHeader("If-Range") >= lastModified;
+        } catch (final IllegalArgumentException e) {
+            // an entity tag, we do not send entity tags for resources
+            return false;
+        }
+    }
+
+    /**
+     * Get a channel for writing to the response.
+     *
+     * Jetty can write buffers, e.g. regions of memory mapped files,
+     * directly to the connection, other containers are written
+     * to through their output stream.
+     */
+    private static WritableByteChannel outputChannel(final OutputStream os) {
+        if (os instanceof WritableByteChannel) {
+            return (WritableByteChannel) os;
+        }
+        if (os instanceof org.eclipse.jetty.server.HttpOutput) {
+            return new HttpOutputChannel((org.eclipse.jetty.server.HttpOutput) os);
+        }
+        return Channels.newChannel(os);
+    }
+
+    private static class HttpOutputChannel implements WritableByteChannel {
+        private final org.eclipse.jetty.server.HttpOutput out;
+
+        private HttpOutputChannel(final org.eclipse.jetty.server.HttpOutput out) {
+            this.out = out;
+        }
+
+        @Override
+        public int write(final ByteBuffer src) throws IOException {
+            final int len = src.remaining();
+            out.write(src);
+            return len;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return !out.isClosed();
+        }
+
+        @Override
+        public void close() {
+            // the response is closed by the container
+        }
+    }
+
     private boolean isExecutableType(final DocumentImpl resource) {
         return (
             resource != null
@@ -52,6 +52,7 @@ import org.exist.storage.BrokerPool;
 import org.exist.util.UUIDGenerator;
 import org.exist.util.serializer.DOMSerializer;
 import org.w3c.dom.Element;
+import org.xml.sax.SAXException;
 
 /**
  * A servlet to monitor the database. It returns status information for the database based on the JMX interface. For
@@ -121,6 +122,8 @@ public class JMXServlet extends HttpServlet {
 
     private void writeXmlData(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
         Element root = null;
+        String errcode = null;
+        String[] categories = null;
 
         final String operation = request.getParameter("operation");
         if ("ping".equals(operation)) {
@@ -136,10 +139,10 @@ public class JMXServlet extends HttpServlet {
 
             final long responseTime = client.ping(BrokerPool.DEFAULT_INSTANCE_NAME, timeout);
             if (responseTime == JMXtoXML.PING_TIMEOUT) {
-                root = client.generateXMLReport(String.format("no response on ping after %sms", timeout),
-                        new String[]{"sanity", "locking", "processes", "instances", "memory"});
+                errcode = String.format("no response on ping after %sms", timeout);
+                categories = new String[]{"sanity", "locking", "processes", "instances", "memory"};
             } else {
-                root = client.generateXMLReport(null, new String[]{"sanity"});
+                categories = new String[]{"sanity"};
             }
         } else if (operation != null && operation.length() > 0) {
             final String mbean = request.getParameter("mbean");
@@ -158,19 +161,32 @@ public class JMXServlet extends HttpServlet {
                 throw new ServletException(e.getMessage(), e);
             }
         } else {
-            String[] categories = request.getParameterValues("c");
+            categories = request.getParameterValues("c");
             if (categories == null) {
                 categories = new String[]{"all"};
             }
-            root = client.generateXMLReport(null, categories);
         }
 
         response.setContentType("application/xml");
 
         final Object useAttribute = request.getAttribute("jmx.attribute");
         if (useAttribute != null) {
+            if (root == null) {
+                root = client.generateXMLReport(errcode, categories);
+            }
             request.setAttribute(useAttribute.toString(), root);
 
+        } else if (root == null) {
+            // stream the report while it is generated, rather than building it in memory first
+            final Writer writer = new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8);
+            try {
+                client.writeXMLReport(errcode, categories, writer);
+            } catch (final SAXException e) {
+                LOG.error(e.getMessage());
+                throw new ServletException("Error while serializing result: " + e.getMessage(), e);
+            }
+            writer.flush();
+
         } else {
             final Writer writer = new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8);
             final DOMSerializer streamer = new DOMSerializer(writer, defaultProperties);
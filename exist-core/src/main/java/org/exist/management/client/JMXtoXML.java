@@ -23,6 +23,7 @@ package org.exist.management.client;
 
 import java.io.IOException;
 import java.io.StringWriter;
+import java.io.Writer;
 import java.lang.management.ManagementFactory;
 
 import static java.lang.management.ManagementFactory.CLASS_LOADING_MXBEAN_NAME;
@@ -56,6 +57,7 @@ import org.exist.start.CompatibleJavaVersionCheck;
 import org.exist.start.StartException;
 import org.exist.util.NamedThreadFactory;
 import org.exist.util.serializer.DOMSerializer;
+import org.exist.util.serializer.SAXSerializer;
 import org.exist.xquery.Expression;
 import org.w3c.dom.Element;
 import org.xml.sax.SAXException;
@@ -104,6 +106,7 @@ public class JMXtoXML {
                 Cache.getAllInstancesQuery()
         );
         putCategory("binarystreamcaches", BinaryValues.getAllInstancesQuery());
+        putCategory("blobstores", BlobStore.getAllInstancesQuery());
         putCategory("processes", ProcessReport.getAllInstancesQuery());
         putCategory("sanity", SanityReport.getAllInstancesQuery());
 
@@ -254,10 +257,33 @@ public class JMXtoXML {
      */
     public Element generateXMLReport(final String errcode, final String categories[]) {
         final MemTreeBuilder builder = new MemTreeBuilder((Expression) null);
+        builder.startDocument();
+        buildXMLReport(builder, errcode, categories);
+        return (Element) builder.getDocument().getNode(1);
+    }
 
-        try {
-            builder.startDocument();
+    /**
+     * Retrieve JMX output for the given categories and write it to a writer. The report is streamed while it is
+     * generated, so that only the MBean which is being reported is held in memory rather than the complete report.
+     *
+     * @param errcode    an optional error description
+     * @param categories the categories to generate the report for
+     * @param writer     the writer to write the report to
+     * @throws SAXException in case of serialization errors
+     */
+    public void writeXMLReport(final String errcode, final String categories[], final Writer writer) throws SAXException {
+        final SAXSerializer serializer = new SAXSerializer(writer, defaultProperties);
+        final MemTreeBuilder builder = new MemTreeBuilder((Expression) null);
+        builder.startDocument();
+        // stream each MBean, i.e. each child of the jmx:jmx element, once it is complete
+        builder.streamTo(null, serializer, 2);
+        serializer.startDocument();
+        buildXMLReport(builder, errcode, categories);
+        serializer.endDocument();
+    }
 
+    private void buildXMLReport(final MemTreeBuilder builder, final String errcode, final String categories[]) {
+        try {
             builder.startElement(JMX_ELEMENT, null);
             builder.addAttribute(VERSION_ATTR, Integer.toString(VERSION));
             if (url != null) {
@@ -279,13 +305,11 @@ public class JMXtoXML {
 
             builder.endElement();
 
-            builder.endDocument();
-
         } catch (final Exception e) {
             e.printStackTrace();
             LOG.warn("Could not generate XML report from JMX: {}", e.getMessage());
         }
-        return (Element) builder.getDocument().getNode(1);
+        builder.endDocument();
     }
 
     public String getDataDir() {
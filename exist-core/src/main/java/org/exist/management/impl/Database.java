@@ -87,6 +87,31 @@ public class Database implements DatabaseMXBean {
         return pool.total();
     }
 
+    @Override
+    public int getWaitingForBroker() {
+        return pool.countWaitingForBroker();
+    }
+
+    @Override
+    public long getBrokerLeaseCount() {
+        return pool.getBrokerLeaseCount();
+    }
+
+    @Override
+    public long getBrokerLeaseWaitCount() {
+        return pool.getBrokerLeaseWaitCount();
+    }
+
+    @Override
+    public long getBrokerLeaseWaitTime() {
+        return pool.getBrokerLeaseWaitTime();
+    }
+
+    @Override
+    public long getBrokerLeaseTimeoutCount() {
+        return pool.getBrokerLeaseTimeoutCount();
+    }
+
     @Override
     public List<ActiveBroker> getActiveBrokersMap() {
         final List<ActiveBroker> brokersList = new ArrayList<>();
@@ -36,6 +36,16 @@ public interface DatabaseMXBean extends PerInstanceMBean {
     int getActiveBrokers();
 
     int getTotalBrokers();
+
+    int getWaitingForBroker();
+
+    long getBrokerLeaseCount();
+
+    long getBrokerLeaseWaitCount();
+
+    long getBrokerLeaseWaitTime();
+
+    long getBrokerLeaseTimeoutCount();
     
     long getReservedMem();
 
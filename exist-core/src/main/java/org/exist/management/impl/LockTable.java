@@ -26,6 +26,8 @@ import org.apache.logging.log4j.Logger;
 import org.exist.storage.BrokerPool;
 import org.exist.storage.lock.Lock;
 import org.exist.storage.lock.Lock.LockType;
+import org.exist.storage.lock.LockStatistics;
+import org.exist.storage.lock.LockStatistics.LockTypeStatistics;
 import org.exist.storage.lock.LockTable.LockCountTraces;
 import org.exist.storage.lock.LockTable.LockModeOwner;
 import org.exist.storage.lock.LockTableUtils;
@@ -37,6 +39,7 @@ import javax.xml.stream.XMLStreamException;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -49,6 +52,8 @@ import static java.nio.charset.StandardCharsets.UTF_8;
  */
 public class LockTable implements LockTableMXBean {
 
+    private static final int MOST_CONTENDED_LIMIT = 20;
+
     private final BrokerPool pool;
 
     public LockTable(final BrokerPool brokerPool) {
@@ -83,6 +88,26 @@ public class LockTable implements LockTableMXBean {
         return pool.getLockManager().getLockTable().getAttempting();
     }
 
+    @Override
+    public Map<LockType, LockTypeStatistics> getStatistics() {
+        final LockStatistics statistics = pool.getLockManager().getLockTable().getStatistics();
+        return statistics != null ? statistics.getStatistics() : Collections.emptyMap();
+    }
+
+    @Override
+    public Map<String, Long> getMostContended() {
+        final LockStatistics statistics = pool.getLockManager().getLockTable().getStatistics();
+        return statistics != null ? statistics.getMostContended(MOST_CONTENDED_LIMIT) : Collections.emptyMap();
+    }
+
+    @Override
+    public void resetStatistics() {
+        final LockStatistics statistics = pool.getLockManager().getLockTable().getStatistics();
+        if (statistics != null) {
+            statistics.reset();
+        }
+    }
+
     @Override
     public void dumpToConsole() {
         System.out.println(LockTableUtils.stateToString(pool.getLockManager().getLockTable(), false));
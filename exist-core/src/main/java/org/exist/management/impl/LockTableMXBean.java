@@ -23,6 +23,7 @@
 package org.exist.management.impl;
 
 import org.exist.storage.lock.Lock;
+import org.exist.storage.lock.LockStatistics.LockTypeStatistics;
 import org.exist.storage.lock.LockTable;
 import org.exist.storage.lock.LockTable.LockCountTraces;
 import org.exist.storage.lock.LockTable.LockModeOwner;
@@ -51,6 +52,27 @@ public interface LockTableMXBean extends PerInstanceMBean {
      */
     Map<String, Map<Lock.LockType, List<LockModeOwner>>> getAttempting();
 
+    /**
+     * Get the contention and hold time statistics of each type of lock,
+     * only available when the lock table is in statistics mode
+     *
+     * @return the statistics by lock type
+     */
+    Map<Lock.LockType, LockTypeStatistics> getStatistics();
+
+    /**
+     * Get the most contended locks,
+     * only available when the lock table is in statistics mode
+     *
+     * @return the number of contended acquisitions by lock id
+     */
+    Map<String, Long> getMostContended();
+
+    /**
+     * Discard the statistics recorded so far
+     */
+    void resetStatistics();
+
     void dumpToConsole();
 
     void dumpToLog();
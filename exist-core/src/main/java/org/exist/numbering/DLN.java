@@ -284,13 +284,36 @@ public class DLN extends DLNBase implements NodeId {
         if (other == NodeId.DOCUMENT_NODE) {
             return getLevelCount(0) == 1 ? IS_CHILD : IS_DESCENDANT;
         }
-        
-        if (startsWith(other)) {
-            if (bitIndex == other.bitIndex) {
+        return computeRelation(bits, 0, bitIndex, other.bits, 0, other.bitIndex);
+    }
+
+    /**
+     * Computes the relationship of a serialized node id to a serialized
+     * ancestor id, like {@link #computeRelation(NodeId)}, but without
+     * creating DLN instances. The ancestor must not be the document node.
+     *
+     * @param units the number of bits of the node id
+     * @param data the byte array containing the node id
+     * @param startOffset the offset of the node id in data
+     * @param ancestorUnits the number of bits of the ancestor id
+     * @param ancestorData the byte array containing the ancestor id
+     * @param ancestorStartOffset the offset of the ancestor id in ancestorData
+     * @return {@link NodeId#IS_CHILD}, {@link NodeId#IS_DESCENDANT}, {@link NodeId#IS_SELF}, or -1
+     * if the node is not a descendant-or-self of the ancestor
+     */
+    public static int computeRelation(final int units, final byte[] data, final int startOffset,
+            final int ancestorUnits, final byte[] ancestorData, final int ancestorStartOffset) {
+        return computeRelation(data, startOffset, units - 1, ancestorData, ancestorStartOffset, ancestorUnits - 1);
+    }
+
+    private static int computeRelation(final byte[] bits, final int offset, final int bitIndex,
+            final byte[] ancestorBits, final int ancestorOffset, final int ancestorBitIndex) {
+        if (startsWith(bits, offset, bitIndex, ancestorBits, ancestorOffset, ancestorBitIndex)) {
+            if (bitIndex == ancestorBitIndex) {
                 return IS_SELF;
             }
-            if (bitIndex > other.bitIndex && isLevelSeparator(other.bitIndex + 1)) {
-                if (getLevelCount(other.bitIndex + 2) == 1) {
+            if (bitIndex > ancestorBitIndex && isLevelSeparator(bits, offset, ancestorBitIndex + 1)) {
+                if (getLevelCount(bits, offset, bitIndex, ancestorBitIndex + 2) == 1) {
                     return IS_CHILD;
                 }
                 return IS_DESCENDANT;
@@ -299,6 +322,76 @@ public class DLN extends DLNBase implements NodeId {
         return -1;
     }
 
+    /**
+     * Compares two serialized node ids, like {@link #compareTo(NodeId)},
+     * but without creating DLN instances.
+     *
+     * @param units1 the number of bits of the first node id
+     * @param data1 the byte array containing the first node id
+     * @param startOffset1 the offset of the first node id in data1
+     * @param units2 the number of bits of the second node id
+     * @param data2 the byte array containing the second node id
+     * @param startOffset2 the offset of the second node id in data2
+     * @return a negative value, zero, or a positive value if the first node id
+     * is less than, equal to, or greater than the second
+     */
+    public static int compare(final int units1, final byte[] data1, final int startOffset1,
+            final int units2, final byte[] data2, final int startOffset2) {
+        return compare(data1, startOffset1, units1, data2, startOffset2, units2);
+    }
+
+    /**
+     * Returns the level of a serialized node id within the document tree,
+     * like {@link #getTreeLevel()}, but without creating a DLN instance.
+     *
+     * @param units the number of bits of the node id
+     * @param data the byte array containing the node id
+     * @param startOffset the offset of the node id in data
+     * @return the level of the node
+     */
+    public static int getTreeLevel(final int units, final byte[] data, final int startOffset) {
+        return getLevelCount(data, startOffset, units - 1, 0);
+    }
+
+    /**
+     * Returns the number of bits of the parent of a serialized node id.
+     * The id of the parent is the prefix of the node id with this
+     * number of bits.
+     *
+     * @param units the number of bits of the node id
+     * @param data the byte array containing the node id
+     * @param startOffset the offset of the node id in data
+     * @return the number of bits of the parent id, or 0 if the parent
+     * is the document node
+     */
+    public static int getParentUnits(final int units, final byte[] data, final int startOffset) {
+        final int last = lastLevelOffset(data, startOffset, units - 1);
+        return last == 0 ? 0 : last - 1;
+    }
+
+    @Override
+    public int compareParentTo(final NodeId otherId) {
+        final DLN other = (DLN) otherId;
+        final DLN documentNode = (DLN) DOCUMENT_NODE;
+        int parentUnits = getParentUnits(bitIndex + 1, bits, 0);
+        final byte[] parentBits;
+        if (parentUnits == 0) {
+            parentBits = documentNode.bits;
+            parentUnits = documentNode.units();
+        } else {
+            parentBits = bits;
+        }
+        int otherParentUnits = getParentUnits(other.bitIndex + 1, other.bits, 0);
+        final byte[] otherParentBits;
+        if (otherParentUnits == 0) {
+            otherParentBits = documentNode.bits;
+            otherParentUnits = documentNode.units();
+        } else {
+            otherParentBits = other.bits;
+        }
+        return compare(parentBits, 0, parentUnits, otherParentBits, 0, otherParentUnits);
+    }
+
     @Override
     public boolean isSiblingOf(final NodeId sibling) {
         final NodeId parent = getParentId();
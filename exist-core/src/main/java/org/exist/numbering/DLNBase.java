@@ -252,7 +252,7 @@ public class DLNBase {
      * @return the level id
      */
     public int getLevelId(int startBit) {
-        final int units = unitsUsed(startBit, bits);
+        final int units = unitsUsed(bits, 0, startBit);
         startBit += units;
         final int numBits = bitWidth(units);
         //System.err.println("startBit: " + startBit + "; bitIndex: " + bitIndex + 
@@ -291,16 +291,20 @@ public class DLNBase {
         return bits.length;
     }
 
-    private static int unitsUsed(int startBit, final byte[] bits) {
+    private static int unitsUsed(final byte[] bits, final int offset, int startBit) {
         int units = 1;
-        while ((bits[startBit >> UNIT_SHIFT] & (1 << ((7 - startBit++) & 7))) != 0) {
+        while ((bits[offset + (startBit >> UNIT_SHIFT)] & (1 << ((7 - startBit++) & 7))) != 0) {
             ++units;
         }
         return units;
     }
 
     public boolean isLevelSeparator(final int index) {
-        return (bits[index >> UNIT_SHIFT] & (1 << ((7 - index) & 7))) == 0;
+        return isLevelSeparator(bits, 0, index);
+    }
+
+    protected static boolean isLevelSeparator(final byte[] bits, final int offset, final int index) {
+        return (bits[offset + (index >> UNIT_SHIFT)] & (1 << ((7 - index) & 7))) == 0;
     }
     
     /**
@@ -311,14 +315,27 @@ public class DLNBase {
      * @return the number of levels in this id
      */
     public int getLevelCount(final int startOffset) {
+        return getLevelCount(bits, 0, bitIndex, startOffset);
+    }
+
+    /**
+     * Returns the number of levels in a serialized id.
+     *
+     * @param bits the byte array containing the id
+     * @param offset the offset of the id in the byte array
+     * @param bitIndex the index of the last bit of the id
+     * @param startOffset the offset (in number of bits) to start counting
+     * @return the number of levels in the id
+     */
+    protected static int getLevelCount(final byte[] bits, final int offset, final int bitIndex, final int startOffset) {
         int bit = startOffset;
         int count = 0;
         while (bit > -1 && bit <= bitIndex) {
-            final int units = unitsUsed(bit, bits);
+            final int units = unitsUsed(bits, offset, bit);
             bit += units;
             bit += bitWidth(units);
             if (bit < bitIndex) {
-                if ((bits[bit >> UNIT_SHIFT] & (1 << ((7 - bit++) & 7))) == LEVEL_SEPARATOR) {
+                if ((bits[offset + (bit >> UNIT_SHIFT)] & (1 << ((7 - bit++) & 7))) == LEVEL_SEPARATOR) {
                     ++count;
                 }
             } else {
@@ -340,7 +357,7 @@ public class DLNBase {
         int bit = startOffset;
         int count = 0;
         while (bit > -1 && bit <= bitIndex) {
-            final int units = unitsUsed(bit, bits);
+            final int units = unitsUsed(bits, 0, bit);
             bit += units;
             bit += bitWidth(units);
             if (bit < bitIndex) {
@@ -377,17 +394,29 @@ public class DLNBase {
      * @return start-offset of the last level id.
      */
     public int lastLevelOffset() {
+        return lastLevelOffset(bits, 0, bitIndex);
+    }
+
+    /**
+     * Find the last level in a serialized id and return its offset.
+     *
+     * @param bits the byte array containing the id
+     * @param offset the offset of the id in the byte array
+     * @param bitIndex the index of the last bit of the id
+     * @return start-offset of the last level id.
+     */
+    protected static int lastLevelOffset(final byte[] bits, final int offset, final int bitIndex) {
         int bit = 0;
         int lastOffset = 0;
         while (bit <= bitIndex) {
             // check if the next bit starts a new level or just a sub-level component
             if (bit > 0) {
-                if ((bits[bit >> UNIT_SHIFT] & (1 << ((7 - bit) & 7))) == LEVEL_SEPARATOR) {
+                if ((bits[offset + (bit >> UNIT_SHIFT)] & (1 << ((7 - bit) & 7))) == LEVEL_SEPARATOR) {
                     lastOffset = bit + 1;
                 }
                 ++bit;
             }
-            final int units = unitsUsed(bit, bits);
+            final int units = unitsUsed(bits, offset, bit);
             bit += units;
             bit += bitWidth(units);
         }
@@ -401,7 +430,7 @@ public class DLNBase {
             if (bit > 0) {
                 lastOffset = ++bit;
             }
-            final int units = unitsUsed(bit, bits);
+            final int units = unitsUsed(bits, 0, bit);
             bit += units;
             bit += bitWidth(units);
         }
@@ -538,17 +567,73 @@ public class DLNBase {
      * @return true if this DLN starts with the same bit sequence as the other
      */
     public boolean startsWith(final DLNBase other) {
-        if (other.bitIndex > bitIndex) {
+        return startsWith(bits, 0, bitIndex, other.bits, 0, other.bitIndex);
+    }
+
+    /**
+     * Checks if a serialized id starts with the same bit sequence
+     * as another serialized id.
+     *
+     * @param bits the byte array containing the id
+     * @param offset the offset of the id in the byte array
+     * @param bitIndex the index of the last bit of the id
+     * @param otherBits the byte array containing the other id
+     * @param otherOffset the offset of the other id in its byte array
+     * @param otherBitIndex the index of the last bit of the other id
+     * @return true if the id starts with the same bit sequence as the other
+     */
+    protected static boolean startsWith(final byte[] bits, final int offset, final int bitIndex,
+            final byte[] otherBits, final int otherOffset, final int otherBitIndex) {
+        if (otherBitIndex > bitIndex) {
             return false;
         }
-        final int bytes = other.bitIndex / 8;
-        final int remaining = other.bitIndex % 8;
+        final int bytes = otherBitIndex / 8;
+        final int remaining = otherBitIndex % 8;
         for (int i = 0; i < bytes; i++) {
-            if (bits[i] != other.bits[i]) {
+            if (bits[offset + i] != otherBits[otherOffset + i]) {
                 return false;
             }
         }
-        return (bits[bytes] & BIT_MASK[remaining]) == (other.bits[bytes] & BIT_MASK[remaining]);
+        return (bits[offset + bytes] & BIT_MASK[remaining]) == (otherBits[otherOffset + bytes] & BIT_MASK[remaining]);
+    }
+
+    /**
+     * Compares two serialized ids byte by byte, the shorter id
+     * being the smaller one if it is a prefix of the longer.
+     * Bits following the last unit of an id are ignored, so
+     * an id may also be compared by a prefix of its bits.
+     *
+     * @param bits the byte array containing the id
+     * @param offset the offset of the id in the byte array
+     * @param units the number of bits of the id
+     * @param otherBits the byte array containing the other id
+     * @param otherOffset the offset of the other id in its byte array
+     * @param otherUnits the number of bits of the other id
+     * @return a negative value, zero, or a positive value if the id is less than,
+     * equal to, or greater than the other id
+     */
+    protected static int compare(final byte[] bits, final int offset, final int units,
+            final byte[] otherBits, final int otherOffset, final int otherUnits) {
+        final int len = (units + 7) >>> 3;
+        final int otherLen = (otherUnits + 7) >>> 3;
+        final int limit = Math.min(len, otherLen);
+        for (int i = 0; i < limit; i++) {
+            final int b1 = byteAt(bits, offset, units, i);
+            final int b2 = byteAt(otherBits, otherOffset, otherUnits, i);
+            if (b1 != b2) {
+                return b1 - b2;
+            }
+        }
+        return len - otherLen;
+    }
+
+    private static int byteAt(final byte[] bits, final int offset, final int units, final int index) {
+        final int b = bits[offset + index] & 0xFF;
+        final int remaining = units & 7;
+        if (remaining > 0 && index == units >>> 3) {
+            return b & BIT_MASK[remaining - 1];
+        }
+        return b;
     }
 
     public String debug() {
@@ -71,6 +71,20 @@ public class DLNFactory implements NodeIdFactory {
         return DLNBase.getLengthInBytes(units, data, startOffset);
     }
 
+    public int compare(final int units1, final byte[] data1, final int startOffset1,
+            final int units2, final byte[] data2, final int startOffset2) {
+        return DLN.compare(units1, data1, startOffset1, units2, data2, startOffset2);
+    }
+
+    public int computeRelation(final int units, final byte[] data, final int startOffset,
+            final int ancestorUnits, final byte[] ancestorData, final int ancestorStartOffset) {
+        return DLN.computeRelation(units, data, startOffset, ancestorUnits, ancestorData, ancestorStartOffset);
+    }
+
+    public int getTreeLevel(final int units, final byte[] data, final int startOffset) {
+        return DLN.getTreeLevel(units, data, startOffset);
+    }
+
     public void writeEndOfDocument(final VariableByteOutputStream os) {
         os.writeByte((byte) 0);
         os.writeShort(0);
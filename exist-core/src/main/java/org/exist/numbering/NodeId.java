@@ -111,6 +111,19 @@ public interface NodeId extends Comparable<NodeId> {
      */
     NodeId getParentId();
 
+    /**
+     * Compares the id of the parent of this node with the id of the
+     * parent of another node. The result is the same as for
+     * <code>getParentId().compareTo(other.getParentId())</code>,
+     * but the parent ids are not created.
+     *
+     * @param other the node id whose parent should be compared
+     * @return a negative value, zero, or a positive value if the parent
+     * of this node is less than, equal to, or greater than the parent of
+     * the other node
+     */
+    int compareParentTo(NodeId other);
+
     /**
      * Returns true if the node represented by this node id comes
      * after the argument node in document order. If isFollowing is set to true, the method
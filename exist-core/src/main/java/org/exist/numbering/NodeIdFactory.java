@@ -113,6 +113,49 @@ public interface NodeIdFactory {
      */
     int lengthInBytes(int units, byte[] data, int startOffset);
 
+    /**
+     * Compares two node ids stored in byte arrays, with the same
+     * result as {@link NodeId#compareTo(NodeId)} on the node ids read
+     * by {@link #createFromData(int, byte[], int)}.
+     *
+     * @param units1 the number of units of the first node id
+     * @param data1 the byte array containing the first node id
+     * @param startOffset1 offset of the first node id in data1
+     * @param units2 the number of units of the second node id
+     * @param data2 the byte array containing the second node id
+     * @param startOffset2 offset of the second node id in data2
+     * @return a negative value, zero, or a positive value if the first node id
+     * is less than, equal to, or greater than the second
+     */
+    int compare(int units1, byte[] data1, int startOffset1, int units2, byte[] data2, int startOffset2);
+
+    /**
+     * Computes the relationship of a node id stored in a byte array to
+     * an ancestor id stored in a byte array, with the same result as
+     * {@link NodeId#computeRelation(NodeId)}. The ancestor must not be the
+     * document node.
+     *
+     * @param units the number of units of the node id
+     * @param data the byte array containing the node id
+     * @param startOffset offset of the node id in data
+     * @param ancestorUnits the number of units of the ancestor id
+     * @param ancestorData the byte array containing the ancestor id
+     * @param ancestorStartOffset offset of the ancestor id in ancestorData
+     * @return {@link NodeId#IS_CHILD}, {@link NodeId#IS_DESCENDANT}, {@link NodeId#IS_SELF}, or -1
+     */
+    int computeRelation(int units, byte[] data, int startOffset, int ancestorUnits, byte[] ancestorData, int ancestorStartOffset);
+
+    /**
+     * Returns the level of a node id stored in a byte array, with the
+     * same result as {@link NodeId#getTreeLevel()}.
+     *
+     * @param units the number of units of the node id
+     * @param data the byte array containing the node id
+     * @param startOffset offset of the node id in data
+     * @return the level of the node within the document tree
+     */
+    int getTreeLevel(int units, byte[] data, int startOffset);
+
     /**
      * Returns a NodeId representing the document node of a document.
      * Usually, this will be a singleton object.
@@ -56,6 +56,7 @@ import org.exist.security.internal.SecurityManagerImpl;
 import org.exist.storage.blob.BlobStore;
 import org.exist.storage.blob.BlobStoreImplService;
 import org.exist.storage.blob.BlobStoreService;
+import org.exist.storage.btree.PageIO;
 import org.exist.storage.journal.JournalManager;
 import org.exist.storage.lock.FileLockService;
 import org.exist.storage.lock.LockManager;
@@ -71,6 +72,7 @@ import org.exist.xmldb.XmldbURI;
 import org.exist.xquery.PerformanceStats;
 import org.exist.xquery.XQuery;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
@@ -83,8 +85,13 @@ import java.text.NumberFormat;
 import java.util.*;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Consumer;
@@ -191,7 +198,7 @@ public class BrokerPool extends BrokerPools implements BrokerPoolConstants, Data
     /**
      * The number of brokers for the database instance
      */
-    private int brokersCount = 0;
+    private final AtomicInteger brokersCount = new AtomicInteger();
 
     /**
      * The minimal number of brokers for the database instance
@@ -206,9 +213,36 @@ public class BrokerPool extends BrokerPools implements BrokerPoolConstants, Data
     private final int maxBrokers;
 
     /**
-     * The number of inactive brokers for the database instance
+     * The default time in milliseconds to wait for a broker to become available, -1 waits indefinitely
      */
-    private final Deque<DBBroker> inactiveBrokers = new ArrayDeque<>();
+    @ConfigurationFieldAsAttribute("lease-timeout")
+    private final long leaseTimeout;
+
+    /**
+     * The inactive brokers for the database instance, used as a stack
+     * so that the most recently used broker is leased first
+     */
+    private final Deque<DBBroker> inactiveBrokers = new ConcurrentLinkedDeque<>();
+
+    /**
+     * A lease of a broker by a thread, the permits are handed out
+     * in FIFO order to the waiting threads
+     */
+    private final Semaphore brokerLeases;
+
+    /**
+     * Set when the database files are about to be closed during shutdown,
+     * a lease which is acquired thereafter is returned straight away
+     */
+    private volatile boolean brokerLeasesClosed = false;
+
+    /**
+     * Statistics of the broker leases, available via JMX
+     */
+    private final LongAdder brokerLeaseCount = new LongAdder();
+    private final LongAdder brokerLeaseWaitCount = new LongAdder();
+    private final LongAdder brokerLeaseWaitTime = new LongAdder();
+    private final LongAdder brokerLeaseTimeoutCount = new LongAdder();
 
     /**
      * The number of active brokers for the database instance
@@ -220,8 +254,8 @@ public class BrokerPool extends BrokerPools implements BrokerPoolConstants, Data
      * Used when TRACE level logging is enabled
      * to provide a history of broker leases
      */
-    private final Map<String, TraceableStateChanges<TraceableBrokerLeaseChange.BrokerInfo, TraceableBrokerLeaseChange.Change>> brokerLeaseChangeTrace = LOG.isTraceEnabled() ? new HashMap<>() : null;
-    private final Map<String, List<TraceableStateChanges<TraceableBrokerLeaseChange.BrokerInfo, TraceableBrokerLeaseChange.Change>>> brokerLeaseChangeTraceHistory = LOG.isTraceEnabled() ? new HashMap<>() : null;
+    private final Map<String, TraceableStateChanges<TraceableBrokerLeaseChange.BrokerInfo, TraceableBrokerLeaseChange.Change>> brokerLeaseChangeTrace = LOG.isTraceEnabled() ? new ConcurrentHashMap<>() : null;
+    private final Map<String, List<TraceableStateChanges<TraceableBrokerLeaseChange.BrokerInfo, TraceableBrokerLeaseChange.Change>>> brokerLeaseChangeTraceHistory = LOG.isTraceEnabled() ? new ConcurrentHashMap<>() : null;
 
     /**
      * The configuration object for the database instance
@@ -235,7 +269,7 @@ public class BrokerPool extends BrokerPools implements BrokerPoolConstants, Data
      */
     //TODO : rename as syncScheduled ?
     //TODO : alternatively, delete this member and create a Sync.NOSYNC event
-    private boolean syncRequired = false;
+    private volatile boolean syncRequired = false;
 
     /**
      * The kind of scheduled cache synchronization event.
@@ -253,6 +287,11 @@ public class BrokerPool extends BrokerPools implements BrokerPoolConstants, Data
     @ConfigurationFieldAsAttribute("pageSize")
     private final int pageSize;
 
+    /**
+     * The backend used by paged files for reading and writing pages.
+     */
+    private final PageIO.Mode pageIOMode;
+
     private FileLockService dataLock;
 
     /**
@@ -297,7 +336,13 @@ public class BrokerPool extends BrokerPools implements BrokerPoolConstants, Data
      */
     @ConfigurationFieldAsAttribute("sync-period")
     private final long majorSyncPeriod;        //the period after which a major sync should occur
-    private long lastMajorSync = System.currentTimeMillis();    //time the last major sync occurred
+    private volatile long lastMajorSync = System.currentTimeMillis();    //time the last major sync occurred
+
+    /**
+     * Serialises {@link #sync(DBBroker, Sync)} and {@link #flush(DBBroker)}, which
+     * may be called from a system task running concurrently with other transactions.
+     */
+    private final Lock syncLock = new ReentrantLock();
 
     private final long diskSpaceMin;
 
@@ -361,8 +406,8 @@ public class BrokerPool extends BrokerPools implements BrokerPoolConstants, Data
 
     private final Lock globalXUpdateLock = new ReentrantLock();
 
-    private Subject serviceModeUser = null;
-    private boolean inServiceMode = false;
+    private volatile Subject serviceModeUser = null;
+    private volatile boolean inServiceMode = false;
 
     //the time that the database was started
     private final Calendar startupTime = Calendar.getInstance();
@@ -405,6 +450,11 @@ public class BrokerPool extends BrokerPools implements BrokerPoolConstants, Data
         this.minBrokers = conf.getProperty(PROPERTY_MIN_CONNECTIONS, minBrokers);
         this.maxBrokers = conf.getProperty(PROPERTY_MAX_CONNECTIONS, maxBrokers);
         LOG.info("database instance '{}' will have between {} and {} brokers", instanceName, nf.format(this.minBrokers), nf.format(this.maxBrokers));
+        this.brokerLeases = new Semaphore(this.maxBrokers, true);
+        this.leaseTimeout = conf.getProperty(PROPERTY_LEASE_TIMEOUT, DEFAULT_LEASE_TIMEOUT);
+        if (this.leaseTimeout > -1) {
+            LOG.info("database instance '{}' will wait at most {} ms for a broker", instanceName, nf.format(this.leaseTimeout));
+        }
 
         this.majorSyncPeriod = conf.getProperty(PROPERTY_SYNC_PERIOD, DEFAULT_SYNCH_PERIOD);
         LOG.info("database instance '{}' will be synchronized every {} ms", instanceName, nf.format(/*this.*/majorSyncPeriod));
@@ -413,6 +463,8 @@ public class BrokerPool extends BrokerPools implements BrokerPoolConstants, Data
         this.diskSpaceMin = 1024L * 1024L * conf.getProperty(BrokerPool.DISK_SPACE_MIN_PROPERTY, DEFAULT_DISK_SPACE_MIN);
 
         this.pageSize = conf.getProperty(PROPERTY_PAGE_SIZE, DEFAULT_PAGE_SIZE);
+        this.pageIOMode = conf.getProperty(PROPERTY_PAGE_IO, DEFAULT_PAGE_IO);
+        LOG.info("database instance '{}' will use '{}' for page I/O", instanceName, this.pageIOMode.getConfigValue());
 
         //Configuration is valid, save it
         this.conf = conf;
@@ -802,6 +854,10 @@ public class BrokerPool extends BrokerPools implements BrokerPoolConstants, Data
         return pageSize;
     }
 
+    public PageIO.Mode getPageIOMode() {
+        return pageIOMode;
+    }
+
     /**
      * Returns the class loader used when this BrokerPool was configured.
      *
@@ -884,7 +940,53 @@ public class BrokerPool extends BrokerPools implements BrokerPoolConstants, Data
     }
 
     public int total() {
-        return brokersCount;
+        return brokersCount.get();
+    }
+
+    /**
+     * Returns an estimate of the number of threads waiting for a broker.
+     *
+     * @return The number of waiting threads
+     */
+    public int countWaitingForBroker() {
+        return brokerLeases.getQueueLength();
+    }
+
+    /**
+     * Returns the number of brokers leased to threads since the database instance started,
+     * nested leases of a broker by the same thread are not counted.
+     *
+     * @return The number of leases
+     */
+    public long getBrokerLeaseCount() {
+        return brokerLeaseCount.sum();
+    }
+
+    /**
+     * Returns the number of leases which had to wait for a broker to become available.
+     *
+     * @return The number of leases which waited
+     */
+    public long getBrokerLeaseWaitCount() {
+        return brokerLeaseWaitCount.sum();
+    }
+
+    /**
+     * Returns the total time that leases have waited for a broker to become available.
+     *
+     * @return The total wait time in milliseconds
+     */
+    public long getBrokerLeaseWaitTime() {
+        return TimeUnit.NANOSECONDS.toMillis(brokerLeaseWaitTime.sum());
+    }
+
+    /**
+     * Returns the number of leases which timed out whilst waiting for a broker to become available.
+     *
+     * @return The number of timed out leases
+     */
+    public long getBrokerLeaseTimeoutCount() {
+        return brokerLeaseTimeoutCount.sum();
     }
 
     /**
@@ -1110,11 +1212,22 @@ public class BrokerPool extends BrokerPools implements BrokerPoolConstants, Data
      * @throws EXistException if the broker cannot be created
      */
     protected DBBroker createBroker() throws EXistException {
+        final DBBroker broker = newBroker();
+        inactiveBrokers.push(broker);
+        return broker;
+    }
+
+    /**
+     * Creates a new broker for the database instance,
+     * without adding it to the inactive brokers.
+     *
+     * @return The broker
+     * @throws EXistException if the broker cannot be created
+     */
+    private DBBroker newBroker() throws EXistException {
         //TODO : in the future, don't pass the whole configuration, just the part relevant to brokers
         final DBBroker broker = BrokerFactory.getInstance(this, this.getConfiguration());
-        inactiveBrokers.push(broker);
-        brokersCount++;
-        broker.setId(broker.getClass().getName() + '_' + instanceName + "_" + brokersCount);
+        broker.setId(broker.getClass().getName() + '_' + instanceName + "_" + brokersCount.incrementAndGet());
         if (LOG.isDebugEnabled()) {
             LOG.debug("Created broker '{} for database instance '{}'", broker.getId(), instanceName);
         }
@@ -1181,13 +1294,32 @@ public class BrokerPool extends BrokerPools implements BrokerPoolConstants, Data
     /**
      * Returns an active broker for the database instance.
      *
+     * If no broker is available, waits for at most the configured lease timeout
+     * (see {@link BrokerPoolConstants#PROPERTY_LEASE_TIMEOUT}) for one to become available.
+     *
      * @param subject Optionally a subject to set on the broker, if a user is not provided then the
      *                current user assigned to the broker will be re-used
      * @return The broker
-     * @throws EXistException If the instance is not available (stopped or not configured)
+     * @throws EXistException If the instance is not available (stopped or not configured),
+     *                        or no broker became available within the lease timeout
      */
     //TODO : rename as getBroker ? getInstance (when refactored) ?
     public DBBroker get(final Optional<Subject> subject) throws EXistException {
+        return get(subject, leaseTimeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns an active broker for the database instance.
+     *
+     * @param subject Optionally a subject to set on the broker, if a user is not provided then the
+     *                current user assigned to the broker will be re-used
+     * @param timeout The maximum time to wait for a broker to become available, a negative value waits indefinitely
+     * @param unit The unit of the timeout
+     * @return The broker
+     * @throws EXistException If the instance is not available (stopped or not configured),
+     *                        or no broker became available within the timeout
+     */
+    public DBBroker get(final Optional<Subject> subject, final long timeout, final TimeUnit unit) throws EXistException {
         Objects.requireNonNull(subject, "Subject cannot be null, use BrokerPool#getBroker() instead");
 
         if(!isInstanceConfigured()) {
@@ -1208,49 +1340,44 @@ public class BrokerPool extends BrokerPools implements BrokerPoolConstants, Data
             broker.pushSubject(subject.orElseGet(broker::getCurrentSubject));
 
             if(LOG.isTraceEnabled()) {
-                if(!brokerLeaseChangeTrace.containsKey(broker.getId())) {
-                    brokerLeaseChangeTrace.put(broker.getId(), new TraceableStateChanges<>());
-                }
-                brokerLeaseChangeTrace.get(broker.getId()).add(TraceableBrokerLeaseChange.get(new TraceableBrokerLeaseChange.BrokerInfo(broker.getId(), broker.getReferenceCount())));
+                brokerLeaseChangeTrace.computeIfAbsent(broker.getId(), id -> new TraceableStateChanges<>())
+                        .add(TraceableBrokerLeaseChange.get(new TraceableBrokerLeaseChange.BrokerInfo(broker.getId(), broker.getReferenceCount())));
             }
 
             return broker;
-            //TODO : share the code with what is below (including notifyAll) ?
-            // WM: notifyAll is not necessary if we don't have to wait for a broker.
         }
 
         //No active broker : get one ASAP
 
-        while(serviceModeUser != null && subject.isPresent() && !subject.equals(Optional.ofNullable(serviceModeUser))) {
-            try {
-                LOG.debug("Db instance is in service mode. Waiting for db to become available again ...");
-                wait();
-            } catch(final InterruptedException e) {
-                Thread.currentThread().interrupt();
-                LOG.error("Interrupt detected");
+        if(serviceModeUser != null) {
+            synchronized(this) {
+                while(serviceModeUser != null && subject.isPresent() && !subject.equals(Optional.ofNullable(serviceModeUser))) {
+                    try {
+                        LOG.debug("Db instance is in service mode. Waiting for db to become available again ...");
+                        wait();
+                    } catch(final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        LOG.error("Interrupt detected");
+                    }
+                }
             }
         }
 
-        synchronized(this) {
-            //Are there any available brokers ?
-            if(inactiveBrokers.isEmpty()) {
-                //There are no available brokers. If allowed...
-                if(brokersCount < maxBrokers)
-                //... create one
-                {
-                    createBroker();
-                } else
-                    //... or wait until there is one available
-                    while(inactiveBrokers.isEmpty()) {
-                        LOG.debug("waiting for a broker to become available");
-                        try {
-                            this.wait();
-                        } catch(final InterruptedException e) {
-                            //nothing to be done!
-                        }
-                    }
+        leaseBroker(timeout, unit);
+
+        // NOTE: shutdown takes all leases before it closes the database files, so the
+        // check must be made whilst holding the lease
+        if(brokerLeasesClosed) {
+            brokerLeases.release();
+            throw new EXistException("database instance '" + instanceName + "' is shutting down");
+        }
+
+        // NOTE: holding a lease guarantees that fewer than maxBrokers are in use by other threads
+        try {
+            broker = inactiveBrokers.pollFirst();
+            if(broker == null) {
+                broker = newBroker();
             }
-            broker = inactiveBrokers.pop();
             broker.prepare();
 
             //activate the broker
@@ -1263,22 +1390,66 @@ public class BrokerPool extends BrokerPools implements BrokerPoolConstants, Data
             if(watchdog.isPresent()) {
                 watchdog.get().add(broker);
             }
+        } catch(final EXistException | RuntimeException e) {
+            // return the broker and the lease
+            if(broker != null) {
+                activeBrokers.remove(Thread.currentThread());
+                inactiveBrokers.push(broker);
+            }
+            brokerLeases.release();
+            throw e;
+        }
 
-            broker.incReferenceCount();
+        broker.incReferenceCount();
 
-            broker.pushSubject(subject.orElseGet(securityManager::getGuestSubject));
+        broker.pushSubject(subject.orElseGet(securityManager::getGuestSubject));
 
-            if(LOG.isTraceEnabled()) {
-                if(!brokerLeaseChangeTrace.containsKey(broker.getId())) {
-                    brokerLeaseChangeTrace.put(broker.getId(), new TraceableStateChanges<>());
+        if(LOG.isTraceEnabled()) {
+            brokerLeaseChangeTrace.computeIfAbsent(broker.getId(), id -> new TraceableStateChanges<>())
+                    .add(TraceableBrokerLeaseChange.get(new TraceableBrokerLeaseChange.BrokerInfo(broker.getId(), broker.getReferenceCount())));
+        }
+
+        return broker;
+    }
+
+    /**
+     * Acquires a lease for a broker, waiting if all brokers are in use.
+     *
+     * @param timeout The maximum time to wait for a lease, a negative value waits indefinitely
+     * @param unit The unit of the timeout
+     *
+     * @throws EXistException if no lease could be acquired within the timeout
+     */
+    private void leaseBroker(final long timeout, final TimeUnit unit) throws EXistException {
+        brokerLeaseCount.increment();
+
+        // fast path, barging is only permitted when no other thread is waiting
+        if(!brokerLeases.hasQueuedThreads() && brokerLeases.tryAcquire()) {
+            return;
+        }
+
+        LOG.debug("waiting for a broker to become available");
+        brokerLeaseWaitCount.increment();
+        final long waitStart = System.nanoTime();
+        try {
+            if(timeout < 0) {
+                brokerLeases.acquireUninterruptibly();
+                return;
+            }
+
+            try {
+                if(brokerLeases.tryAcquire(timeout, unit)) {
+                    return;
                 }
-                brokerLeaseChangeTrace.get(broker.getId()).add(TraceableBrokerLeaseChange.get(new TraceableBrokerLeaseChange.BrokerInfo(broker.getId(), broker.getReferenceCount())));
+            } catch(final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new EXistException("Interrupted whilst waiting for a broker of database instance '" + instanceName + "'", e);
             }
 
-            //Inform the other threads that we have a new-comer
-            // TODO: do they really need to be informed here???????
-            this.notifyAll();
-            return broker;
+            brokerLeaseTimeoutCount.increment();
+            throw new EXistException("No broker of database instance '" + instanceName + "' became available within " + unit.toMillis(timeout) + " ms, " + brokerLeases.getQueueLength() + " other threads are waiting");
+        } finally {
+            brokerLeaseWaitTime.add(System.nanoTime() - waitStart);
         }
     }
 
@@ -1311,79 +1482,99 @@ public class BrokerPool extends BrokerPools implements BrokerPoolConstants, Data
             return;
         }
 
-        synchronized(this) {
-            //Broker is no more used : inactivate it
-            for(final DBBroker inactiveBroker : inactiveBrokers) {
-                if(broker == inactiveBroker) {
-                    LOG.error("Broker {} is already in the inactive list!!!", broker.getId());
-                    return;
-                }
-            }
+        //Broker is no more used : inactivate it
+        if(inactiveBrokers.contains(broker)) {
+            LOG.error("Broker {} is already in the inactive list!!!", broker.getId());
+            return;
+        }
 
-            if(activeBrokers.remove(Thread.currentThread()) == null) {
-                LOG.error("release() has been called from the wrong thread for broker {}", broker.getId());
-                // Cleanup the state of activeBrokers
-                for(final Entry<Thread, DBBroker> activeBroker : activeBrokers.entrySet()) {
-                    if(activeBroker.getValue() == broker) {
-                        final String msg = "release() has been called from '" + Thread.currentThread() + "', but occupied at '" + activeBroker.getKey() + "'.";
-                        final EXistException ex = new EXistException(msg);
-                        LOG.error(msg, ex);
-                        activeBrokers.remove(activeBroker.getKey());
-                        break;
-                    }
-                }
-            } else {
-                if(LOG.isTraceEnabled()) {
-                    LOG.trace("--- {}{}", Thread.currentThread(), Stacktrace.top(Thread.currentThread().getStackTrace(), Stacktrace.DEFAULT_STACK_TOP));
+        if(activeBrokers.remove(Thread.currentThread()) == null) {
+            LOG.error("release() has been called from the wrong thread for broker {}", broker.getId());
+            // Cleanup the state of activeBrokers
+            for(final Entry<Thread, DBBroker> activeBroker : activeBrokers.entrySet()) {
+                if(activeBroker.getValue() == broker) {
+                    final String msg = "release() has been called from '" + Thread.currentThread() + "', but occupied at '" + activeBroker.getKey() + "'.";
+                    final EXistException ex = new EXistException(msg);
+                    LOG.error(msg, ex);
+                    activeBrokers.remove(activeBroker.getKey());
+                    break;
                 }
             }
-            
-            Subject lastUser = broker.popSubject();
-
-            //guard to ensure that the broker has popped all its subjects
-            if(lastUser == null || broker.getCurrentSubject() != null) {
-                LOG.warn("Broker {} was returned with extraneous Subjects, cleaning...", broker.getId(), new IllegalStateException("DBBroker pushSubject/popSubject mismatch").fillInStackTrace());
-                if(LOG.isTraceEnabled()) {
-                    broker.traceSubjectChanges();
-                }
-
-                //cleanup any remaining erroneous subjects
-                while(broker.getCurrentSubject() != null) {
-                    lastUser = broker.popSubject();
-                }
+        } else {
+            if(LOG.isTraceEnabled()) {
+                LOG.trace("--- {}{}", Thread.currentThread(), Stacktrace.top(Thread.currentThread().getStackTrace(), Stacktrace.DEFAULT_STACK_TOP));
             }
+        }
 
-            inactiveBrokers.push(broker);
-            watchdog.ifPresent(wd -> wd.remove(broker));
+        Subject lastUser = broker.popSubject();
 
+        //guard to ensure that the broker has popped all its subjects
+        if(lastUser == null || broker.getCurrentSubject() != null) {
+            LOG.warn("Broker {} was returned with extraneous Subjects, cleaning...", broker.getId(), new IllegalStateException("DBBroker pushSubject/popSubject mismatch").fillInStackTrace());
             if(LOG.isTraceEnabled()) {
-                if(!brokerLeaseChangeTraceHistory.containsKey(broker.getId())) {
-                    brokerLeaseChangeTraceHistory.put(broker.getId(), new ArrayList<>());
-                }
-                try {
-                    brokerLeaseChangeTraceHistory.get(broker.getId()).add((TraceableStateChanges<TraceableBrokerLeaseChange.BrokerInfo, TraceableBrokerLeaseChange.Change>) brokerLeaseChangeTrace.get(broker.getId()).clone());
-                    brokerLeaseChangeTrace.get(broker.getId()).clear();
-                } catch(final CloneNotSupportedException e) {
-                    LOG.error(e);
-                }
+                broker.traceSubjectChanges();
+            }
 
-                broker.clearSubjectChangesTrace();
+            //cleanup any remaining erroneous subjects
+            while(broker.getCurrentSubject() != null) {
+                lastUser = broker.popSubject();
             }
+        }
 
-            //If the database is now idle, do some useful stuff
-            if(activeBrokers.size() == 0) {
-                //TODO : use a "clean" dedicated method (we have some below) ?
-                if(syncRequired) {
-                    //Note that the broker is not yet really inactive ;-)
-                    sync(broker, syncEvent);
-                    this.syncRequired = false;
-                    this.checkpoint = false;
-                }
-                if(serviceModeUser != null && !lastUser.equals(serviceModeUser)) {
-                    inServiceMode = true;
+        watchdog.ifPresent(wd -> wd.remove(broker));
+
+        if(LOG.isTraceEnabled()) {
+            try {
+                brokerLeaseChangeTraceHistory.computeIfAbsent(broker.getId(), id -> new ArrayList<>())
+                        .add((TraceableStateChanges<TraceableBrokerLeaseChange.BrokerInfo, TraceableBrokerLeaseChange.Change>) brokerLeaseChangeTrace.get(broker.getId()).clone());
+                brokerLeaseChangeTrace.get(broker.getId()).clear();
+            } catch(final CloneNotSupportedException e) {
+                LOG.error(e);
+            }
+
+            broker.clearSubjectChangesTrace();
+        }
+
+        inactiveBrokers.push(broker);
+        brokerLeases.release();
+
+        //If the database is now idle, do some useful stuff
+        if(activeBrokers.isEmpty()) {
+            idle(lastUser);
+        }
+    }
+
+    /**
+     * Called when the last active broker has been released.
+     *
+     * Performs any scheduled sync and switches to service mode if requested,
+     * whilst holding all broker leases so that no other thread can lease
+     * a broker in the meantime.
+     *
+     * @param lastUser The last user of the released broker
+     */
+    private void idle(@Nullable final Subject lastUser) {
+        if((syncRequired || serviceModeUser != null) && brokerLeases.tryAcquire(maxBrokers)) {
+            try {
+                synchronized(this) {
+                    final DBBroker broker = inactiveBrokers.peekFirst();
+                    //TODO : use a "clean" dedicated method (we have some below) ?
+                    if(syncRequired && broker != null) {
+                        sync(broker, syncEvent);
+                        this.syncRequired = false;
+                        this.checkpoint = false;
+                    }
+                    if(serviceModeUser != null && !serviceModeUser.equals(lastUser)) {
+                        inServiceMode = true;
+                    }
                 }
+            } finally {
+                brokerLeases.release(maxBrokers);
             }
-            //Inform the other threads that someone is gone
+        }
+
+        //Inform the other threads that the database is idle
+        synchronized(this) {
             this.notifyAll();
         }
     }
@@ -1444,53 +1635,80 @@ public class BrokerPool extends BrokerPools implements BrokerPoolConstants, Data
     /**
      * Executes a waiting cache synchronization for the database instance.
      *
-     * NOTE: This method should not be called concurrently from multiple threads.
+     * A {@link Sync#MAJOR} sync also writes a checkpoint to the journal, which
+     * requires that there are no active transactions. A {@link Sync#MINOR} sync
+     * only flushes dirty pages and may run concurrently with other transactions.
      *
      * @param broker    A broker responsible for executing the job
      * @param syncEvent One of {@link org.exist.storage.sync.Sync}
      */
     public void sync(final DBBroker broker, final Sync syncEvent) {
-
-        /**
-         * Database Systems - The Complete Book (Second edition)
-         * § 17.4.1 The Undo/Redo Rules
-         *
-         * The constraints that an undo/redo logging system must follow are summarized by the following rule:
-         *     * UR1  Before modifying any database element X on disk because of changes
-         *            made by some transaction T, it is necessary that the update record
-         *            <T,X,v,w> appear on disk.
-         */
-        journalManager.ifPresent(manager -> manager.flush(true, true));
-
-        // sync various DBX files
-        broker.sync(syncEvent);
-
-        //TODO : strange that it is set *after* the sunc method has been called.
+        syncLock.lock();
         try {
-            broker.pushSubject(securityManager.getSystemSubject());
+            /**
+             * Database Systems - The Complete Book (Second edition)
+             * § 17.4.1 The Undo/Redo Rules
+             *
+             * The constraints that an undo/redo logging system must follow are summarized by the following rule:
+             *     * UR1  Before modifying any database element X on disk because of changes
+             *            made by some transaction T, it is necessary that the update record
+             *            <T,X,v,w> appear on disk.
+             */
+            journalManager.ifPresent(manager -> manager.flush(true, true));
+
+            // sync various DBX files
+            broker.sync(syncEvent);
+
+            //TODO : strange that it is set *after* the sunc method has been called.
+            try {
+                broker.pushSubject(securityManager.getSystemSubject());
 
-            if (syncEvent == Sync.MAJOR) {
-                LOG.debug("Major sync");
-                try {
-                    if (!FORCE_CORRUPTION) {
-                        transactionManager.checkpoint(checkpoint);
+                if (syncEvent == Sync.MAJOR) {
+                    LOG.debug("Major sync");
+                    try {
+                        if (!FORCE_CORRUPTION) {
+                            transactionManager.checkpoint(checkpoint);
+                        }
+                    } catch (final TransactionException e) {
+                        LOG.warn(e.getMessage(), e);
                     }
-                } catch (final TransactionException e) {
-                    LOG.warn(e.getMessage(), e);
-                }
-                cacheManager.checkCaches();
+                    cacheManager.checkCaches();
 
-                lastMajorSync = System.currentTimeMillis();
-                if (LOG.isDebugEnabled()) {
-                    notificationService.debug();
+                    lastMajorSync = System.currentTimeMillis();
+                    if (LOG.isDebugEnabled()) {
+                        notificationService.debug();
+                    }
+                } else {
+                    cacheManager.checkDistribution();
+//                LOG.debug("Minor sync");
                 }
-            } else {
-                cacheManager.checkDistribution();
-//            LOG.debug("Minor sync");
+                //TODO : touch this.syncEvent and syncRequired ?
+            } finally {
+                broker.popSubject();
             }
-            //TODO : touch this.syncEvent and syncRequired ?
         } finally {
-            broker.popSubject();
+            syncLock.unlock();
+        }
+    }
+
+    /**
+     * Flushes the dirty pages of all database files and indexes to disk, without
+     * writing a checkpoint.
+     *
+     * Each file is flushed under its own lock and after the journal, so this may
+     * run whilst other transactions continue. Doing so before a {@link Sync#MAJOR}
+     * sync leaves little to be written while transactions are held back for the
+     * checkpoint.
+     *
+     * @param broker A broker responsible for executing the job
+     */
+    public void flush(final DBBroker broker) {
+        syncLock.lock();
+        try {
+            journalManager.ifPresent(manager -> manager.flush(true, true));
+            broker.sync(Sync.MAJOR);
+        } finally {
+            syncLock.unlock();
         }
     }
 
@@ -1499,6 +1717,9 @@ public class BrokerPool extends BrokerPools implements BrokerPoolConstants, Data
      * the task will be run immediately. Otherwise, the task will be deferred
      * until all running threads have returned.
      *
+     * Tasks which do not require exclusive access (see {@link SystemTask#requiresExclusiveAccess()})
+     * are always run immediately, in the calling thread.
+     *
      * @param task The task
      */
     //TOUNDERSTAND (pb) : synchronized, so... "schedules" or, rather, "executes" ?
@@ -1624,21 +1845,27 @@ public class BrokerPool extends BrokerPools implements BrokerPoolConstants, Data
                         journalManager.ifPresent(jm -> jm.flush(true, true));
                     }
 
+                    // no further brokers may be leased, take the leases of the remaining threads as they return their brokers
+                    brokerLeasesClosed = true;
+                    final int leases = maxBrokers - (activeBrokers.containsKey(Thread.currentThread()) ? 1 : 0);
+                    int drainedLeases = brokerLeases.drainPermits();
+
                     final long waitStart = System.currentTimeMillis();
                     //Are there active brokers ?
-                    if (activeBrokers.size() > 0) {
+                    if (drainedLeases < leases) {
                         printSystemInfo();
                         LOG.info("Waiting {}ms for remaining threads to shut down...", maxShutdownWait);
-                        while (activeBrokers.size() > 0) {
+                        while (drainedLeases < leases) {
                             try {
                                 //Wait until they become inactive...
                                 this.wait(1000);
                             } catch (final InterruptedException e) {
                                 //nothing to be done
                             }
+                            drainedLeases += brokerLeases.drainPermits();
 
                             //...or force the shutdown
-                            if (maxShutdownWait > -1 && System.currentTimeMillis() - waitStart > maxShutdownWait) {
+                            if (drainedLeases < leases && maxShutdownWait > -1 && System.currentTimeMillis() - waitStart > maxShutdownWait) {
                                 LOG.warn("Not all threads returned. Forcing shutdown ...");
                                 break;
                             }
@@ -1664,10 +1891,15 @@ public class BrokerPool extends BrokerPools implements BrokerPoolConstants, Data
                         broker = inactiveBrokers.peek();
                     }
 
+                    // the leases are taken, so a nested get() by this thread must reuse the shutdown broker
+                    final boolean registeredShutdownBroker = broker != null && activeBrokers.putIfAbsent(Thread.currentThread(), broker) == null;
                     try {
                         if (broker != null) {
                             broker.prepare();
                             broker.pushSubject(securityManager.getSystemSubject());
+                            if (registeredShutdownBroker) {
+                                broker.incReferenceCount();
+                            }
                         }
 
                         try {
@@ -1687,6 +1919,10 @@ public class BrokerPool extends BrokerPools implements BrokerPoolConstants, Data
                         if(broker != null) {
                             broker.popSubject();
                         }
+                        if (registeredShutdownBroker) {
+                            broker.decReferenceCount();
+                            activeBrokers.remove(Thread.currentThread());
+                        }
                     }
 
                     collectionCache.invalidateAll();
@@ -1697,6 +1933,9 @@ public class BrokerPool extends BrokerPools implements BrokerPoolConstants, Data
                     // remove all remaining inactive brokers as we have shutdown now and no longer need those
                     inactiveBrokers.clear();
 
+                    // wake any threads waiting for a lease, they will find that the database has been shutdown
+                    brokerLeases.release(drainedLeases);
+
                     // deregister JMX MBeans
                     AgentFactory.getInstance().closeDBInstance(this);
 
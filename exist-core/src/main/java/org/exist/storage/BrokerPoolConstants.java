@@ -21,6 +21,8 @@
  */
 package org.exist.storage;
 
+import org.exist.storage.btree.PageIO;
+
 /**
  * Just static Constants used by {@link BrokerPool}
  *
@@ -61,6 +63,7 @@ public interface BrokerPoolConstants {
     String MAX_CONNECTIONS_ATTRIBUTE = "max";
     String SYNC_PERIOD_ATTRIBUTE = "sync-period";
     String SHUTDOWN_DELAY_ATTRIBUTE = "wait-before-shutdown";
+    String LEASE_TIMEOUT_ATTRIBUTE = "lease-timeout";
     String NODES_BUFFER_ATTRIBUTE = "nodesBuffer";
 
     //Various configuration property keys (set by the configuration manager)
@@ -70,6 +73,7 @@ public interface BrokerPoolConstants {
     String PROPERTY_MAX_CONNECTIONS = "db-connection.pool.max";
     String PROPERTY_SYNC_PERIOD = "db-connection.pool.sync-period";
     String PROPERTY_SHUTDOWN_DELAY = "wait-before-shutdown";
+    String PROPERTY_LEASE_TIMEOUT = "db-connection.pool.lease-timeout";
     String DISK_SPACE_MIN_PROPERTY = "db-connection.diskSpaceMin";
 
     //TODO : move elsewhere ?
@@ -88,14 +92,17 @@ public interface BrokerPoolConstants {
     String RECOVERY_FORCE_RESTART_ATTRIBUTE = "force-restart";
 
     String PROPERTY_PAGE_SIZE = "db-connection.page-size";
+    String PROPERTY_PAGE_IO = "db-connection.page-io";
 
     /**
      * Default values
      */
     long DEFAULT_SYNCH_PERIOD = 120000;
     long DEFAULT_MAX_SHUTDOWN_WAIT = 45000;
+    long DEFAULT_LEASE_TIMEOUT = -1;
     //TODO : move this default setting to org.exist.collections.CollectionCache ?
     int DEFAULT_COLLECTION_BUFFER_SIZE = 64;
     int DEFAULT_PAGE_SIZE = 4096;
+    PageIO.Mode DEFAULT_PAGE_IO = PageIO.Mode.RANDOM_ACCESS_FILE;
     short DEFAULT_DISK_SPACE_MIN = 64; // 64 MB
 }
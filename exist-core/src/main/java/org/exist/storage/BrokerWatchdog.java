@@ -68,7 +68,7 @@ public class BrokerWatchdog {
 	
 	private final Map<DBBroker, WatchedBroker> watched = new IdentityHashMap<>();
 	
-	public void add(final DBBroker broker) throws EXistException {
+	public synchronized void add(final DBBroker broker) throws EXistException {
 		final WatchedBroker old = watched.get(broker);
 		if (old == null) {
 			checkForTimeout();
@@ -79,11 +79,11 @@ public class BrokerWatchdog {
 		}
 	}
 	
-	public void remove(final DBBroker broker) {
+	public synchronized void remove(final DBBroker broker) {
 		watched.remove(broker);
 	}
 	
-	public String get(final DBBroker broker) {
+	public synchronized String get(final DBBroker broker) {
 		final WatchedBroker w = watched.get(broker);
 		if (w != null) {
 			return w.trace.toString();
@@ -91,7 +91,7 @@ public class BrokerWatchdog {
 		return "";
 	}
 	
-	public void checkForTimeout() throws EXistException {
+	public synchronized void checkForTimeout() throws EXistException {
 		for (final WatchedBroker broker : watched.values()) {
 			if (System.currentTimeMillis() - broker.timeAdded > 30000) {
 				throw new EXistException("Broker: " + broker.broker.getId() + 
@@ -100,7 +100,7 @@ public class BrokerWatchdog {
 		}
 	}
 	
-	public void dump(final PrintWriter writer) {
+	public synchronized void dump(final PrintWriter writer) {
 		writer.println("Active brokers:");
 		for (final WatchedBroker broker: watched.values()) {
 			writer.format("%20s: %s%s", "Broker", broker.broker.getId(), EOL);
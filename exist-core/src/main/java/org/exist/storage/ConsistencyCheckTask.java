@@ -58,6 +58,7 @@ public class ConsistencyCheckTask implements SystemTask {
     private boolean incrementalCheck = false;
     private boolean checkDocs = false;
     private int maxInc = -1;
+    private int parallelism = 1;
 
     private Path lastExportedBackup = null;
 
@@ -70,6 +71,7 @@ public class ConsistencyCheckTask implements SystemTask {
     public final static String INCREMENTAL_CHECK_PROP_NAME = "incremental-check";
     public final static String MAX_PROP_NAME = "max";
     public final static String CHECK_DOCS_PROP_NAME = "check-documents";
+    public final static String PARALLELISM_PROP_NAME = "parallelism";
 
     private final static LoggingCallback logCallback = new LoggingCallback();
     
@@ -124,6 +126,13 @@ public class ConsistencyCheckTask implements SystemTask {
 
         final String check = properties.getProperty(CHECK_DOCS_PROP_NAME, "no");
         checkDocs = check.equalsIgnoreCase("YES");
+
+        final String strParallelism = properties.getProperty(PARALLELISM_PROP_NAME, "1");
+        try {
+            parallelism = Integer.parseInt(strParallelism);
+        } catch (final NumberFormatException e) {
+            throw new EXistException("Parameter '" + PARALLELISM_PROP_NAME + "' has to be an integer");
+        }
     }
 
     @Override
@@ -179,6 +188,7 @@ public class ConsistencyCheckTask implements SystemTask {
                 LOG.info("Starting backup...");
 
                 final SystemExport sysexport = new SystemExport(broker, transaction, logCallback, monitor, false);
+                sysexport.setParallelism(parallelism);
                 lastExportedBackup = sysexport.export(exportDir, incremental, maxInc, createZip, errors);
                 agentInstance.changeStatus(brokerPool, new TaskStatus(TaskStatus.Status.RUNNING_BACKUP));
 
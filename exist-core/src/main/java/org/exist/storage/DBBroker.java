@@ -63,6 +63,7 @@ import javax.xml.stream.XMLStreamException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Path;
 import java.util.*;
 import java.util.function.Function;
@@ -747,6 +748,21 @@ public interface DBBroker extends AutoCloseable {
     void readBinaryResource(final Txn transaction, @EnsureLocked(mode=LockMode.READ_LOCK) final BinaryDocument blob,
         final OutputStream os) throws IOException;
 
+    /**
+     * Transfers a range of the content of a binary resource to a channel,
+     * avoiding copies through the Java heap where possible.
+     *
+     * @param transaction the current transaction
+     * @param blob the binary document descriptor
+     * @param offset the offset of the first byte to transfer
+     * @param length the maximum number of bytes to transfer
+     * @param target the channel to transfer the content to
+     * @return the number of bytes transferred
+     * @throws IOException If an error occurs whilst reading the binary resource from disk
+     */
+    long readBinaryResource(final Txn transaction, @EnsureLocked(mode=LockMode.READ_LOCK) final BinaryDocument blob,
+        final long offset, final long length, final WritableByteChannel target) throws IOException;
+
     /**
      * @deprecated use {@link #withBinaryFile(Txn, BinaryDocument, Function)}
      * @param blob
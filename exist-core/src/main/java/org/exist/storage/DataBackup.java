@@ -26,23 +26,42 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.exist.EXistException;
 import org.exist.backup.RawDataBackup;
+import org.exist.storage.journal.Journal;
+import org.exist.storage.journal.JournalManager;
 import org.exist.storage.txn.Txn;
 import org.exist.util.Configuration;
+import org.exist.util.FileUtils;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Optional;
 import java.util.Properties;
 import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 
+/**
+ * Copies the raw database files, i.e. the .dbx files, the blob store
+ * and the indexes which support it, into a zip archive.
+ *
+ * By default the task runs with exclusive access to the database after a
+ * checkpoint. In online mode (parameter {@code online="yes"}) the files are
+ * copied whilst the database continues to serve writes: each page is read
+ * under the lock of its file, checkpoints are suspended for the duration of
+ * the copy, and finally the current journal file is added to the archive.
+ * When the archive is restored by {@link #restore(Path, Path, Path)}, the
+ * recovery at the next startup replays the journal from the last checkpoint
+ * before the copy, which brings the files to a consistent state.
+ */
 public class DataBackup implements SystemTask {
 
     private final static Logger LOG = LogManager.getLogger(DataBackup.class);
@@ -51,18 +70,29 @@ public class DataBackup implements SystemTask {
     private final SimpleDateFormat creationDateFormat = new SimpleDateFormat(DATE_FORMAT_PICTURE);
 
 	private Path dest;
+	private boolean online = false;
 	private Optional<Path> lastBackup = Optional.empty();
 
     public DataBackup() {
     }
 
     public DataBackup(final Path destination) {
+        this(destination, false);
+    }
+
+    public DataBackup(final Path destination, final boolean online) {
         dest = destination;
+        this.online = online;
     }
 
     @Override
     public boolean afterCheckpoint() {
-    	return true;
+    	return !online;
+    }
+
+    @Override
+    public boolean requiresExclusiveAccess() {
+        return !online;
     }
 
     @Override
@@ -73,6 +103,7 @@ public class DataBackup implements SystemTask {
     @Override
     public void configure(final Configuration config, final Properties properties) throws EXistException {
         dest = Paths.get(properties.getProperty("output-dir", "backup"));
+        online = "yes".equalsIgnoreCase(properties.getProperty("online", "no"));
         if (!dest.isAbsolute()) {
             dest = ((Path)config.getProperty(BrokerPool.PROPERTY_DATA_DIR)).resolve(dest);
         }
@@ -108,13 +139,84 @@ public class DataBackup implements SystemTask {
         try(final ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(outFilename)))) {
             out.setLevel(Deflater.NO_COMPRESSION);
             final Callback cb = new Callback(out);
-            broker.backupToArchive(cb);
+            if (online) {
+                backupOnline(broker, cb);
+            } else {
+                broker.backupToArchive(cb);
+            }
             // close the zip file
 		} catch (final IOException e) {
             LOG.error("An IO error occurred while backing up data files: {}", e.getMessage(), e);
 		}
 	}
 
+    private void backupOnline(final DBBroker broker, final RawDataBackup backup) throws IOException, EXistException {
+        final BrokerPool pool = broker.getBrokerPool();
+        final JournalManager journalManager = pool.getJournalManager()
+                .orElseThrow(() -> new EXistException("An online DataBackup requires the journal to be enabled"));
+
+        // the journal from the last checkpoint onwards has to be kept until it is copied
+        journalManager.suspendCheckpoints();
+        try {
+            // fewer changes to replay upon restore
+            pool.flush(broker);
+
+            broker.backupToArchive(backup);
+
+            // the journal must be copied last, it has to cover every change in the pages copied above
+            journalManager.backupToArchive(backup);
+        } finally {
+            journalManager.resumeCheckpoints();
+        }
+    }
+
+    /**
+     * Restores the files of a raw data backup.
+     *
+     * The database must not be running. Any journal files in the journal directory
+     * are removed first, so that only the journal of an online backup is replayed
+     * when the database is next started.
+     *
+     * @param archive the zip archive created by this task
+     * @param dataDir the data directory of the database
+     * @param journalDir the journal directory of the database, usually the same as the data directory
+     *
+     * @throws IOException if the archive cannot be read or the files cannot be written
+     */
+    public static void restore(final Path archive, final Path dataDir, final Path journalDir) throws IOException {
+        Files.createDirectories(journalDir);
+        for (final Path journalFile : FileUtils.list(journalDir, path -> FileUtils.fileName(path).endsWith('.' + Journal.LOG_FILE_SUFFIX))) {
+            Files.delete(journalFile);
+        }
+
+        try (final ZipInputStream in = new ZipInputStream(new BufferedInputStream(Files.newInputStream(archive)))) {
+            ZipEntry entry;
+            while ((entry = in.getNextEntry()) != null) {
+                if (entry.isDirectory()) {
+                    continue;
+                }
+
+                final Path target;
+                if (entry.getName().startsWith(Journal.BACKUP_ENTRY_DIR + '/')) {
+                    target = resolveEntry(journalDir, entry.getName().substring(Journal.BACKUP_ENTRY_DIR.length() + 1));
+                } else {
+                    target = resolveEntry(dataDir, entry.getName());
+                }
+
+                Files.createDirectories(target.getParent());
+                Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+
+    private static Path resolveEntry(final Path dir, final String name) throws IOException {
+        final Path target = dir.resolve(name).normalize();
+        if (!target.startsWith(dir.normalize())) {
+            throw new IOException("Archive entry: " + name + " is outside of the directory: " + dir.toAbsolutePath());
+        }
+        return target;
+    }
+
     public Optional<Path> getLastBackup() {
         return lastBackup;
     }
@@ -26,15 +26,24 @@ import org.apache.logging.log4j.Logger;
 
 import org.exist.management.Agent;
 import org.exist.management.AgentFactory;
+import org.exist.storage.cache.BTreeCache;
+import org.exist.storage.cache.BTreeCacheable;
 import org.exist.storage.cache.Cache;
+import org.exist.storage.cache.CachePolicy;
+import org.exist.storage.cache.Cacheable;
+import org.exist.storage.cache.LRUCache;
+import org.exist.storage.cache.TwoQueueCache;
+import org.exist.storage.lock.LockManager;
 import org.exist.util.Configuration;
 import org.exist.util.DatabaseConfigurationException;
 
 import java.text.NumberFormat;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 
 /**
@@ -77,6 +86,14 @@ public class DefaultCacheManager implements CacheManager, BrokerPoolService
     public static final String  SHRINK_THRESHOLD_ATTRIBUTE     		 	= "cacheShrinkThreshold";
     public static final String  SHRINK_THRESHOLD_PROPERTY      			= "db-connection.cache-shrink-threshold";
 
+    public static final CachePolicy DEFAULT_CACHE_POLICY                = CachePolicy.LRU;
+    public static final String  CACHE_POLICY_ATTRIBUTE                  = "cachePolicy";
+    public static final String  PROPERTY_CACHE_POLICY                   = "db-connection.cache-policy";
+    public static final String  CACHE_POLICY_ELEMENT_NAME               = "cache-policy";
+    public static final String  CACHE_POLICY_FILE_ATTRIBUTE             = "file";
+    public static final String  CACHE_POLICY_POLICY_ATTRIBUTE           = "policy";
+    public static final String  PROPERTY_CACHE_POLICY_FILES             = "db-connection.cache-policy.files";
+
     /** Caches maintained by this class. */
     private List<Cache>         caches                          = new ArrayList<>();
 
@@ -108,6 +125,18 @@ public class DefaultCacheManager implements CacheManager, BrokerPoolService
 
     private String              instanceName;
 
+    /** The replacement policy for the caches of files which have no policy of their own. */
+    private final CachePolicy   defaultCachePolicy;
+
+    /** Replacement policies for individual files, keyed by file name. */
+    private final Map<String, CachePolicy> fileCachePolicies;
+
+    /** The maximum number of independently locked segments of a {@link TwoQueueCache}. */
+    private final int           cacheConcurrencyLevel;
+
+    /** True if the pages of a file may be read concurrently, which requires a thread-safe cache. */
+    private final boolean       btreeSharedReads;
+
     public DefaultCacheManager( BrokerPool pool )
     {
         this.instanceName = pool.getId();
@@ -126,6 +155,16 @@ public class DefaultCacheManager implements CacheManager, BrokerPoolService
 
         shrinkThreshold = configuration.getInteger( SHRINK_THRESHOLD_PROPERTY );
 
+        this.defaultCachePolicy = configuration.getProperty( PROPERTY_CACHE_POLICY, DEFAULT_CACHE_POLICY );
+        this.fileCachePolicies = configuration.getProperty( PROPERTY_CACHE_POLICY_FILES, Collections.emptyMap() );
+        this.cacheConcurrencyLevel = 2 * Runtime.getRuntime().availableProcessors();
+        this.btreeSharedReads = LockManager.isBtreeSharedReads( configuration );
+
+        if( btreeSharedReads && ( defaultCachePolicy != CachePolicy.TWO_QUEUE || fileCachePolicies.containsValue( CachePolicy.LRU ) ) ) {
+            // the LRU caches are not thread-safe, so they can not be used when readers of a file share its lock
+            LOG.warn( "The cache-policy settings in conf.xml are overridden, all caches use cache-policy=\"{}\" as btree-shared-reads is enabled", CachePolicy.TWO_QUEUE.getConfigValue() );
+        }
+
         totalMem        = cacheSize * 1024L * 1024L;
 
         final Boolean checkMaxCache = (Boolean)configuration.getProperty( PROPERTY_CACHE_CHECK_MAX_SIZE );
@@ -149,11 +188,74 @@ public class DefaultCacheManager implements CacheManager, BrokerPoolService
         this.maxCacheSize   = (int)( totalPageCount * MAX_MEM_USE );
         final NumberFormat nf     = NumberFormat.getNumberInstance();
 
-        LOG.info("Cache settings: {}k; totalPages: {}; maxCacheSize: {}; cacheShrinkThreshold: {}", nf.format(totalMem / 1024L), nf.format(totalPageCount), nf.format(maxCacheSize), nf.format(shrinkThreshold));
+        LOG.info("Cache settings: {}k; totalPages: {}; maxCacheSize: {}; cacheShrinkThreshold: {}; cachePolicy: {}", nf.format(totalMem / 1024L), nf.format(totalPageCount), nf.format(maxCacheSize), nf.format(shrinkThreshold), defaultCachePolicy.getConfigValue());
 
         registerMBean();
     }
 
+    /**
+     * Get the replacement policy to use for the caches of a database file.
+     *
+     * When readers of a file share its lock, only the thread-safe
+     * {@link CachePolicy#TWO_QUEUE} policy is available, and overrides
+     * the configured policy. A warning is logged at startup when that is the case.
+     *
+     * @param fileName the name of the database file, e.g. "dom.dbx"
+     *
+     * @return the policy configured for the file, or the default policy
+     */
+    public CachePolicy getCachePolicy( final String fileName )
+    {
+        if( btreeSharedReads ) {
+            return CachePolicy.TWO_QUEUE;
+        }
+        return fileCachePolicies.getOrDefault( fileName, defaultCachePolicy );
+    }
+
+    /**
+     * Create a cache for the B+-tree pages of a database file, according
+     * to the replacement policy configured for the file.
+     *
+     * The cache is not registered with this manager.
+     *
+     * @param <T> the type of the cached pages
+     * @param fileName the name of the database file
+     * @param size the initial size of the cache in pages
+     * @param growthFactor the factor by which the cache may grow
+     * @param growthThreshold the thrashing threshold above which the cache asks to grow
+     *
+     * @return the new cache
+     */
+    public <T extends BTreeCacheable> Cache<T> newBTreeCache( final String fileName, final int size, final double growthFactor, final double growthThreshold )
+    {
+        if( getCachePolicy( fileName ) == CachePolicy.TWO_QUEUE ) {
+            return new TwoQueueCache<>( fileName, size, growthFactor, growthThreshold, Cache.CacheType.BTREE, cacheConcurrencyLevel );
+        }
+        return new BTreeCache<>( fileName, size, growthFactor, growthThreshold, Cache.CacheType.BTREE );
+    }
+
+    /**
+     * Create a cache for the data pages of a database file, according
+     * to the replacement policy configured for the file.
+     *
+     * The cache is not registered with this manager.
+     *
+     * @param <T> the type of the cached pages
+     * @param fileName the name of the database file
+     * @param size the initial size of the cache in pages
+     * @param growthFactor the factor by which the cache may grow
+     * @param growthThreshold the thrashing threshold above which the cache asks to grow
+     *
+     * @return the new cache
+     */
+    public <T extends Cacheable> Cache<T> newDataCache( final String fileName, final int size, final double growthFactor, final double growthThreshold )
+    {
+        if( getCachePolicy( fileName ) == CachePolicy.TWO_QUEUE ) {
+            return new TwoQueueCache<>( fileName, size, growthFactor, growthThreshold, Cache.CacheType.DATA, cacheConcurrencyLevel );
+        }
+        return new LRUCache<>( fileName, size, growthFactor, growthThreshold, Cache.CacheType.DATA );
+    }
+
     @Override
     public void registerCache( Cache cache )
     {
@@ -91,13 +91,14 @@ import javax.annotation.Nullable;
 import javax.xml.stream.XMLStreamException;
 import java.io.*;
 import java.net.URI;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.text.NumberFormat;
 import java.util.*;
 import java.util.function.Function;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -136,9 +137,12 @@ public class NativeBroker implements DBBroker {
     //Note : no ID for symbols ? Too bad...
 
     public static final String PAGE_SIZE_ATTRIBUTE = "pageSize";
+    public static final String PAGE_IO_ATTRIBUTE = "page-io";
     public static final String INDEX_DEPTH_ATTRIBUTE = "index-depth";
+    public static final String REINDEX_THREADS_ATTRIBUTE = "reindex-threads";
 
     public static final String PROPERTY_INDEX_DEPTH = "indexer.index-depth";
+    public static final String PROPERTY_REINDEX_THREADS = "indexer.reindex-threads";
     private static final byte[] ALL_STORAGE_FILES = {
         COLLECTIONS_DBX_ID, VALUES_DBX_ID, DOM_DBX_ID
     };
@@ -148,6 +152,7 @@ public class NativeBroker implements DBBroker {
 
     public static final String DEFAULT_DATA_DIR = "data";
     public static final int DEFAULT_INDEX_DEPTH = 1;
+    public static final int DEFAULT_REINDEX_THREADS = 1;
 
     /** check available memory after storing DEFAULT_NODES_BEFORE_MEMORY_CHECK nodes */
     public static final int DEFAULT_NODES_BEFORE_MEMORY_CHECK = 500;
@@ -978,7 +983,7 @@ public class NativeBroker implements DBBroker {
     private @Nullable @EnsureLocked(mode=LockMode.READ_LOCK, type=LockType.COLLECTION) Collection loadCollection(
             @EnsureLocked(mode=LockMode.READ_LOCK, type=LockType.COLLECTION) final XmldbURI collectionUri)
             throws PermissionDeniedException, LockException, IOException {
-        try (final ManagedLock<ReentrantLock> collectionsDbLock = lockManager.acquireBtreeReadLock(collectionsDb.getLockName())) {
+        try (final ManagedLock<ReentrantReadWriteLock> collectionsDbLock = lockManager.acquireBtreeReadLock(collectionsDb.getLockName())) {
             final Value key = new CollectionStore.CollectionKey(collectionUri.toString());
             final VariableByteInput is = collectionsDb.getAsStream(key);
             return is == null ? null : MutableCollection.load(this, collectionUri, is);
@@ -1132,7 +1137,7 @@ public class NativeBroker implements DBBroker {
         final Pattern p = Pattern.compile(regexp);
         final Matcher m = p.matcher("");
 
-        try(final ManagedLock<ReentrantLock> collectionsDbLock = lockManager.acquireBtreeReadLock(collectionsDb.getLockName())) {
+        try(final ManagedLock<ReentrantReadWriteLock> collectionsDbLock = lockManager.acquireBtreeReadLock(collectionsDb.getLockName())) {
 
             //TODO write a regexp lookup for key data in BTree.query
             //final IndexQuery idxQuery = new IndexQuery(IndexQuery.REGEXP, regexp);
@@ -1171,7 +1176,7 @@ public class NativeBroker implements DBBroker {
         final CollectionCache collectionsCache = pool.getCollectionsCache();
         final Collection collection = collectionsCache.getIfPresent(uri);
         if(collection == null) {
-            try(final ManagedLock<ReentrantLock> collectionsDbLock = lockManager.acquireBtreeReadLock(collectionsDb.getLockName())) {
+            try(final ManagedLock<ReentrantReadWriteLock> collectionsDbLock = lockManager.acquireBtreeReadLock(collectionsDb.getLockName())) {
 
                 final Value key = new CollectionStore.CollectionKey(uri.toString());
                 final VariableByteInput is = collectionsDb.getAsStream(key);
@@ -1723,7 +1728,7 @@ public class NativeBroker implements DBBroker {
         collectionsCache.invalidate(sourceCollection.getURI());
 
         // remove source from disk
-        try(final ManagedLock<ReentrantLock> collectionsDbLock = lockManager.acquireBtreeWriteLock(collectionsDb.getLockName())) {
+        try(final ManagedLock<ReentrantReadWriteLock> collectionsDbLock = lockManager.acquireBtreeWriteLock(collectionsDb.getLockName())) {
             final Value key = new CollectionStore.CollectionKey(sourceCollectionUri.toString());
             collectionsDb.remove(transaction, key);
         }
@@ -1811,7 +1816,7 @@ public class NativeBroker implements DBBroker {
 
             // 5) remove Collection from collections.dbx
             if(parentCollection != null) {
-                try(final ManagedLock<ReentrantLock> collectionsDbLock = lockManager.acquireBtreeWriteLock(collectionsDb.getLockName())) {
+                try(final ManagedLock<ReentrantReadWriteLock> collectionsDbLock = lockManager.acquireBtreeWriteLock(collectionsDb.getLockName())) {
                     final Value key = new CollectionStore.CollectionKey(collectionUri.getRawCollectionPath());
                     collectionsDb.remove(transaction, key);
 
@@ -1834,7 +1839,7 @@ public class NativeBroker implements DBBroker {
 
             //TODO(AR) this could possibly be executed asynchronously as a task, we don't need to know when it completes (this is because access to documents is through a Collection, and the Collection was removed above), however we cannot recycle the collectionId until all docs are gone
             // 6) unlink all documents from the Collection
-            try(final ManagedLock<ReentrantLock> collectionsDbLock = lockManager.acquireBtreeWriteLock(collectionsDb.getLockName())) {
+            try(final ManagedLock<ReentrantReadWriteLock> collectionsDbLock = lockManager.acquireBtreeWriteLock(collectionsDb.getLockName())) {
                 final Value docKey = new CollectionStore.DocumentKey(collection.getId());
                 final IndexQuery query = new IndexQuery(IndexQuery.TRUNC_RIGHT, docKey);
                 collectionsDb.removeAll(transaction, query);
@@ -1997,7 +2002,7 @@ public class NativeBroker implements DBBroker {
         final CollectionCache collectionsCache = pool.getCollectionsCache();
         collectionsCache.put(collection);
 
-        try(final ManagedLock<ReentrantLock> collectionsDbLock = lockManager.acquireBtreeWriteLock(collectionsDb.getLockName())) {
+        try(final ManagedLock<ReentrantReadWriteLock> collectionsDbLock = lockManager.acquireBtreeWriteLock(collectionsDb.getLockName())) {
             final Value name = new CollectionStore.CollectionKey(collection.getURI().toString());
             try(final VariableByteOutputStream os = new VariableByteOutputStream(256)) {
                 collection.serialize(os);
@@ -2024,7 +2029,7 @@ public class NativeBroker implements DBBroker {
             return nextCollectionId;
         }
 
-        try(final ManagedLock<ReentrantLock> collectionsDbLock = lockManager.acquireBtreeWriteLock(collectionsDb.getLockName())) {
+        try(final ManagedLock<ReentrantReadWriteLock> collectionsDbLock = lockManager.acquireBtreeWriteLock(collectionsDb.getLockName())) {
             final Value key = new CollectionStore.CollectionKey(CollectionStore.NEXT_COLLECTION_ID_KEY);
             final Value data = collectionsDb.get(key);
             if(data != null) {
@@ -2054,9 +2059,17 @@ public class NativeBroker implements DBBroker {
                 return;
             }
 
-            LOG.info("Start indexing collection {}", collection.getURI().toString());
+            final int reindexThreads = pool.getConfiguration().getProperty(PROPERTY_REINDEX_THREADS, DEFAULT_REINDEX_THREADS);
+            LOG.info("Start indexing collection {} using {} threads", collection.getURI().toString(), reindexThreads);
             pool.getProcessMonitor().startJob(ProcessMonitor.ACTION_REINDEX_COLLECTION, collection.getURI());
-            reindexCollection(transaction, collection, IndexMode.STORE);
+            if (reindexThreads > 1) {
+                try (final ParallelReindex parallelReindex = new ParallelReindex(pool, getCurrentSubject(), reindexThreads)) {
+                    reindexCollection(transaction, collection, IndexMode.STORE, parallelReindex);
+                    LOG.info("Reindexed {} documents", parallelReindex.getReindexed());
+                }
+            } else {
+                reindexCollection(transaction, collection, IndexMode.STORE);
+            }
         } catch(final PermissionDeniedException | IOException e) {
             LOG.error("An error occurred during reindex: {}", e.getMessage(), e);
         } finally {
@@ -2068,6 +2081,21 @@ public class NativeBroker implements DBBroker {
     private void reindexCollection(final Txn transaction,
             @EnsureLocked(mode=LockMode.READ_LOCK) final Collection collection, final IndexMode mode)
             throws PermissionDeniedException, IOException, LockException {
+        reindexCollection(transaction, collection, mode, null);
+    }
+
+    /**
+     * Reindex a collection and its descendants.
+     *
+     * @param transaction the transaction
+     * @param collection the collection to reindex
+     * @param mode the index mode
+     * @param parallelReindex if not null, the documents of each collection are reindexed in parallel
+     */
+    private void reindexCollection(final Txn transaction,
+            @EnsureLocked(mode=LockMode.READ_LOCK) final Collection collection, final IndexMode mode,
+            @Nullable final ParallelReindex parallelReindex)
+            throws PermissionDeniedException, IOException, LockException {
         if(!collection.getPermissionsNoLock().validate(getCurrentSubject(), Permission.WRITE)) {
             throw new PermissionDeniedException("Account " + getCurrentSubject().getName() + " have insufficient privileges on collection " + collection.getURI());
         }
@@ -2078,13 +2106,17 @@ public class NativeBroker implements DBBroker {
         }
 
         // reindex documents
-        try {
-            for (final Iterator<DocumentImpl> i = collection.iterator(this); i.hasNext(); ) {
-                final DocumentImpl next = i.next();
-                reindexXMLResource(transaction, next, mode);
+        if (parallelReindex != null) {
+            parallelReindex.reindexDocuments(this, transaction, collection, mode);
+        } else {
+            try {
+                for (final Iterator<DocumentImpl> i = collection.iterator(this); i.hasNext(); ) {
+                    final DocumentImpl next = i.next();
+                    reindexXMLResource(transaction, next, mode);
+                }
+            } catch (final LockException e) {
+                LOG.error("LockException while reindexing documents of collection '{}'. Skipping...", collection.getURI(), e);
             }
-        } catch(final LockException e) {
-            LOG.error("LockException while reindexing documents of collection '{}'. Skipping...", collection.getURI(), e);
         }
 
         // descend into child collections
@@ -2096,7 +2128,7 @@ public class NativeBroker implements DBBroker {
                     if (child == null) {
                         throw new IOException("Collection '" + childUri + "' not found");
                     } else {
-                        reindexCollection(transaction, child, mode);
+                        reindexCollection(transaction, child, mode, parallelReindex);
                     }
                 }
             }
@@ -2241,7 +2273,7 @@ public class NativeBroker implements DBBroker {
     @Override
     public DocumentImpl getResourceById(final int collectionId, final byte resourceType, final int documentId) throws PermissionDeniedException {
         XmldbURI uri;
-        try(final ManagedLock<ReentrantLock> collectionsDbLock = lockManager.acquireBtreeReadLock(collectionsDb.getLockName())) {
+        try(final ManagedLock<ReentrantReadWriteLock> collectionsDbLock = lockManager.acquireBtreeReadLock(collectionsDb.getLockName())) {
 
             //get the collection uri
             String collectionUri = null;
@@ -2316,7 +2348,7 @@ public class NativeBroker implements DBBroker {
     @Override
     public void storeXMLResource(final Txn transaction, final DocumentImpl doc) {
         try(final VariableByteOutputStream os = new VariableByteOutputStream(256);
-                final ManagedLock<ReentrantLock> collectionsDbLock = lockManager.acquireBtreeWriteLock(collectionsDb.getLockName())) {
+                final ManagedLock<ReentrantReadWriteLock> collectionsDbLock = lockManager.acquireBtreeWriteLock(collectionsDb.getLockName())) {
             doc.write(os);
             final Value key = new CollectionStore.DocumentKey(doc.getCollection().getId(), doc.getResourceType(), doc.getDocId());
             collectionsDb.put(transaction, key, os.data(), true);
@@ -2469,6 +2501,13 @@ public class NativeBroker implements DBBroker {
         }
     }
 
+    @Override
+    public long readBinaryResource(final Txn transaction, final BinaryDocument blob, final long offset,
+            final long length, final WritableByteChannel target) throws IOException {
+        final BlobStore blobStore = pool.getBlobStore();
+        return Math.max(0, blobStore.transferTo(transaction, blob.getBlobId(), offset, length, target));
+    }
+
     @Override
     public long getBinaryResourceSize(final BinaryDocument blob)
             throws IOException {
@@ -2520,7 +2559,7 @@ public class NativeBroker implements DBBroker {
     //TODO : consider a better cooperation with Collection -pb
     @Override
     public void getCollectionResources(final Collection.InternalAccess collectionInternalAccess) {
-        try(final ManagedLock<ReentrantLock> collectionsDbLock = lockManager.acquireBtreeReadLock(collectionsDb.getLockName())) {
+        try(final ManagedLock<ReentrantReadWriteLock> collectionsDbLock = lockManager.acquireBtreeReadLock(collectionsDb.getLockName())) {
             final Value key = new CollectionStore.DocumentKey(collectionInternalAccess.getId());
             final IndexQuery query = new IndexQuery(IndexQuery.TRUNC_RIGHT, key);
 
@@ -2535,7 +2574,7 @@ public class NativeBroker implements DBBroker {
     @Override
     public void getResourcesFailsafe(final Txn transaction, final BTreeCallback callback, final boolean fullScan) throws TerminatedException {
         assert(transaction != null && transaction.getState() == Txn.State.STARTED);
-        try(final ManagedLock<ReentrantLock> collectionsDbLock = lockManager.acquireBtreeReadLock(collectionsDb.getLockName())) {
+        try(final ManagedLock<ReentrantReadWriteLock> collectionsDbLock = lockManager.acquireBtreeReadLock(collectionsDb.getLockName())) {
             final Value key = new CollectionStore.DocumentKey();
             final IndexQuery query = new IndexQuery(IndexQuery.TRUNC_RIGHT, key);
             if(fullScan) {
@@ -2553,7 +2592,7 @@ public class NativeBroker implements DBBroker {
     @Override
     public void getCollectionsFailsafe(final Txn transaction, final BTreeCallback callback) throws TerminatedException {
         assert(transaction != null && transaction.getState() == Txn.State.STARTED);
-        try(final ManagedLock<ReentrantLock> collectionsDbLock = lockManager.acquireBtreeReadLock(collectionsDb.getLockName())) {
+        try(final ManagedLock<ReentrantReadWriteLock> collectionsDbLock = lockManager.acquireBtreeReadLock(collectionsDb.getLockName())) {
             final Value key = new CollectionStore.CollectionKey();
             final IndexQuery query = new IndexQuery(IndexQuery.TRUNC_RIGHT, key);
             collectionsDb.query(query, callback);
@@ -3064,7 +3103,7 @@ public class NativeBroker implements DBBroker {
     public void removeResourceMetadata(final Txn transaction,
             @EnsureLocked(mode=LockMode.WRITE_LOCK) final DocumentImpl document) {
         // remove document metadata
-        try(final ManagedLock<ReentrantLock> collectionsDbLock = lockManager.acquireBtreeWriteLock(collectionsDb.getLockName())) {
+        try(final ManagedLock<ReentrantReadWriteLock> collectionsDbLock = lockManager.acquireBtreeWriteLock(collectionsDb.getLockName())) {
             if(LOG.isDebugEnabled()) {
                 LOG.debug("Removing resource metadata for {}", document.getDocId());
             }
@@ -3102,7 +3141,7 @@ public class NativeBroker implements DBBroker {
             return nextDocId;
         }
         nextDocId = 1;
-        try(final ManagedLock<ReentrantLock> collectionsDbLock = lockManager.acquireBtreeWriteLock(collectionsDb.getLockName())) {
+        try(final ManagedLock<ReentrantReadWriteLock> collectionsDbLock = lockManager.acquireBtreeWriteLock(collectionsDb.getLockName())) {
             final Value key = new CollectionStore.CollectionKey(CollectionStore.NEXT_DOC_ID_KEY);
             final Value data = collectionsDb.get(key);
             if(data != null) {
@@ -3859,7 +3898,7 @@ public class NativeBroker implements DBBroker {
 
     private void rebuildIndex(final byte indexId) {
         final BTree btree = getStorage(indexId);
-        try(final ManagedLock<ReentrantLock> btreeLock = lockManager.acquireBtreeWriteLock(btree.getLockName())) {
+        try(final ManagedLock<ReentrantReadWriteLock> btreeLock = lockManager.acquireBtreeWriteLock(btree.getLockName())) {
             LOG.info("Rebuilding index {}", FileUtils.fileName(btree.getFile()));
             btree.rebuild();
             LOG.info("Index {} was rebuilt.", FileUtils.fileName(btree.getFile()));
@@ -3925,7 +3964,7 @@ public class NativeBroker implements DBBroker {
                 }
             }.run();
             if(syncEvent == Sync.MAJOR) {
-                try(final ManagedLock<ReentrantLock> collectionsDbLock = lockManager.acquireBtreeWriteLock(collectionsDb.getLockName())) {
+                try(final ManagedLock<ReentrantReadWriteLock> collectionsDbLock = lockManager.acquireBtreeWriteLock(collectionsDb.getLockName())) {
                     collectionsDb.flush();
                 } catch(final LockException e) {
                     LOG.error("Failed to acquire lock on {}", FileUtils.fileName(collectionsDb.getFile()), e);
@@ -3968,7 +4007,7 @@ public class NativeBroker implements DBBroker {
                 }
             }.run();
 
-            try(final ManagedLock<ReentrantLock> collectionsDbLock = lockManager.acquireBtreeWriteLock(collectionsDb.getLockName())) {
+            try(final ManagedLock<ReentrantReadWriteLock> collectionsDbLock = lockManager.acquireBtreeWriteLock(collectionsDb.getLockName())) {
                 collectionsDb.close();
             }
 
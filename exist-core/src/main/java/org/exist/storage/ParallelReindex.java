@@ -0,0 +1,214 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.storage;
+
+import net.jcip.annotations.ThreadSafe;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.exist.EXistException;
+import org.exist.collections.Collection;
+import org.exist.dom.persistent.DocumentImpl;
+import org.exist.security.PermissionDeniedException;
+import org.exist.security.Subject;
+import org.exist.storage.DBBroker.IndexMode;
+import org.exist.storage.lock.LockManager;
+import org.exist.storage.lock.ManagedDocumentLock;
+import org.exist.storage.txn.Txn;
+import org.exist.util.LockException;
+import org.exist.util.NamedThreadFactory;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reindexes the documents of collections in parallel.
+ *
+ * The documents of each collection are shared between the calling thread
+ * and up to {@code parallelism - 1} worker threads. Each worker leases its own
+ * broker (and so has its own {@link org.exist.indexing.IndexController}), and
+ * takes a read lock on each document whilst it is reindexed.
+ *
+ * The workers make their changes within the transaction of the calling
+ * thread, so that they are committed or aborted together with it. Reindexing
+ * only uses the transaction to journal its changes, it neither acquires
+ * transactional locks nor registers transaction listeners, so the transaction
+ * can safely be shared. All workers have finished before
+ * {@link #reindexDocuments(DBBroker, Txn, Collection, IndexMode)} returns, and
+ * so before the calling thread can commit the transaction. Workers which
+ * cannot lease a broker immediately do not wait for one, their share of the
+ * documents is reindexed by the other workers and the calling thread, so
+ * that a busy broker pool can never deadlock the reindex.
+ */
+@ThreadSafe
+final class ParallelReindex implements AutoCloseable {
+
+    private static final Logger LOG = LogManager.getLogger(ParallelReindex.class);
+
+    /**
+     * Collections with fewer documents than this are reindexed by the calling thread only.
+     */
+    static final int MIN_PARALLEL_DOCUMENTS = 8;
+
+    private static final long PROGRESS_REPORT_INTERVAL = 10_000;  // ms
+
+    private final BrokerPool pool;
+    private final Subject subject;
+    private final int parallelism;
+    private final ExecutorService executorService;
+
+    private final long start = System.currentTimeMillis();
+    private final AtomicLong reindexed = new AtomicLong();
+    private final AtomicLong lastProgressReport = new AtomicLong(start);
+
+    /**
+     * @param pool the database instance
+     * @param subject the subject to run the workers as
+     * @param parallelism the maximum number of threads reindexing documents, including the calling thread
+     */
+    ParallelReindex(final BrokerPool pool, final Subject subject, final int parallelism) {
+        this.pool = pool;
+        this.subject = subject;
+        this.parallelism = parallelism;
+        this.executorService = Executors.newFixedThreadPool(parallelism - 1, new NamedThreadFactory(pool, "reindex"));
+    }
+
+    /**
+     * Reindex the documents of a collection.
+     *
+     * @param broker the broker of the calling thread
+     * @param transaction the transaction of the calling thread, or null
+     * @param collection the collection, read locked by the calling thread
+     * @param mode the index mode
+     *
+     * @throws IOException if a document could not be reindexed
+     */
+    void reindexDocuments(final DBBroker broker, @Nullable final Txn transaction, final Collection collection, final IndexMode mode) throws IOException {
+        final List<DocumentImpl> documents = new ArrayList<>();
+        try {
+            for (final Iterator<DocumentImpl> i = collection.iterator(broker); i.hasNext(); ) {
+                documents.add(i.next());
+            }
+        } catch (final PermissionDeniedException | LockException e) {
+            LOG.error("Exception while reading documents of collection '{}'. Skipping...", collection.getURI(), e);
+            return;
+        }
+
+        final AtomicInteger next = new AtomicInteger();
+        final List<Future<?>> workers = new ArrayList<>();
+        if (documents.size() >= MIN_PARALLEL_DOCUMENTS) {
+            final int workerCount = Math.min(parallelism - 1, documents.size() / MIN_PARALLEL_DOCUMENTS);
+            for (int i = 0; i < workerCount; i++) {
+                workers.add(executorService.submit(() -> {
+                    leaseAndReindex(transaction, documents, next, mode);
+                    return null;
+                }));
+            }
+        }
+
+        // the calling thread is also a worker
+        reindex(broker, transaction, documents, next, mode);
+
+        for (final Future<?> worker : workers) {
+            try {
+                worker.get();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted whilst reindexing collection: " + collection.getURI(), e);
+            } catch (final ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new IOException("Unable to reindex collection: " + collection.getURI() + ": " + e.getCause().getMessage(), e.getCause());
+            }
+        }
+    }
+
+    private void leaseAndReindex(@Nullable final Txn transaction, final List<DocumentImpl> documents, final AtomicInteger next, final IndexMode mode) {
+        final DBBroker broker;
+        try {
+            broker = pool.get(Optional.of(subject), 0, TimeUnit.MILLISECONDS);
+        } catch (final EXistException e) {
+            LOG.debug("No broker available for reindex worker: {}", e.getMessage());
+            return;
+        }
+
+        try (final DBBroker workerBroker = broker) {
+            if (transaction != null) {
+                workerBroker.addCurrentTransaction(transaction);
+            }
+            try {
+                reindex(workerBroker, transaction, documents, next, mode);
+            } finally {
+                if (transaction != null) {
+                    workerBroker.removeCurrentTransaction(transaction);
+                }
+            }
+        }
+    }
+
+    private void reindex(final DBBroker broker, @Nullable final Txn transaction, final List<DocumentImpl> documents, final AtomicInteger next, final IndexMode mode) {
+        final LockManager lockManager = pool.getLockManager();
+        int i;
+        while ((i = next.getAndIncrement()) < documents.size()) {
+            final DocumentImpl document = documents.get(i);
+            try (final ManagedDocumentLock documentLock = lockManager.acquireDocumentReadLock(document.getURI())) {
+                broker.reindexXMLResource(transaction, document, mode);
+            } catch (final LockException e) {
+                LOG.error("LockException while reindexing document '{}'. Skipping...", document.getURI(), e);
+            }
+            reportProgress(reindexed.incrementAndGet());
+        }
+    }
+
+    private void reportProgress(final long count) {
+        final long now = System.currentTimeMillis();
+        final long last = lastProgressReport.get();
+        if (now - last >= PROGRESS_REPORT_INTERVAL && lastProgressReport.compareAndSet(last, now)) {
+            LOG.info("Reindexed {} documents in {} ms, using up to {} threads", count, now - start, parallelism);
+        }
+    }
+
+    /**
+     * Get the number of documents which have been reindexed.
+     *
+     * @return the number of documents
+     */
+    long getReindexed() {
+        return reindexed.get();
+    }
+
+    @Override
+    public void close() {
+        executorService.shutdownNow();
+    }
+}
@@ -39,6 +39,12 @@ import org.exist.util.Configuration;
  * via {@link BrokerPool#triggerSystemTask(SystemTask)} or
  * {@link org.exist.scheduler.Scheduler}.
  *
+ * Tasks which only touch structures that are protected by their
+ * own locks, for example flushing dirty pages, may declare that
+ * they do not need exclusive access by overriding
+ * {@link #requiresExclusiveAccess()}. Such tasks are run straight
+ * away whilst other transactions continue.
+ *
  * IMPORTANT: SystemTask implementations should avoid to acquire
  * locks on collections! Doing so may lead to a deadlock situation.
  * The system task runs in a privileged mode. Locking collections
@@ -68,4 +74,14 @@ public interface SystemTask {
 	 * runs. A checkpoint guarantees that all changes were written to disk.
 	 */
 	boolean afterCheckpoint();
+
+	/**
+	 * @return true if no other transactions may be active whilst
+	 * this system task runs. Tasks returning false are executed
+	 * immediately and concurrently with other transactions, they
+	 * must not depend on the privileged mode described above.
+	 */
+	default boolean requiresExclusiveAccess() {
+		return true;
+	}
 }
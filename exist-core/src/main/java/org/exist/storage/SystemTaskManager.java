@@ -94,6 +94,32 @@ public class SystemTaskManager implements BrokerPoolService {
         }
     }
 
+    /**
+     * Run a system task which does not require exclusive access,
+     * whilst other transactions may be active.
+     *
+     * @param task the task, {@link SystemTask#requiresExclusiveAccess()} must be false.
+     * @param systemBroker a broker running as the SYSTEM subject.
+     * @param transaction the transaction
+     */
+    public void processConcurrentTask(final SystemTask task, final DBBroker systemBroker, final Txn transaction) {
+        if (task.requiresExclusiveAccess()) {
+            throw new IllegalArgumentException("SystemTask: '" + task.getName() + "' requires exclusive access");
+        }
+
+        if (pool.isShuttingDown()) {
+            LOG.info("Skipping SystemTask: '{}' as database is shutting down...", task.getName());
+        } else if (pool.isShutDown()) {
+            LOG.warn("Unable to execute SystemTask: '{}' as database is shut down!", task.getName());
+        } else {
+            try {
+                runSystemTask(task, systemBroker, transaction);
+            } catch (final Exception e) {
+                LOG.error("System maintenance task reported error: {}", e.getMessage(), e);
+            }
+        }
+    }
+
     private void runSystemTask(final SystemTask task, final DBBroker broker, final Txn transaction) throws EXistException {
         if (LOG.isDebugEnabled()) {
             LOG.debug("Running system maintenance task: {}", task.getClass().getName());
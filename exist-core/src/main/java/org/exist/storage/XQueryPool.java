@@ -32,22 +32,48 @@
  */
 package org.exist.storage;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.text.NumberFormat;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
 
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import net.jcip.annotations.ThreadSafe;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.exist.EXistException;
+import org.exist.dom.QName;
+import org.exist.dom.persistent.BinaryDocument;
+import org.exist.dom.persistent.DocumentImpl;
+import org.exist.dom.persistent.LockedDocument;
 import org.exist.security.Permission;
 import org.exist.security.PermissionDeniedException;
 import org.exist.source.DBSource;
+import org.exist.source.FileSource;
 import org.exist.source.Source;
+import org.exist.storage.lock.Lock.LockMode;
 import org.exist.util.Configuration;
 import org.exist.util.Holder;
+import org.exist.xmldb.XmldbURI;
 import org.exist.xquery.*;
+import org.exist.xquery.value.Sequence;
+
+import javax.annotation.Nullable;
+
+import static org.exist.util.ThreadUtils.newInstanceThread;
 
 /**
  * Global pool for compiled XQuery expressions.
@@ -56,7 +82,22 @@ import org.exist.xquery.*;
  * {@link org.exist.source.Source} objects from which they were created.
  *
  * For each XQuery, a maximum of {@link #DEFAULT_MAX_QUERY_STACK_SIZE} compiled
- * expressions are kept in the pool.
+ * expressions are kept in the pool. A compiled expression carries the state of
+ * its execution, so one copy is needed for each concurrent execution of a query.
+ * Copies are borrowed and returned in LIFO order, so that surplus copies from a
+ * past burst of concurrent executions sink to the bottom of the stack. Those
+ * which have not been used for {@link #PROPERTY_MAX_IDLE_TIME} ms, by default
+ * {@link #DEFAULT_MAX_IDLE_TIME}, are released when a copy of the query is
+ * borrowed or returned, whilst the most recently used copy of each query is
+ * always kept. With a max idle time of -1, all copies are kept until the query
+ * is evicted from the pool.
+ *
+ * If warm-up is enabled, the pool records the database and file system
+ * sources of the queries which are returned to it. The hot sources are written
+ * to {@link #HOT_SOURCES_FILE_NAME} in the data directory when the database
+ * shuts down, and are compiled in the background when the database next
+ * enters multi-user mode, so that the first requests after a restart
+ * do not have to compile them.
  *
  * @author <a href="mailto:adam@evolvedbinary.com">Adam Retter</a>
  */
@@ -68,20 +109,37 @@ public class XQueryPool implements BrokerPoolService {
     public static final String CONFIGURATION_ELEMENT_NAME = "query-pool";
     public static final String MAX_STACK_SIZE_ATTRIBUTE = "max-stack-size";
     public static final String POOL_SIZE_ATTTRIBUTE = "size";
+    public static final String WARM_UP_ATTRIBUTE = "warm-up";
+    public static final String MAX_IDLE_TIME_ATTRIBUTE = "max-idle-time";
 
     public static final String PROPERTY_MAX_STACK_SIZE = "db-connection.query-pool.max-stack-size";
     public static final String PROPERTY_POOL_SIZE = "db-connection.query-pool.size";
+    public static final String PROPERTY_WARM_UP = "db-connection.query-pool.warm-up";
+    public static final String PROPERTY_MAX_IDLE_TIME = "db-connection.query-pool.max-idle-time";
+
+    public static final String HOT_SOURCES_FILE_NAME = "query-pool.hot";
 
     private static final int DEFAULT_MAX_POOL_SIZE = 128;
     private static final int DEFAULT_MAX_QUERY_STACK_SIZE = 64;
+    private static final long DEFAULT_MAX_IDLE_TIME = 300_000;  // ms, -1 keeps all copies
 
     private int maxPoolSize = DEFAULT_MAX_POOL_SIZE;
     private int maxQueryStackSize = DEFAULT_MAX_QUERY_STACK_SIZE;
+    private long maxIdleTime = DEFAULT_MAX_IDLE_TIME;
+    private boolean warmUp = false;
+    private @Nullable Path hotSourcesFile;
 
     /**
      * Source -> Deque of compiled Queries
      */
-    private Cache<Source, Deque<CompiledXQuery>> cache;
+    private Cache<Source, Deque<PooledXQuery>> cache;
+
+    /**
+     * Type and path of Source -> Hot Source, only used if warm-up is enabled
+     */
+    private @Nullable Cache<String, HotSource> hotSources;
+
+    private volatile boolean stopping = false;
 
     @Override
     public void configure(final Configuration configuration) {
@@ -105,7 +163,115 @@ public class XQueryPool implements BrokerPoolService {
                 .maximumSize(maxPoolSize)
                 .build();
 
-        LOG.info("QueryPool: size = {}; maxQueryStackSize = {}", nf.format(maxPoolSize), nf.format(maxQueryStackSize));
+        this.maxIdleTime = configuration.getProperty(PROPERTY_MAX_IDLE_TIME, DEFAULT_MAX_IDLE_TIME);
+        this.warmUp = configuration.getProperty(PROPERTY_WARM_UP, false);
+        final Path dataDir = (Path) configuration.getProperty(BrokerPool.PROPERTY_DATA_DIR);
+        if (warmUp && dataDir != null) {
+            this.hotSourcesFile = dataDir.resolve(HOT_SOURCES_FILE_NAME);
+            this.hotSources = Caffeine.newBuilder()
+                    .maximumSize(maxPoolSize)
+                    .build();
+        } else {
+            this.warmUp = false;
+        }
+
+        LOG.info("QueryPool: size = {}; maxQueryStackSize = {}; maxIdleTime = {}; warmUp = {}", nf.format(maxPoolSize), nf.format(maxQueryStackSize), nf.format(maxIdleTime), warmUp);
+    }
+
+    @Override
+    public void startMultiUser(final BrokerPool brokerPool) {
+        if (!warmUp || !Files.exists(hotSourcesFile)) {
+            return;
+        }
+
+        final List<HotSource> warmUpSources;
+        try {
+            warmUpSources = readHotSources(hotSourcesFile);
+        } catch (final IOException e) {
+            LOG.error("Unable to read XQuery Pool hot sources from: {}: {}", hotSourcesFile.toAbsolutePath(), e.getMessage(), e);
+            return;
+        }
+
+        if (!warmUpSources.isEmpty()) {
+            newInstanceThread(brokerPool, "xquery-pool-warm-up", () -> warmUp(brokerPool, warmUpSources)).start();
+        }
+    }
+
+    @Override
+    public void stopMultiUser(final BrokerPool brokerPool) {
+        stopping = true;
+    }
+
+    @Override
+    public void stopSystem(final DBBroker systemBroker) {
+        if (!warmUp || systemBroker.getBrokerPool().isReadOnly()) {
+            return;
+        }
+
+        final List<HotSource> sources = new ArrayList<>(hotSources.asMap().values());
+        sources.sort(Comparator.comparingLong(HotSource::getHits).reversed());
+        try {
+            writeHotSources(hotSourcesFile, sources);
+        } catch (final IOException e) {
+            LOG.error("Unable to write XQuery Pool hot sources to: {}: {}", hotSourcesFile.toAbsolutePath(), e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Compiles the queries of the hot sources from the previous run
+     * of the database and places them into the pool.
+     *
+     * Queries are compiled as the guest user, so warm-up can never make a
+     * query available which an anonymous request could not have compiled.
+     *
+     * @param brokerPool the database instance
+     * @param warmUpSources the hot sources, in descending order of use
+     */
+    private void warmUp(final BrokerPool brokerPool, final List<HotSource> warmUpSources) {
+        final long start = System.currentTimeMillis();
+        int compiled = 0;
+        try (final DBBroker broker = brokerPool.get(Optional.of(brokerPool.getSecurityManager().getGuestSubject()))) {
+            final XQuery xquery = brokerPool.getXQueryService();
+            for (final HotSource hotSource : warmUpSources) {
+                if (stopping) {
+                    LOG.info("XQuery Pool warm-up aborted as database is shutting down");
+                    return;
+                }
+
+                final Source source = hotSource.resolve(broker);
+                if (source == null || cache.getIfPresent(source) != null) {
+                    continue;
+                }
+
+                final XQueryContext context = new XQueryContext(brokerPool);
+                try {
+                    if (hotSource.moduleLoadPath != null) {
+                        context.setModuleLoadPath(hotSource.moduleLoadPath);
+                    }
+                    for (final String variable : hotSource.variables) {
+                        // placeholders for variables which the caller declares before compilation, e.g. $exist:path
+                        context.declareVariable(variable, Sequence.EMPTY_SEQUENCE);
+                    }
+
+                    final CompiledXQuery compiledXQuery = xquery.compile(context, source);
+
+                    // leave the query in the same state as after it is executed
+                    compiledXQuery.reset();
+                    context.reset();
+
+                    addCompiledXQuery(source, compiledXQuery);
+                    compiled++;
+                } catch (final XPathException | IOException | PermissionDeniedException e) {
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("Unable to warm-up XQuery Pool with: {}: {}", source.pathOrShortIdentifier(), e.getMessage());
+                    }
+                }
+            }
+        } catch (final EXistException e) {
+            LOG.error("Unable to warm-up XQuery Pool: {}", e.getMessage(), e);
+        } finally {
+            LOG.info("XQuery Pool warm-up compiled {} of {} hot queries in {} ms", compiled, warmUpSources.size(), System.currentTimeMillis() - start);
+        }
     }
 
     /**
@@ -119,20 +285,55 @@ public class XQueryPool implements BrokerPoolService {
             return;
         }
 
+        if (warmUp) {
+            recordHotSource(source, compiledXQuery);
+        }
+
+        addCompiledXQuery(source, compiledXQuery);
+    }
+
+    private void addCompiledXQuery(final Source source, final CompiledXQuery compiledXQuery) {
+        final long now = System.currentTimeMillis();
         cache.asMap().compute(source, (key, value) -> {
-            final Deque<CompiledXQuery> deque;
+            final Deque<PooledXQuery> deque;
             if (value != null) {
                 deque = value;
             } else {
                 deque = new ArrayDeque<>(maxQueryStackSize);
             }
 
-            deque.offerFirst(compiledXQuery);
+            deque.offerFirst(new PooledXQuery(compiledXQuery, now));
+            releaseIdle(deque, now, maxIdleTime);
 
             return deque;
         });
     }
 
+    /**
+     * Releases the copies of a query which are surplus to its recent
+     * concurrency, i.e. those at the bottom of the stack which have not
+     * been used for more than {@code maxIdleTime} ms. The most recently
+     * used copy is always kept.
+     *
+     * @param deque the copies of a query, most recently returned first
+     * @param now the current time in ms
+     * @param maxIdleTime the maximum idle time in ms, or -1 to keep all copies
+     *
+     * @return the number of copies which were released
+     */
+    static int releaseIdle(final Deque<PooledXQuery> deque, final long now, final long maxIdleTime) {
+        if (maxIdleTime < 0) {
+            return 0;
+        }
+
+        int released = 0;
+        while (deque.size() > 1 && now - deque.peekLast().returned > maxIdleTime) {
+            deque.pollLast();
+            released++;
+        }
+        return released;
+    }
+
     /**
      * Borrows a compiled XQuery from the XQuery pool.
      *
@@ -155,13 +356,15 @@ public class XQueryPool implements BrokerPoolService {
         final Holder<CompiledXQuery> borrowedCompiledQuery = new Holder<>();
 
         // get (compute by checking validity) the stack of compiled XQuerys for the source
-        final Deque<CompiledXQuery> deque = cache.asMap().computeIfPresent(source, (key, value) -> {
-            final CompiledXQuery firstCompiledXQuery = value.pollFirst();
-            if (firstCompiledXQuery == null) {
+        final Deque<PooledXQuery> deque = cache.asMap().computeIfPresent(source, (key, value) -> {
+            final PooledXQuery first = value.pollFirst();
+            releaseIdle(value, System.currentTimeMillis(), maxIdleTime);
+            if (first == null) {
                 // deque is empty, returning null will remove the entry from the cache
                 return null;
             }
 
+            final CompiledXQuery firstCompiledXQuery = first.compiledXQuery;
             if (!isCompiledQueryValid(firstCompiledXQuery)) {
                 if (LOG.isDebugEnabled()) {
                     LOG.debug("{} is invalid, removing from XQuery Pool...", source.pathOrShortIdentifier());
@@ -218,4 +421,143 @@ public class XQueryPool implements BrokerPoolService {
     public void clear() {
         cache.invalidateAll();
     }
+
+    /**
+     * A compiled XQuery in the pool,
+     * and the time at which it was returned to the pool.
+     */
+    static final class PooledXQuery {
+        final CompiledXQuery compiledXQuery;
+        final long returned;
+
+        PooledXQuery(final CompiledXQuery compiledXQuery, final long returned) {
+            this.compiledXQuery = compiledXQuery;
+            this.returned = returned;
+        }
+    }
+
+    private void recordHotSource(final Source source, final CompiledXQuery compiledXQuery) {
+        final String type;
+        if (source instanceof DBSource) {
+            type = HotSource.TYPE_DB;
+        } else if (source instanceof FileSource) {
+            type = HotSource.TYPE_FILE;
+        } else {
+            // other sources cannot be resolved again after a restart
+            return;
+        }
+
+        final String path = source.path();
+        hotSources.get(type + ' ' + path, key -> {
+            final XQueryContext context = compiledXQuery.getContext();
+            final List<String> variables = new ArrayList<>();
+            for (final QName variable : context.getGlobalVariables().keySet()) {
+                if (variable.getPrefix() != null && !variable.getPrefix().isEmpty()) {
+                    variables.add(variable.getStringValue());
+                }
+            }
+            return new HotSource(type, path, context.getModuleLoadPath(), variables);
+        }).hits.increment();
+    }
+
+    static List<HotSource> readHotSources(final Path file) throws IOException {
+        final List<HotSource> sources = new ArrayList<>();
+        try (final BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final HotSource source = HotSource.parse(line);
+                if (source != null) {
+                    sources.add(source);
+                }
+            }
+        }
+        return sources;
+    }
+
+    static void writeHotSources(final Path file, final List<HotSource> sources) throws IOException {
+        try (final BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (final HotSource source : sources) {
+                writer.write(source.serialize());
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * A frequently used source of a query,
+     * and the static context needed to compile it.
+     *
+     * Serialized as a single line of tab separated fields:
+     * hits, type, path, module load path, and variable names
+     * (space separated).
+     */
+    static final class HotSource {
+        static final String TYPE_DB = "db";
+        static final String TYPE_FILE = "file";
+
+        final String type;
+        final String path;
+        final @Nullable String moduleLoadPath;
+        final List<String> variables;
+        final LongAdder hits = new LongAdder();
+
+        HotSource(final String type, final String path, @Nullable final String moduleLoadPath, final List<String> variables) {
+            this.type = type;
+            this.path = path;
+            this.moduleLoadPath = moduleLoadPath;
+            this.variables = variables;
+        }
+
+        long getHits() {
+            return hits.sum();
+        }
+
+        String serialize() {
+            return getHits() + "\t" + type + '\t' + path + '\t' + (moduleLoadPath == null ? "" : moduleLoadPath) + '\t' + String.join(" ", variables);
+        }
+
+        static @Nullable HotSource parse(final String line) {
+            final String[] fields = line.split("\t", -1);
+            if (fields.length != 5 || !(TYPE_DB.equals(fields[1]) || TYPE_FILE.equals(fields[1]))) {
+                LOG.warn("Ignoring malformed XQuery Pool hot source: {}", line);
+                return null;
+            }
+
+            final List<String> variables = fields[4].isEmpty() ? new ArrayList<>() : Arrays.asList(fields[4].split(" "));
+            final HotSource source = new HotSource(fields[1], fields[2], fields[3].isEmpty() ? null : fields[3], variables);
+            try {
+                source.hits.add(Long.parseLong(fields[0]));
+            } catch (final NumberFormatException e) {
+                LOG.warn("Ignoring malformed XQuery Pool hot source: {}", line);
+                return null;
+            }
+            return source;
+        }
+
+        /**
+         * Resolves the source, if it still exists.
+         *
+         * @param broker the database broker
+         *
+         * @return the source, or null if it no longer exists or cannot be read.
+         */
+        @Nullable Source resolve(final DBBroker broker) {
+            if (TYPE_FILE.equals(type)) {
+                final Path file = Paths.get(path);
+                return Files.isReadable(file) ? new FileSource(file, true) : null;
+            }
+
+            try (final LockedDocument lockedDocument = broker.getXMLResource(XmldbURI.create(path), LockMode.READ_LOCK)) {
+                if (lockedDocument == null || lockedDocument.getDocument().getResourceType() != DocumentImpl.BINARY_FILE) {
+                    return null;
+                }
+                return new DBSource(broker.getBrokerPool(), (BinaryDocument) lockedDocument.getDocument(), true);
+            } catch (final PermissionDeniedException | IllegalArgumentException e) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Unable to resolve XQuery Pool hot source: {}: {}", path, e.getMessage());
+                }
+                return null;
+            }
+        }
+    }
 }
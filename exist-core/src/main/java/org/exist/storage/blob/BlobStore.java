@@ -40,10 +40,12 @@ import org.exist.util.crypto.digest.DigestType;
 import org.exist.util.crypto.digest.MessageDigest;
 
 import javax.annotation.Nullable;
+import java.beans.ConstructorProperties;
 import java.io.Closeable;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Path;
 import java.util.function.Function;
 
@@ -121,6 +123,26 @@ public interface BlobStore extends Closeable {
      */
     @Nullable InputStream get(final Txn transaction, final BlobId blobId) throws IOException;
 
+    /**
+     * Transfer a range of a BLOB from the BLOB Store to a channel.
+     *
+     * Unlike {@link #get(Txn, BlobId)} implementations should avoid
+     * copying the data through the Java heap, e.g. by letting the
+     * operating system transfer the data directly to a file or socket.
+     *
+     * @param transaction the current database transaction.
+     * @param blobId the identifier representing the blob to be transferred.
+     * @param position the offset within the BLOB of the first byte to transfer.
+     * @param count the maximum number of bytes to transfer.
+     * @param target the channel to transfer the data to.
+     *
+     * @return the number of bytes transferred, or -1 if there is no such BLOB.
+     *
+     * @throws IOException if an error occurs whilst transferring the BLOB.
+     */
+    long transferTo(final Txn transaction, final BlobId blobId, final long position, final long count,
+            final WritableByteChannel target) throws IOException;
+
     /**
      * Get the digest of a BLOB in the BLOB store.
      *
@@ -191,4 +213,97 @@ public interface BlobStore extends Closeable {
     void redo(final BlobLoggable blobLoggable) throws LogException;
 
     void undo(final BlobLoggable blobLoggable) throws LogException;
+
+    /**
+     * Get a snapshot of the BLOB Store statistics.
+     *
+     * @return the statistics.
+     */
+    Statistics getStatistics();
+
+    /**
+     * Statistics about the deduplication of the BLOBs
+     * added to the BLOB Store.
+     */
+    class Statistics {
+        private final long addCount;
+        private final long dedupHitCount;
+        private final long bytesAdded;
+        private final long bytesDeduplicated;
+        private final long copyCount;
+
+        /**
+         * @param addCount the number of BLOBs added
+         * @param dedupHitCount the number of added BLOBs which were already present in the store
+         * @param bytesAdded the number of bytes added
+         * @param bytesDeduplicated the number of added bytes which did not need to be stored as they were already present
+         * @param copyCount the number of BLOBs copied
+         */
+        @ConstructorProperties({"addCount", "dedupHitCount", "bytesAdded", "bytesDeduplicated", "copyCount"})
+        public Statistics(final long addCount, final long dedupHitCount, final long bytesAdded,
+                final long bytesDeduplicated, final long copyCount) {
+            this.addCount = addCount;
+            this.dedupHitCount = dedupHitCount;
+            this.bytesAdded = bytesAdded;
+            this.bytesDeduplicated = bytesDeduplicated;
+            this.copyCount = copyCount;
+        }
+
+        /**
+         * Returns the number of BLOBs added to the store.
+         *
+         * @return the number of BLOBs added.
+         */
+        public long getAddCount() {
+            return addCount;
+        }
+
+        /**
+         * Returns the number of BLOBs added to the store whose content
+         * was already present, and so only incremented a reference count.
+         *
+         * @return the number of deduplicated BLOBs.
+         */
+        public long getDedupHitCount() {
+            return dedupHitCount;
+        }
+
+        /**
+         * Returns the ratio of added BLOBs that were deduplicated.
+         *
+         * @return the dedup hit rate, or {@code 1.0} if no BLOBs were added.
+         */
+        public double getDedupHitRate() {
+            return addCount == 0 ? 1.0 : (double) dedupHitCount / addCount;
+        }
+
+        /**
+         * Returns the number of bytes added to the store.
+         *
+         * @return the number of bytes added.
+         */
+        public long getBytesAdded() {
+            return bytesAdded;
+        }
+
+        /**
+         * Returns the number of added bytes which were not stored again
+         * as their content was already present.
+         *
+         * @return the number of deduplicated bytes.
+         */
+        public long getBytesDeduplicated() {
+            return bytesDeduplicated;
+        }
+
+        /**
+         * Returns the number of BLOBs copied within the store, a copy
+         * only increments a reference count.
+         *
+         * @return the number of BLOBs copied.
+         */
+        public long getCopyCount() {
+            return copyCount;
+        }
+    }
 }
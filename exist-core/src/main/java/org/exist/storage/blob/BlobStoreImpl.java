@@ -61,14 +61,20 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Function;
 
 import static com.evolvedbinary.j8fu.Try.TaggedTryUnchecked;
@@ -262,6 +268,27 @@ public class BlobStoreImpl implements BlobStore {
      */
     private final BlockingQueue<BlobVacuum.Request> vacuumQueue = new PriorityBlockingQueue<>();
 
+    /**
+     * Ranges of at least this size are transferred to channels,
+     * which the operating system cannot transfer to directly,
+     * from memory mapped regions of the blob file.
+     */
+    static final long MIN_MAPPED_TRANSFER = 256 * 1024;
+
+    /**
+     * The maximum size of a single mapped region.
+     */
+    static final long MAX_MAPPED_TRANSFER = 16 * 1024 * 1024;
+
+    /**
+     * Deduplication statistics.
+     */
+    private final LongAdder addCount = new LongAdder();
+    private final LongAdder dedupHitCount = new LongAdder();
+    private final LongAdder bytesAdded = new LongAdder();
+    private final LongAdder bytesDeduplicated = new LongAdder();
+    private final LongAdder copyCount = new LongAdder();
+
     private final Database database;
     private final Path persistentFile;
     private final Path blobDir;
@@ -733,6 +760,9 @@ public class BlobStoreImpl implements BlobStore {
                     // update memory with the new value
                     blobReference.count.set(1);
 
+                    addCount.increment();
+                    bytesAdded.add(staged._2);
+
                     // done!
                     return Tuple(blobId, staged._2);
                 }
@@ -779,6 +809,11 @@ public class BlobStoreImpl implements BlobStore {
                     // update memory with the new value, and release other spinning threads
                     blobReference.count.set(newCount);
 
+                    addCount.increment();
+                    bytesAdded.add(staged._2);
+                    dedupHitCount.increment();
+                    bytesDeduplicated.add(staged._2);
+
                     // done!
                     return Tuple(blobId, staged._2);
                 }
@@ -845,6 +880,8 @@ public class BlobStoreImpl implements BlobStore {
                     // update memory with the new value, and release other spinning threads
                     blobReference.count.set(newCount);
 
+                    copyCount.increment();
+
                     // done!
                     return blobId;
                 }
@@ -872,6 +909,60 @@ public class BlobStoreImpl implements BlobStore {
         }
     }
 
+    @Override
+    public long transferTo(final Txn transaction, final BlobId blobId, final long position, final long count,
+            final WritableByteChannel target) throws IOException {
+        final BlobFileLease blobFileLease = readLeaseBlobFile(transaction, blobId);
+        if (blobFileLease == null) {
+            return -1;
+        }
+
+        try (final FileChannel blobChannel = FileChannel.open(blobFileLease.path, READ)) {
+            final long size = blobChannel.size();
+            if (position >= size) {
+                return 0;
+            }
+            final long end = count > size - position ? size : position + count;
+
+            long pos = position;
+            if (target instanceof FileChannel || target instanceof SelectableChannel
+                    || end - position < MIN_MAPPED_TRANSFER) {
+                // NOTE: for files and sockets the operating system transfers directly from its page cache
+                while (pos < end) {
+                    final long transferred = blobChannel.transferTo(pos, end - pos, target);
+                    if (transferred <= 0) {
+                        break;
+                    }
+                    pos += transferred;
+                }
+            } else {
+                // let the target write directly from the mapped blob file, rather than copying through the heap
+                while (pos < end) {
+                    final MappedByteBuffer region = blobChannel.map(FileChannel.MapMode.READ_ONLY, pos,
+                            Math.min(end - pos, MAX_MAPPED_TRANSFER));
+                    while (region.hasRemaining()) {
+                        target.write(region);
+                    }
+                    pos += region.capacity();
+                }
+            }
+            return pos - position;
+        } finally {
+            blobFileLease.release.run();  // MUST release the read lease!
+        }
+    }
+
+    @Override
+    public Statistics getStatistics() {
+        return new Statistics(
+                addCount.sum(),
+                dedupHitCount.sum(),
+                bytesAdded.sum(),
+                bytesDeduplicated.sum(),
+                copyCount.sum()
+        );
+    }
+
     @Override
     @Nullable public MessageDigest getDigest(final Txn transaction, final BlobId blobId, final DigestType digestType)
             throws IOException {
@@ -1099,19 +1190,35 @@ public class BlobStoreImpl implements BlobStore {
 
         // backup the blob files
         for (final Path blobFile : FileUtils.list(blobDir, Files::isRegularFile)) {
-            try {
-                final OutputStream os = backup.newEntry(fileName(blobDir) + '/' + fileName(blobFile));
-                Files.copy(persistentFile, os);
-            } finally {
-                backup.closeEntry();
-            }
+            backupBlobFile(backup, fileName(blobDir) + '/' + fileName(blobFile), blobFile);
         }
 
         // backup the staging area
         for (final Path blobFile : FileUtils.list(stagingDir, Files::isRegularFile)) {
+            backupBlobFile(backup, fileName(blobDir) + '/' + fileName(stagingDir) + '/' + fileName(blobFile), blobFile);
+        }
+    }
+
+    /**
+     * Copies a blob file to the backup.
+     *
+     * The blob store may be in use by an online backup, so the
+     * file is skipped if it was removed after the directory was listed.
+     */
+    private void backupBlobFile(final RawDataBackup backup, final String entryName, final Path blobFile) throws IOException {
+        final InputStream is;
+        try {
+            is = Files.newInputStream(blobFile);
+        } catch (final NoSuchFileException e) {
+            LOG.debug("Blob file: {} was removed during the backup", blobFile);
+            return;
+        }
+
+        try (is) {
+            // NOTE: do not use try-with-resources here, closing the OutputStream will close the entire backup
             try {
-                final OutputStream os = backup.newEntry(fileName(blobDir) + '/' + fileName(stagingDir) + '/' + fileName(blobFile));
-                Files.copy(persistentFile, os);
+                final OutputStream os = backup.newEntry(entryName);
+                is.transferTo(os);
             } finally {
                 backup.closeEntry();
             }
@@ -82,9 +82,11 @@ import org.exist.storage.DefaultCacheManager;
 import org.exist.storage.NativeBroker;
 import org.exist.storage.cache.*;
 import org.exist.storage.journal.*;
+import org.exist.storage.lock.ManagedLock;
 import org.exist.storage.txn.Txn;
 import org.exist.util.ByteConversion;
 import org.exist.util.FileUtils;
+import org.exist.util.LockException;
 import org.exist.util.Lockable;
 import org.exist.xquery.TerminatedException;
 
@@ -92,6 +94,7 @@ import java.io.*;
 import java.nio.file.Path;
 import java.text.NumberFormat;
 import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.stream.Collectors;
 
 /**
@@ -223,9 +226,27 @@ public class BTree extends Paged implements Lockable {
         return null;
     }
 
+    /**
+     * Holds the lock on the file whilst reading a chunk, so that
+     * an online backup never copies a page which is half written.
+     */
+    @Override
+    protected int readBackupChunk(final long position, final byte[] buf) throws IOException {
+        final String lockName = getLockName();
+        if (lockName == null) {
+            return super.readBackupChunk(position, buf);
+        }
+
+        try (final ManagedLock<ReentrantReadWriteLock> btreeLock = pool.getLockManager().acquireBtreeReadLock(lockName)) {
+            return super.readBackupChunk(position, buf);
+        } catch (final LockException e) {
+            throw new IOException("Unable to acquire lock on: " + FileUtils.fileName(getFile()), e);
+        }
+    }
+
     protected void initCache() {
-        this.cache = new BTreeCache<>(FileUtils.fileName(getFile()), cacheManager.getDefaultInitialSize(), 1.5,
-            0, Cache.CacheType.BTREE);
+        this.cache = cacheManager.newBTreeCache(FileUtils.fileName(getFile()), cacheManager.getDefaultInitialSize(), 1.5,
+            0);
         cacheManager.registerCache(cache);
     }
 
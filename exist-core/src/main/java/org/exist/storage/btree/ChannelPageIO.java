@@ -0,0 +1,79 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.storage.btree;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Page I/O using positional reads and writes on a {@link FileChannel}.
+ *
+ * As positional transfers do not modify the channel's position,
+ * several threads may read pages from the same file concurrently.
+ */
+class ChannelPageIO implements PageIO {
+
+    protected final FileChannel channel;
+
+    ChannelPageIO(final FileChannel channel) {
+        this.channel = channel;
+    }
+
+    @Override
+    public int read(final long position, final byte[] buf, final int off, final int len) throws IOException {
+        final ByteBuffer dst = ByteBuffer.wrap(buf, off, len);
+        int total = 0;
+        while (dst.hasRemaining()) {
+            final int read = channel.read(dst, position + total);
+            if (read < 0) {
+                return total == 0 ? -1 : total;
+            }
+            total += read;
+        }
+        return total;
+    }
+
+    @Override
+    public void write(final long position, final byte[] buf, final int off, final int len) throws IOException {
+        final ByteBuffer src = ByteBuffer.wrap(buf, off, len);
+        long pos = position;
+        while (src.hasRemaining()) {
+            pos += channel.write(src, pos);
+        }
+    }
+
+    @Override
+    public long size() throws IOException {
+        return channel.size();
+    }
+
+    @Override
+    public FileChannel getChannel() {
+        return channel;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.storage.btree;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Page I/O which serves reads from read-only memory-mapped
+ * segments of the file, and writes through positional
+ * writes on the {@link FileChannel}.
+ *
+ * The file is mapped lazily in fixed size segments. Only segments
+ * which lie completely within the file at the time they are first
+ * needed are mapped, reads from the (growing) tail of the file fall
+ * back to positional channel reads.
+ *
+ * Writes made through the channel are visible through the mappings
+ * as both share the operating system's page cache.
+ */
+class MappedPageIO extends ChannelPageIO {
+
+    /**
+     * Size of a mapped segment, 64 MB.
+     */
+    static final int SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    private static final int MAX_SEGMENTS = Integer.MAX_VALUE / 2;
+
+    private volatile AtomicReferenceArray<MappedByteBuffer> segments = new AtomicReferenceArray<>(16);
+
+    MappedPageIO(final FileChannel channel) {
+        super(channel);
+    }
+
+    @Override
+    public int read(final long position, final byte[] buf, final int off, final int len) throws IOException {
+        final long segmentIdx = position / SEGMENT_SIZE;
+        final int segmentOffset = (int) (position % SEGMENT_SIZE);
+        if (segmentIdx >= MAX_SEGMENTS || segmentOffset + len > SEGMENT_SIZE) {
+            // spans two segments
+            return super.read(position, buf, off, len);
+        }
+
+        final MappedByteBuffer segment = getSegment((int) segmentIdx);
+        if (segment == null) {
+            return super.read(position, buf, off, len);
+        }
+
+        // duplicate so that concurrent readers do not share a position
+        segment.duplicate().position(segmentOffset).get(buf, off, len);
+        return len;
+    }
+
+    private MappedByteBuffer getSegment(final int segmentIdx) throws IOException {
+        AtomicReferenceArray<MappedByteBuffer> current = segments;
+        if (segmentIdx < current.length()) {
+            final MappedByteBuffer segment = current.get(segmentIdx);
+            if (segment != null) {
+                return segment;
+            }
+        }
+
+        final long segmentStart = (long) segmentIdx * SEGMENT_SIZE;
+        if (segmentStart + SEGMENT_SIZE > channel.size()) {
+            // not yet completely within the file
+            return null;
+        }
+
+        synchronized (this) {
+            current = segments;
+            if (segmentIdx >= current.length()) {
+                final AtomicReferenceArray<MappedByteBuffer> grown = new AtomicReferenceArray<>(Math.max(segmentIdx + 1, current.length() * 2));
+                for (int i = 0; i < current.length(); i++) {
+                    grown.set(i, current.get(i));
+                }
+                segments = grown;
+                current = grown;
+            }
+
+            MappedByteBuffer segment = current.get(segmentIdx);
+            if (segment == null) {
+                segment = channel.map(FileChannel.MapMode.READ_ONLY, segmentStart, SEGMENT_SIZE);
+                current.set(segmentIdx, segment);
+            }
+            return segment;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        // mappings are released when they are garbage collected
+        segments = new AtomicReferenceArray<>(0);
+        super.close();
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.storage.btree;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/**
+ * Low-level page I/O backend used by {@link Paged} to transfer
+ * pages between a database file and memory.
+ *
+ * Implementations are free to serialise access internally (as the
+ * {@link Mode#RANDOM_ACCESS_FILE} backend does), or to allow
+ * concurrent reads by using positional I/O.
+ */
+public interface PageIO extends AutoCloseable {
+
+    /**
+     * The available page I/O backends.
+     */
+    enum Mode {
+        /**
+         * Seek and read/write through a single {@link java.io.RandomAccessFile},
+         * all access is serialised.
+         */
+        RANDOM_ACCESS_FILE("raf"),
+
+        /**
+         * Positional reads and writes through a {@link FileChannel},
+         * reads of different pages may happen in parallel.
+         */
+        CHANNEL("channel"),
+
+        /**
+         * As {@link #CHANNEL}, but reads are served from memory-mapped
+         * regions of the file where possible. Best suited to read-mostly files.
+         */
+        MAPPED("mmap");
+
+        private final String configValue;
+
+        Mode(final String configValue) {
+            this.configValue = configValue;
+        }
+
+        public String getConfigValue() {
+            return configValue;
+        }
+
+        /**
+         * Get the Mode from its configuration value.
+         *
+         * @param configValue the value as used in conf.xml, e.g. "channel".
+         *
+         * @return the mode, or null if the value is unknown.
+         */
+        public static @Nullable Mode fromConfigValue(final String configValue) {
+            for (final Mode mode : values()) {
+                if (mode.configValue.equalsIgnoreCase(configValue)) {
+                    return mode;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Read up to {@code len} bytes from the file at {@code position}.
+     *
+     * If the end of the file is reached before {@code len} bytes have
+     * been read, the remaining bytes of {@code buf} are left untouched.
+     *
+     * @param position the position in the file to start reading from.
+     * @param buf the buffer to read into.
+     * @param off the offset in {@code buf} to start writing at.
+     * @param len the maximum number of bytes to read.
+     *
+     * @return the number of bytes read, or -1 if {@code position} is beyond the end of the file.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    int read(long position, byte[] buf, int off, int len) throws IOException;
+
+    /**
+     * Write {@code len} bytes to the file at {@code position}.
+     *
+     * @param position the position in the file to start writing at.
+     * @param buf the buffer to write from.
+     * @param off the offset in {@code buf} to start reading from.
+     * @param len the number of bytes to write.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    void write(long position, byte[] buf, int off, int len) throws IOException;
+
+    /**
+     * Get the current size of the file.
+     *
+     * @return the size of the file in bytes.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    long size() throws IOException;
+
+    /**
+     * Get the underlying file channel.
+     *
+     * @return the file channel.
+     */
+    FileChannel getChannel();
+
+    @Override
+    void close() throws IOException;
+}
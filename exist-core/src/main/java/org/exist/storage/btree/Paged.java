@@ -129,18 +129,25 @@ public abstract class Paged implements AutoCloseable {
 
     protected static int PAGE_SIZE = 4096;
 
+    /**
+     * The number of pages read at once by {@link #backupToStream(OutputStream)}.
+     */
+    private static final int BACKUP_CHUNK_PAGES = 256;
+
     protected final short fileVersion;
     private final FileHeader fileHeader;
     private final byte[] tempPageData;
     private final byte[] tempHeaderData;
 
-    private RandomAccessFile raf;
+    private final PageIO.Mode pageIOMode;
+    private PageIO pageIO;
     private Path file;
     private boolean readOnly = false;
     private boolean fileIsNew = false;
 	
     public Paged(final BrokerPool pool, final short fileVersion) {
         this.fileVersion = fileVersion;
+        this.pageIOMode = pool.getPageIOMode();
         this.fileHeader = createFileHeader(pool.getPageSize());
         this.tempPageData = new byte[fileHeader.pageSize];
         this.tempHeaderData = new byte[fileHeader.pageHeaderSize];
@@ -166,7 +173,7 @@ public abstract class Paged implements AutoCloseable {
     @Override
     public void close() throws DBException {
         try {
-            raf.close();
+            pageIO.close();
         } catch (final IOException e) {
             throw new DBException("An error occurred whilst closing the database file '"
                     + file == null ? "null" : FileUtils.fileName(file) + "': " + e.getMessage());
@@ -237,17 +244,42 @@ public abstract class Paged implements AutoCloseable {
     /**
      * Backup the entire contents of the underlying file to 
      * an output stream.
+     *
+     * The file is read in chunks of whole pages, see {@link #readBackupChunk(long, byte[])}.
      * 
      * @param os the output stream
      * @throws IOException if an I/O error occurs
      */
     public void backupToStream(final OutputStream os) throws IOException {
-        raf.seek(0);
-        final byte[] buf = new byte[4096];
+        final byte[] buf = new byte[BACKUP_CHUNK_PAGES * fileHeader.getPageSize()];
+        long position = 0;
         int len;
-        while ((len = raf.read(buf)) > 0) {
+        while ((len = readBackupChunk(position, buf)) > 0) {
             os.write(buf, 0, len);
+            position += len;
+        }
+    }
+
+    /**
+     * Reads the next chunk of the file for {@link #backupToStream(OutputStream)}.
+     *
+     * The buffer is filled completely unless the end of the file is reached,
+     * so that a chunk always ends on a page boundary.
+     *
+     * @param position the position in the file to read from
+     * @param buf the buffer to read into
+     *
+     * @return the number of bytes read, or 0 at the end of the file
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    protected int readBackupChunk(final long position, final byte[] buf) throws IOException {
+        int off = 0;
+        int len;
+        while (off < buf.length && (len = pageIO.read(position + off, buf, off, buf.length - off)) > 0) {
+            off += len;
         }
+        return off;
     }
 
     /**
@@ -268,6 +300,15 @@ public abstract class Paged implements AutoCloseable {
         return fileHeader;
     }
 
+    /**
+     * Get the page I/O backend used for this Paged.
+     *
+     * @return the page I/O backend
+     */
+    public PageIO.Mode getPageIOMode() {
+        return pageIOMode;
+    }
+
     protected final Page getFreePage() throws IOException {
         return getFreePage(true);
     }
@@ -398,6 +439,7 @@ public abstract class Paged implements AutoCloseable {
         this.file = file;
         fileIsNew = !Files.exists(file);
         try {
+            RandomAccessFile raf;
             if ((!Files.exists(file)) || Files.isWritable(file)) {
                 try {
                     raf = new RandomAccessFile(file.toFile(), "rw");
@@ -417,11 +459,26 @@ public abstract class Paged implements AutoCloseable {
                 readOnly = true;
                 raf = new RandomAccessFile(file.toFile(), "r");
             }
+            pageIO = createPageIO(raf);
         } catch (final IOException e) {
             LOG.warn("An exception occurred while opening database file {}: {}", file.toAbsolutePath().toString(), e.getMessage(), e);
         }
     }
 
+    private PageIO createPageIO(final RandomAccessFile raf) {
+        switch (pageIOMode) {
+            case CHANNEL:
+                return new ChannelPageIO(raf.getChannel());
+
+            case MAPPED:
+                return new MappedPageIO(raf.getChannel());
+
+            case RANDOM_ACCESS_FILE:
+            default:
+                return new RandomAccessFilePageIO(raf);
+        }
+    }
+
     /**
      * Unlinks a set of pages starting at the specified page.
      *
@@ -711,8 +768,7 @@ public abstract class Paged implements AutoCloseable {
         }
 
         public final synchronized void read() throws IOException {
-            raf.seek(0);
-            raf.read(buf);
+            pageIO.read(0, buf, 0, buf.length);
             read(buf);
             calculateWorkSize();
             dirty = false;
@@ -848,9 +904,8 @@ public abstract class Paged implements AutoCloseable {
         }
 
         public final synchronized void write() throws IOException {
-            raf.seek(0);
             write(buf);
-            raf.write(buf);
+            pageIO.write(0, buf, 0, buf.length);
             dirty = false;
         }
     }
@@ -944,16 +999,15 @@ public abstract class Paged implements AutoCloseable {
 
         public byte[] read() throws IOException {
             try {
-                if (raf.getFilePointer() != offset) {
-                    raf.seek(offset);
-                }
-                Arrays.fill(tempHeaderData, (byte)0);
-                raf.read(tempHeaderData);
+                // positional backends may be read concurrently, so they cannot share the header buffer
+                final byte[] headerData = pageIOMode == PageIO.Mode.RANDOM_ACCESS_FILE ? tempHeaderData : new byte[tempHeaderData.length];
+                Arrays.fill(headerData, (byte)0);
+                pageIO.read(offset, headerData, 0, headerData.length);
                 // Read in the header
-                header.read(tempHeaderData, 0);
+                header.read(headerData, 0);
                 // Read the working data
                 final byte[] workData = new byte[header.dataLen];
-                raf.read(workData);
+                pageIO.read(offset + headerData.length, workData, 0, workData.length);
                 return workData;
             } catch(final Exception e) {
                 LOG.warn("error while reading page: {}", getPageInfo(), e);
@@ -971,25 +1025,25 @@ public abstract class Paged implements AutoCloseable {
         }
 
         private final void write(final byte[] data) throws IOException {
-            if(data == null) {
-                // Removed page: fill with 0
-                Arrays.fill(tempPageData, (byte)0);
-                header.setLsn(Lsn.LSN_INVALID);
-            }
-            // Write out the header
-            header.write(tempPageData, 0);
-            header.dirty = false;
-            if (data != null) {
-                if (data.length > fileHeader.workSize) {
-                    throw new IOException("page: " + getPageInfo() + ": data length too large: " + data.length);
-                } else {
-                    System.arraycopy(data, 0, tempPageData, fileHeader.pageHeaderSize, data.length);
+            // with shared reads, readers may concurrently write out the dirty pages they evict from a cache
+            synchronized (tempPageData) {
+                if (data == null) {
+                    // Removed page: fill with 0
+                    Arrays.fill(tempPageData, (byte) 0);
+                    header.setLsn(Lsn.LSN_INVALID);
                 }
+                // Write out the header
+                header.write(tempPageData, 0);
+                header.dirty = false;
+                if (data != null) {
+                    if (data.length > fileHeader.workSize) {
+                        throw new IOException("page: " + getPageInfo() + ": data length too large: " + data.length);
+                    } else {
+                        System.arraycopy(data, 0, tempPageData, fileHeader.pageHeaderSize, data.length);
+                    }
+                }
+                pageIO.write(offset, tempPageData, 0, tempPageData.length);
             }
-            if (raf.getFilePointer() != offset) {
-                raf.seek(offset);
-            }
-            raf.write(tempPageData);
         }
 
         @Override
@@ -1009,11 +1063,8 @@ public abstract class Paged implements AutoCloseable {
         }
 
         public void dumpPage() throws IOException {
-            if (raf.getFilePointer() != offset) {
-                raf.seek(offset);
-            }
             final byte[] data = new byte[fileHeader.pageSize];
-            raf.read(data);
+            pageIO.read(offset, data, 0, data.length);
             LOG.debug("Contents of page {}: {}", pageNum, hexDump(data));
         }
     }
@@ -0,0 +1,68 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.storage.cache;
+
+import javax.annotation.Nullable;
+
+/**
+ * The replacement policies available for the page caches
+ * of the paged database files.
+ */
+public enum CachePolicy {
+
+    /**
+     * {@link LRUCache} for data pages and {@link BTreeCache} for
+     * B+-tree pages.
+     */
+    LRU("lru"),
+
+    /**
+     * {@link TwoQueueCache}, a lock-striped and scan resistant cache.
+     */
+    TWO_QUEUE("2q");
+
+    private final String configValue;
+
+    CachePolicy(final String configValue) {
+        this.configValue = configValue;
+    }
+
+    public String getConfigValue() {
+        return configValue;
+    }
+
+    /**
+     * Get the CachePolicy from its configuration value.
+     *
+     * @param configValue the value as used in conf.xml, e.g. "2q".
+     *
+     * @return the policy, or null if the value is unknown.
+     */
+    public static @Nullable CachePolicy fromConfigValue(final String configValue) {
+        for (final CachePolicy policy : values()) {
+            if (policy.configValue.equalsIgnoreCase(configValue)) {
+                return policy;
+            }
+        }
+        return null;
+    }
+}
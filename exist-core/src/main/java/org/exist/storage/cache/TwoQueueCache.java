@@ -0,0 +1,498 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.storage.cache;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.exist.storage.CacheManager;
+import org.exist.util.hashtable.SequencedLongHashMap;
+
+import java.util.Iterator;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A scan resistant cache based on the 2Q replacement policy
+ * (Johnson and Shasha, "2Q: A Low Overhead High Performance Buffer
+ * Management Replacement Algorithm", VLDB 1994).
+ *
+ * Items seen for the first time enter a small FIFO queue (A1in). When
+ * they are evicted from there, only their key is remembered in a ghost
+ * queue (A1out). Only items which are referenced again whilst their key
+ * is in the ghost queue are promoted into the main LRU queue (Am). A
+ * single sequential scan therefore only ever cycles through A1in, and
+ * cannot flush the hot set held in Am.
+ *
+ * When evicting from Am, pages for which {@link BTreeCacheable#isInnerPage()}
+ * returns true are kept in preference to leaf pages, as in {@link BTreeCache}.
+ *
+ * The cache is split into a fixed number of independently locked segments,
+ * selected by the hash of the item's key, so that concurrent lookups on
+ * different pages do not contend on a single lock. The overall capacity is
+ * divided evenly between the segments.
+ *
+ * @param <T> The type that implements {@link Cacheable}
+ */
+@ThreadSafe
+public class TwoQueueCache<T extends Cacheable> implements Cache<T> {
+
+    private final static Logger LOG = LogManager.getLogger(TwoQueueCache.class);
+
+    /**
+     * The fraction of a segment's capacity used for A1in.
+     */
+    static final double IN_RATIO = 0.25;
+
+    /**
+     * The number of keys remembered in A1out, as a fraction of a segment's capacity.
+     */
+    static final double OUT_RATIO = 0.5;
+
+    /**
+     * The minimum capacity of a segment, limits the number of segments for small caches.
+     */
+    static final int MIN_SEGMENT_SIZE = 16;
+
+    private final static Object GHOST = new Object();
+
+    private final String name;
+    private final double growthFactor;
+    private final CacheType type;
+    @GuardedBy("accounting") private final Accounting accounting;
+    private final Segment<T>[] segments;
+    private final int segmentMask;
+    private volatile int size;
+    private int hitsOld = -1;
+    private volatile CacheManager cacheManager = null;
+
+    /**
+     * @param name the name of the cache
+     * @param size the initial capacity of the cache in pages
+     * @param growthFactor the factor by which the cache may grow
+     * @param growthThreshold the thrashing threshold above which the cache asks to grow
+     * @param type the type of the cache
+     * @param concurrencyLevel the maximum number of segments, rounded down to a power of two
+     */
+    @SuppressWarnings("unchecked")
+    public TwoQueueCache(final String name, final int size, final double growthFactor, final double growthThreshold,
+            final CacheType type, final int concurrencyLevel) {
+        this.name = name;
+        this.size = size;
+        this.growthFactor = growthFactor;
+        this.type = type;
+        this.accounting = new Accounting(growthThreshold);
+        this.accounting.setTotalSize(size);
+
+        final int maxSegments = Math.max(1, Math.min(concurrencyLevel, size / MIN_SEGMENT_SIZE));
+        final int segmentCount = Integer.highestOneBit(maxSegments);
+        this.segments = new Segment[segmentCount];
+        this.segmentMask = segmentCount - 1;
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment<>(segmentCapacity(size, segmentCount, i));
+        }
+    }
+
+    private static int segmentCapacity(final int size, final int segmentCount, final int segmentIdx) {
+        final int capacity = size / segmentCount;
+        // distribute the remainder over the first segments
+        return Math.max(1, segmentIdx < size % segmentCount ? capacity + 1 : capacity);
+    }
+
+    private Segment<T> segmentFor(final long key) {
+        int h = (int) (key ^ (key >>> 32));
+        h *= 0x9E3779B9;
+        return segments[(h ^ (h >>> 16)) & segmentMask];
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public CacheType getType() {
+        return type;
+    }
+
+    @Override
+    public void add(final T item) {
+        add(item, 1);
+    }
+
+    @Override
+    public void add(final T item, final int initialRefCount) {
+        final Segment<T> segment = segmentFor(item.getKey());
+        final boolean replaced;
+        segment.lock.lock();
+        try {
+            replaced = segment.add(item);
+        } finally {
+            segment.lock.unlock();
+        }
+
+        // NOTE: must not be called whilst holding a segment lock, as a resize locks all segments
+        if (replaced) {
+            replacedPage(item);
+        }
+    }
+
+    private void replacedPage(final T item) {
+        final boolean resizeNeeded;
+        synchronized (accounting) {
+            accounting.replacedPage(item);
+            resizeNeeded = growthFactor > 1.0 && accounting.resizeNeeded();
+        }
+
+        final CacheManager cacheManager = this.cacheManager;
+        if (resizeNeeded && cacheManager != null) {
+            cacheManager.requestMem(this);
+        }
+    }
+
+    @Override
+    public T get(final T item) {
+        return get(item.getKey());
+    }
+
+    @Override
+    public T get(final long key) {
+        final Segment<T> segment = segmentFor(key);
+        segment.lock.lock();
+        try {
+            return segment.get(key);
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    @Override
+    public void remove(final T item) {
+        final Segment<T> segment = segmentFor(item.getKey());
+        segment.lock.lock();
+        try {
+            segment.remove(item.getKey());
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean hasDirtyItems() {
+        for (final Segment<T> segment : segments) {
+            segment.lock.lock();
+            try {
+                if (segment.hasDirtyItems()) {
+                    return true;
+                }
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean flush() {
+        boolean flushed = false;
+        for (final Segment<T> segment : segments) {
+            segment.lock.lock();
+            try {
+                flushed |= segment.flush();
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return flushed;
+    }
+
+    @Override
+    public int getBuffers() {
+        return size;
+    }
+
+    @Override
+    public double getGrowthFactor() {
+        return growthFactor;
+    }
+
+    @Override
+    public void resize(final int newSize) {
+        for (int i = 0; i < segments.length; i++) {
+            final Segment<T> segment = segments[i];
+            segment.lock.lock();
+            try {
+                segment.setCapacity(segmentCapacity(newSize, segments.length, i));
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        this.size = newSize;
+        synchronized (accounting) {
+            accounting.reset();
+            accounting.setTotalSize(newSize);
+        }
+    }
+
+    @Override
+    public void setCacheManager(final CacheManager manager) {
+        this.cacheManager = manager;
+    }
+
+    @Override
+    public int getUsedBuffers() {
+        int used = 0;
+        for (final Segment<T> segment : segments) {
+            segment.lock.lock();
+            try {
+                used += segment.in.size() + segment.main.size();
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return used;
+    }
+
+    @Override
+    public int getHits() {
+        int hits = 0;
+        for (final Segment<T> segment : segments) {
+            hits += segment.hits;
+        }
+        return hits;
+    }
+
+    @Override
+    public int getFails() {
+        int misses = 0;
+        for (final Segment<T> segment : segments) {
+            misses += segment.misses;
+        }
+        return misses;
+    }
+
+    public int getThrashing() {
+        synchronized (accounting) {
+            return accounting.getThrashing();
+        }
+    }
+
+    @Override
+    public int getLoad() {
+        final int hits = getHits();
+        if (hitsOld == 0) {
+            hitsOld = hits;
+            return Integer.MAX_VALUE;
+        }
+        final int load = hits - hitsOld;
+        hitsOld = hits;
+        return load;
+    }
+
+    /**
+     * A segment of the cache, all access must be made whilst holding {@link #lock}.
+     */
+    private static final class Segment<T extends Cacheable> {
+        final ReentrantLock lock = new ReentrantLock();
+
+        /**
+         * A1in, FIFO of items seen once.
+         */
+        final SequencedLongHashMap<T> in;
+
+        /**
+         * Am, LRU of items which have been re-referenced.
+         */
+        final SequencedLongHashMap<T> main;
+
+        /**
+         * A1out, FIFO of the keys of items recently evicted from A1in.
+         */
+        final SequencedLongHashMap<Object> out;
+
+        int capacity;
+        int inCapacity;
+        int outCapacity;
+
+        // written under lock, read without
+        volatile int hits;
+        volatile int misses;
+
+        Segment(final int capacity) {
+            calculateCapacities(capacity);
+            this.in = new SequencedLongHashMap<>(Math.max(16, inCapacity * 2));
+            this.main = new SequencedLongHashMap<>(Math.max(16, capacity * 2));
+            this.out = new SequencedLongHashMap<>(Math.max(16, outCapacity * 2));
+        }
+
+        private void calculateCapacities(final int capacity) {
+            this.capacity = capacity;
+            this.inCapacity = Math.max(1, (int) (capacity * IN_RATIO));
+            this.outCapacity = Math.max(1, (int) (capacity * OUT_RATIO));
+        }
+
+        void setCapacity(final int capacity) {
+            calculateCapacities(capacity);
+
+            // shrink
+            while (in.size() + main.size() > capacity) {
+                if (!reclaim(Long.MIN_VALUE)) {
+                    break;
+                }
+            }
+            while (out.size() > outCapacity) {
+                out.removeFirst();
+            }
+        }
+
+        T get(final long key) {
+            T item = main.get(key);
+            if (item == null) {
+                item = in.get(key);
+            }
+            if (item == null) {
+                misses++;
+            } else {
+                hits++;
+            }
+            return item;
+        }
+
+        /**
+         * @return true if an item was replaced to make room for the new item
+         */
+        boolean add(final T item) {
+            final long key = item.getKey();
+            if (main.get(key) != null) {
+                // re-reference in Am: move to the most recently used position
+                main.put(key, item);
+                return false;
+            }
+
+            final T inItem = in.get(key);
+            if (inItem != null) {
+                // correlated re-reference in A1in: leave its position unchanged
+                if (inItem != item) {
+                    in.put(key, item);
+                }
+                return false;
+            }
+
+            boolean replaced = false;
+            if (in.size() + main.size() >= capacity) {
+                replaced = reclaim(key);
+                if (!replaced && LOG.isDebugEnabled()) {
+                    LOG.debug("Unable to remove entry, cache segment will exceed its capacity of {}", capacity);
+                }
+            }
+
+            if (out.remove(key) != null) {
+                // seen recently whilst in A1in, so it is hot
+                main.put(key, item);
+            } else {
+                in.put(key, item);
+            }
+            return replaced;
+        }
+
+        void remove(final long key) {
+            if (in.remove(key) == null) {
+                main.remove(key);
+            }
+        }
+
+        /**
+         * Evict one item to make room for the item with the key {@code newKey}.
+         *
+         * @return true if an item was evicted
+         */
+        private boolean reclaim(final long newKey) {
+            if (in.size() > inCapacity || main.size() == 0) {
+                final T victim = evict(in, newKey, false);
+                if (victim != null) {
+                    out.put(victim.getKey(), GHOST);
+                    if (out.size() > outCapacity) {
+                        out.removeFirst();
+                    }
+                    return true;
+                }
+            }
+
+            // prefer to keep inner btree pages
+            if (evict(main, newKey, true) != null || evict(main, newKey, false) != null) {
+                return true;
+            }
+
+            return evict(in, newKey, false) != null;
+        }
+
+        private T evict(final SequencedLongHashMap<T> queue, final long newKey, final boolean keepInnerPages) {
+            T victim = null;
+            final Iterator<Long2ObjectMap.Entry<T>> iterator = queue.fastEntrySetIterator();
+            while (iterator.hasNext()) {
+                final T cached = iterator.next().getValue();
+                if (cached.getKey() != newKey && cached.allowUnload()
+                        && !(keepInnerPages && cached instanceof BTreeCacheable && ((BTreeCacheable) cached).isInnerPage())) {
+                    victim = cached;
+                    break;
+                }
+            }
+
+            if (victim != null) {
+                victim.sync(true);
+                queue.remove(victim.getKey());
+            }
+            return victim;
+        }
+
+        boolean hasDirtyItems() {
+            return hasDirtyItems(in) || hasDirtyItems(main);
+        }
+
+        private static <T extends Cacheable> boolean hasDirtyItems(final SequencedLongHashMap<T> queue) {
+            final Iterator<T> iterator = queue.valueIterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().isDirty()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        boolean flush() {
+            return flush(in) | flush(main);
+        }
+
+        private static <T extends Cacheable> boolean flush(final SequencedLongHashMap<T> queue) {
+            boolean flushed = false;
+            final Iterator<T> iterator = queue.valueIterator();
+            while (iterator.hasNext()) {
+                final T cacheable = iterator.next();
+                if (cacheable.isDirty()) {
+                    flushed |= cacheable.sync(false);
+                }
+            }
+            return flushed;
+        }
+    }
+}
@@ -36,6 +36,7 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.exist.storage.btree.Paged.Page.NO_PAGE;
 
 import it.unimi.dsi.fastutil.objects.Reference2LongMap;
+import it.unimi.dsi.fastutil.objects.Reference2LongMaps;
 import it.unimi.dsi.fastutil.objects.Reference2LongOpenHashMap;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -64,7 +65,6 @@ import org.exist.storage.btree.IndexQuery;
 import org.exist.storage.btree.Value;
 import org.exist.storage.cache.Cache;
 import org.exist.storage.cache.Cacheable;
-import org.exist.storage.cache.LRUCache;
 import org.exist.storage.journal.JournalException;
 import org.exist.storage.journal.LogEntryTypes;
 import org.exist.storage.journal.Loggable;
@@ -180,23 +180,31 @@ public class DOMFile extends BTree implements Lockable {
 
     private final BTreeFileHeader fileHeader;
 
-    private Object owner = null;
+    /**
+     * The object owning this file, and the document it is working on, are
+     * confined to the calling thread, as readers may share the lock of the file
+     */
+    private final ThreadLocal<Object> owner = new ThreadLocal<>();
 
+    /**
+     * The last page of the page sequence of each owner
+     */
     private final Reference2LongMap<Object> pages;
 
-    private DocumentImpl currentDocument = null;
+    private final ThreadLocal<DocumentImpl> currentDocument = new ThreadLocal<>();
 
     private final AddValueLoggable addValueLog = new AddValueLoggable();
 
     public DOMFile(final BrokerPool pool, final byte id, final Path dataDir, final Configuration config) throws DBException {
         super(pool, id, FILE_FORMAT_VERSION_ID, true, pool.getCacheManager());
         this.lockManager = pool.getLockManager();
-        this.pages = new Reference2LongOpenHashMap<>(64);
-        this.pages.defaultReturnValue(NO_PAGE);
+        final Reference2LongMap<Object> ownerPages = new Reference2LongOpenHashMap<>(64);
+        ownerPages.defaultReturnValue(NO_PAGE);
+        this.pages = Reference2LongMaps.synchronize(ownerPages);
         fileHeader = (BTreeFileHeader)getFileHeader();
         fileHeader.setPageCount(0);
         fileHeader.setTotalCount(0);
-        dataCache = new LRUCache<>(getFileName(), 256, 0.0, 1.0, Cache.CacheType.DATA);
+        dataCache = cacheManager.newDataCache(getFileName(), 256, 0.0, 1.0);
         cacheManager.registerCache(dataCache);
         final Path file = dataDir.resolve(getFileName());
         setFile(file);
@@ -217,11 +225,11 @@ public class DOMFile extends BTree implements Lockable {
      * @param page The new page
      */
     private void setCurrentPage(final DOMPage page) {
-        final long pageNum = pages.getLong(owner);
+        final long pageNum = pages.getLong(owner.get());
         if (pageNum == page.page.getPageNum()) {
             return;
         }
-        pages.put(owner, page.page.getPageNum());
+        pages.put(owner.get(), page.page.getPageNum());
     }
 
     /**
@@ -230,10 +238,10 @@ public class DOMFile extends BTree implements Lockable {
      * @return The current page
      */
     private DOMPage getCurrentPage(final Txn transaction) {
-        final long pageNum = pages.getLong(owner);
+        final long pageNum = pages.getLong(owner.get());
         if (pageNum == NO_PAGE) {
             final DOMPage page = new DOMPage();
-            pages.put(owner, page.page.getPageNum());
+            pages.put(owner.get(), page.page.getPageNum());
             dataCache.add(page);
             if (transaction != null && isRecoveryEnabled()) {
                 final CreatePageLoggable loggable = new CreatePageLoggable(
@@ -274,7 +282,7 @@ public class DOMFile extends BTree implements Lockable {
         if(LOG.isDebugEnabled() && !lockManager.isBtreeLocked(getLockName())) {
             LOG.debug("The file doesn't own a lock");
         }
-        pages.removeLong(owner);
+        pages.removeLong(owner.get());
     }
 
     public static String getFileName() {
@@ -313,7 +321,7 @@ public class DOMFile extends BTree implements Lockable {
         if(LOG.isDebugEnabled() && !lockManager.isBtreeLocked(getLockName())) {
             LOG.debug("The file doesn't own a lock");
         }
-        this.currentDocument = doc;
+        this.currentDocument.set(doc);
     }
 
     /**
@@ -724,8 +732,9 @@ public class DOMFile extends BTree implements Lockable {
      * @return the updated record position
      */
     private RecordPos splitDataPage(final Txn transaction, final RecordPos rec) {
-        if (currentDocument != null) {
-            currentDocument.incSplitCount();
+        final DocumentImpl doc = currentDocument.get();
+        if (doc != null) {
+            doc.incSplitCount();
         }
         //Check if a split is really required. A split is not required if
         //all records following the split point are already links to other pages.
@@ -1071,6 +1080,7 @@ public class DOMFile extends BTree implements Lockable {
     }
 
     String debugPageContents(final DOMPage page) {
+        final Object owner = this.owner.get();
         final StringBuilder buf = new StringBuilder();
         buf.append("Page ").append(page.getPageNum()).append(": ");
         short count = 0;
@@ -1795,8 +1805,9 @@ public class DOMFile extends BTree implements Lockable {
             LOG.error(ioe);
             //TODO : rethrow exception ? -pb
         }
-        if (currentDocument != null) {
-            currentDocument.decPageCount();
+        final DocumentImpl doc = currentDocument.get();
+        if (doc != null) {
+            doc.decPageCount();
         }
     }
 
@@ -2213,7 +2224,7 @@ public class DOMFile extends BTree implements Lockable {
             LOG.debug("The file doesn't own a lock");
         }
 
-        owner = ownerObject;
+        owner.set(ownerObject);
     }
 
     /*
@@ -3083,8 +3094,9 @@ public class DOMFile extends BTree implements Lockable {
                 pageHeader.setNextTupleID(ItemId.UNKNOWN_ID);
                 pageHeader.setDataLength(0);
                 pageHeader.setRecordCount((short) 0);
-                if (currentDocument != null) {
-                    currentDocument.incPageCount();
+                final DocumentImpl doc = currentDocument.get();
+                if (doc != null) {
+                    doc.incPageCount();
                 }
                 return page;
             } catch (final IOException ioe) {
@@ -3329,8 +3341,9 @@ public class DOMFile extends BTree implements Lockable {
                 pageHeader.setNextTupleID(ItemId.UNKNOWN_ID);
                 pageHeader.setDataLength(0);
                 pageHeader.setRecordCount((short) 0);
-                if (currentDocument != null) {
-                    currentDocument.incPageCount();
+                final DocumentImpl doc = currentDocument.get();
+                if (doc != null) {
+                    doc.incPageCount();
                 }
                 return page;
             } catch (final IOException ioe) {
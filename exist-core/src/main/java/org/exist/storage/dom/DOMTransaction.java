@@ -30,7 +30,7 @@ import org.exist.util.FileUtils;
 import org.exist.util.LockException;
 import org.exist.util.ReadOnlyException;
 
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * DOMTransaction controls access to the DOM file
@@ -48,7 +48,7 @@ public abstract class DOMTransaction<T> {
 
     private final Object ownerObject;
     private final DOMFile file;
-    private final SupplierE<ManagedLock<ReentrantLock>, LockException> acquireFn;
+    private final SupplierE<ManagedLock<ReentrantReadWriteLock>, LockException> acquireFn;
     private final DocumentImpl document;
 
     /**
@@ -58,7 +58,7 @@ public abstract class DOMTransaction<T> {
      * @param file a <code>DOMFile</code> value
      * @param acquireFn a <code>Supplier</code> value
      */
-    public DOMTransaction(final Object owner, final DOMFile file, final SupplierE<ManagedLock<ReentrantLock>, LockException> acquireFn) {
+    public DOMTransaction(final Object owner, final DOMFile file, final SupplierE<ManagedLock<ReentrantReadWriteLock>, LockException> acquireFn) {
         this(owner, file, acquireFn, null);
     }
 
@@ -70,7 +70,7 @@ public abstract class DOMTransaction<T> {
      * @param acquireFn a <code>Supplier</code> value
      * @param doc a <code>DocumentImpl</code> value
      */
-    public DOMTransaction(final Object owner, final DOMFile file, final SupplierE<ManagedLock<ReentrantLock>, LockException> acquireFn, final DocumentImpl doc) {
+    public DOMTransaction(final Object owner, final DOMFile file, final SupplierE<ManagedLock<ReentrantReadWriteLock>, LockException> acquireFn, final DocumentImpl doc) {
         this.ownerObject = owner;
         this.file = file;
         this.acquireFn = acquireFn;
@@ -92,7 +92,7 @@ public abstract class DOMTransaction<T> {
      */
     public T run() {
         // try to acquire a lock on the file
-        try(final ManagedLock<ReentrantLock> domFileLock = acquireFn.get()) {
+        try(final ManagedLock<ReentrantReadWriteLock> domFileLock = acquireFn.get()) {
             file.setOwnerObject(ownerObject);
             file.setCurrentDocument(document);
             return start();
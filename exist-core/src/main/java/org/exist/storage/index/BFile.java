@@ -37,7 +37,6 @@ import org.exist.storage.btree.IndexQuery;
 import org.exist.storage.btree.Value;
 import org.exist.storage.cache.Cache;
 import org.exist.storage.cache.Cacheable;
-import org.exist.storage.cache.LRUCache;
 import org.exist.storage.io.VariableByteArrayInput;
 import org.exist.storage.io.VariableByteInput;
 import org.exist.storage.io.VariableByteOutputStream;
@@ -60,7 +59,7 @@ import java.nio.file.Path;
 import java.text.NumberFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 
@@ -146,7 +145,7 @@ public class BFile extends BTree {
         super(pool, fileId, fileVersion, recoveryEnabled, cacheManager, file);
         lockManager = pool.getLockManager();
         fileHeader = (BFileHeader) getFileHeader();
-        dataCache = new LRUCache<>(FileUtils.fileName(file), 64, cacheGrowth, thresholdData, Cache.CacheType.DATA);
+        dataCache = cacheManager.newDataCache(FileUtils.fileName(file), 64, cacheGrowth, thresholdData);
         cacheManager.registerCache(dataCache);
         minFree = PAGE_MIN_FREE;
         maxValueSize = fileHeader.getWorkSize() / 2;
@@ -2322,7 +2321,7 @@ public class BFile extends BTree {
             }
 
 
-            try(final ManagedLock<ReentrantLock> bfileLock = lockManager.acquireBtreeReadLock(getLockName())) {
+            try(final ManagedLock<ReentrantReadWriteLock> bfileLock = lockManager.acquireBtreeReadLock(getLockName())) {
                 nextPage = (SinglePage) getDataPage(next, false);
                 pageLen = nextPage.ph.getDataLength();
                 offset = 0;
@@ -2440,7 +2439,7 @@ public class BFile extends BTree {
         public void seek(final long position) throws IOException {
             final int newPage = StorageAddress.pageFromPointer(position);
             final short newOffset = StorageAddress.tidFromPointer(position);
-            try(final ManagedLock<ReentrantLock> bfileLock =  lockManager.acquireBtreeReadLock(getLockName())) {
+            try(final ManagedLock<ReentrantReadWriteLock> bfileLock =  lockManager.acquireBtreeReadLock(getLockName())) {
                 nextPage = getSinglePage(newPage);
                 pageLen = nextPage.ph.getDataLength();
                 if (pageLen > fileHeader.getWorkSize()) {
@@ -24,6 +24,7 @@ package org.exist.storage.journal;
 import java.io.*;
 import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
 import java.nio.channels.FileChannel;
 import java.nio.channels.SeekableByteChannel;
 import java.nio.file.Files;
@@ -31,6 +32,10 @@ import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.text.DateFormat;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Stream;
 
 import net.jcip.annotations.GuardedBy;
@@ -40,6 +45,7 @@ import net.jpountz.xxhash.XXHashFactory;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.exist.EXistException;
+import org.exist.backup.RawDataBackup;
 import org.exist.config.annotation.ConfigurationClass;
 import org.exist.config.annotation.ConfigurationFieldAsAttribute;
 import org.exist.storage.BrokerPool;
@@ -122,17 +128,24 @@ public final class Journal implements Closeable {
     public static final String RECOVERY_SYNC_ON_COMMIT_ATTRIBUTE = "sync-on-commit";
     public static final String RECOVERY_JOURNAL_DIR_ATTRIBUTE = "journal-dir";
     public static final String RECOVERY_SIZE_LIMIT_ATTRIBUTE = "size";
+    public static final String RECOVERY_GROUP_COMMIT_MAX_DELAY_ATTRIBUTE = "group-commit-max-delay";
 
     public static final String PROPERTY_RECOVERY_SIZE_MIN = "db-connection.recovery.size-min";
     public static final String PROPERTY_RECOVERY_SIZE_LIMIT = "db-connection.recovery.size-limit";
     public static final String PROPERTY_RECOVERY_JOURNAL_DIR = "db-connection.recovery.journal-dir";
     public static final String PROPERTY_RECOVERY_SYNC_ON_COMMIT = "db-connection.recovery.sync-on-commit";
+    public static final String PROPERTY_RECOVERY_GROUP_COMMIT_MAX_DELAY = "db-connection.recovery.group-commit-max-delay";
 
     public static final String LOG_FILE_SUFFIX = "log";
     public static final String BAK_FILE_SUFFIX = ".bak";
 
     public static final String LCK_FILE = "journal.lck";
 
+    /**
+     * The directory within a raw data backup, which holds the journal file.
+     */
+    public static final String BACKUP_ENTRY_DIR = "journal";
+
     /**
      * the length of the header of each entry: entryType (1 byte) + transactionId (8 bytes) + length (2 bytes)
      */
@@ -168,6 +181,11 @@ public final class Journal implements Closeable {
      */
     static final int DEFAULT_MIN_SIZE = 1;  // MB
 
+    /**
+     * default maximum time the leader of a group commit waits for further commits to join the group: 0 microseconds
+     */
+    static final long DEFAULT_GROUP_COMMIT_MAX_DELAY = 0;  // microseconds
+
     /**
      * We use a 1 megabyte buffer.
      */
@@ -214,6 +232,13 @@ public final class Journal implements Closeable {
     //TODO: conf.xml refactoring <recovery size=""> => <journal size="">
     private final long journalSizeLimit;
 
+    /**
+     * The maximum time in nanoseconds that the leader of a group commit
+     * waits for further commits to join the group before flushing.
+     */
+    @ConfigurationFieldAsAttribute("group-commit-max-delay")
+    private final long groupCommitMaxDelay;
+
     private final FileLock fileLock;
 
     private final XXHash64 xxHash64 = XXHashFactory.fastestInstance().hash64();
@@ -259,6 +284,36 @@ public final class Journal implements Closeable {
      */
     @GuardedBy("this") private boolean initialised = false;
 
+    /**
+     * Guards the state of group commits, never acquired whilst holding the monitor of this object.
+     */
+    private final ReentrantLock groupCommitLock = new ReentrantLock();
+
+    /**
+     * Signalled when the leader of a group commit has flushed the journal.
+     */
+    private final Condition groupCommitted = groupCommitLock.newCondition();
+
+    /**
+     * true whilst a leader is flushing the journal on behalf of a group of commits
+     */
+    @GuardedBy("groupCommitLock") private boolean groupCommitInProgress = false;
+
+    /**
+     * the LSN up to which the journal has been flushed by group commits
+     */
+    @GuardedBy("groupCommitLock") private Lsn groupCommitLsn = Lsn.LSN_INVALID;
+
+    /**
+     * the number of commits waiting for the current group commit
+     */
+    @GuardedBy("groupCommitLock") private int groupCommitWaiters = 0;
+
+    /**
+     * the number of flushes performed by leaders of group commits
+     */
+    @GuardedBy("groupCommitLock") private long groupCommits = 0;
+
 
     // NOTE(AR) called from BrokerPool.prepare -- single thread!
     public Journal(final BrokerPool pool, final Path directory) throws EXistException {
@@ -306,6 +361,7 @@ public final class Journal implements Closeable {
 
         this.journalSizeMin = 1024 * 1024 * configuration.getProperty(PROPERTY_RECOVERY_SIZE_MIN, DEFAULT_MIN_SIZE);
         this.journalSizeLimit = 1024 * 1024 * configuration.getProperty(PROPERTY_RECOVERY_SIZE_LIMIT, DEFAULT_MAX_SIZE);
+        this.groupCommitMaxDelay = TimeUnit.MICROSECONDS.toNanos(configuration.getProperty(PROPERTY_RECOVERY_GROUP_COMMIT_MAX_DELAY, DEFAULT_GROUP_COMMIT_MAX_DELAY));
 
         final Path lck = dir.resolve(LCK_FILE);
         this.fileLock = new FileLock(pool, lck);
@@ -436,6 +492,117 @@ public final class Journal implements Closeable {
         }
     }
 
+    /**
+     * Wait until the journal has been flushed (and if sync-on-commit is enabled, synced)
+     * up to and including the entry with the given LSN.
+     *
+     * Concurrent callers are batched: the first caller becomes the leader, waits for at
+     * most {@link #groupCommitMaxDelay} for further commits to be written, and then
+     * performs a single flush and sync on behalf of all of them. Callers which arrive
+     * whilst the leader is flushing wait for it, and if their entry was not covered,
+     * elect a new leader between them.
+     *
+     * Must not be called whilst holding the monitor of this object.
+     *
+     * @param lsn the LSN of the entry which must be flushed, typically a {@link org.exist.storage.txn.TxnCommit}.
+     */
+    public void groupCommit(final Lsn lsn) {
+        groupCommitLock.lock();
+        try {
+            groupCommitWaiters++;
+            while (groupCommitLsn.compareTo(lsn) < 0) {
+                if (groupCommitInProgress) {
+                    groupCommitted.awaitUninterruptibly();
+                    continue;
+                }
+
+                // become the leader
+                groupCommitInProgress = true;
+                Lsn flushedLsn = null;
+                groupCommitLock.unlock();
+                try {
+                    if (groupCommitMaxDelay > 0) {
+                        LockSupport.parkNanos(groupCommitMaxDelay);
+                    }
+                    flushedLsn = flushGroupCommit(lsn);
+                } finally {
+                    groupCommitLock.lock();
+                    if (flushedLsn != null && flushedLsn.compareTo(groupCommitLsn) > 0) {
+                        groupCommitLsn = flushedLsn;
+                    }
+                    groupCommits++;
+                    if (LOG.isTraceEnabled()) {
+                        LOG.trace("Group commit flushed journal to {} for {} commits", groupCommitLsn, groupCommitWaiters);
+                    }
+                    groupCommitInProgress = false;
+                    groupCommitted.signalAll();
+                }
+            }
+        } finally {
+            groupCommitWaiters--;
+            groupCommitLock.unlock();
+        }
+    }
+
+    /**
+     * Get the number of times that the journal has been flushed on behalf of a group commit.
+     *
+     * @return the number of group commits
+     */
+    long getGroupCommits() {
+        groupCommitLock.lock();
+        try {
+            return groupCommits;
+        } finally {
+            groupCommitLock.unlock();
+        }
+    }
+
+    /**
+     * Flush the journal on behalf of a group commit.
+     *
+     * The buffer is written to the channel whilst holding the monitor of this object,
+     * so that the positions of the entries in the journal file stay consistent with their
+     * LSNs. The sync, which is the slow part, happens outside of the monitor, so that
+     * further commits can be written to the buffer in the meantime.
+     *
+     * @param lsn the LSN of the entry of the leader of the group
+     *
+     * @return the LSN up to which the journal has been flushed
+     */
+    private Lsn flushGroupCommit(final Lsn lsn) {
+        final FileChannel syncChannel;
+        final Lsn flushedLsn;
+        synchronized (this) {
+            flushToLog(false);
+            if (channel == null || currentBuffer == null || inRecovery) {
+                // the journal cannot be written, as for flushToLog there is nothing more to wait for
+                return lsn;
+            }
+
+            flushedLsn = lastLsnWritten;
+            if (!syncOnCommit || flushedLsn.compareTo(lastSyncLsn) <= 0) {
+                return flushedLsn;
+            }
+            syncChannel = channel;
+        }
+
+        try {
+            syncChannel.force(true);
+        } catch (final ClosedChannelException e) {
+            // the journal file was switched or closed meanwhile, close() has synced it before closing
+        } catch (final IOException e) {
+            LOG.error("Could not sync Journal to disk: {}", e.getMessage(), e);
+        }
+
+        synchronized (this) {
+            if (flushedLsn.compareTo(lastSyncLsn) > 0) {
+                lastSyncLsn = flushedLsn;
+            }
+        }
+        return flushedLsn;
+    }
+
     private void sync() throws IOException {
         channel.force(true);
     }
@@ -711,6 +878,48 @@ public final class Journal implements Closeable {
         return dir.resolve(getFileName(fileNum));
     }
 
+    /**
+     * Copies the current journal file, up to the last entry written,
+     * to a raw data backup. The entry is named after the file within
+     * {@link #BACKUP_ENTRY_DIR}.
+     *
+     * Entries which are written whilst the file is copied are not
+     * included. The caller must make sure that the file is not switched
+     * in the meantime, see {@link JournalManager#suspendCheckpoints()}.
+     *
+     * @param backup the backup to write the journal to
+     *
+     * @throws IOException if the journal cannot be copied
+     */
+    public void backupToArchive(final RawDataBackup backup) throws IOException {
+        final Path file;
+        long remaining;
+        synchronized (this) {
+            if (channel == null) {
+                return;
+            }
+            flushToLog(true, true);
+            file = getFile(currentJournalFileNumber);
+            remaining = channel.position();
+        }
+
+        // the journal is only ever appended to, so the part which has been written is stable
+        try (final InputStream is = Files.newInputStream(file)) {
+            // do not use try-with-resources here, closing the OutputStream will close the entire backup
+            try {
+                final OutputStream os = backup.newEntry(BACKUP_ENTRY_DIR + '/' + FileUtils.fileName(file));
+                final byte[] buf = new byte[BUFFER_SIZE];
+                int len;
+                while (remaining > 0 && (len = is.read(buf, 0, (int) Math.min(buf.length, remaining))) > 0) {
+                    os.write(buf, 0, len);
+                    remaining -= len;
+                }
+            } finally {
+                backup.closeEntry();
+            }
+        }
+    }
+
     /**
      * Shut down the journal. This will write a checkpoint record
      * to the log, so recovery manager knows the file has been
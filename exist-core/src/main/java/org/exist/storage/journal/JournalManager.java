@@ -37,6 +37,7 @@ import net.jcip.annotations.ThreadSafe;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.exist.EXistException;
+import org.exist.backup.RawDataBackup;
 import org.exist.storage.BrokerPool;
 import org.exist.storage.BrokerPoolService;
 import org.exist.storage.BrokerPoolServiceException;
@@ -44,6 +45,7 @@ import org.exist.storage.recovery.RecoveryManager;
 import org.exist.util.Configuration;
 import org.exist.util.ReadOnlyException;
 
+import java.io.IOException;
 import java.nio.file.Path;
 import java.util.List;
 import java.util.Optional;
@@ -65,6 +67,9 @@ public class JournalManager implements BrokerPoolService {
     @GuardedBy("this") Journal journal;
     @GuardedBy("this") private boolean journallingDisabled = false;
     @GuardedBy("this") private boolean initialized = false;
+    @GuardedBy("this") private int checkpointsSuspended = 0;
+    @GuardedBy("this") private boolean checkpointDeferred = false;
+    @GuardedBy("this") private BrokerPool pool;
 
     private final List<JournalListener> journalListeners = new CopyOnWriteArrayList<>();
 
@@ -80,6 +85,7 @@ public class JournalManager implements BrokerPoolService {
 
     @Override
     public synchronized void prepare(final BrokerPool pool) throws BrokerPoolServiceException {
+        this.pool = pool;
         if (!journallingDisabled) {
             try {
                 this.journal = new Journal(pool, journalDir);
@@ -111,22 +117,38 @@ public class JournalManager implements BrokerPoolService {
     }
 
     /**
-     * Write a group of entrys to the journal
+     * Write the final entry of a group of entries to the journal,
+     * and flush the journal.
+     *
+     * If group commits are enabled, the calling thread waits
+     * whilst a single flush is shared with other concurrently
+     * committing threads.
      *
      * @see Journal#writeToLog(Loggable)
      * @see Journal#flushToLog(boolean)
+     * @see Journal#groupCommit(Lsn)
      *
      * @param loggable The entry to write in the journalGroup
      *
      * @throws JournalException of the journal group cannot be written
      */
-    public synchronized void journalGroup(final Loggable loggable) throws JournalException {
-        if (!journallingDisabled) {
+    public void journalGroup(final Loggable loggable) throws JournalException {
+        final Journal groupCommitJournal;
+        synchronized (this) {
+            if (journallingDisabled) {
+                return;
+            }
+
             journal.writeToLog(loggable);
             if (!groupCommits) {
                 journal.flushToLog(true);
+                return;
             }
+            groupCommitJournal = journal;
         }
+
+        // NOTE: must wait outside of the monitor, so that other threads can write their entries to the group
+        groupCommitJournal.groupCommit(loggable.getLsn());
     }
 
     /**
@@ -146,6 +168,12 @@ public class JournalManager implements BrokerPoolService {
      * @throws JournalException of the journal checkpoint cannot be written
      */
     public synchronized void checkpoint(final long transactionId, final boolean switchFiles) throws JournalException {
+        if (checkpointsSuspended > 0) {
+            LOG.debug("Deferring checkpoint whilst an online backup is in progress");
+            checkpointDeferred = true;
+            return;
+        }
+
         if (!journallingDisabled) {
             journal.checkpoint(transactionId, switchFiles);
 
@@ -158,6 +186,71 @@ public class JournalManager implements BrokerPoolService {
         }
     }
 
+    /**
+     * Suspends checkpoints until {@link #resumeCheckpoints()} is called.
+     *
+     * An online backup copies the database files whilst they are being
+     * written to, and then replays the journal from the last checkpoint
+     * before the copy started upon restore. Neither a new checkpoint nor
+     * a switch of the journal file may occur in the meantime.
+     *
+     * A checkpoint which is requested whilst checkpoints are suspended is
+     * deferred until they are resumed. Calls may be nested.
+     */
+    public synchronized void suspendCheckpoints() {
+        checkpointsSuspended++;
+    }
+
+    /**
+     * Resumes the checkpoints suspended by {@link #suspendCheckpoints()}.
+     *
+     * If a checkpoint was deferred in the meantime, a new checkpoint is
+     * triggered. The deferred checkpoint record cannot just be written now,
+     * as the database files have been changed since it was requested,
+     * so the checkpoint is run with the next sync of the database.
+     */
+    public void resumeCheckpoints() {
+        final BrokerPool deferredCheckpointPool;
+        synchronized (this) {
+            if (checkpointsSuspended == 0) {
+                return;
+            }
+
+            checkpointsSuspended--;
+            if (checkpointsSuspended > 0 || !checkpointDeferred) {
+                return;
+            }
+
+            checkpointDeferred = false;
+            deferredCheckpointPool = pool;
+        }
+
+        LOG.debug("Triggering the checkpoint which was deferred whilst an online backup was in progress");
+        deferredCheckpointPool.triggerCheckpoint();
+    }
+
+    /**
+     * Copies the current journal file to a raw data backup.
+     *
+     * @see Journal#backupToArchive(RawDataBackup)
+     *
+     * @param backup the backup to write the journal to
+     *
+     * @throws IOException if the journal cannot be copied
+     */
+    public void backupToArchive(final RawDataBackup backup) throws IOException {
+        final Journal backupJournal;
+        synchronized (this) {
+            if (journallingDisabled) {
+                return;
+            }
+            backupJournal = journal;
+        }
+
+        // NOTE: copy outside of the monitor, so that other threads can continue writing to the journal
+        backupJournal.backupToArchive(backup);
+    }
+
     /**
      * Flush the Journal.
      *
@@ -34,6 +34,8 @@ package org.exist.storage.lock;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.exist.storage.BrokerPool;
+import org.exist.storage.btree.PageIO;
 import org.exist.storage.lock.Lock.LockType;
 import org.exist.util.Configuration;
 import org.exist.util.LockException;
@@ -41,7 +43,7 @@ import org.exist.util.WeakLazyStripes;
 import org.exist.xmldb.XmldbURI;
 import uk.ac.ic.doc.slurp.multilock.MultiLock;
 
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Consumer;
 
 /**
@@ -77,6 +79,7 @@ public class LockManager {
     public final static String CONFIGURATION_WARN_WAIT_ON_READ_FOR_WRITE = "lock-manager.warn-wait-on-read-for-write";
     public final static String CONFIGURATION_PATH_LOCKS_FOR_DOCUMENTS = "lock-manager.document.use-path-locks";
     public final static String CONFIGURATION_PATHS_MULTI_WRITER = "lock-manager.paths-multi-writer";
+    public final static String CONFIGURATION_BTREE_SHARED_READS = "lock-manager.btree-shared-reads";
 
     //TODO(AR) remove eventually!
     // legacy properties for overriding the config
@@ -110,22 +113,33 @@ public class LockManager {
      */
     private final boolean warnWaitOnReadForWrite;
 
+    /**
+     * Set to true to let readers of a {@link org.exist.storage.btree.BTree}
+     * share its lock, as opposed to the default where a READ_LOCK
+     * on a BTree is exclusive
+     */
+    private final boolean btreeSharedReads;
 
     private final LockTable lockTable;
     private final WeakLazyStripes<String, MultiLock> pathLocks;
     private final WeakLazyStripes<String, MultiLock> documentLocks;
-    private final WeakLazyStripes<String, ReentrantLock> btreeLocks;
+    private final WeakLazyStripes<String, ReentrantReadWriteLock> btreeLocks;
 
     /**
      * @param configuration database configuration
      * @param concurrencyLevel Concurrency Level of the lock table.
      */
     public LockManager(final Configuration configuration, final int concurrencyLevel) {
+        this(configuration, concurrencyLevel, isBtreeSharedReads(configuration));
+    }
+
+    private LockManager(final Configuration configuration, final int concurrencyLevel, final boolean btreeSharedReads) {
         // set configuration
         this.usePathLocksForDocuments = getConfigPropertyBool(configuration, CONFIGURATION_PATH_LOCKS_FOR_DOCUMENTS, false);
         this.pathsMultiWriter = getLegacySystemPropertyOrConfigPropertyBool(PROP_ENABLE_PATHS_MULTI_WRITER, configuration, CONFIGURATION_PATHS_MULTI_WRITER, false);
         this.upgradeCheck = getLegacySystemPropertyOrConfigPropertyBool(PROP_UPGRADE_CHECK, configuration, CONFIGURATION_UPGRADE_CHECK, false);
         this.warnWaitOnReadForWrite = getLegacySystemPropertyOrConfigPropertyBool(PROP_WARN_WAIT_ON_READ_FOR_WRITE, configuration, CONFIGURATION_WARN_WAIT_ON_READ_FOR_WRITE, false);
+        this.btreeSharedReads = btreeSharedReads;
 
         this.lockTable = new LockTable(configuration);
         this.pathLocks = new WeakLazyStripes<>(concurrencyLevel, LockManager::createCollectionLock);
@@ -136,7 +150,7 @@ public class LockManager {
         }
         this.btreeLocks = new WeakLazyStripes<>(concurrencyLevel, LockManager::createBtreeLock);
 
-        LOG.info("Configured LockManager with concurrencyLevel={} use-path-locks-for-documents={} paths-multi-writer={}", concurrencyLevel, usePathLocksForDocuments, pathsMultiWriter);
+        LOG.info("Configured LockManager with concurrencyLevel={} use-path-locks-for-documents={} paths-multi-writer={} btree-shared-reads={}", concurrencyLevel, usePathLocksForDocuments, pathsMultiWriter, btreeSharedReads);
     }
 
     /**
@@ -148,6 +162,41 @@ public class LockManager {
         this(null, concurrencyLevel);
     }
 
+    /**
+     * Reserved for testing!
+     *
+     * @param concurrencyLevel Concurrency Level of the lock table.
+     * @param btreeSharedReads true if readers of a BTree should share its lock.
+     */
+    LockManager(final int concurrencyLevel, final boolean btreeSharedReads) {
+        this(null, concurrencyLevel, btreeSharedReads);
+    }
+
+    /**
+     * Determines whether readers of a {@link org.exist.storage.btree.BTree} may share
+     * its lock.
+     *
+     * Shared reads have to be enabled in the configuration, and are only available
+     * with one of the positional page I/O modes, as pages of the same file may then
+     * be read concurrently. The page caches of all files are then the thread-safe
+     * {@link org.exist.storage.cache.TwoQueueCache}.
+     *
+     * @param configuration database configuration
+     *
+     * @return true if readers of a BTree share its lock.
+     */
+    public static boolean isBtreeSharedReads(final Configuration configuration) {
+        if (!getConfigPropertyBool(configuration, CONFIGURATION_BTREE_SHARED_READS, false)) {
+            return false;
+        }
+        final PageIO.Mode pageIOMode = configuration.getProperty(BrokerPool.PROPERTY_PAGE_IO, BrokerPool.DEFAULT_PAGE_IO);
+        if (pageIOMode == PageIO.Mode.RANDOM_ACCESS_FILE) {
+            LOG.warn("btree-shared-reads is ignored, as page-io=\"{}\" does not support concurrent reads", pageIOMode);
+            return false;
+        }
+        return true;
+    }
+
     /**
      * Get the lock table.
      *
@@ -185,8 +234,8 @@ public class LockManager {
      * Creates a new lock for a {@link org.exist.storage.btree.BTree}
      * will be Striped by the btreeFileName
      */
-    private static ReentrantLock createBtreeLock(final String btreeFileName) {
-        return new ReentrantLock();
+    private static ReentrantReadWriteLock createBtreeLock(final String btreeFileName) {
+        return new ReentrantReadWriteLock();
     }
 
     /**
@@ -628,12 +677,15 @@ public class LockManager {
      *
      * @return A lock for the DOMFile
      */
-    ReentrantLock getBTreeLock(final String domFileName) {
+    ReentrantReadWriteLock getBTreeLock(final String domFileName) {
         return btreeLocks.get(domFileName);
     }
 
     /**
-     * Acquire a WRITE_LOCK on a {@link org.exist.storage.btree.BTree}
+     * Acquire a READ_LOCK on a {@link org.exist.storage.btree.BTree}
+     *
+     * Unless shared reads are enabled, see {@link #isBtreeSharedReads(Configuration)},
+     * a READ_LOCK on a BTree is exclusive.
      *
      * @param btreeFileName the filename of the BTree
      *
@@ -641,14 +693,15 @@ public class LockManager {
      *
      * @throws LockException if the lock could not be acquired
      */
-    public ManagedLock<ReentrantLock> acquireBtreeReadLock(final String btreeFileName) throws LockException {
+    public ManagedLock<ReentrantReadWriteLock> acquireBtreeReadLock(final String btreeFileName) throws LockException {
         final long groupId = System.nanoTime();
 
-        final ReentrantLock lock = getBTreeLock(btreeFileName);
+        final ReentrantReadWriteLock lock = getBTreeLock(btreeFileName);
+        final java.util.concurrent.locks.Lock modeLock = btreeSharedReads ? lock.readLock() : lock.writeLock();
         try {
             lockTable.attempt(groupId, btreeFileName, LockType.BTREE, Lock.LockMode.READ_LOCK);
 
-            lock.lockInterruptibly();
+            modeLock.lockInterruptibly();
 
             lockTable.acquired(groupId, btreeFileName, LockType.BTREE, Lock.LockMode.READ_LOCK);
         } catch(final InterruptedException e) {
@@ -656,8 +709,8 @@ public class LockManager {
             throw new LockException("Unable to acquire READ_LOCK for: " + btreeFileName, e);
         }
 
-        return new ManagedLock(lock, () -> {
-            lock.unlock();
+        return new ManagedLock<>(lock, () -> {
+            modeLock.unlock();
             lockTable.released(groupId, btreeFileName, LockType.BTREE, Lock.LockMode.READ_LOCK);
         });
     }
@@ -669,16 +722,21 @@ public class LockManager {
      *
      * @return the lock for the BTree
      *
-     * @throws LockException if the lock could not be acquired
+     * @throws LockException if the lock could not be acquired, or if shared reads
+     *     are enabled and the calling thread already holds a READ_LOCK on the BTree
      */
-    public ManagedLock<ReentrantLock> acquireBtreeWriteLock(final String btreeFileName) throws LockException {
+    public ManagedLock<ReentrantReadWriteLock> acquireBtreeWriteLock(final String btreeFileName) throws LockException {
         final long groupId = System.nanoTime();
 
-        final ReentrantLock lock = getBTreeLock(btreeFileName);
+        final ReentrantReadWriteLock lock = getBTreeLock(btreeFileName);
+        if (lock.getReadHoldCount() > 0) {
+            // a shared READ_LOCK cannot be upgraded, waiting would deadlock
+            throw new LockException("Unable to upgrade READ_LOCK to WRITE_LOCK for: " + btreeFileName);
+        }
         try {
             lockTable.attempt(groupId, btreeFileName, LockType.BTREE, Lock.LockMode.WRITE_LOCK);
 
-            lock.lockInterruptibly();
+            lock.writeLock().lockInterruptibly();
 
             lockTable.acquired(groupId, btreeFileName, LockType.BTREE, Lock.LockMode.WRITE_LOCK);
         } catch(final InterruptedException e) {
@@ -686,8 +744,8 @@ public class LockManager {
             throw new LockException("Unable to acquire WRITE_LOCK for: " + btreeFileName, e);
         }
 
-        return new ManagedLock(lock, () -> {
-            lock.unlock();
+        return new ManagedLock<>(lock, () -> {
+            lock.writeLock().unlock();
             lockTable.released(groupId, btreeFileName, LockType.BTREE, Lock.LockMode.WRITE_LOCK);
         });
     }
@@ -703,19 +761,22 @@ public class LockManager {
      */
     @Deprecated
     public boolean isBtreeLocked(final String btreeFileName) {
-        final ReentrantLock lock = getBTreeLock(btreeFileName);
-        return lock.isLocked();
+        final ReentrantReadWriteLock lock = getBTreeLock(btreeFileName);
+        return lock.isWriteLocked() || lock.getReadLockCount() > 0;
     }
 
     /**
      * Returns true if the BTree for the file name is locked for writes.
      *
+     * Unless shared reads are enabled, this is also the case
+     * whilst the BTree is locked for reading.
+     *
      * @param btreeFileName The name of the .dbx file.
      *
      * @return true if the Btree is locked for writes.
      */
     public boolean isBtreeLockedForWrite(final String btreeFileName) {
-        return isBtreeLocked(btreeFileName);
+        return getBTreeLock(btreeFileName).isWriteLocked();
     }
 
     /**
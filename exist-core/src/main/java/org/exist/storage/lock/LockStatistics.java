@@ -0,0 +1,419 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.storage.lock;
+
+import net.jcip.annotations.ThreadSafe;
+import org.exist.storage.lock.Lock.LockMode;
+import org.exist.storage.lock.Lock.LockType;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Low overhead lock statistics for the {@link LockTable}.
+ *
+ * Each thread records the lock events it causes into its own
+ * counters and log2 histograms of wait and hold times, so that
+ * recording neither allocates nor contends with other threads.
+ * Only acquisitions which had to wait for at least
+ * {@link #CONTENDED_NANOS} are additionally counted per lock id,
+ * to find the most contended resources.
+ *
+ * The figures are merged when they are read, they are approximate
+ * as they are read whilst the threads continue to record. The figures
+ * of threads which have terminated are added to a shared total when
+ * a new thread records its first event or the figures are read, so
+ * that only the threads which are alive keep their own figures.
+ */
+@ThreadSafe
+public class LockStatistics {
+
+    /**
+     * The number of histogram buckets, bucket n holds the durations
+     * d where 2^(n-1) &lt;= d &lt; 2^n nanoseconds.
+     */
+    static final int BUCKETS = 64;
+
+    /**
+     * Acquisitions which waited at least this long are considered contended.
+     */
+    static final long CONTENDED_NANOS = 10_000;
+
+    /**
+     * The maximum number of locks per thread whose hold time is measured.
+     */
+    static final int MAX_HELD = 256;
+
+    /**
+     * The maximum number of distinct lock ids whose contention is counted.
+     */
+    static final int MAX_CONTENDED_IDS = 1024;
+
+    private static final LockType[] LOCK_TYPES = LockType.values();
+
+    private final ThreadLocal<ThreadStatistics> threadStatistics = ThreadLocal.withInitial(this::newThreadStatistics);
+    private final Queue<ThreadStatistics> allThreadStatistics = new ConcurrentLinkedQueue<>();
+    private final Map<String, LongAdder> contendedIds = new ConcurrentHashMap<>();
+
+    /**
+     * The figures of the threads which have terminated, guarded by its own monitor.
+     */
+    private final ThreadStatistics retired = new ThreadStatistics(null, 0);
+
+    /**
+     * Incremented by {@link #reset()}, threads discard their figures when they see a new epoch.
+     */
+    private volatile long epoch = 0;
+
+    private ThreadStatistics newThreadStatistics() {
+        retireTerminated();
+        final ThreadStatistics statistics = new ThreadStatistics(Thread.currentThread(), epoch);
+        allThreadStatistics.add(statistics);
+        return statistics;
+    }
+
+    /**
+     * Adds the figures of the threads which have terminated to
+     * {@link #retired}, and drops their own figures.
+     */
+    private void retireTerminated() {
+        final long currentEpoch = epoch;
+        for (final ThreadStatistics statistics : allThreadStatistics) {
+            final Thread thread = statistics.thread.get();
+            if (thread != null && thread.isAlive()) {
+                continue;
+            }
+            // only the caller which removes the figures adds them to the total
+            if (allThreadStatistics.remove(statistics) && statistics.epoch == currentEpoch) {
+                synchronized (retired) {
+                    if (retired.epoch != currentEpoch) {
+                        retired.clear(currentEpoch);
+                    }
+                    retired.add(statistics);
+                }
+            }
+        }
+    }
+
+    private ThreadStatistics current() {
+        final ThreadStatistics statistics = threadStatistics.get();
+        final long currentEpoch = epoch;
+        if (statistics.epoch != currentEpoch) {
+            statistics.clear(currentEpoch);
+        }
+        return statistics;
+    }
+
+    public void attempt(final long timestamp) {
+        current().attemptStart = timestamp;
+    }
+
+    public void attemptFailed(final LockType lockType) {
+        final ThreadStatistics statistics = current();
+        statistics.attemptStart = -1;
+        statistics.failed[lockType.ordinal()]++;
+    }
+
+    public void acquired(final String id, final LockType lockType, final LockMode lockMode, final long timestamp) {
+        final ThreadStatistics statistics = current();
+        final int type = lockType.ordinal();
+
+        final long wait = statistics.attemptStart < 0 ? 0 : timestamp - statistics.attemptStart;
+        statistics.attemptStart = -1;
+        statistics.acquired[type]++;
+        statistics.waitTimes[type][bucket(wait)]++;
+        if (wait >= CONTENDED_NANOS) {
+            statistics.contended[type]++;
+            contended(id);
+        }
+
+        if (statistics.held < MAX_HELD) {
+            final int idx = statistics.held++;
+            statistics.heldIds[idx] = id;
+            statistics.heldTypes[idx] = (byte) type;
+            statistics.heldModes[idx] = (byte) lockMode.ordinal();
+            statistics.heldSince[idx] = timestamp;
+        }
+    }
+
+    public void released(final String id, final LockType lockType, final LockMode lockMode, final long timestamp) {
+        final ThreadStatistics statistics = current();
+        final int type = lockType.ordinal();
+        final int mode = lockMode.ordinal();
+
+        // locks are mostly released in the reverse order of their acquisition
+        for (int i = statistics.held - 1; i >= 0; i--) {
+            final String heldId = statistics.heldIds[i];
+            if (statistics.heldTypes[i] == type && statistics.heldModes[i] == mode
+                    && (heldId == id || heldId.equals(id))) {
+                statistics.holdTimes[type][bucket(timestamp - statistics.heldSince[i])]++;
+
+                final int last = --statistics.held;
+                System.arraycopy(statistics.heldIds, i + 1, statistics.heldIds, i, last - i);
+                System.arraycopy(statistics.heldTypes, i + 1, statistics.heldTypes, i, last - i);
+                System.arraycopy(statistics.heldModes, i + 1, statistics.heldModes, i, last - i);
+                System.arraycopy(statistics.heldSince, i + 1, statistics.heldSince, i, last - i);
+                statistics.heldIds[last] = null;
+                return;
+            }
+        }
+    }
+
+    private void contended(final String id) {
+        LongAdder count = contendedIds.get(id);
+        if (count == null) {
+            if (contendedIds.size() >= MAX_CONTENDED_IDS) {
+                return;
+            }
+            count = contendedIds.computeIfAbsent(id, k -> new LongAdder());
+        }
+        count.increment();
+    }
+
+    static int bucket(final long nanos) {
+        return nanos <= 0 ? 0 : 64 - Long.numberOfLeadingZeros(nanos);
+    }
+
+    /**
+     * Discards all figures recorded so far.
+     */
+    public void reset() {
+        epoch++;
+        contendedIds.clear();
+    }
+
+    /**
+     * Get the statistics of each type of lock which has been acquired.
+     *
+     * @return the statistics by lock type.
+     */
+    public Map<LockType, LockTypeStatistics> getStatistics() {
+        retireTerminated();
+        final long currentEpoch = epoch;
+        final Map<LockType, LockTypeStatistics> result = new EnumMap<>(LockType.class);
+        for (final LockType lockType : LOCK_TYPES) {
+            final int type = lockType.ordinal();
+            final LockTypeStatistics typeStatistics = new LockTypeStatistics();
+            for (final ThreadStatistics statistics : allThreadStatistics) {
+                if (statistics.epoch == currentEpoch) {
+                    typeStatistics.add(statistics, type);
+                }
+            }
+            synchronized (retired) {
+                if (retired.epoch == currentEpoch) {
+                    typeStatistics.add(retired, type);
+                }
+            }
+            if (typeStatistics.acquired > 0) {
+                result.put(lockType, typeStatistics);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the number of threads which keep their own figures.
+     *
+     * @return the number of threads.
+     */
+    int getThreadCount() {
+        return allThreadStatistics.size();
+    }
+
+    /**
+     * Get the ids of the most contended locks.
+     *
+     * @param limit the maximum number of ids to return.
+     *
+     * @return the number of contended acquisitions by lock id,
+     *     ordered from the most to the least contended.
+     */
+    public Map<String, Long> getMostContended(final int limit) {
+        final List<Map.Entry<String, Long>> counts = new ArrayList<>(contendedIds.size());
+        for (final Map.Entry<String, LongAdder> contendedId : contendedIds.entrySet()) {
+            counts.add(Map.entry(contendedId.getKey(), contendedId.getValue().sum()));
+        }
+        counts.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+
+        final Map<String, Long> result = new LinkedHashMap<>();
+        for (int i = 0; i < counts.size() && i < limit; i++) {
+            result.put(counts.get(i).getKey(), counts.get(i).getValue());
+        }
+        return result;
+    }
+
+    /**
+     * The figures recorded by a single thread, they are only written
+     * by that thread.
+     */
+    private static final class ThreadStatistics {
+        final WeakReference<Thread> thread;
+        long epoch;
+        long attemptStart = -1;
+
+        final long[] acquired = new long[LOCK_TYPES.length];
+        final long[] contended = new long[LOCK_TYPES.length];
+        final long[] failed = new long[LOCK_TYPES.length];
+        final long[][] waitTimes = new long[LOCK_TYPES.length][BUCKETS];
+        final long[][] holdTimes = new long[LOCK_TYPES.length][BUCKETS];
+
+        // the locks which are currently held by the thread
+        final String[] heldIds = new String[MAX_HELD];
+        final byte[] heldTypes = new byte[MAX_HELD];
+        final byte[] heldModes = new byte[MAX_HELD];
+        final long[] heldSince = new long[MAX_HELD];
+        int held = 0;
+
+        ThreadStatistics(final Thread thread, final long epoch) {
+            this.thread = new WeakReference<>(thread);
+            this.epoch = epoch;
+        }
+
+        void add(final ThreadStatistics other) {
+            for (int type = 0; type < LOCK_TYPES.length; type++) {
+                acquired[type] += other.acquired[type];
+                contended[type] += other.contended[type];
+                failed[type] += other.failed[type];
+                for (int i = 0; i < BUCKETS; i++) {
+                    waitTimes[type][i] += other.waitTimes[type][i];
+                    holdTimes[type][i] += other.holdTimes[type][i];
+                }
+            }
+        }
+
+        void clear(final long epoch) {
+            for (int type = 0; type < LOCK_TYPES.length; type++) {
+                acquired[type] = 0;
+                contended[type] = 0;
+                failed[type] = 0;
+                Arrays.fill(waitTimes[type], 0);
+                Arrays.fill(holdTimes[type], 0);
+            }
+            this.epoch = epoch;
+        }
+    }
+
+    /**
+     * Statistics of one type of lock.
+     *
+     * All times are in nanoseconds, and percentiles are the
+     * upper bound of the histogram bucket which holds them.
+     */
+    public static class LockTypeStatistics {
+        long acquired;
+        long contended;
+        long failed;
+        final long[] waitTimeHistogram = new long[BUCKETS];
+        final long[] holdTimeHistogram = new long[BUCKETS];
+
+        private void add(final ThreadStatistics statistics, final int type) {
+            acquired += statistics.acquired[type];
+            contended += statistics.contended[type];
+            failed += statistics.failed[type];
+            for (int i = 0; i < BUCKETS; i++) {
+                waitTimeHistogram[i] += statistics.waitTimes[type][i];
+                holdTimeHistogram[i] += statistics.holdTimes[type][i];
+            }
+        }
+
+        public long getAcquired() {
+            return acquired;
+        }
+
+        public long getContended() {
+            return contended;
+        }
+
+        public long getFailed() {
+            return failed;
+        }
+
+        public long[] getWaitTimeHistogram() {
+            return waitTimeHistogram;
+        }
+
+        public long[] getHoldTimeHistogram() {
+            return holdTimeHistogram;
+        }
+
+        public long getWaitTimeMedian() {
+            return percentile(waitTimeHistogram, 0.5);
+        }
+
+        public long getWaitTime90thPercentile() {
+            return percentile(waitTimeHistogram, 0.9);
+        }
+
+        public long getWaitTime99thPercentile() {
+            return percentile(waitTimeHistogram, 0.99);
+        }
+
+        public long getWaitTimeMax() {
+            return percentile(waitTimeHistogram, 1.0);
+        }
+
+        public long getHoldTimeMedian() {
+            return percentile(holdTimeHistogram, 0.5);
+        }
+
+        public long getHoldTime90thPercentile() {
+            return percentile(holdTimeHistogram, 0.9);
+        }
+
+        public long getHoldTime99thPercentile() {
+            return percentile(holdTimeHistogram, 0.99);
+        }
+
+        public long getHoldTimeMax() {
+            return percentile(holdTimeHistogram, 1.0);
+        }
+
+        static long percentile(final long[] histogram, final double percentile) {
+            long total = 0;
+            for (final long count : histogram) {
+                total += count;
+            }
+            if (total == 0) {
+                return 0;
+            }
+
+            final long rank = Math.max(1, (long) Math.ceil(total * percentile));
+            long seen = 0;
+            for (int i = 0; i < histogram.length; i++) {
+                seen += histogram[i];
+                if (seen >= rank) {
+                    return i == 0 ? 0 : (1L << i) - 1;
+                }
+            }
+            return Long.MAX_VALUE;
+        }
+    }
+}
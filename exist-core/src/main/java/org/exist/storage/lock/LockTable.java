@@ -61,6 +61,10 @@ import static org.exist.storage.lock.LockTable.LockEventType.*;
  * which is typically an indicator of the
  * lock subject.
  *
+ * In {@link Mode#STATISTICS} the table is not kept,
+ * instead contention and hold time statistics are
+ * gathered, see {@link LockStatistics}.
+ *
  * @author <a href="mailto:adam@evolvedbinary.com">Adam Retter</a>
  */
 public class LockTable {
@@ -68,6 +72,7 @@ public class LockTable {
     // org.exist.util.Configuration properties
     public static final String CONFIGURATION_DISABLED = "lock-table.disabled";
     public static final String CONFIGURATION_TRACE_STACK_DEPTH = "lock-table.trace-stack-depth";
+    public static final String CONFIGURATION_MODE = "lock-table.mode";
 
     //TODO(AR) remove eventually!
     // legacy properties for overriding the config
@@ -88,6 +93,11 @@ public class LockTable {
      */
     private int traceStackDepth;
 
+    /**
+     * Statistics of the lock events, only present in {@link Mode#STATISTICS}
+     */
+    @Nullable private final LockStatistics statistics;
+
     /**
      * Lock event listeners
      */
@@ -108,6 +118,8 @@ public class LockTable {
     LockTable(final Configuration configuration) {
         this.disableEvents = LockManager.getLegacySystemPropertyOrConfigPropertyBool(PROP_DISABLE, configuration, CONFIGURATION_DISABLED, false);
         this.traceStackDepth = LockManager.getLegacySystemPropertyOrConfigPropertyInt(PROP_TRACE_STACK_DEPTH, configuration, CONFIGURATION_TRACE_STACK_DEPTH, 0);
+        final Mode mode = configuration != null ? configuration.getProperty(CONFIGURATION_MODE, Mode.FULL) : Mode.FULL;
+        this.statistics = mode == Mode.STATISTICS ? new LockStatistics() : null;
 
         // add a log listener if trace level logging is enabled
         if(LOG.isTraceEnabled()) {
@@ -133,6 +145,16 @@ public class LockTable {
         this.traceStackDepth = traceStackDepth;
     }
 
+    /**
+     * Get the lock statistics.
+     *
+     * @return the statistics, or null if the lock table is not in {@link Mode#STATISTICS}
+     */
+    @Nullable
+    public LockStatistics getStatistics() {
+        return statistics;
+    }
+
     public void attempt(final long groupId, final String id, final LockType lockType, final LockMode mode) {
         event(Attempt, groupId, id, lockType, mode);
     }
@@ -155,6 +177,28 @@ public class LockTable {
         }
 
         final long timestamp = System.nanoTime();
+
+        if (statistics != null) {
+            switch (lockEventType) {
+                case Attempt:
+                    statistics.attempt(timestamp);
+                    break;
+
+                case AttemptFailed:
+                    statistics.attemptFailed(lockType);
+                    break;
+
+                case Acquired:
+                    statistics.acquired(id, lockType, lockMode, timestamp);
+                    break;
+
+                case Released:
+                    statistics.released(id, lockType, lockMode, timestamp);
+                    break;
+            }
+            return;
+        }
+
         final Thread currentThread = Thread.currentThread();
 
 //        if(ignoreEvent(threadName, id)) {
@@ -693,6 +737,49 @@ public class LockTable {
         Released
     }
 
+    /**
+     * What the lock table records.
+     */
+    public enum Mode {
+        /**
+         * The details of each attempted and acquired lock,
+         * which are reported to the lock event listeners.
+         */
+        FULL("full"),
+
+        /**
+         * Only the {@link LockStatistics}, which are
+         * cheap enough to be kept in production.
+         */
+        STATISTICS("statistics");
+
+        private final String configValue;
+
+        Mode(final String configValue) {
+            this.configValue = configValue;
+        }
+
+        public String getConfigValue() {
+            return configValue;
+        }
+
+        /**
+         * Get the Mode from its configuration value.
+         *
+         * @param configValue the value as used in conf.xml, e.g. "statistics".
+         *
+         * @return the mode, or null if the value is unknown.
+         */
+        public static @Nullable Mode fromConfigValue(final String configValue) {
+            for (final Mode mode : values()) {
+                if (mode.configValue.equalsIgnoreCase(configValue)) {
+                    return mode;
+                }
+            }
+            return null;
+        }
+    }
+
     public static String formatString(final LockEventType lockEventType, final long groupId, final String id,
             final LockType lockType, final LockMode lockMode, final String threadName, final int count,
             final long timestamp, @Nullable final StackTraceElement[] stackTrace) {
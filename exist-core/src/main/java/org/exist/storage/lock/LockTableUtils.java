@@ -128,6 +128,37 @@ public class LockTableUtils {
             }
         }
 
+        final LockStatistics statistics = lockTable.getStatistics();
+        if (statistics != null) {
+            builder.append(EOL).append(EOL);
+
+            builder
+                    .append("Lock Statistics (ns)").append(EOL)
+                    .append("------------------------------------").append(EOL);
+
+            for (final Map.Entry<LockType, LockStatistics.LockTypeStatistics> type : statistics.getStatistics().entrySet()) {
+                final LockStatistics.LockTypeStatistics typeStatistics = type.getValue();
+                builder
+                        .append(type.getKey()).append(EOL)
+                        .append("\tacquired=").append(typeStatistics.getAcquired())
+                        .append(", contended=").append(typeStatistics.getContended())
+                        .append(", failed=").append(typeStatistics.getFailed()).append(EOL)
+                        .append("\twait p50=").append(typeStatistics.getWaitTimeMedian())
+                        .append(", p90=").append(typeStatistics.getWaitTime90thPercentile())
+                        .append(", p99=").append(typeStatistics.getWaitTime99thPercentile())
+                        .append(", max=").append(typeStatistics.getWaitTimeMax()).append(EOL)
+                        .append("\thold p50=").append(typeStatistics.getHoldTimeMedian())
+                        .append(", p90=").append(typeStatistics.getHoldTime90thPercentile())
+                        .append(", p99=").append(typeStatistics.getHoldTime99thPercentile())
+                        .append(", max=").append(typeStatistics.getHoldTimeMax()).append(EOL);
+            }
+
+            builder.append(EOL).append("Most Contended").append(EOL);
+            for (final Map.Entry<String, Long> contended : statistics.getMostContended(20).entrySet()) {
+                builder.append('\t').append(contended.getKey()).append(" (contended=").append(contended.getValue()).append(")").append(EOL);
+            }
+        }
+
         return builder.toString();
     }
 
@@ -116,6 +116,18 @@ public class DataGuide {
         return temp.getMaxDepth();
     }
 
+    /**
+     * Get the number of elements with the given name, summed up
+     * over all paths on which they occur.
+     *
+     * @param qname the name of the element
+     *
+     * @return the number of elements
+     */
+    public long getNodeCount(QName qname) {
+        return root.getNodeCount(qname);
+    }
+
     public String toString() {
         final List<StringBuilder> paths = new ArrayList<>();
         root.dump(new StringBuilder(), paths);
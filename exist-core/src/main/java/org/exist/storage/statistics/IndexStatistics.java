@@ -70,11 +70,15 @@ public class IndexStatistics extends AbstractIndex implements RawBackupSupport {
         return dataGuide.getMaxParentDepth(qname);
     }
 
-    protected void mergeStats(DataGuide other) {
+    public long getNodeCount(QName qname) {
+        return dataGuide.getNodeCount(qname);
+    }
+
+    protected synchronized void mergeStats(DataGuide other) {
         dataGuide = other.mergeInto(dataGuide);
     }
 
-    protected void updateStats(DataGuide newGuide) {
+    protected synchronized void updateStats(DataGuide newGuide) {
         dataGuide = newGuide;
     }
 
@@ -107,7 +111,7 @@ public class IndexStatistics extends AbstractIndex implements RawBackupSupport {
     public void close() throws DBException {
     }
 
-    public void sync() throws DBException {
+    public synchronized void sync() throws DBException {
         try(final SeekableByteChannel chan = Files.newByteChannel(dataFile,
                 StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
             dataGuide.write(chan, getBrokerPool().getSymbols());
@@ -141,7 +145,9 @@ public class IndexStatistics extends AbstractIndex implements RawBackupSupport {
 	@Override
 	public void backupToArchive(RawDataBackup backup) throws IOException {
 
-        try(final OutputStream os = backup.newEntry(FileUtils.fileName(dataFile))) {
+        // do not use try-with-resources here, closing the OutputStream will close the entire backup
+        try {
+            final OutputStream os = backup.newEntry(FileUtils.fileName(dataFile));
             Files.copy(dataFile, os);
         } finally {
             backup.closeEntry();
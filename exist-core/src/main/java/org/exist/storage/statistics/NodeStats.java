@@ -137,6 +137,16 @@ class NodeStats {
         }
     }
 
+    protected long getNodeCount(QName name) {
+        long count = qname != null && qname.equals(name) ? nodeCount : 0;
+        if (children != null) {
+            for (NodeStats child : children) {
+                count += child.getNodeCount(name);
+            }
+        }
+        return count;
+    }
+
     protected void write(ByteBuffer buffer, SymbolTable symbols) {
         buffer.putShort(symbols.getNSSymbol(qname.getNamespaceURI()));
         buffer.putShort(symbols.getSymbol(qname.getLocalPart()));
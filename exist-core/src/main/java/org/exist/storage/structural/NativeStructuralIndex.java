@@ -24,7 +24,7 @@ package org.exist.storage.structural;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.file.Path;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -95,7 +95,7 @@ public class NativeStructuralIndex extends AbstractIndex implements RawBackupSup
         if (btree == null) {
             return;
         }
-        try(final ManagedLock<ReentrantLock> bfileLock = lockManager.acquireBtreeWriteLock(btree.getLockName())) {
+        try(final ManagedLock<ReentrantReadWriteLock> bfileLock = lockManager.acquireBtreeWriteLock(btree.getLockName())) {
             btree.flush();
         } catch (final LockException e) {
             LOG.warn("Failed to acquire lock for '{}'", FileUtils.fileName(btree.getFile()), e);
@@ -35,10 +35,12 @@ import org.exist.dom.persistent.SymbolTable;
 import org.exist.dom.persistent.NewArrayNodeSet;
 import org.exist.dom.persistent.ExtNodeSet;
 import org.exist.dom.persistent.NodeSet;
+import org.exist.dom.persistent.PackedNodeSet;
 import org.exist.collections.Collection;
 import org.exist.indexing.*;
 import org.exist.indexing.StreamListener.ReindexMode;
 import org.exist.numbering.NodeId;
+import org.exist.numbering.NodeIdFactory;
 import org.exist.storage.*;
 import org.exist.storage.btree.BTree;
 import org.exist.storage.btree.BTreeCallback;
@@ -56,7 +58,7 @@ import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
 import java.util.*;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.exist.security.PermissionDeniedException;
 
@@ -69,6 +71,11 @@ public class NativeStructuralIndexWorker implements IndexWorker, StructuralIndex
 
     private final static Logger LOG = LogManager.getLogger(NativeStructuralIndexWorker.class);
 
+    /**
+     * Offset of the node id in a key, after the type, the name and the document id.
+     */
+    private final static int NODE_ID_OFFSET = 9;
+
     private NativeStructuralIndex index;
     private ReindexMode mode = ReindexMode.STORE;
     private DocumentImpl document;
@@ -108,8 +115,7 @@ public class NativeStructuralIndexWorker implements IndexWorker, StructuralIndex
     }
 
     public NodeSet findElementsByTagName(byte type, DocumentSet docs, QName qname, NodeSelector selector, Expression parent) {
-        final NewArrayNodeSet result = new NewArrayNodeSet();
-        final FindElementsCallback callback = new FindElementsCallback(type, qname, result, docs, selector, parent);
+        final FindElementsCallback callback = new FindElementsCallback(type, qname, docs, selector, parent);
 
         // for each document id range, scan the index to find matches
         for (final Range range : getDocIdRanges(docs)) {
@@ -117,7 +123,7 @@ public class NativeStructuralIndexWorker implements IndexWorker, StructuralIndex
             final byte[] toKey = computeKey(type, qname, range.end + 1);
             final IndexQuery query = new IndexQuery(IndexQuery.RANGE, new Value(fromKey), new Value(toKey));
 
-            try(final ManagedLock<ReentrantLock> btreeLock = index.lockManager.acquireBtreeReadLock(index.btree.getLockName())) {
+            try(final ManagedLock<ReentrantReadWriteLock> btreeLock = index.lockManager.acquireBtreeReadLock(index.btree.getLockName())) {
                 index.btree.query(query, callback);
             } catch (final LockException e) {
                 NativeStructuralIndex.LOG.warn("Lock problem while searching structural index: {}", e.getMessage(), e);
@@ -127,7 +133,7 @@ public class NativeStructuralIndexWorker implements IndexWorker, StructuralIndex
                 NativeStructuralIndex.LOG.error("Error while searching structural index: {}", e.getMessage(), e);
             }
         }
-        return result;
+        return callback.getResult();
     }
 
     /**
@@ -194,7 +200,7 @@ public class NativeStructuralIndexWorker implements IndexWorker, StructuralIndex
     public NodeSet findDescendantsByTagName(byte type, QName qname, int axis, DocumentSet docs, NodeSet contextSet, int contextId, Expression parent) {
         final NewArrayNodeSet result = new NewArrayNodeSet();
         final FindDescendantsCallback callback = new FindDescendantsCallback(type, axis, qname, contextId, result, parent);
-        try(final ManagedLock<ReentrantLock> btreeLock = index.lockManager.acquireBtreeReadLock(index.btree.getLockName())) {
+        try(final ManagedLock<ReentrantReadWriteLock> btreeLock = index.lockManager.acquireBtreeReadLock(index.btree.getLockName())) {
             for (final NodeProxy ancestor : contextSet) {
                 final DocumentImpl doc = ancestor.getOwnerDocument();
                 final NodeId ancestorId = ancestor.getNodeId();
@@ -225,7 +231,7 @@ public class NativeStructuralIndexWorker implements IndexWorker, StructuralIndex
     public NodeSet findAncestorsByTagName(byte type, QName qname, int axis, DocumentSet docs, NodeSet contextSet,
                                           int contextId) {
         final NewArrayNodeSet result = new NewArrayNodeSet();
-        try(final ManagedLock<ReentrantLock> btreeLock = index.lockManager.acquireBtreeReadLock(index.btree.getLockName())) {
+        try(final ManagedLock<ReentrantReadWriteLock> btreeLock = index.lockManager.acquireBtreeReadLock(index.btree.getLockName())) {
             for (final NodeProxy descendant : contextSet) {
                 NodeId parentId;
                 if (axis == Constants.ANCESTOR_SELF_AXIS || axis == Constants.SELF_AXIS)
@@ -271,7 +277,7 @@ public class NativeStructuralIndexWorker implements IndexWorker, StructuralIndex
             final DocumentImpl doc = ancestor.getOwnerDocument();
             final NodeId ancestorId = ancestor.getNodeId();
             final List<QName> qnames = getQNamesForDoc(doc);
-            try(final ManagedLock<ReentrantLock> btreeLock = index.lockManager.acquireBtreeReadLock(index.btree.getLockName())) {
+            try(final ManagedLock<ReentrantReadWriteLock> btreeLock = index.lockManager.acquireBtreeReadLock(index.btree.getLockName())) {
 	            for (final QName qname : qnames) {
 	            	if (test.getName() == null || test.matches(qname)) {
 	            		callback.setAncestor(doc, ancestor);
@@ -304,12 +310,12 @@ public class NativeStructuralIndexWorker implements IndexWorker, StructuralIndex
         QName qname;
         DocumentSet docs;
         NewArrayNodeSet result;
+        PackedNodeSet packedResult;
         NodeSelector selector;
         Expression parent;
 
-        FindElementsCallback(byte type, QName qname, NewArrayNodeSet result, DocumentSet docs, NodeSelector selector, Expression parent) {
+        FindElementsCallback(byte type, QName qname, DocumentSet docs, NodeSelector selector, Expression parent) {
             this.type = type;
-            this.result = result;
             this.docs = docs;
             this.selector = selector;
             this.parent = parent;
@@ -318,6 +324,18 @@ public class NativeStructuralIndexWorker implements IndexWorker, StructuralIndex
             } else {
                 this.qname = qname;
             }
+            if (selector == null) {
+                // the nodes have neither context nor matches yet, so they do not need to
+                // be created before they are accessed
+                this.packedResult = new PackedNodeSet(index.getBrokerPool().getNodeFactory(),
+                    type == ElementValue.ATTRIBUTE ? Node.ATTRIBUTE_NODE : Node.ELEMENT_NODE, this.qname);
+            } else {
+                this.result = new NewArrayNodeSet();
+            }
+        }
+
+        NodeSet getResult() {
+            return selector == null ? packedResult : result;
         }
 
         public boolean indexInfo(Value value, long pointer) throws TerminatedException {
@@ -325,18 +343,12 @@ public class NativeStructuralIndexWorker implements IndexWorker, StructuralIndex
                 parent.getContext().proceed(parent);
             }
             final byte[] key = value.getData();
-            final NodeId nodeId = readNodeId(key, pointer);
             final DocumentImpl doc = docs.getDoc(readDocId(key));
             if (doc != null) {
                 if (selector == null) {
-                    final NodeProxy storedNode = new NodeProxy(null, doc, nodeId,
-                        type == ElementValue.ATTRIBUTE ? Node.ATTRIBUTE_NODE : Node.ELEMENT_NODE, pointer);
-                    if (qname != null) {
-                        storedNode.setQName(qname);
-                    }
-                    result.add(storedNode);
+                    packedResult.add(doc, readNodeIdUnits(key, pointer), key, NODE_ID_OFFSET, pointer);
                 } else {
-                    final NodeProxy storedNode = selector.match(doc, nodeId);
+                    final NodeProxy storedNode = selector.match(doc, readNodeId(key, pointer));
                     if (storedNode != null) {
                         storedNode.setNodeType(type == ElementValue.ATTRIBUTE ? Node.ATTRIBUTE_NODE : Node.ELEMENT_NODE);
                         storedNode.setInternalAddress(pointer);
@@ -356,6 +368,8 @@ public class NativeStructuralIndexWorker implements IndexWorker, StructuralIndex
         byte type;
         QName qname;
         NodeProxy ancestor;
+        byte[] ancestorData;
+        int ancestorUnits;
         DocumentImpl doc;
         int contextId;
         NewArrayNodeSet result;
@@ -383,21 +397,39 @@ public class NativeStructuralIndexWorker implements IndexWorker, StructuralIndex
         void setAncestor(DocumentImpl doc, NodeProxy ancestor) {
             this.doc = doc;
             this.ancestor = ancestor;
+            // keep the serialized ancestor id to test the relation on the index keys
+            final NodeId ancestorId = ancestor.getNodeId();
+            if (ancestorId == NodeId.DOCUMENT_NODE) {
+                this.ancestorData = null;
+            } else {
+                this.ancestorData = new byte[ancestorId.size()];
+                ancestorId.serialize(ancestorData, 0);
+            }
+            this.ancestorUnits = ancestorId.units();
         }
 
         public boolean indexInfo(Value value, long pointer) throws TerminatedException {
             if (parent != null) {
                 parent.getContext().proceed(parent);
             }
-            final NodeId nodeId = readNodeId(value.getData(), pointer);
+            final byte[] key = value.getData();
+            final int units = readNodeIdUnits(key, pointer);
+            final NodeIdFactory nodeIdFactory = index.getBrokerPool().getNodeFactory();
 
             boolean match = axis == Constants.DESCENDANT_SELF_AXIS || axis == Constants.DESCENDANT_ATTRIBUTE_AXIS;
             if (!match) {
-                final int relation = nodeId.computeRelation(ancestor.getNodeId());
+                // test on the key, so that no node id is created for nodes which do not match
+                final int relation;
+                if (ancestorData == null) {
+                    relation = nodeIdFactory.getTreeLevel(units, key, NODE_ID_OFFSET) == 1 ? NodeId.IS_CHILD : NodeId.IS_DESCENDANT;
+                } else {
+                    relation = nodeIdFactory.computeRelation(units, key, NODE_ID_OFFSET, ancestorUnits, ancestorData, 0);
+                }
                 match = (((axis == Constants.CHILD_AXIS) || (axis == Constants.ATTRIBUTE_AXIS)) && (relation == NodeId.IS_CHILD)) ||
                     ((axis == Constants.DESCENDANT_AXIS) && ((relation == NodeId.IS_DESCENDANT) || (relation == NodeId.IS_CHILD)));
             }
             if (match) {
+                final NodeId nodeId = nodeIdFactory.createFromData(units, key, NODE_ID_OFFSET);
                 final NodeProxy storedNode =
                     new NodeProxy(null, doc, nodeId, type == ElementValue.ATTRIBUTE ? Node.ATTRIBUTE_NODE : Node.ELEMENT_NODE, pointer);
                 if (qname != null) {
@@ -492,7 +524,7 @@ public class NativeStructuralIndexWorker implements IndexWorker, StructuralIndex
         try {
             for (final Map.Entry<QName,List<NodeProxy>> entry: pending.entrySet()) {
                 final QName qname = entry.getKey();
-                try(final ManagedLock<ReentrantLock> btreeLock = index.lockManager.acquireBtreeWriteLock(index.btree.getLockName())) {
+                try(final ManagedLock<ReentrantReadWriteLock> btreeLock = index.lockManager.acquireBtreeWriteLock(index.btree.getLockName())) {
                     final List<NodeProxy> nodes = entry.getValue();
                     for (final NodeProxy proxy : nodes) {
                         final NodeId nodeId = proxy.getNodeId();
@@ -518,7 +550,7 @@ public class NativeStructuralIndexWorker implements IndexWorker, StructuralIndex
             final byte[] fromKey = computeKey(qname.getNameType(), qname, docToRemove.getDocId());
             final byte[] toKey = computeKey(qname.getNameType(), qname, docToRemove.getDocId() + 1);
             final IndexQuery query = new IndexQuery(IndexQuery.RANGE, new Value(fromKey), new Value(toKey));
-            try(final ManagedLock<ReentrantLock> btreeLock = index.lockManager.acquireBtreeWriteLock(index.btree.getLockName())) {
+            try(final ManagedLock<ReentrantReadWriteLock> btreeLock = index.lockManager.acquireBtreeWriteLock(index.btree.getLockName())) {
                 index.btree.remove(query, null);
             } catch (final LockException e) {
                 NativeStructuralIndex.LOG.warn("Failed to lock structural index: {}", e.getMessage(), e);
@@ -533,7 +565,7 @@ public class NativeStructuralIndexWorker implements IndexWorker, StructuralIndex
         final byte[] fromKey = computeDocKey(doc.getDocId());
         final byte[] toKey = computeDocKey(doc.getDocId() + 1);
         final IndexQuery query = new IndexQuery(IndexQuery.RANGE, new Value(fromKey), new Value(toKey));
-        try(final ManagedLock<ReentrantLock> btreeLock = index.lockManager.acquireBtreeWriteLock(index.btree.getLockName())) {
+        try(final ManagedLock<ReentrantReadWriteLock> btreeLock = index.lockManager.acquireBtreeWriteLock(index.btree.getLockName())) {
             index.btree.remove(query, null);
         } catch (final LockException e) {
             NativeStructuralIndex.LOG.warn("Failed to lock structural index: {}", e.getMessage(), e);
@@ -549,7 +581,7 @@ public class NativeStructuralIndexWorker implements IndexWorker, StructuralIndex
         final byte[] fromKey = computeDocKey(doc.getDocId());
         final byte[] toKey = computeDocKey(doc.getDocId() + 1);
         final IndexQuery query = new IndexQuery(IndexQuery.RANGE, new Value(fromKey), new Value(toKey));
-        try(final ManagedLock<ReentrantLock> btreeLock = index.lockManager.acquireBtreeWriteLock(index.btree.getLockName())) {
+        try(final ManagedLock<ReentrantReadWriteLock> btreeLock = index.lockManager.acquireBtreeWriteLock(index.btree.getLockName())) {
             index.btree.query(query, (value, pointer) -> {
                 final QName qname = readQName(value.getData());
                 qnames.add(qname);
@@ -605,7 +637,7 @@ public class NativeStructuralIndexWorker implements IndexWorker, StructuralIndex
                 final byte[] toKey = computeKey(qname.getNameType(), qname, doc.getDocId() + 1);
                 final IndexQuery query = new IndexQuery(IndexQuery.RANGE, new Value(fromKey), new Value(toKey));
 
-                try(final ManagedLock<ReentrantLock> btreeLock = index.lockManager.acquireBtreeReadLock(index.btree.getLockName())) {
+                try(final ManagedLock<ReentrantReadWriteLock> btreeLock = index.lockManager.acquireBtreeReadLock(index.btree.getLockName())) {
                     index.btree.query(query, (value, pointer) -> {
                         Occurrences oc = occurrences.get(name);
                         if (oc == null) {
@@ -665,7 +697,7 @@ public class NativeStructuralIndexWorker implements IndexWorker, StructuralIndex
         try {
             for (final Map.Entry<QName,List<NodeProxy>> entry: pending.entrySet()) {
                 final QName qname = entry.getKey();
-                try(final ManagedLock<ReentrantLock> btreeLock = index.lockManager.acquireBtreeWriteLock(index.btree.getLockName())) {
+                try(final ManagedLock<ReentrantReadWriteLock> btreeLock = index.lockManager.acquireBtreeWriteLock(index.btree.getLockName())) {
                     final List<NodeProxy> nodes = entry.getValue();
                     for (final NodeProxy proxy : nodes) {
                         final NodeId nodeId = proxy.getNodeId();
@@ -760,13 +792,16 @@ public class NativeStructuralIndexWorker implements IndexWorker, StructuralIndex
     }
 
     private NodeId readNodeId(byte[] key, long value) {
+        return index.getBrokerPool().getNodeFactory().createFromData(readNodeIdUnits(key, value), key, NODE_ID_OFFSET);
+    }
+
+    private static int readNodeIdUnits(byte[] key, long value) {
         // extra number of bits of the node id is encoded in the long address
         short bits = (short)((value >>> 24) & 0xFFL);
         if (bits == 0)
             {bits = 8;}
         // compute total number of bits for node id
-        final int units = (key.length - 10) * 8 + bits;
-        return index.getBrokerPool().getNodeFactory().createFromData(units, key, 9);
+        return (key.length - NODE_ID_OFFSET - 1) * 8 + bits;
     }
 
     private QName readQName(byte[] key) {
@@ -0,0 +1,64 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.storage.sync;
+
+import java.util.Properties;
+
+import org.exist.EXistException;
+import org.exist.storage.DBBroker;
+import org.exist.storage.SystemTask;
+import org.exist.storage.txn.Txn;
+import org.exist.util.Configuration;
+
+/**
+ * Writes a checkpoint to the journal by means of a {@link Sync#MAJOR} sync.
+ *
+ * The checkpoint record states that all changes up to it are on disk and
+ * that no transactions are active, so unlike {@link SyncTask} this task
+ * requires exclusive access. {@link SyncTask} flushes the dirty pages
+ * beforehand whilst transactions continue, so that only the pages changed
+ * in the meantime have to be written here.
+ */
+public class CheckpointTask implements SystemTask {
+
+    private final static String NAME = "Checkpoint";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void configure(final Configuration config, final Properties properties) {
+    }
+
+    @Override
+    public void execute(final DBBroker broker, final Txn transaction) throws EXistException {
+        broker.getBrokerPool().sync(broker, Sync.MAJOR);
+    }
+
+    @Override
+    public boolean afterCheckpoint() {
+        // the checkpoint is created by execute
+        return false;
+    }
+}
@@ -39,6 +39,14 @@ import org.exist.util.FileUtils;
 
 import static com.evolvedbinary.j8fu.tuple.Tuple.Tuple;
 
+/**
+ * Periodically flushes dirty pages to disk.
+ *
+ * The task does not require exclusive access to the database, the flush
+ * runs whilst other transactions continue. When a major sync is due, all
+ * files and indexes are flushed first, and then a {@link CheckpointTask}
+ * is triggered to write the checkpoint once no transactions are active.
+ */
 public class SyncTask implements SystemTask {
 
     private final static Logger LOG = LogManager.getLogger(SyncTask.class);
@@ -58,7 +66,12 @@ public class SyncTask implements SystemTask {
 
     @Override
     public boolean afterCheckpoint() {
-        // a checkpoint is created by the MAJOR_SYNC event
+        // a checkpoint is created by the CheckpointTask
+        return false;
+    }
+
+    @Override
+    public boolean requiresExclusiveAccess() {
         return false;
     }
 
@@ -90,7 +103,9 @@ public class SyncTask implements SystemTask {
 
         if(System.currentTimeMillis() - pool.getLastMajorSync() >
                 pool.getMajorSyncPeriod()) {
-            pool.sync(broker, Sync.MAJOR);
+            // flush whilst other transactions continue, the checkpoint then only has to write what changed since
+            pool.flush(broker);
+            pool.triggerSystemTask(new CheckpointTask());
         } else {
             pool.sync(broker, Sync.MINOR);
         }
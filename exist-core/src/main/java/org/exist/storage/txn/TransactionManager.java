@@ -72,7 +72,10 @@ import java.util.concurrent.atomic.AtomicLong;
  *     detects concurrent active transactions.
  *
  * System tasks are mutually exclusive with any other operation
- * including shutdown. When shutdown is requested, if system tasks
+ * including shutdown, unless they declare that they do not
+ * require exclusive access (see
+ * {@link SystemTask#requiresExclusiveAccess()}), in which case they
+ * are run straight away within an ordinary transaction. When shutdown is requested, if system tasks
  * are executing, then the thread will spin until they are finished.
  * 
  * There's only one TransactionManager per database instance, it can be
@@ -562,10 +565,30 @@ public class TransactionManager implements BrokerPoolService {
     }
 
     public void triggerSystemTask(final SystemTask task) {
-        systemTaskManager.addSystemTask(task);
+        if (task.requiresExclusiveAccess()) {
+            systemTaskManager.addSystemTask(task);
+        } else {
+            processConcurrentSystemTask(task);
+        }
         processSystemTasks();
     }
 
+    /**
+     * Runs a system task which does not require exclusive access
+     * in the calling thread, whilst other transactions continue.
+     *
+     * @param task the system task
+     */
+    private void processConcurrentSystemTask(final SystemTask task) {
+        try (final DBBroker systemBroker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()));
+             final Txn transaction = beginTransaction()) {
+            systemTaskManager.processConcurrentTask(task, systemBroker, transaction);
+            transaction.commit();
+        } catch (final EXistException e) {
+            LOG.error("Unable to process system task: {}: {}", task.getName(), e.getMessage(), e);
+        }
+    }
+
     private void processSystemTasks() {
         if (state.get() != STATE_IDLE) {
             // avoids taking a broker below if it is not needed
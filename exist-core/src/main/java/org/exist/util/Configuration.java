@@ -58,6 +58,8 @@ import org.exist.storage.IndexSpec;
 import org.exist.storage.NativeBroker;
 import org.exist.storage.NativeValueIndex;
 import org.exist.storage.XQueryPool;
+import org.exist.storage.btree.PageIO;
+import org.exist.storage.cache.CachePolicy;
 import org.exist.storage.journal.Journal;
 import org.exist.storage.serializers.CustomMatchListenerFactory;
 import org.exist.storage.serializers.Serializer;
@@ -315,10 +317,12 @@ public class Configuration implements ErrorHandler
         final boolean upgradeCheck = parseBoolean(getConfigAttributeValue(lockManager, "upgrade-check"), false);
         final boolean warnWaitOnReadForWrite = parseBoolean(getConfigAttributeValue(lockManager, "warn-wait-on-read-for-write"), false);
         final boolean pathsMultiWriter = parseBoolean(getConfigAttributeValue(lockManager, "paths-multi-writer"), false);
+        final boolean btreeSharedReads = parseBoolean(getConfigAttributeValue(lockManager, "btree-shared-reads"), false);
 
         config.put(LockManager.CONFIGURATION_UPGRADE_CHECK, upgradeCheck);
         config.put(LockManager.CONFIGURATION_WARN_WAIT_ON_READ_FOR_WRITE, warnWaitOnReadForWrite);
         config.put(LockManager.CONFIGURATION_PATHS_MULTI_WRITER, pathsMultiWriter);
+        config.put(LockManager.CONFIGURATION_BTREE_SHARED_READS, btreeSharedReads);
 
         final NodeList nlLockTable = lockManager.getElementsByTagName("lock-table");
         if(nlLockTable.getLength() > 0) {
@@ -328,6 +332,16 @@ public class Configuration implements ErrorHandler
 
             config.put(LockTable.CONFIGURATION_DISABLED, lockTableDisabled);
             config.put(LockTable.CONFIGURATION_TRACE_STACK_DEPTH, lockTableTraceStackDepth);
+
+            final String lockTableModeValue = getConfigAttributeValue(lockTable, "mode");
+            if (lockTableModeValue != null && !lockTableModeValue.isEmpty()) {
+                final LockTable.Mode lockTableMode = LockTable.Mode.fromConfigValue(lockTableModeValue);
+                if (lockTableMode != null) {
+                    config.put(LockTable.CONFIGURATION_MODE, lockTableMode);
+                } else {
+                    LOG.warn("Unknown value for " + LockTable.CONFIGURATION_MODE + ": {}, expected one of: full, statistics", lockTableModeValue);
+                }
+            }
         }
 
         final NodeList nlDocument = lockManager.getElementsByTagName("document");
@@ -395,6 +409,14 @@ public class Configuration implements ErrorHandler
         config.put( XQueryContext.PROPERTY_XQUERY_RAISE_ERROR_ON_FAILED_RETRIEVAL, Configuration.parseBoolean( raiseErrorOnFailedRetrieval, XQueryContext.XQUERY_RAISE_ERROR_ON_FAILED_RETRIEVAL_DEFAULT ) );
         LOG.debug(XQueryContext.PROPERTY_XQUERY_RAISE_ERROR_ON_FAILED_RETRIEVAL + ": {}", config.get(XQueryContext.PROPERTY_XQUERY_RAISE_ERROR_ON_FAILED_RETRIEVAL));
 
+        final int groupBySpillThreshold = parseInt(getConfigAttributeValue(xquery, GroupByClause.GROUP_BY_SPILL_THRESHOLD_ATTRIBUTE), GroupByClause.DEFAULT_SPILL_THRESHOLD);
+        config.put(GroupByClause.PROPERTY_GROUP_BY_SPILL_THRESHOLD, groupBySpillThreshold);
+        LOG.debug(GroupByClause.PROPERTY_GROUP_BY_SPILL_THRESHOLD + ": {}", groupBySpillThreshold);
+
+        final int sortSpillThreshold = parseInt(getConfigAttributeValue(xquery, OrderByClause.SORT_SPILL_THRESHOLD_ATTRIBUTE), OrderByClause.DEFAULT_SORT_SPILL_THRESHOLD);
+        config.put(OrderByClause.PROPERTY_SORT_SPILL_THRESHOLD, sortSpillThreshold);
+        LOG.debug(OrderByClause.PROPERTY_SORT_SPILL_THRESHOLD + ": {}", sortSpillThreshold);
+
         final String trace = getConfigAttributeValue( xquery, PerformanceStats.CONFIG_ATTR_TRACE );
         config.put( PerformanceStats.CONFIG_PROPERTY_TRACE, trace );
 
@@ -942,6 +964,34 @@ public class Configuration implements ErrorHandler
             LOG.warn("Cannot convert " + DefaultCacheManager.SHRINK_THRESHOLD_PROPERTY + " value to integer: {}", cacheShrinkThreshold, nfe);
         }
 
+        final String cachePolicy = getConfigAttributeValue( con, DefaultCacheManager.CACHE_POLICY_ATTRIBUTE );
+
+        if( cachePolicy != null && !cachePolicy.isEmpty() ) {
+            final CachePolicy policy = CachePolicy.fromConfigValue( cachePolicy );
+            if( policy != null ) {
+                config.put( DefaultCacheManager.PROPERTY_CACHE_POLICY, policy );
+                LOG.debug(DefaultCacheManager.PROPERTY_CACHE_POLICY + ": {}", config.get(DefaultCacheManager.PROPERTY_CACHE_POLICY));
+            } else {
+                LOG.warn("Unknown value for " + DefaultCacheManager.PROPERTY_CACHE_POLICY + ": {}, expected one of: lru, 2q", cachePolicy);
+            }
+        }
+
+        final NodeList cachePolicies = con.getElementsByTagName( DefaultCacheManager.CACHE_POLICY_ELEMENT_NAME );
+        final Map<String, CachePolicy> fileCachePolicies = new HashMap<>();
+        for( int i = 0; i < cachePolicies.getLength(); i++ ) {
+            final Element filePolicy = (Element)cachePolicies.item( i );
+            final String file = getConfigAttributeValue( filePolicy, DefaultCacheManager.CACHE_POLICY_FILE_ATTRIBUTE );
+            final String policyName = getConfigAttributeValue( filePolicy, DefaultCacheManager.CACHE_POLICY_POLICY_ATTRIBUTE );
+            final CachePolicy policy = policyName == null ? null : CachePolicy.fromConfigValue( policyName );
+            if( file == null || file.isEmpty() || policy == null ) {
+                LOG.warn("Ignoring " + DefaultCacheManager.CACHE_POLICY_ELEMENT_NAME + " with file: {}, policy: {}", file, policyName);
+            } else {
+                fileCachePolicies.put( file, policy );
+            }
+        }
+        config.put( DefaultCacheManager.PROPERTY_CACHE_POLICY_FILES, fileCachePolicies );
+        LOG.debug(DefaultCacheManager.PROPERTY_CACHE_POLICY_FILES + ": {}", fileCachePolicies);
+
         String collectionCache = getConfigAttributeValue(con, CollectionCache.CACHE_SIZE_ATTRIBUTE);
         if(collectionCache != null) {
             collectionCache = collectionCache.toLowerCase();
@@ -988,6 +1038,18 @@ public class Configuration implements ErrorHandler
             }
         }
 
+        final String pageIO = getConfigAttributeValue( con, NativeBroker.PAGE_IO_ATTRIBUTE );
+
+        if( pageIO != null && !pageIO.isEmpty() ) {
+            final PageIO.Mode pageIOMode = PageIO.Mode.fromConfigValue( pageIO );
+            if( pageIOMode != null ) {
+                config.put( BrokerPool.PROPERTY_PAGE_IO, pageIOMode );
+                LOG.debug(BrokerPool.PROPERTY_PAGE_IO + ": {}", config.get(BrokerPool.PROPERTY_PAGE_IO));
+            } else {
+                LOG.warn("Unknown value for " + BrokerPool.PROPERTY_PAGE_IO + ": {}, expected one of: raf, channel, mmap", pageIO);
+            }
+        }
+
         //Not clear : rather looks like a buffers count
         final String collCacheSize = getConfigAttributeValue( con, BrokerPool.COLLECTION_CACHE_SIZE_ATTRIBUTE );
 
@@ -1109,6 +1171,18 @@ public class Configuration implements ErrorHandler
         setProperty( BrokerPool.PROPERTY_RECOVERY_GROUP_COMMIT, parseBoolean( option, false ) );
         LOG.debug(BrokerPool.PROPERTY_RECOVERY_GROUP_COMMIT + ": {}", config.get(BrokerPool.PROPERTY_RECOVERY_GROUP_COMMIT));
 
+        option = getConfigAttributeValue( recovery, Journal.RECOVERY_GROUP_COMMIT_MAX_DELAY_ATTRIBUTE );
+
+        if( option != null ) {
+            try {
+                setProperty( Journal.PROPERTY_RECOVERY_GROUP_COMMIT_MAX_DELAY, Long.valueOf( option ) );
+                LOG.debug(Journal.PROPERTY_RECOVERY_GROUP_COMMIT_MAX_DELAY + ": {}us", config.get(Journal.PROPERTY_RECOVERY_GROUP_COMMIT_MAX_DELAY));
+            }
+            catch( final NumberFormatException e ) {
+                throw( new DatabaseConfigurationException( "group-commit-max-delay attribute in recovery section needs to be a number" ) );
+            }
+        }
+
         option = getConfigAttributeValue( recovery, Journal.RECOVERY_JOURNAL_DIR_ATTRIBUTE );
 
         if(option != null) {
@@ -1226,6 +1300,26 @@ public class Configuration implements ErrorHandler
                 LOG.warn( e );
             }
         }
+
+        final String maxIdleTime = getConfigAttributeValue( queryPool, XQueryPool.MAX_IDLE_TIME_ATTRIBUTE );
+
+        if( maxIdleTime != null ) {
+
+            try {
+                config.put( XQueryPool.PROPERTY_MAX_IDLE_TIME, Long.valueOf(maxIdleTime) );
+                LOG.debug(XQueryPool.PROPERTY_MAX_IDLE_TIME + ": {}", config.get(XQueryPool.PROPERTY_MAX_IDLE_TIME));
+            }
+            catch( final NumberFormatException e ) {
+                LOG.warn( e );
+            }
+        }
+
+        final String warmUp = getConfigAttributeValue( queryPool, XQueryPool.WARM_UP_ATTRIBUTE );
+
+        if( warmUp != null ) {
+            config.put( XQueryPool.PROPERTY_WARM_UP, parseBoolean( warmUp, false ) );
+            LOG.debug(XQueryPool.PROPERTY_WARM_UP + ": {}", config.get(XQueryPool.PROPERTY_WARM_UP));
+        }
     }
     
     public static class StartupTriggerConfig {
@@ -1370,6 +1464,19 @@ public class Configuration implements ErrorHandler
                 LOG.warn( e );
             }
         }
+
+        final String leaseTimeout = getConfigAttributeValue( pool, BrokerPool.LEASE_TIMEOUT_ATTRIBUTE );
+
+        if( leaseTimeout != null ) {
+
+            try {
+                config.put( BrokerPool.PROPERTY_LEASE_TIMEOUT, Long.valueOf(leaseTimeout) );
+                LOG.debug(BrokerPool.PROPERTY_LEASE_TIMEOUT + ": {}", config.get(BrokerPool.PROPERTY_LEASE_TIMEOUT));
+            }
+            catch( final NumberFormatException e ) {
+                LOG.warn( e );
+            }
+        }
     }
 
 
@@ -1402,6 +1509,19 @@ public class Configuration implements ErrorHandler
             }
         }
 
+        final String reindexThreads = getConfigAttributeValue( indexer, NativeBroker.REINDEX_THREADS_ATTRIBUTE );
+
+        if( reindexThreads != null ) {
+
+            try {
+                config.put( NativeBroker.PROPERTY_REINDEX_THREADS, Math.max( 1, Integer.parseInt( reindexThreads ) ) );
+                LOG.debug(NativeBroker.PROPERTY_REINDEX_THREADS + ": {}", config.get(NativeBroker.PROPERTY_REINDEX_THREADS));
+            }
+            catch( final NumberFormatException e ) {
+                LOG.warn( e );
+            }
+        }
+
         final String suppressWS = getConfigAttributeValue( indexer, Indexer.SUPPRESS_WHITESPACE_ATTRIBUTE );
 
         if( suppressWS != null ) {
@@ -35,6 +35,13 @@ import java.nio.file.Paths;
 
 public class LocalRestoreService extends AbstractLocalService implements EXistRestoreService {
 
+    /**
+     * The number of worker threads to restore sub-collections with, see {@link Restore#Restore(int)}.
+     */
+    public static final String PROPERTY_PARALLELISM = "parallelism";
+
+    private int parallelism = 1;
+
     public LocalRestoreService(final Subject user, final BrokerPool pool, final LocalCollection parent) {
         super(user, pool, parent);
     }
@@ -49,10 +56,29 @@ public class LocalRestoreService extends AbstractLocalService implements EXistRe
         return "1.0";
     }
 
+    @Override
+    public String getProperty(final String name, final String defaultValue) throws XMLDBException {
+        if (PROPERTY_PARALLELISM.equals(name)) {
+            return Integer.toString(parallelism);
+        }
+        return defaultValue;
+    }
+
+    @Override
+    public void setProperty(final String name, final String value) throws XMLDBException {
+        if (PROPERTY_PARALLELISM.equals(name)) {
+            try {
+                parallelism = Integer.parseInt(value);
+            } catch (final NumberFormatException e) {
+                throw new XMLDBException(ErrorCodes.VENDOR_ERROR, "Invalid value for " + PROPERTY_PARALLELISM + ": " + value);
+            }
+        }
+    }
+
     @Override
     public void restore(final String backup, final @Nullable String newAdminPassword,
             final RestoreServiceTaskListener restoreListener, final boolean overwriteApps) throws XMLDBException {
-        final Restore restore = new Restore();
+        final Restore restore = new Restore(parallelism);
         withDb((broker, transaction) -> {
             try {
                 restore.restore(broker, transaction, newAdminPassword, Paths.get(backup),
@@ -0,0 +1,157 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.xquery;
+
+import org.exist.dom.QName;
+import org.exist.storage.DBBroker;
+import org.exist.storage.ElementValue;
+import org.exist.storage.statistics.IndexStatistics;
+
+import javax.annotation.Nullable;
+import java.util.List;
+
+/**
+ * Estimates the cost of index based expressions from the statistics
+ * gathered by {@link IndexStatistics}, i.e. the number of elements
+ * with a given name in the database.
+ *
+ * The number of nodes an {@link Optimizable} selects is estimated as the
+ * number of nodes with the name it uses the index for, multiplied by its
+ * {@link Optimizable#getSelectivity() selectivity}. Without statistics,
+ * e.g. if the index-stats module is not configured in conf.xml, no
+ * cost model is available and the query engine keeps its default behaviour.
+ */
+public class CostModel {
+
+    /**
+     * Default selectivities of a comparison, the fraction of the
+     * compared nodes which are expected to match.
+     */
+    public static final double EQUALITY_SELECTIVITY = 0.1;
+    public static final double RANGE_SELECTIVITY = 1.0 / 3.0;
+    public static final double DEFAULT_SELECTIVITY = 0.5;
+
+    /**
+     * The cost of comparing the value of a single node of the context
+     * while navigating, relative to reading one index entry.
+     */
+    public static final int NODE_COMPARE_COST = 4;
+
+    public static final double UNKNOWN = -1;
+
+    private final IndexStatistics statistics;
+
+    private CostModel(final IndexStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    /**
+     * Get the cost model for the database of a query.
+     *
+     * @param context the query context.
+     *
+     * @return the cost model, or null if no statistics are available.
+     */
+    public static @Nullable CostModel get(final XQueryContext context) {
+        final DBBroker broker = context.getBroker();
+        if (broker == null) {
+            return null;
+        }
+        final IndexStatistics statistics = (IndexStatistics) broker.getBrokerPool().getIndexManager()
+                .getIndexById(IndexStatistics.ID);
+        return statistics == null ? null : new CostModel(statistics);
+    }
+
+    /**
+     * Get the number of nodes with the given name.
+     *
+     * @param qname the name of the node.
+     *
+     * @return the number of nodes, or -1 if unknown.
+     */
+    public long getNodeCount(@Nullable final QName qname) {
+        if (qname == null || qname.getNameType() != ElementValue.ELEMENT || qname.getLocalPart() == null
+                || QName.WILDCARD.equals(qname.getLocalPart()) || QName.WILDCARD.equals(qname.getNamespaceURI())) {
+            // the statistics only cover elements
+            return -1;
+        }
+        return statistics.getNodeCount(qname);
+    }
+
+    /**
+     * Estimate the number of nodes selected through the index
+     * by an optimizable expression.
+     *
+     * @param optimizable the expression.
+     *
+     * @return the number of nodes, or {@link #UNKNOWN}.
+     */
+    public double estimate(final Optimizable optimizable) {
+        final long count = getNodeCount(optimizable.getOptimizeQName());
+        if (count < 0) {
+            return UNKNOWN;
+        }
+        return count * optimizable.getSelectivity();
+    }
+
+    /**
+     * Estimate the number of nodes selected through the index by
+     * the optimizable expressions within a predicate.
+     *
+     * @param predicate the predicate.
+     *
+     * @return the number of nodes, or {@link #UNKNOWN} if the predicate
+     *     has no optimizable expression or one of them cannot be estimated.
+     */
+    public double estimate(final Predicate predicate) {
+        final Optimizer.FindOptimizable find = new Optimizer.FindOptimizable();
+        predicate.accept(find);
+        final List<Optimizable> optimizables = find.getOptimizables();
+        if (optimizables.isEmpty()) {
+            return UNKNOWN;
+        }
+        double estimate = 0;
+        for (final Optimizable optimizable : optimizables) {
+            final double e = estimate(optimizable);
+            if (e == UNKNOWN) {
+                return UNKNOWN;
+            }
+            // the predicate selects at most the nodes of its least selective part
+            estimate = Math.max(estimate, e);
+        }
+        return estimate;
+    }
+
+    /**
+     * Check if comparing the nodes of the context one by one is expected to be
+     * cheaper than selecting the matching nodes through the index.
+     *
+     * @param contextSize the number of nodes in the context.
+     * @param optimizable the expression which could use the index.
+     *
+     * @return true if navigating the context is cheaper.
+     */
+    public boolean preferNavigation(final long contextSize, final Optimizable optimizable) {
+        final double estimate = estimate(optimizable);
+        return estimate != UNKNOWN && contextSize * NODE_COMPARE_COST < estimate;
+    }
+}
@@ -48,6 +48,9 @@ public class ExtensionExpression extends AbstractExpression {
 
     public void setExpression(Expression inner) {
         this.innerExpression = inner;
+        for (final Pragma pragma : pragmas) {
+            pragma.setInnerExpression(inner);
+        }
     }
 
     public void addPragma(Pragma pragma) {
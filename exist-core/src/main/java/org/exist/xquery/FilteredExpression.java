@@ -43,6 +43,13 @@ public class FilteredExpression extends AbstractExpression {
     final protected List<Predicate> predicates = new ArrayList<>(2);
     private Expression parent;
 
+    /**
+     * The limitable part of a filtered FLWOR expression, and the number
+     * of items its first, positional, predicate selects from the start.
+     */
+    private LimitableExpression limitable = null;
+    private int limit = 0;
+
     public FilteredExpression(XQueryContext context, Expression expr) {
         super(context);
         this.expression = expr.simplify();
@@ -77,6 +84,9 @@ public class FilteredExpression extends AbstractExpression {
             for (final Predicate pred : predicates) {
                 pred.analyze(newContext);
             }
+
+            limitable = LimitableExpression.find(expression);
+            limit = limitable == null ? 0 : LimitableExpression.getPositionalLimit(predicates.get(0));
         }
     }
 
@@ -98,7 +108,7 @@ public class FilteredExpression extends AbstractExpression {
         if (contextItem != null)
             {contextSequence = contextItem.toSequence();}
         Sequence result;
-        final Sequence seq = expression.eval(contextSequence, contextItem);
+        final Sequence seq = LimitableExpression.eval(expression, limitable, limit, contextSequence, contextItem);
         if (seq.isEmpty())
             {result = Sequence.EMPTY_SEQUENCE;}
         else {
@@ -26,17 +26,65 @@ import org.exist.dom.persistent.NodeSet;
 import org.exist.xquery.util.ExpressionDumper;
 import org.exist.xquery.value.*;
 
+import org.exist.xquery.functions.array.ArrayModule;
+import org.exist.xquery.functions.map.MapModule;
+import org.exist.xquery.functions.math.MathModule;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
 /**
  * Represents an XQuery "for" expression.
  * 
  * @author <a href="mailto:wolfgang@exist-db.org">Wolfgang Meier</a>
  */
-public class ForExpr extends BindingExpression {
+public class ForExpr extends BindingExpression implements LimitableExpression {
+
+    /**
+     * The namespaces of the built-in functions which do not have side effects.
+     */
+    private static final Set<String> PURE_FUNCTION_NAMESPACES = new HashSet<>(Arrays.asList(
+            Function.BUILTIN_FUNCTION_NS, MathModule.NAMESPACE_URI, MapModule.NAMESPACE_URI, ArrayModule.NAMESPACE_URI));
 
     private String positionalVariable = null;
     private boolean allowEmpty = false;
     private boolean isOuterFor = true;
 
+    /**
+     * The number of items needed from the start of the result, or 0 for all.
+     */
+    private int limit = 0;
+
+    /**
+     * True if the "return" clause may have side effects, in which case
+     * the loop does not stop early even if a {@link #limit} is set.
+     */
+    private boolean returnHasSideEffects = false;
+
+    /**
+     * The hash join with the directly following "for" clause, or null.
+     */
+    private HashJoin joinWithNext = null;
+
+    /**
+     * The hash join with the directly preceding "for" clause, or null.
+     */
+    private HashJoin joinWithPrevious = null;
+
+    /**
+     * The part of the input sequence to bind, set while
+     * {@link #evalPart(Sequence, int, Sequence, Item)} is running.
+     */
+    private Sequence presetInput = null;
+
+    /**
+     * The position of the first item of {@link #presetInput} within the
+     * complete input sequence.
+     */
+    private int positionOffset = 0;
+
     public ForExpr(XQueryContext context, boolean allowingEmpty) {
         super(context);
         this.allowEmpty = allowingEmpty;
@@ -57,6 +105,98 @@ public class ForExpr extends BindingExpression {
         positionalVariable = var;
     }
 
+    @Override
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Set the number of items which are needed from the start of the result.
+     * The loop over the input sequence stops as soon as the "return" clause has
+     * produced that many items. The limit is passed on to the following "for"
+     * clauses of the FLWOR expression, as each of their results is a part of
+     * the result of this clause.
+     *
+     * @param limit the number of items, or 0 for all items.
+     */
+    @Override
+    public void setLimit(final int limit) {
+        this.limit = limit;
+        Expression next = returnExpr;
+        while (next instanceof FLWORClause) {
+            if (next instanceof ForExpr) {
+                ((ForExpr) next).limit = limit;
+            }
+            next = ((FLWORClause) next).getReturnExpression();
+        }
+    }
+
+    /**
+     * Check if the input sequence of this clause may be split into parts which
+     * are evaluated independently by {@link #evalPart(Sequence, int, Sequence, Item)},
+     * so that the concatenated results equal the result of {@link #eval(Sequence, Item)}.
+     *
+     * This is the case for the first clause of a FLWOR expression without a
+     * type declaration or limit, which is only followed by "for", "let" and
+     * "where" clauses. "order by" and "group by" need all bindings at once.
+     *
+     * @return true if the input sequence may be split.
+     */
+    public boolean isSplittable() {
+        if (getPreviousClause() != null || sequenceType != null || limit > 0) {
+            return false;
+        }
+        Expression next = returnExpr;
+        while (next instanceof FLWORClause) {
+            switch (((FLWORClause) next).getType()) {
+                case FOR:
+                case LET:
+                case WHERE:
+                    break;
+                default:
+                    return false;
+            }
+            next = ((FLWORClause) next).getReturnExpression();
+        }
+        return true;
+    }
+
+    /**
+     * Evaluate the input sequence of this clause.
+     *
+     * @param contextSequence the context sequence
+     * @return the sequence of items to bind
+     * @throws XPathException if the input expression raises an error
+     */
+    public Sequence evalInput(final Sequence contextSequence) throws XPathException {
+        return inputSequence.eval(contextSequence, null);
+    }
+
+    /**
+     * Evaluate this clause for a part of its input sequence only, as
+     * returned by {@link #evalInput(Sequence)}. Must only be called if
+     * {@link #isSplittable()} returns true.
+     *
+     * @param input the items to bind
+     * @param offset the position of the first item of input within the complete
+     *               input sequence, used for the positional variable
+     * @param contextSequence the context sequence
+     * @param contextItem the context item
+     * @return the result for the given part of the input sequence
+     * @throws XPathException if an error occurs during evaluation
+     */
+    public Sequence evalPart(final Sequence input, final int offset, final Sequence contextSequence,
+            final Item contextItem) throws XPathException {
+        presetInput = input;
+        positionOffset = offset;
+        try {
+            return eval(contextSequence, contextItem);
+        } finally {
+            presetInput = null;
+            positionOffset = 0;
+        }
+    }
+
 	/* (non-Javadoc)
      * @see org.exist.xquery.Expression#analyze(org.exist.xquery.Expression)
      */
@@ -89,6 +229,9 @@ public class ForExpr extends BindingExpression {
             final AnalyzeContextInfo newContextInfo = new AnalyzeContextInfo(contextInfo);
             newContextInfo.addFlag(SINGLE_STEP_EXECUTION);
             returnExpr.analyze(newContextInfo);
+
+            returnHasSideEffects = mayHaveSideEffects(returnExpr, new HashSet<>());
+            findHashJoin();
         } catch (final QName.IllegalQNameException e) {
             throw new XPathException(this, ErrorCodes.XPST0081, "No namespace defined for prefix");
         } finally {
@@ -97,6 +240,34 @@ public class ForExpr extends BindingExpression {
         }
     }
 
+    /**
+     * Check if this clause can be joined with the following "for" clause by a hash join,
+     * i.e. if the following clause does not depend on this one, and is followed by a
+     * "where" clause which compares both for equality.
+     *
+     * @throws QName.IllegalQNameException if a variable name is invalid.
+     */
+    private void findHashJoin() throws QName.IllegalQNameException {
+        joinWithNext = null;
+        if (!(returnExpr instanceof ForExpr)) {
+            return;
+        }
+        final ForExpr inner = (ForExpr) returnExpr;
+        inner.joinWithPrevious = null;
+        if (inner.allowEmpty || inner.sequenceType != null || !(inner.returnExpr instanceof WhereClause)) {
+            return;
+        }
+        final Set<QName> outerVars = new HashSet<>();
+        outerVars.add(QName.parse(context, varName, null));
+        if (positionalVariable != null) {
+            outerVars.add(QName.parse(context, positionalVariable, null));
+        }
+        joinWithNext = HashJoin.create(context, ((WhereClause) inner.returnExpr).getWhereExpr(),
+                inner.inputSequence, outerVars, QName.parse(context, inner.varName, null),
+                inner.positionalVariable != null ? QName.parse(context, inner.positionalVariable, null) : null);
+        inner.joinWithPrevious = joinWithNext;
+    }
+
     /**
      * This implementation tries to process the "where" clause in advance, i.e. in one single
      * step. This is possible if the input sequence is a node set and the where expression
@@ -123,9 +294,19 @@ public class ForExpr extends BindingExpression {
         // Save the local variable stack
         LocalVariable mark = context.markLocalVariables(false);
         Sequence resultSequence = new ValueSequence(unordered);
+        if (joinWithNext != null) {
+            joinWithNext.enter();
+        }
         try {
-            // Evaluate the "in" expression
-            in = inputSequence.eval(contextSequence, null);
+            // Evaluate the "in" expression, unless the hash join with the
+            // preceding "for" clause has kept it or evalPart has set it
+            in = joinWithPrevious != null ? joinWithPrevious.getInput() : presetInput;
+            if (in == null) {
+                in = inputSequence.eval(contextSequence, null);
+                if (joinWithPrevious != null) {
+                    joinWithPrevious.setInput(in);
+                }
+            }
             clearContext(getExpressionId(), in);
             // Declare the iteration variable
             var = createVariable(varName);
@@ -183,13 +364,32 @@ public class ForExpr extends BindingExpression {
             if (in.isEmpty() && allowEmpty) {
                 processItem(var, AtomicValue.EMPTY_VALUE, Sequence.EMPTY_SEQUENCE, resultSequence, at, p);
             } else {
-                for (final SequenceIterator i = in.iterate(); i.hasNext(); p++) {
-                    processItem(var, i.nextItem(), in, resultSequence, at, p);
+                final int[] candidates = joinWithPrevious != null && !in.isEmpty()
+                        ? joinWithPrevious.getCandidates(this, var, in) : null;
+                if (candidates != null) {
+                    // only bind the items whose join key matches
+                    for (final int c : candidates) {
+                        processItem(var, in.itemAt(c), in, resultSequence, at, c);
+                        if (isLimitReached(resultSequence)) {
+                            break;
+                        }
+                    }
+                } else {
+                    for (final SequenceIterator i = in.iterate(); i.hasNext(); p++) {
+                        processItem(var, i.nextItem(), in, resultSequence, at, p);
+                        if (isLimitReached(resultSequence)) {
+                            // the consumer does not need the remaining items
+                            break;
+                        }
+                    }
                 }
             }
         } catch (final QName.IllegalQNameException e) {
             throw new XPathException(this, ErrorCodes.XPST0081, "No namespace defined for prefix " + positionalVariable);
         } finally {
+            if (joinWithNext != null) {
+                joinWithNext.exit();
+            }
             // restore the local variable stack 
             context.popLocalVariables(mark, resultSequence);
         }
@@ -230,12 +430,141 @@ public class ForExpr extends BindingExpression {
         return resultSequence;
     }
 
+    /**
+     * Check if the loop can stop, because the result already contains the
+     * number of items needed by the consumer and skipping the remaining
+     * evaluations of the "return" clause cannot change anything else.
+     */
+    private boolean isLimitReached(final Sequence resultSequence) {
+        return limit > 0 && !returnHasSideEffects && resultSequence.getItemCountLong() >= limit;
+    }
+
+    /**
+     * Check if the evaluation of an expression may have side effects,
+     * e.g. updates, calls to extension functions which store documents or
+     * write to a log, or calls to functions which are only known at runtime.
+     * Only expressions which are known to be free of side effects and built-in
+     * functions of the fn, math, map and array namespaces are accepted.
+     *
+     * @param expr the expression.
+     * @param functions the user defined functions which have already been checked.
+     *
+     * @return true unless the expression is known to be free of side effects.
+     */
+    private static boolean mayHaveSideEffects(final Expression expr, final Set<UserDefinedFunction> functions) {
+        if (expr == null || expr instanceof LiteralValue || expr instanceof VariableReference
+                || expr instanceof TextConstructor) {
+            return false;
+        }
+        if (expr instanceof Step) {
+            final Predicate[] predicates = ((Step) expr).getPredicates();
+            if (predicates != null) {
+                for (final Predicate predicate : predicates) {
+                    if (mayHaveSideEffects(predicate, functions)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+        if (expr instanceof InternalFunctionCall) {
+            return mayHaveSideEffects(((InternalFunctionCall) expr).getFunction(), functions);
+        }
+        if (expr instanceof Function) {
+            final Function function = (Function) expr;
+            if (function instanceof FunctionCall) {
+                final UserDefinedFunction called = ((FunctionCall) function).getFunction();
+                if (called == null) {
+                    return true;
+                }
+                if (functions.add(called) && mayHaveSideEffects(called.getFunctionBody(), functions)) {
+                    return true;
+                }
+            } else if (!PURE_FUNCTION_NAMESPACES.contains(function.getName().getNamespaceURI())) {
+                return true;
+            }
+            for (int i = 0; i < function.getArgumentCount(); i++) {
+                if (mayHaveSideEffects(function.getArgument(i), functions)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        if (expr instanceof ForExpr || expr instanceof LetExpr) {
+            return mayHaveSideEffects(((BindingExpression) expr).getInputSequence(), functions)
+                    || mayHaveSideEffects(((BindingExpression) expr).getReturnExpression(), functions);
+        }
+        if (expr instanceof WhereClause) {
+            return mayHaveSideEffects(((WhereClause) expr).getWhereExpr(), functions)
+                    || mayHaveSideEffects(((WhereClause) expr).getReturnExpression(), functions);
+        }
+        if (expr instanceof OrderByClause) {
+            for (final OrderSpec spec : ((OrderByClause) expr).getOrderSpecs()) {
+                if (mayHaveSideEffects(spec.getSortExpression(), functions)) {
+                    return true;
+                }
+            }
+            return mayHaveSideEffects(((OrderByClause) expr).getReturnExpression(), functions);
+        }
+        if (expr instanceof ConditionalExpression) {
+            final ConditionalExpression conditional = (ConditionalExpression) expr;
+            return mayHaveSideEffects(conditional.getTestExpr(), functions)
+                    || mayHaveSideEffects(conditional.getThenExpr(), functions)
+                    || mayHaveSideEffects(conditional.getElseExpr(), functions);
+        }
+        if (expr instanceof FilteredExpression) {
+            for (final Predicate predicate : ((FilteredExpression) expr).getPredicates()) {
+                if (mayHaveSideEffects(predicate, functions)) {
+                    return true;
+                }
+            }
+            return mayHaveSideEffects(((FilteredExpression) expr).getExpression(), functions);
+        }
+        if (expr instanceof OpSimpleMap) {
+            return mayHaveSideEffects(((OpSimpleMap) expr).getLeft(), functions)
+                    || mayHaveSideEffects(((OpSimpleMap) expr).getRight(), functions);
+        }
+        if (expr instanceof ElementConstructor) {
+            final ElementConstructor constructor = (ElementConstructor) expr;
+            if (constructor.getAttributes() != null) {
+                for (final AttributeConstructor attribute : constructor.getAttributes()) {
+                    for (final Iterator<Object> i = attribute.contentIterator(); i.hasNext(); ) {
+                        final Object next = i.next();
+                        if (next instanceof Expression && mayHaveSideEffects((Expression) next, functions)) {
+                            return true;
+                        }
+                    }
+                }
+            }
+            return mayHaveSideEffects(constructor.getNameExpr(), functions)
+                    || mayHaveSideEffects(constructor.getContent(), functions);
+        }
+        if (expr instanceof DynamicTextConstructor) {
+            return mayHaveSideEffects(((DynamicTextConstructor) expr).getContent(), functions);
+        }
+        if (expr instanceof DebuggableExpression) {
+            // its sub expressions are those of the wrapped expression
+            return mayHaveSideEffects(((DebuggableExpression) expr).getFirst(), functions);
+        }
+        if (expr instanceof PathExpr || expr instanceof Atomize || expr instanceof DynamicCardinalityCheck
+                || expr instanceof DynamicTypeCheck || expr instanceof UntypedValueCheck) {
+            for (int i = 0; i < expr.getSubExpressionCount(); i++) {
+                if (mayHaveSideEffects(expr.getSubExpression(i), functions)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        // e.g. update expressions and dynamic function calls
+        return true;
+    }
+
     private void processItem(LocalVariable var, Item contextItem, Sequence in, Sequence resultSequence, LocalVariable
             at, int p) throws XPathException {
         context.proceed(this);
         context.setContextSequencePosition(p, in);
         if (positionalVariable != null) {
-            at.setValue(new IntegerValue(this, p + 1));
+            at.setValue(new IntegerValue(this, positionOffset + p + 1));
         }
         final Sequence contextSequence = contextItem.toSequence();
         // set variable value to current item
@@ -88,6 +88,9 @@ public class GeneralComparison extends BinaryOp implements Optimizable, IndexUse
 
     private boolean        hasUsedIndex          = false;
 
+    /** The cost model of the database, resolved by {@link #analyze(AnalyzeContextInfo)}, null without statistics. */
+    private CostModel      costModel             = null;
+
     @SuppressWarnings( "unused" )
     private int            actualReturnType = Type.ITEM;
 
@@ -159,6 +162,7 @@ public class GeneralComparison extends BinaryOp implements Optimizable, IndexUse
         contextInfo.setParent( this );
         super.analyze( contextInfo );
         inWhereClause         = ( contextInfo.getFlags() & IN_WHERE_CLAUSE ) != 0;
+        costModel             = CostModel.get( context );
 
         //Ugly workaround for the polysemy of "." which is expanded as self::node() even when it is not relevant
         // (1)[.= 1] works...
@@ -304,6 +308,33 @@ public class GeneralComparison extends BinaryOp implements Optimizable, IndexUse
     }
 
 
+    @Override
+    public QName getOptimizeQName()
+    {
+        return( contextQName );
+    }
+
+
+    @Override
+    public double getSelectivity()
+    {
+        switch( relation ) {
+
+            case EQ: {
+                return( CostModel.EQUALITY_SELECTIVITY );
+            }
+
+            case NEQ: {
+                return( 1 - CostModel.EQUALITY_SELECTIVITY );
+            }
+
+            default: {
+                return( CostModel.RANGE_SELECTIVITY );
+            }
+        }
+    }
+
+
     public Comparison getRelation()
     {
         return( this.relation );
@@ -723,6 +754,15 @@ public class GeneralComparison extends BinaryOp implements Optimizable, IndexUse
                 LOG.trace("found an index of type: {}", Type.getTypeName(indexType));
             }
 
+            //If only a few nodes have to be compared, but the index is expected to
+            //return many more, compare the values of the nodes directly.
+            //The size of a VirtualNodeSet, i.e. the number of descendant candidates
+            //of its context, is not known without evaluating it, so it uses the index
+            if( ( contextSequence != null ) && ( costModel != null ) && !( nodes instanceof VirtualNodeSet )
+                    && costModel.preferNavigation( nodes.getItemCountLong(), this ) ) {
+                return( nodeSetCompare( nodes, contextSequence ) );
+            }
+
             boolean indexScan = false;
             boolean indexMixed = false;
             QName myContextQName = contextQName;
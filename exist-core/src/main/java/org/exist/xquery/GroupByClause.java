@@ -21,21 +21,29 @@
  */
 package org.exist.xquery;
 
-import com.ibm.icu.text.Collator;
-import org.exist.dom.QName;
+import org.exist.util.Configuration;
 import org.exist.xquery.util.ExpressionDumper;
 import org.exist.xquery.value.*;
 
+import javax.annotation.Nullable;
 import java.util.*;
-import java.util.stream.Stream;
 
 /**
  * Implements a "group by" clause inside a FLWOR.
  *
+ * Tuples are grouped in a hash map by their {@link GroupingKey}. If
+ * {@link #PROPERTY_GROUP_BY_SPILL_THRESHOLD} is set and more items than
+ * that are collected, the groups are partitioned into temporary files
+ * by a {@link GroupBySpill} and grouped one partition at a time.
+ *
  * @author wolf
  */
 public class GroupByClause extends AbstractFLWORClause {
 
+    public static final String GROUP_BY_SPILL_THRESHOLD_ATTRIBUTE = "group-by-spill-threshold";
+    public static final String PROPERTY_GROUP_BY_SPILL_THRESHOLD = "xquery.group-by.spill-threshold";
+    public static final int DEFAULT_SPILL_THRESHOLD = 0;
+
     protected FLWORClause rootClause = null;
     private GroupSpec[] groupSpecs;
     private final Deque<GroupByData> stack = new ArrayDeque<>();
@@ -46,24 +54,41 @@ public class GroupByClause extends AbstractFLWORClause {
      * in a separate object and push it to a stack, otherwise recursive calls
      * would overwrite data.
      */
-    private class GroupByData {
+    private static class GroupByData {
 
-        private Map<List<AtomicValue>, Tuple> groupedMap = null;
-        private Map<QName, LocalVariable> variables = null;
-        private List<LocalVariable> groupingVars = null;
+        private Map<GroupingKey, Tuple> groupedMap = new HashMap<>();
+
+        /**
+         * The non-grouping variables, in the order of the in-scope
+         * variables, which is also the order of the values in a {@link Tuple}.
+         */
+        private final List<LocalVariable> variables = new ArrayList<>();
+        private final List<LocalVariable> groupingVars = new ArrayList<>();
 
         private boolean initialized = false;
 
-        public GroupByData() {
-            // check if we can use a hash map
-            if (usesDefaultCollator()) {
-                groupedMap = new HashMap<>();
-            } else {
-                // non-default collation: must use tree map
-                groupedMap = new TreeMap<>(GroupByClause.this::compareKeys);
+        /**
+         * The number of items after which the groups are spilled, or 0.
+         */
+        private final int spillThreshold;
+
+        /**
+         * True as long as all collected items can be spilled.
+         */
+        private boolean spillable;
+        private long bufferedItems = 0;
+        private @Nullable GroupBySpill spill = null;
+
+        GroupByData(final int spillThreshold) {
+            this.spillThreshold = spillThreshold;
+            this.spillable = spillThreshold > 0;
+        }
+
+        void close() {
+            if (spill != null) {
+                spill.close();
+                spill = null;
             }
-            variables = new HashMap<>();
-            groupingVars = new ArrayList<>();
         }
     }
 
@@ -78,10 +103,18 @@ public class GroupByClause extends AbstractFLWORClause {
 
     @Override
     public Sequence preEval(Sequence seq) throws XPathException {
-        stack.push(new GroupByData());
+        stack.push(new GroupByData(getSpillThreshold()));
         return super.preEval(seq);
     }
 
+    private int getSpillThreshold() {
+        final Configuration config = context.getConfiguration();
+        if (config == null) {
+            return DEFAULT_SPILL_THRESHOLD;
+        }
+        return config.getProperty(PROPERTY_GROUP_BY_SPILL_THRESHOLD, DEFAULT_SPILL_THRESHOLD);
+    }
+
     @Override
     public Sequence eval(Sequence contextSequence, Item contextItem) throws XPathException {
         final GroupByData data = stack.peek();
@@ -107,29 +140,103 @@ public class GroupByClause extends AbstractFLWORClause {
             groupingKeys.add(groupingValue);
         }
 
-        // collect the current tuples into the grouping map
-        final Tuple tuple = data.groupedMap.computeIfAbsent(groupingKeys, ks -> new Tuple(groupingValues));
-
-        // scan in-scope variables to collect tuples
+        // scan in-scope variables to collect the values of the tuple
         LocalVariable nextVar = rootClause.getStartVariable();
         Objects.requireNonNull(nextVar);
-        while(nextVar != null) {
-            tuple.add(nextVar.getQName(), nextVar.getValue());
-            if (!data.initialized) {
-                // on first call: initialize non-grouping variable for later use
-                final LocalVariable var = new LocalVariable(nextVar.getQName());
-                var.setSequenceType(nextVar.getSequenceType());
-                var.setStaticType(nextVar.getStaticType());
-                var.setContextDocs(nextVar.getContextDocs());
-                data.variables.put(var.getQName(), var);
+        if (!data.initialized) {
+            // on first call: initialize non-grouping variables for later use
+            for (LocalVariable v = nextVar; v != null; v = v.after) {
+                final LocalVariable var = new LocalVariable(v.getQName());
+                var.setSequenceType(v.getSequenceType());
+                var.setStaticType(v.getStaticType());
+                var.setContextDocs(v.getContextDocs());
+                data.variables.add(var);
             }
+            data.initialized = true;
+        }
+        final Sequence[] values = new Sequence[data.variables.size()];
+        for (int i = 0; nextVar != null && i < values.length; i++) {
+            values[i] = nextVar.getValue();
             nextVar = nextVar.after;
         }
 
-        data.initialized = true;
+        final GroupingKey key = GroupingKey.of(groupingKeys, groupSpecs);
+        if (data.spillable) {
+            data.spillable = isSpillable(groupingKeys, groupingValues, values);
+            if (!data.spillable && data.spill != null) {
+                // items which cannot be spilled: read the spilled groups back
+                unspill(data);
+            }
+        }
+
+        if (data.spill != null) {
+            data.spill.write(key, groupingValues, values);
+            return contextSequence;
+        }
+
+        // collect the current tuple into the grouping map
+        Tuple tuple = data.groupedMap.get(key);
+        if (tuple == null) {
+            tuple = new Tuple(groupingValues, values.length);
+            data.groupedMap.put(key, tuple);
+            data.bufferedItems += groupingValues.size();
+        }
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                tuple.add(i, values[i]);
+                data.bufferedItems += values[i].getItemCount();
+            }
+        }
+
+        if (data.spillable && data.bufferedItems > data.spillThreshold) {
+            spill(data);
+        }
         return contextSequence;
     }
 
+    private static boolean isSpillable(final List<AtomicValue> groupingKeys, final List<Sequence> groupingValues,
+            final Sequence[] values) throws XPathException {
+        for (final AtomicValue groupingKey : groupingKeys) {
+            if (!ItemCodec.isSpillableItem(groupingKey)) {
+                return false;
+            }
+        }
+        for (final Sequence groupingValue : groupingValues) {
+            if (!ItemCodec.isSpillable(groupingValue)) {
+                return false;
+            }
+        }
+        for (final Sequence value : values) {
+            if (value != null && !ItemCodec.isSpillable(value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Move the groups collected so far to the partitions of a new
+     * {@link GroupBySpill}, all further tuples are written there directly.
+     */
+    private void spill(final GroupByData data) throws XPathException {
+        final GroupBySpill spill = new GroupBySpill(this, groupSpecs, context.getBroker().getBrokerPool().getNodeFactory(),
+                data.variables.size());
+        data.spill = spill;
+        for (final Map.Entry<GroupingKey, Tuple> group : data.groupedMap.entrySet()) {
+            final Tuple tuple = group.getValue();
+            spill.write(group.getKey(), tuple.groupingValues, tuple.values);
+        }
+        data.groupedMap = new HashMap<>();
+        data.bufferedItems = 0;
+    }
+
+    private void unspill(final GroupByData data) throws XPathException {
+        for (int i = 0; i < GroupBySpill.PARTITIONS; i++) {
+            data.groupedMap.putAll(data.spill.readPartition(i));
+        }
+        data.close();
+    }
+
     @Override
     public Sequence postEval(final Sequence seq) throws XPathException {
         if (!stack.isEmpty()) {
@@ -138,36 +245,23 @@ public class GroupByClause extends AbstractFLWORClause {
             final LocalVariable mark = context.markLocalVariables(false);
             try {
                 // declare non-grouping variables
-                for (LocalVariable var : data.variables.values()) {
+                for (LocalVariable var : data.variables) {
                     context.declareVariableBinding(var);
                 }
                 // declare grouping variables
                 for (LocalVariable var : data.groupingVars) {
                     context.declareVariableBinding(var);
                 }
-                // iterate over each group
-                for (Tuple tuple : data.groupedMap.values()) {
-                    context.proceed();
-
-                    // set grouping variable values
-                    final Iterator<Sequence> siter = tuple.groupingValues.iterator();
-                    for (LocalVariable var : data.groupingVars) {
-                        if (siter.hasNext()) {
-                            Sequence val = siter.next();
-                            var.setValue(val);
-                        } else {
-                            throw new XPathException(this, "Internal error: missing grouping value");
-                        }
-                    }
-                    // set values of non-grouping variables
-                    for (Map.Entry<QName, Sequence> entry : tuple.entrySet()) {
-                        final LocalVariable var = data.variables.get(entry.getKey());
-                        var.setValue(entry.getValue());
+                if (data.spill == null) {
+                    evalGroups(data, data.groupedMap, result);
+                } else {
+                    // group and return one spilled partition at a time
+                    for (int i = 0; i < GroupBySpill.PARTITIONS; i++) {
+                        evalGroups(data, data.spill.readPartition(i), result);
                     }
-                    final Sequence r = returnExpr.eval(null);
-                    result.addAll(r);
                 }
             } finally {
+                data.close();
                 stack.pop();
                 context.popLocalVariables(mark, result);
             }
@@ -181,6 +275,31 @@ public class GroupByClause extends AbstractFLWORClause {
         return seq;
     }
 
+    private void evalGroups(final GroupByData data, final Map<GroupingKey, Tuple> groups, final Sequence result)
+            throws XPathException {
+        // iterate over each group
+        for (Tuple tuple : groups.values()) {
+            context.proceed();
+
+            // set grouping variable values
+            final Iterator<Sequence> siter = tuple.groupingValues.iterator();
+            for (LocalVariable var : data.groupingVars) {
+                if (siter.hasNext()) {
+                    Sequence val = siter.next();
+                    var.setValue(val);
+                } else {
+                    throw new XPathException(this, "Internal error: missing grouping value");
+                }
+            }
+            // set values of non-grouping variables
+            for (int i = 0; i < tuple.values.length; i++) {
+                data.variables.get(i).setValue(tuple.values[i] == null ? Sequence.EMPTY_SEQUENCE : tuple.values[i]);
+            }
+            final Sequence r = returnExpr.eval(null);
+            result.addAll(r);
+        }
+    }
+
     @Override
     public void analyze(AnalyzeContextInfo contextInfo) throws XPathException {
         contextInfo.setParent(this);
@@ -252,6 +371,9 @@ public class GroupByClause extends AbstractFLWORClause {
     @Override
     public void resetState(boolean postOptimization) {
         super.resetState(postOptimization);
+        for (final GroupByData data : stack) {
+            data.close();
+        }
         stack.clear();
         returnExpr.resetState(postOptimization);
         for (GroupSpec spec: groupSpecs) {
@@ -265,50 +387,25 @@ public class GroupByClause extends AbstractFLWORClause {
     }
 
     /**
-     * Compare keys using the collator given in the group spec. Used to
-     * sort keys into the grouping map.
+     * The grouping values and the collected values of the non-grouping
+     * variables of a group, indexed by the position of the variable.
      */
-    private int compareKeys(List<AtomicValue> s1, List<AtomicValue> s2) {
-        final int c1 = s1.size();
-        final int c2 = s2.size();
-        if (c1 == c2) {
-            try {
-                for (int i = 0; i < c1; i++) {
-                    final AtomicValue v1 = s1.get(i);
-                    final AtomicValue v2 = s2.get(i);
-                    final Collator collator = groupSpecs[i].getCollator();
-                    final int r = v1.compareTo(collator, v2);
-                    if (r != Constants.EQUAL) {
-                        return r;
-                    }
-                }
-                return Constants.EQUAL;
-            } catch (XPathException e) {
-                return Constants.INFERIOR;
-            }
-        }
-        return c1 < c2 ? Constants.INFERIOR : Constants.SUPERIOR;
-    }
-
-    private boolean usesDefaultCollator() {
-        return Stream.of(groupSpecs).allMatch(spec -> spec.getCollator() == null);
-    }
-
-    static class Tuple extends HashMap<QName, Sequence> {
+    static class Tuple {
 
         private final List<Sequence> groupingValues;
+        private final Sequence[] values;
 
-        public Tuple(final List<Sequence> groupingValues) {
-            super();
+        Tuple(final List<Sequence> groupingValues, final int variableCount) {
             this.groupingValues = groupingValues;
+            this.values = new Sequence[variableCount];
         }
 
-        public void add(final QName name, final Sequence val) throws XPathException {
-            Sequence seq = get(name);
+        void add(final int index, final Sequence val) throws XPathException {
+            final Sequence seq = values[index];
             if (seq == null) {
                 final ValueSequence temp = new ValueSequence(val.getItemCount());
                 temp.addAll(val);
-                put(name, temp);
+                values[index] = temp;
             } else {
                 seq.addAll(val);
             }
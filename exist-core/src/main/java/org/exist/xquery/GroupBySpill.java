@@ -0,0 +1,201 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.xquery;
+
+import org.exist.numbering.NodeIdFactory;
+import org.exist.storage.io.VariableByteInputStream;
+import org.exist.storage.io.VariableByteOutputStream;
+import org.exist.util.io.TemporaryFileManager;
+import org.exist.xquery.value.*;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Temporary storage for the tuples of a {@link GroupByClause} which
+ * exceeded its memory budget.
+ *
+ * Tuples are hash partitioned by their {@link GroupingKey} into a fixed
+ * number of temporary files obtained from the {@link TemporaryFileManager},
+ * so that all tuples of a group end up in the same partition, in the order
+ * in which they were written. Each partition can then be grouped in memory
+ * on its own.
+ *
+ * Items are written by an {@link ItemCodec}, so only tuples for which
+ * {@link ItemCodec#isSpillable(Sequence)} holds can be spilled.
+ */
+final class GroupBySpill implements AutoCloseable {
+
+    static final int PARTITIONS = 32;
+
+    private static final int FLUSH_THRESHOLD = 64 * 1024;
+
+    private final Expression expression;
+    private final GroupSpec[] groupSpecs;
+    private final ItemCodec codec;
+    private final int variableCount;
+
+    private final Path[] files = new Path[PARTITIONS];
+    private final OutputStream[] outputs = new OutputStream[PARTITIONS];
+    private final VariableByteOutputStream[] buffers = new VariableByteOutputStream[PARTITIONS];
+    private final int[] recordCounts = new int[PARTITIONS];
+
+    GroupBySpill(final Expression expression, final GroupSpec[] groupSpecs, final NodeIdFactory nodeIdFactory,
+            final int variableCount) {
+        this.expression = expression;
+        this.groupSpecs = groupSpecs;
+        this.codec = new ItemCodec(expression, nodeIdFactory);
+        this.variableCount = variableCount;
+    }
+
+    /**
+     * Append a tuple to the partition of its grouping key.
+     *
+     * @param key the grouping key of the tuple.
+     * @param groupingValues the values of the grouping variables.
+     * @param values the values of the non-grouping variables, may contain nulls for empty values.
+     *
+     * @throws XPathException if the tuple cannot be written.
+     */
+    void write(final GroupingKey key, final List<Sequence> groupingValues, final Sequence[] values) throws XPathException {
+        final int partition = partition(key);
+        try {
+            VariableByteOutputStream buffer = buffers[partition];
+            if (buffer == null) {
+                files[partition] = TemporaryFileManager.getInstance().getTemporaryFile();
+                outputs[partition] = Files.newOutputStream(files[partition]);
+                buffer = new VariableByteOutputStream(FLUSH_THRESHOLD);
+                buffers[partition] = buffer;
+            }
+
+            for (final AtomicValue value : key.getValues()) {
+                codec.writeItem(buffer, value);
+            }
+            for (final Sequence groupingValue : groupingValues) {
+                codec.writeSequence(buffer, groupingValue);
+            }
+            for (final Sequence value : values) {
+                codec.writeSequence(buffer, value);
+            }
+            recordCounts[partition]++;
+
+            if (buffer.size() >= FLUSH_THRESHOLD) {
+                flush(partition);
+            }
+        } catch (final IOException e) {
+            throw new XPathException(expression, "Unable to write group by tuples to temporary file: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Read back all tuples of a partition and group them. The
+     * temporary file of the partition is released afterwards.
+     *
+     * @param partition the partition, between 0 and {@link #PARTITIONS} (exclusive).
+     *
+     * @return the groups of the partition.
+     *
+     * @throws XPathException if the partition cannot be read.
+     */
+    Map<GroupingKey, GroupByClause.Tuple> readPartition(final int partition) throws XPathException {
+        final Map<GroupingKey, GroupByClause.Tuple> groups = new HashMap<>();
+        if (files[partition] == null) {
+            return groups;
+        }
+
+        try {
+            flush(partition);
+            outputs[partition].close();
+            outputs[partition] = null;
+            buffers[partition] = null;
+
+            try (final InputStream is = new BufferedInputStream(Files.newInputStream(files[partition]), FLUSH_THRESHOLD)) {
+                final VariableByteInputStream input = new VariableByteInputStream(is);
+                for (int i = 0; i < recordCounts[partition]; i++) {
+                    final List<AtomicValue> keyValues = new ArrayList<>(groupSpecs.length);
+                    for (int j = 0; j < groupSpecs.length; j++) {
+                        keyValues.add((AtomicValue) codec.readItem(input));
+                    }
+                    final List<Sequence> groupingValues = new ArrayList<>(groupSpecs.length);
+                    for (int j = 0; j < groupSpecs.length; j++) {
+                        groupingValues.add(codec.readSequence(input));
+                    }
+
+                    final GroupByClause.Tuple tuple = groups.computeIfAbsent(GroupingKey.of(keyValues, groupSpecs),
+                            key -> new GroupByClause.Tuple(groupingValues, variableCount));
+                    for (int j = 0; j < variableCount; j++) {
+                        tuple.add(j, codec.readSequence(input));
+                    }
+                }
+            }
+        } catch (final IOException e) {
+            throw new XPathException(expression, "Unable to read group by tuples from temporary file: " + e.getMessage(), e);
+        } finally {
+            TemporaryFileManager.getInstance().returnTemporaryFile(files[partition]);
+            files[partition] = null;
+            recordCounts[partition] = 0;
+        }
+        return groups;
+    }
+
+    private static int partition(final GroupingKey key) {
+        final int h = key.hashCode();
+        return (h ^ (h >>> 16)) & (PARTITIONS - 1);
+    }
+
+    private void flush(final int partition) throws IOException {
+        final VariableByteOutputStream buffer = buffers[partition];
+        if (buffer != null && buffer.size() > 0) {
+            outputs[partition].write(buffer.toByteArray());
+            buffer.clear();
+        }
+    }
+
+    @Override
+    public void close() {
+        for (int i = 0; i < PARTITIONS; i++) {
+            if (outputs[i] != null) {
+                try {
+                    outputs[i].close();
+                } catch (final IOException e) {
+                    // ignore, the file is removed below
+                }
+                outputs[i] = null;
+            }
+            if (files[i] != null) {
+                TemporaryFileManager.getInstance().returnTemporaryFile(files[i]);
+                files[i] = null;
+            }
+            buffers[i] = null;
+            recordCounts[i] = 0;
+        }
+        codec.clear();
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.xquery;
+
+import com.ibm.icu.text.Collator;
+import org.exist.xquery.value.AtomicValue;
+import org.exist.xquery.value.Type;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The grouping key of a tuple in a {@link GroupByClause}.
+ *
+ * Values which are compared under a collation are replaced by their
+ * {@link com.ibm.icu.text.CollationKey} when the key is created, so that
+ * keys can be hashed and compared without calling the collator again.
+ * Two values are equal under a collator exactly when their collation keys
+ * are equal. All other values are compared by their own
+ * {@link Object#equals(Object)}, as before.
+ */
+final class GroupingKey {
+
+    private final List<AtomicValue> values;
+    private final Object[] components;
+    private final int hashCode;
+
+    private GroupingKey(final List<AtomicValue> values, final Object[] components) {
+        this.values = values;
+        this.components = components;
+        this.hashCode = Arrays.hashCode(components);
+    }
+
+    /**
+     * Create the grouping key for the atomized values of the group specs.
+     *
+     * @param values the atomized grouping values, one per group spec.
+     * @param groupSpecs the group specs.
+     *
+     * @return the grouping key.
+     *
+     * @throws XPathException if the string value of a grouping value cannot be obtained.
+     */
+    static GroupingKey of(final List<AtomicValue> values, final GroupSpec[] groupSpecs) throws XPathException {
+        final Object[] components = new Object[values.size()];
+        for (int i = 0; i < components.length; i++) {
+            final AtomicValue value = values.get(i);
+            final Collator collator = groupSpecs[i].getCollator();
+            if (collator != null && isStringLike(value.getType())) {
+                components[i] = collator.getCollationKey(value.getStringValue());
+            } else {
+                components[i] = value;
+            }
+        }
+        return new GroupingKey(values, components);
+    }
+
+    private static boolean isStringLike(final int type) {
+        return Type.subTypeOf(type, Type.STRING)
+                || type == Type.UNTYPED_ATOMIC
+                || type == Type.ANY_URI;
+    }
+
+    /**
+     * Get the atomized grouping values this key was created from.
+     *
+     * @return the grouping values.
+     */
+    List<AtomicValue> getValues() {
+        return values;
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof GroupingKey)) {
+            return false;
+        }
+        final GroupingKey other = (GroupingKey) obj;
+        return hashCode == other.hashCode && Arrays.equals(components, other.components);
+    }
+}
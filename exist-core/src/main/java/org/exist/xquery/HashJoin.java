@@ -0,0 +1,461 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.xquery;
+
+import org.exist.dom.QName;
+import org.exist.xquery.Constants.Comparison;
+import org.exist.xquery.Constants.StringTruncationOperator;
+import org.exist.xquery.value.AtomicValue;
+import org.exist.xquery.value.Item;
+import org.exist.xquery.value.NumericValue;
+import org.exist.xquery.value.Sequence;
+import org.exist.xquery.value.SequenceIterator;
+import org.exist.xquery.value.Type;
+
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A hash join between two consecutive "for" clauses of a FLWOR expression,
+ * which are joined by an equality in the following "where" clause, e.g.
+ *
+ * <pre>
+ * for $a in //order
+ * for $b in //customer
+ * where $a/@cust = $b/@id
+ * </pre>
+ *
+ * Instead of binding the inner variable to every item of its input sequence for
+ * each item of the outer input sequence, the inner input sequence is only evaluated
+ * once per evaluation of the outer "for" clause, and a hash table from the values of the
+ * inner key to the positions of the inner items is built. For each outer item, only the
+ * inner items whose key matches are bound. The "where" clause is still evaluated for
+ * them, so the hash table only needs to find a superset of the matching items.
+ *
+ * Inner items which are skipped would have let the "where" clause return false, or
+ * raise a type error, which may be omitted according to "Errors and Optimization"
+ * of the XQuery specification.
+ *
+ * The join is only used for general comparisons with the codepoint collation,
+ * where the keys are strings or numbers. Otherwise, or if evaluating the inner key
+ * raises an error, the inner "for" clause falls back to the nested loop.
+ */
+final class HashJoin {
+
+    private final XQueryContext context;
+    private final Expression outerKey;
+    private final Expression innerKey;
+
+    /**
+     * The state of each nested evaluation of the outer "for" clause,
+     * e.g. in recursive function calls.
+     */
+    private final Deque<State> states = new ArrayDeque<>();
+
+    private HashJoin(final XQueryContext context, final Expression outerKey, final Expression innerKey) {
+        this.context = context;
+        this.outerKey = outerKey;
+        this.innerKey = innerKey;
+    }
+
+    /**
+     * Find an equality in a "where" clause which can be evaluated as a hash join
+     * between an outer and an inner "for" clause.
+     *
+     * @param context the XQuery context.
+     * @param whereExpr the expression of the "where" clause following the inner "for" clause.
+     * @param innerInput the input sequence of the inner "for" clause.
+     * @param outerVars the variable and positional variable of the outer "for" clause.
+     * @param innerVar the variable of the inner "for" clause.
+     * @param innerPositionalVar the positional variable of the inner "for" clause, or null.
+     *
+     * @return the hash join, or null if there is no suitable equality.
+     */
+    static @Nullable HashJoin create(final XQueryContext context, final Expression whereExpr,
+            final Expression innerInput, final Set<QName> outerVars, final QName innerVar,
+            @Nullable final QName innerPositionalVar) {
+        final Set<QName> inputVars = new HashSet<>();
+        if (!collectVariables(innerInput, inputVars) || containsAny(inputVars, outerVars)) {
+            // the inner input sequence is not the same for each outer item
+            return null;
+        }
+        final Set<QName> innerVars = new HashSet<>();
+        innerVars.add(innerVar);
+        if (innerPositionalVar != null) {
+            innerVars.add(innerPositionalVar);
+        }
+        return find(context, whereExpr, innerVar, innerVars);
+    }
+
+    private static @Nullable HashJoin find(final XQueryContext context, Expression expr, final QName innerVar,
+            final Set<QName> innerVars) {
+        expr = unwrap(expr);
+        if (expr instanceof OpAnd) {
+            final HashJoin join = find(context, ((OpAnd) expr).getLeft(), innerVar, innerVars);
+            return join != null ? join : find(context, ((OpAnd) expr).getRight(), innerVar, innerVars);
+        }
+        if (expr.getClass() != GeneralComparison.class) {
+            return null;
+        }
+        final GeneralComparison comparison = (GeneralComparison) expr;
+        if (comparison.getRelation() != Comparison.EQ || comparison.truncation != StringTruncationOperator.NONE
+                || comparison.collationArg != null) {
+            return null;
+        }
+
+        final Set<QName> leftVars = new HashSet<>();
+        final Set<QName> rightVars = new HashSet<>();
+        if (!collectVariables(comparison.getLeft(), leftVars) || !collectVariables(comparison.getRight(), rightVars)) {
+            return null;
+        }
+        if (isInnerKey(leftVars, innerVar) && !containsAny(rightVars, innerVars)) {
+            return new HashJoin(context, comparison.getRight(), comparison.getLeft());
+        }
+        if (isInnerKey(rightVars, innerVar) && !containsAny(leftVars, innerVars)) {
+            return new HashJoin(context, comparison.getLeft(), comparison.getRight());
+        }
+        return null;
+    }
+
+    private static boolean isInnerKey(final Set<QName> vars, final QName innerVar) {
+        // neither outer variables nor the positional variable, which is not bound while building the table
+        return vars.size() == 1 && vars.contains(innerVar);
+    }
+
+    private static boolean containsAny(final Set<QName> vars, final Set<QName> others) {
+        for (final QName var : others) {
+            if (vars.contains(var)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Collect the variables referenced by an expression. Only expressions
+     * whose variable references can be found for certain are accepted.
+     *
+     * @param expr the expression.
+     * @param vars the set to which the names of the referenced variables are added.
+     *
+     * @return true if all variables of the expression have been found.
+     */
+    private static boolean collectVariables(final Expression expr, final Set<QName> vars) {
+        if (expr instanceof VariableReference) {
+            vars.add(((VariableReference) expr).getName());
+            return true;
+        }
+        if (expr instanceof LiteralValue) {
+            return true;
+        }
+        if (expr instanceof LocationStep || expr instanceof RootNode) {
+            final Predicate[] predicates = ((Step) expr).getPredicates();
+            if (predicates != null) {
+                for (final Predicate predicate : predicates) {
+                    if (!collectVariables(predicate, vars)) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        if (expr instanceof InternalFunctionCall) {
+            return collectVariables(((InternalFunctionCall) expr).getFunction(), vars);
+        }
+        if (expr instanceof Function) {
+            // built-in functions of the fn namespace do not see the local variables of the caller
+            if (expr instanceof FunctionCall
+                    || !Function.BUILTIN_FUNCTION_NS.equals(((Function) expr).getName().getNamespaceURI())) {
+                return false;
+            }
+        } else {
+            final Class<?> clazz = expr.getClass();
+            if (clazz != PathExpr.class && clazz != SequenceConstructor.class && clazz != Predicate.class
+                    && clazz != GeneralComparison.class && clazz != OpAnd.class && clazz != OpOr.class
+                    && clazz != Atomize.class && clazz != DynamicCardinalityCheck.class
+                    && clazz != DynamicTypeCheck.class && clazz != UntypedValueCheck.class
+                    && clazz != DebuggableExpression.class) {
+                return false;
+            }
+        }
+        for (int i = 0; i < expr.getSubExpressionCount(); i++) {
+            if (!collectVariables(expr.getSubExpression(i), vars)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Expression unwrap(Expression expr) {
+        while ((expr.getClass() == PathExpr.class || expr.getClass() == SequenceConstructor.class)
+                && ((PathExpr) expr).getLength() == 1) {
+            expr = ((PathExpr) expr).getExpression(0);
+        }
+        return expr;
+    }
+
+    /**
+     * Called by the outer "for" clause before it starts iterating.
+     */
+    void enter() {
+        states.push(new State());
+    }
+
+    /**
+     * Called by the outer "for" clause after it has finished iterating,
+     * releases the input sequence and the hash table of the inner "for" clause.
+     */
+    void exit() {
+        states.pop();
+    }
+
+    /**
+     * Get the input sequence of the inner "for" clause, if it has already
+     * been evaluated for the current evaluation of the outer "for" clause.
+     *
+     * @return the input sequence, or null if the inner "for" clause has to evaluate it.
+     */
+    @Nullable Sequence getInput() {
+        final State state = states.peek();
+        return state != null ? state.input : null;
+    }
+
+    /**
+     * Remember the input sequence of the inner "for" clause
+     * for the current evaluation of the outer "for" clause.
+     *
+     * @param input the input sequence.
+     */
+    void setInput(final Sequence input) {
+        final State state = states.peek();
+        if (state != null && !state.unusable) {
+            state.input = input;
+        }
+    }
+
+    /**
+     * Get the positions of the items of the inner input sequence which
+     * may match the current binding of the outer "for" clause.
+     *
+     * @param expr the inner "for" clause.
+     * @param var the variable of the inner "for" clause.
+     * @param input the input sequence of the inner "for" clause.
+     *
+     * @return the positions of the candidate items in ascending order,
+     *     or null if all items have to be tried.
+     *
+     * @throws XPathException if the query is terminated.
+     */
+    @Nullable int[] getCandidates(final Expression expr, final LocalVariable var, final Sequence input)
+            throws XPathException {
+        final State state = states.peek();
+        if (state == null || state.unusable || context.getDefaultCollator() != null) {
+            return null;
+        }
+        if (state.table == null) {
+            state.table = build(expr, var, input);
+            if (state.table == null) {
+                // the items may not be reused, e.g. binary values are closed after use
+                state.unusable = true;
+                state.input = null;
+                return null;
+            }
+        }
+
+        final List<Object> keys = new ArrayList<>();
+        try {
+            for (final SequenceIterator i = outerKey.eval(null, null).iterate(); i.hasNext(); ) {
+                if (!addKeys(i.nextItem().atomize(), keys)) {
+                    return null;
+                }
+            }
+        } catch (final XPathException e) {
+            // let the "where" clause raise the error
+            return null;
+        }
+
+        int[] candidates = null;
+        int matchedKeys = 0;
+        for (final Object key : keys) {
+            final Positions positions = state.table.get(key);
+            if (positions == null) {
+                continue;
+            }
+            if (candidates == null) {
+                candidates = Arrays.copyOf(positions.values, positions.size);
+            } else {
+                final int count = candidates.length;
+                candidates = Arrays.copyOf(candidates, count + positions.size);
+                System.arraycopy(positions.values, 0, candidates, count, positions.size);
+            }
+            matchedKeys++;
+        }
+        if (candidates == null) {
+            return new int[0];
+        }
+        if (matchedKeys == 1) {
+            return candidates;
+        }
+
+        // several keys, restore the order of the inner input sequence
+        Arrays.sort(candidates);
+        int distinct = 0;
+        for (int i = 0; i < candidates.length; i++) {
+            if (i == 0 || candidates[i] != candidates[i - 1]) {
+                candidates[distinct++] = candidates[i];
+            }
+        }
+        return distinct == candidates.length ? candidates : Arrays.copyOf(candidates, distinct);
+    }
+
+    private @Nullable Map<Object, Positions> build(final Expression expr, final LocalVariable var,
+            final Sequence input) throws XPathException {
+        final Map<Object, Positions> table = new HashMap<>();
+        final List<Object> keys = new ArrayList<>();
+        int p = 0;
+        for (final SequenceIterator i = input.iterate(); i.hasNext(); p++) {
+            context.proceed(expr);
+            final Item item = i.nextItem();
+            if (!Type.subTypeOf(item.getType(), Type.NODE) && !isKeyType(item.getType())) {
+                return null;
+            }
+            var.setValue(item.toSequence());
+            keys.clear();
+            try {
+                for (final SequenceIterator k = innerKey.eval(null, null).iterate(); k.hasNext(); ) {
+                    if (!addKeys(k.nextItem().atomize(), keys)) {
+                        return null;
+                    }
+                }
+            } catch (final XPathException e) {
+                // let the nested loop raise the error, if any
+                return null;
+            }
+            for (final Object key : keys) {
+                table.computeIfAbsent(key, k -> new Positions()).add(p);
+            }
+        }
+        return table;
+    }
+
+    private static boolean isKeyType(final int type) {
+        return type == Type.UNTYPED_ATOMIC || type == Type.ANY_URI || Type.subTypeOf(type, Type.STRING)
+                || Type.subTypeOfUnion(type, Type.NUMBER);
+    }
+
+    /**
+     * Add the hash keys of an atomic value. Values which are equal according
+     * to a general comparison have a key in common: strings, URIs and untyped values
+     * have their string as key, numbers and untyped values which can be cast to xs:double
+     * have their value as xs:float as key, as numbers are compared as xs:float or xs:double.
+     *
+     * @param value the atomic value.
+     * @param keys the list to add the keys to.
+     *
+     * @return false if values of this type are not supported.
+     */
+    private static boolean addKeys(final AtomicValue value, final List<Object> keys) {
+        final int type = value.getType();
+        if (type == Type.UNTYPED_ATOMIC) {
+            final String s = value.getStringValue();
+            keys.add(s);
+            if (mayBeNumber(s)) {
+                try {
+                    keys.add(toKey((float) ((NumericValue) value.convertTo(Type.DOUBLE)).getDouble()));
+                } catch (final XPathException e) {
+                    // not a number
+                }
+            }
+            return true;
+        }
+        if (type == Type.ANY_URI || Type.subTypeOf(type, Type.STRING)) {
+            keys.add(value.getStringValue());
+            return true;
+        }
+        if (Type.subTypeOfUnion(type, Type.NUMBER)) {
+            try {
+                final NumericValue n = (NumericValue) value;
+                final Float key = toKey((float) n.getDouble());
+                keys.add(key);
+                if (Type.subTypeOf(type, Type.DECIMAL)) {
+                    // a decimal compared to a float is converted to xs:float directly
+                    final Float floatKey = toKey(n.getFloat());
+                    if (!floatKey.equals(key)) {
+                        keys.add(floatKey);
+                    }
+                }
+                return true;
+            } catch (final XPathException e) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private static boolean mayBeNumber(final String s) {
+        for (int i = 0; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                return (c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'I' || c == 'N';
+            }
+        }
+        return false;
+    }
+
+    private static Float toKey(final float f) {
+        // -0 equals 0
+        return f == 0.0f ? 0.0f : f;
+    }
+
+    private static class State {
+        @Nullable Sequence input;
+        @Nullable Map<Object, Positions> table;
+        boolean unusable;
+    }
+
+    /**
+     * The positions of the inner items with the same key, in ascending order.
+     */
+    private static class Positions {
+        int[] values = new int[1];
+        int size;
+
+        void add(final int position) {
+            if (size > 0 && values[size - 1] == position) {
+                // several values of the same item with the same key
+                return;
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = position;
+        }
+    }
+}
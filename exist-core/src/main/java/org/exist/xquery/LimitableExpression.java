@@ -0,0 +1,212 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.xquery;
+
+import org.exist.xquery.functions.fn.FunPosition;
+import org.exist.xquery.value.Item;
+import org.exist.xquery.value.NumericValue;
+import org.exist.xquery.value.Sequence;
+import org.exist.xquery.value.Type;
+
+import javax.annotation.Nullable;
+
+/**
+ * An expression which can do less work if only the first items
+ * of its result are needed, e.g. a "for" clause which stops iterating,
+ * or an "order by" clause which only keeps the smallest items.
+ *
+ * The consumer of the result, e.g. fn:exists or a positional predicate,
+ * finds the expression with {@link #find(Expression)} during analysis,
+ * and sets a {@link #setLimit(int) limit} for the duration of an evaluation.
+ * The result then contains at least the requested number of items from
+ * its start, if there are that many, but may contain more.
+ */
+public interface LimitableExpression {
+
+    /**
+     * Get the number of items which are needed from the start of the result.
+     *
+     * @return the number of items, or 0 for all items.
+     */
+    int getLimit();
+
+    /**
+     * Set the number of items which are needed from the start of the
+     * result for the following evaluations of the expression.
+     *
+     * @param limit the number of items, or 0 for all items.
+     */
+    void setLimit(int limit);
+
+    /**
+     * Find the part of an expression whose evaluation can be limited,
+     * if the expression is a FLWOR expression.
+     *
+     * If the last clause of the FLWOR is an "order by", this is the
+     * "order by". Otherwise, if the FLWOR only consists of "for", "let" and
+     * "where" clauses, this is the first "for" clause.
+     *
+     * @param expr the expression.
+     *
+     * @return the limitable expression, or null.
+     */
+    static @Nullable LimitableExpression find(Expression expr) {
+        expr = unwrap(expr);
+        if (!(expr instanceof FLWORClause)) {
+            return null;
+        }
+
+        ForExpr firstFor = null;
+        boolean reordered = false;
+        FLWORClause clause = (FLWORClause) expr;
+        while (true) {
+            final Expression next = clause.getReturnExpression();
+            switch (clause.getType()) {
+                case FOR:
+                    if (firstFor == null) {
+                        firstFor = (ForExpr) clause;
+                    }
+                    break;
+
+                case LET:
+                case WHERE:
+                    break;
+
+                case ORDERBY:
+                    if (!(next instanceof FLWORClause)) {
+                        return (OrderByClause) clause;
+                    }
+                    reordered = true;
+                    break;
+
+                default:
+                    // group by and quantified expressions need all tuples
+                    reordered = true;
+                    break;
+            }
+
+            if (!(next instanceof FLWORClause)) {
+                break;
+            }
+            clause = (FLWORClause) next;
+        }
+        return reordered ? null : firstFor;
+    }
+
+    /**
+     * Evaluate an expression with a limit set on its limitable part.
+     *
+     * @param expr the expression to evaluate.
+     * @param limitable the limitable part of expr, as found by {@link #find(Expression)}, or null.
+     * @param limit the number of items needed from the start of the result, or 0 for all items.
+     * @param contextSequence the context sequence.
+     * @param contextItem the context item.
+     *
+     * @return the result of the expression.
+     *
+     * @throws XPathException if an error occurs during evaluation.
+     */
+    static Sequence eval(final Expression expr, @Nullable final LimitableExpression limitable, final int limit,
+            final Sequence contextSequence, final Item contextItem) throws XPathException {
+        if (limitable == null || limit <= 0) {
+            return expr.eval(contextSequence, contextItem);
+        }
+        final int previousLimit = limitable.getLimit();
+        limitable.setLimit(limit);
+        try {
+            return expr.eval(contextSequence, contextItem);
+        } finally {
+            limitable.setLimit(previousLimit);
+        }
+    }
+
+    /**
+     * Get the number of items selected from the start of a sequence
+     * by a positional predicate of the form <code>[n]</code>,
+     * <code>[position() lt n]</code> or <code>[position() le n]</code>,
+     * where n is a numeric literal.
+     *
+     * @param predicate the predicate.
+     *
+     * @return the number of items, or 0 if the predicate is not of that form.
+     */
+    static int getPositionalLimit(final Predicate predicate) {
+        if (predicate.getLength() != 1) {
+            return 0;
+        }
+        final Expression expr = unwrap(predicate.getExpression(0));
+        if (expr instanceof LiteralValue) {
+            return toLimit(expr, 0);
+        }
+        if (expr instanceof GeneralComparison && isPosition(((GeneralComparison) expr).getLeft())) {
+            final Expression right = ((GeneralComparison) expr).getRight();
+            switch (((GeneralComparison) expr).getRelation()) {
+                case LT:
+                    return toLimit(right, -1);
+                case LTEQ:
+                    return toLimit(right, 0);
+                default:
+                    return 0;
+            }
+        }
+        return 0;
+    }
+
+    private static boolean isPosition(Expression expr) {
+        expr = unwrap(expr);
+        if (expr instanceof InternalFunctionCall) {
+            expr = ((InternalFunctionCall) expr).getFunction();
+        }
+        return expr instanceof FunPosition;
+    }
+
+    private static int toLimit(Expression expr, final int adjust) {
+        expr = unwrap(expr);
+        if (!(expr instanceof LiteralValue)) {
+            return 0;
+        }
+        final Item value = ((LiteralValue) expr).getValue();
+        if (!Type.subTypeOfUnion(value.getType(), Type.NUMBER)) {
+            return 0;
+        }
+        final NumericValue n = (NumericValue) value;
+        if (n.isNaN() || n.isInfinite() || n.hasFractionalPart()) {
+            return 0;
+        }
+        try {
+            final double d = n.getDouble() + adjust;
+            return d < 1 || d > Integer.MAX_VALUE / 2 ? 0 : (int) d;
+        } catch (final XPathException e) {
+            return 0;
+        }
+    }
+
+    private static Expression unwrap(Expression expr) {
+        // only plain paths and parenthesized expressions, the subclasses of
+        // PathExpr, e.g. function calls, use their steps as operands
+        while ((expr.getClass() == PathExpr.class || expr.getClass() == SequenceConstructor.class)
+                && ((PathExpr) expr).getLength() == 1) {
+            expr = ((PathExpr) expr).getExpression(0);
+        }
+        return expr;
+    }
+}
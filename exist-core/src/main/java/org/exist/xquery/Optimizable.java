@@ -21,9 +21,12 @@
  */
 package org.exist.xquery;
 
+import org.exist.dom.QName;
 import org.exist.dom.persistent.NodeSet;
 import org.exist.xquery.value.Sequence;
 
+import javax.annotation.Nullable;
+
 /**
  *
  */
@@ -46,4 +49,24 @@ public interface Optimizable extends Expression {
     NodeSet preSelect(Sequence contextSequence, boolean useContext) throws XPathException;
 
     int getOptimizeAxis();
+
+    /**
+     * Get the name of the nodes which are looked up in the index,
+     * used by the {@link CostModel} to estimate the cost of the expression.
+     *
+     * @return the name of the nodes, or null if unknown.
+     */
+    default @Nullable QName getOptimizeQName() {
+        return null;
+    }
+
+    /**
+     * Get the estimated fraction of the indexed nodes which are
+     * selected by this expression.
+     *
+     * @return the selectivity, between 0 and 1.
+     */
+    default double getSelectivity() {
+        return CostModel.DEFAULT_SELECTIVITY;
+    }
 }
@@ -53,6 +53,12 @@ import static org.apache.commons.lang3.ArrayUtils.isNotEmpty;
  *
  * <pre>declare option exist:optimize "enable=yes|no";</pre>
  *
+ * If index statistics are available (see {@link CostModel}), the optimizer also
+ * changes the order of the predicates of a step or filter expression,
+ * so that the predicates which are expected to select the fewest nodes
+ * are evaluated first. Only predicates which do not depend on the position
+ * of the context item are reordered, and never across a positional predicate.
+ *
  */
 public class Optimizer extends DefaultExpressionVisitor {
 
@@ -60,6 +66,7 @@ public class Optimizer extends DefaultExpressionVisitor {
 
     private final XQueryContext context;
     private final List<QueryRewriter> rewriters;
+    @Nullable private final CostModel costModel;
 
     private int predicates = 0;
 
@@ -69,6 +76,7 @@ public class Optimizer extends DefaultExpressionVisitor {
         this.context = context;
         final DBBroker broker = context.getBroker();
         this.rewriters = broker != null ? broker.getIndexController().getQueryRewriters(context) : Collections.emptyList();
+        this.costModel = CostModel.get(context);
     }
 
     public boolean hasOptimized() {
@@ -79,6 +87,12 @@ public class Optimizer extends DefaultExpressionVisitor {
     public void visitLocationStep(final LocationStep locationStep) {
         super.visitLocationStep(locationStep);
 
+        @Nullable final Predicate[] stepPredicates = locationStep.getPredicates();
+        if (stepPredicates != null && orderPredicates(Arrays.asList(stepPredicates))) {
+            // the list is backed by the step's array of predicates, which has been sorted
+            hasOptimized = true;
+        }
+
         // check query rewriters if they want to rewrite the location step
         Pragma optimizePragma = null;
         for (QueryRewriter rewriter : rewriters) {
@@ -157,6 +171,10 @@ public class Optimizer extends DefaultExpressionVisitor {
     public void visitFilteredExpr(FilteredExpression filtered) {
         super.visitFilteredExpr(filtered);
 
+        if (orderPredicates(filtered.getPredicates())) {
+            hasOptimized = true;
+        }
+
         // check if filtered expression can be simplified:
         // handles expressions like //foo/(baz)[...]
         if (filtered.getExpression() instanceof LocationStep) {
@@ -210,6 +228,86 @@ public class Optimizer extends DefaultExpressionVisitor {
         }
     }
 
+    /**
+     * Sort each run of predicates which do not depend on the context position
+     * by the estimated number of nodes they select.
+     *
+     * @param preds the predicates, sorted in place.
+     *
+     * @return true if the order of the predicates was changed.
+     */
+    private boolean orderPredicates(final List<Predicate> preds) {
+        if (costModel == null || preds.size() < 2) {
+            return false;
+        }
+        boolean reordered = false;
+        int start = 0;
+        while (start < preds.size()) {
+            int end = start;
+            while (end < preds.size() && isReorderable(preds.get(end))) {
+                end++;
+            }
+            if (end - start > 1) {
+                reordered |= orderByCost(preds.subList(start, end));
+            }
+            start = end + 1;
+        }
+        return reordered;
+    }
+
+    private boolean orderByCost(final List<Predicate> preds) {
+        final Map<Predicate, Double> estimates = new IdentityHashMap<>();
+        boolean known = false;
+        for (final Predicate pred : preds) {
+            final double estimate = costModel.estimate(pred);
+            if (estimate == CostModel.UNKNOWN) {
+                // keep predicates without an estimate after those with one
+                estimates.put(pred, Double.MAX_VALUE);
+            } else {
+                estimates.put(pred, estimate);
+                known = true;
+            }
+        }
+        if (!known) {
+            return false;
+        }
+
+        final Predicate[] original = preds.toArray(new Predicate[0]);
+        preds.sort(Comparator.comparingDouble(estimates::get));
+        for (int i = 0; i < original.length; i++) {
+            if (original[i] != preds.get(i)) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Reordered {} predicates by estimated selectivity", original.length);
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Predicates which only filter the context by a condition on each node
+     * can be evaluated in any order. Positional predicates, or predicates
+     * depending on position() or last(), cannot.
+     */
+    private static boolean isReorderable(final Predicate pred) {
+        if (pred.getLength() != 1) {
+            return false;
+        }
+        final Expression inner = pred.getExpression(0);
+        if (Dependency.dependsOn(inner, Dependency.CONTEXT_POSITION)) {
+            return false;
+        }
+        switch (pred.getExecutionMode()) {
+            case NODE:
+                return true;
+            case BOOLEAN:
+                return Type.subTypeOf(inner.returnsType(), Type.BOOLEAN);
+            default:
+                return false;
+        }
+    }
+
     private boolean hasOptimizable(List<Predicate> preds) {
         // walk through the predicates attached to the current location step.
         // try to find a predicate containing an expression which is an instance
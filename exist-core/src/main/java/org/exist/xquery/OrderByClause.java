@@ -21,6 +21,7 @@
  */
 package org.exist.xquery;
 
+import org.exist.util.Configuration;
 import org.exist.xquery.util.ExpressionDumper;
 import org.exist.xquery.value.Item;
 import org.exist.xquery.value.OrderedValueSequence;
@@ -29,15 +30,28 @@ import org.exist.xquery.value.Sequence;
 import java.util.ArrayDeque;
 import java.util.Deque;
 import java.util.List;
-import java.util.Stack;
 
 /**
  * Represents an "order by" clause within a FLWOR expression.
+ *
+ * If only the first items of the FLWOR's result are used, i.e. it is
+ * the argument of fn:subsequence or filtered by a positional predicate,
+ * and the "order by" is its last clause, the caller sets a {@link #setLimit(int) limit}
+ * and only that many items are kept while sorting, see {@link LimitableExpression}.
  */
-public class OrderByClause extends AbstractFLWORClause {
+public class OrderByClause extends AbstractFLWORClause implements LimitableExpression {
+
+    public static final String SORT_SPILL_THRESHOLD_ATTRIBUTE = "sort-spill-threshold";
+    public static final String PROPERTY_SORT_SPILL_THRESHOLD = "xquery.sort.spill-threshold";
+    public static final int DEFAULT_SORT_SPILL_THRESHOLD = 0;
 
     protected OrderSpec[] orderSpecs = null;
 
+    /**
+     * The number of items needed from the start of the result, or 0 for all.
+     */
+    private int limit = 0;
+
     /*  OrderByClause needs to keep state between calls to eval and postEval. We thus need
         to track state in a stack to avoid overwrites if we're called recursively. */
     private final Deque<OrderedValueSequence> stack = new ArrayDeque<>();
@@ -51,6 +65,16 @@ public class OrderByClause extends AbstractFLWORClause {
         return orderSpecs;
     }
 
+    @Override
+    public int getLimit() {
+        return limit;
+    }
+
+    @Override
+    public void setLimit(final int limit) {
+        this.limit = limit;
+    }
+
     @Override
     public ClauseType getType() {
         return ClauseType.ORDERBY;
@@ -74,7 +98,13 @@ public class OrderByClause extends AbstractFLWORClause {
     public Sequence eval(Sequence contextSequence, Item contextItem) throws XPathException {
         final OrderedValueSequence orderedResult;
         if (stack.isEmpty()) {
-            orderedResult = new OrderedValueSequence(orderSpecs, 100);
+            final int spillThreshold = getSpillThreshold();
+            if (limit > 0 || spillThreshold > 0) {
+                orderedResult = new OrderedValueSequence(this, orderSpecs, 100, limit, spillThreshold,
+                        context.getBroker().getBrokerPool().getNodeFactory());
+            } else {
+                orderedResult = new OrderedValueSequence(orderSpecs, 100);
+            }
         } else {
             orderedResult = stack.pop();
         }
@@ -86,6 +116,14 @@ public class OrderByClause extends AbstractFLWORClause {
         return result;
     }
 
+    private int getSpillThreshold() {
+        final Configuration config = context.getConfiguration();
+        if (config == null) {
+            return DEFAULT_SORT_SPILL_THRESHOLD;
+        }
+        return config.getProperty(PROPERTY_SORT_SPILL_THRESHOLD, DEFAULT_SORT_SPILL_THRESHOLD);
+    }
+
     @Override
     public Sequence postEval(Sequence seq) throws XPathException {
         if (stack.isEmpty()) {
@@ -45,6 +45,15 @@ public abstract class Pragma {
         return expression;
     }
 
+    /**
+     * Called by the parser once the expression enclosed by the
+     * extension expression, which the pragma applies to, is known.
+     *
+     * @param innerExpression the enclosed expression
+     */
+    public void setInnerExpression(final Expression innerExpression) {
+    }
+
     public void analyze(AnalyzeContextInfo contextInfo) throws XPathException {
     }
 
@@ -2979,6 +2979,7 @@ public class XQueryContext implements BinaryValueManager, Context {
             case ProfilePragma.PROFILING_PRAGMA_LOCAL_NAME -> new ProfilePragma(rootExpression, qname, sanitizedContents);
             case ForceIndexUse.FORCE_INDEX_USE_PRAGMA_LOCAL_NAME -> new ForceIndexUse(rootExpression, qname, sanitizedContents);
             case NoIndexPragma.NO_INDEX_PRAGMA_LOCAL_NAME -> new NoIndexPragma(rootExpression, qname, sanitizedContents);
+            case ParallelPragma.PARALLEL_PRAGMA_LOCAL_NAME -> new ParallelPragma(rootExpression, this, qname, sanitizedContents);
             default -> null;
         };
     }
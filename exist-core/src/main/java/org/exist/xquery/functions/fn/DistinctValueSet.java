@@ -0,0 +1,196 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.xquery.functions.fn;
+
+import com.ibm.icu.text.Collator;
+import org.exist.xquery.XPathException;
+import org.exist.xquery.value.AtomicValue;
+import org.exist.xquery.value.BooleanValue;
+import org.exist.xquery.value.DecimalValue;
+import org.exist.xquery.value.IntegerValue;
+import org.exist.xquery.value.NumericValue;
+import org.exist.xquery.value.Type;
+
+import javax.annotation.Nullable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * A set of atomic values which are distinct according to the rules
+ * of fn:distinct-values.
+ *
+ * Strings (including xs:untypedAtomic and xs:anyURI) are hashed by their
+ * collation key, or by their value if no collator is used. Numeric values
+ * of all types are hashed and compared by their exact value, so that e.g.
+ * 1, 1.0 and 1e0 are the same value, but xs:float('0.1') and 0.1 are not.
+ * Comparing by the value after type promotion instead would not be
+ * transitive, e.g. xs:float(16777216) is equal to both 16777216 and 16777217
+ * when they are promoted to xs:float; XPath 3.1 leaves the result of such
+ * inputs implementation-dependent. All NaN values are considered to be the
+ * same value.
+ * Values of other types, which are rare, are kept in a tree set ordered by
+ * {@link FunDistinctValues.ValueComparator}, as before.
+ */
+public final class DistinctValueSet {
+
+    private static final byte STRING = 0;
+    private static final byte NUMERIC = 1;
+    private static final byte BOOLEAN = 2;
+
+    /** 2^63, the magnitude of the smallest double outside of the range of a long */
+    private static final double LONG_RANGE = 0x1p63;
+    /** the number of digits of Long.MAX_VALUE */
+    private static final int MAX_LONG_DIGITS = 19;
+
+    private final @Nullable Collator collator;
+    private final Set<Key> hashed = new HashSet<>();
+    private @Nullable TreeSet<AtomicValue> others = null;
+    private boolean hasNaN = false;
+
+    public DistinctValueSet(@Nullable final Collator collator) {
+        this.collator = collator;
+    }
+
+    /**
+     * Add a value to the set.
+     *
+     * @param value the value.
+     *
+     * @return true if the value was not yet in the set.
+     *
+     * @throws XPathException if the string value cannot be obtained.
+     */
+    public boolean add(final AtomicValue value) throws XPathException {
+        final int type = value.getType();
+        if (Type.subTypeOf(type, Type.STRING) || type == Type.UNTYPED_ATOMIC || type == Type.ANY_URI) {
+            final String s = value.getStringValue();
+            return hashed.add(new Key(STRING, collator == null ? s : collator.getCollationKey(s)));
+
+        } else if (Type.subTypeOfUnion(type, Type.NUMBER)) {
+            final NumericValue n = (NumericValue) value;
+            if (n.isNaN()) {
+                if (hasNaN) {
+                    return false;
+                }
+                hasNaN = true;
+                return true;
+            }
+            return hashed.add(new Key(NUMERIC, exactValue(n)));
+
+        } else if (type == Type.BOOLEAN) {
+            return hashed.add(new Key(BOOLEAN, ((BooleanValue) value).getValue()));
+        }
+
+        if (others == null) {
+            others = new TreeSet<>(new FunDistinctValues.ValueComparator(collator));
+        }
+        return others.add(value);
+    }
+
+    /**
+     * Get the exact value of a number which is not NaN, in the same form
+     * for all numeric types: a Long if the value is integral and fits into
+     * a long, an infinite Double, or else a BigDecimal without trailing zeros.
+     *
+     * @param n the number.
+     *
+     * @return the exact value.
+     *
+     * @throws XPathException if the value of an xs:integer cannot be obtained.
+     */
+    private static Object exactValue(final NumericValue n) throws XPathException {
+        if (n.isInfinite()) {
+            return n.isNegative() ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+        }
+        if (n.isZero()) {
+            // -0.0 and 0.0 are equal
+            return 0L;
+        }
+
+        final BigDecimal exact;
+        if (n instanceof IntegerValue) {
+            // the value itself, converting to BigInteger.class would copy it
+            final BigInteger i = (BigInteger) n.toJavaObject(Object.class);
+            if (i.bitLength() < Long.SIZE) {
+                return i.longValue();
+            }
+            exact = new BigDecimal(i);
+        } else if (n instanceof DecimalValue) {
+            exact = ((DecimalValue) n).getValue();
+        } else {
+            // xs:float and xs:double, both are exactly representable as a double
+            final double d = n.getDouble();
+            if (d == Math.rint(d) && Math.abs(d) < LONG_RANGE) {
+                return (long) d;
+            }
+            exact = new BigDecimal(d);
+        }
+
+        final BigDecimal stripped = exact.stripTrailingZeros();
+        if (stripped.scale() <= 0 && stripped.precision() - stripped.scale() <= MAX_LONG_DIGITS) {
+            final BigInteger i = stripped.toBigIntegerExact();
+            if (i.bitLength() < Long.SIZE) {
+                return i.longValue();
+            }
+        }
+        return stripped;
+    }
+
+    private static final class Key {
+        private final byte kind;
+        private final Object comparand;
+        private final int hashCode;
+
+        /**
+         * @param kind the kind of value.
+         * @param comparand the canonical form of the value, which is hashed and compared.
+         */
+        Key(final byte kind, final Object comparand) {
+            this.kind = kind;
+            this.comparand = comparand;
+            this.hashCode = 31 * kind + comparand.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) obj;
+            if (kind != other.kind || hashCode != other.hashCode) {
+                return false;
+            }
+            return comparand.equals(other.comparand);
+        }
+    }
+}
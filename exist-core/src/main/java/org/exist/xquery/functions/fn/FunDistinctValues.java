@@ -22,7 +22,6 @@
 package org.exist.xquery.functions.fn;
 
 import java.util.Comparator;
-import java.util.TreeSet;
 
 import com.ibm.icu.text.Collator;
 import org.apache.logging.log4j.LogManager;
@@ -43,7 +42,6 @@ import org.exist.xquery.value.AtomicValue;
 import org.exist.xquery.value.FunctionReturnSequenceType;
 import org.exist.xquery.value.FunctionParameterSequenceType;
 import org.exist.xquery.value.Item;
-import org.exist.xquery.value.NumericValue;
 import org.exist.xquery.value.Sequence;
 import org.exist.xquery.value.SequenceIterator;
 import org.exist.xquery.value.SequenceType;
@@ -116,33 +114,14 @@ public class FunDistinctValues extends CollatingFunction {
                     "CONTEXT ITEM", contextItem.toSequence());}
         }
         final Sequence seq = getArgument(0).eval(contextSequence, contextItem);
-        final Collator collator = getCollator(contextSequence, contextItem, 2);		
-        final TreeSet<AtomicValue> set = new TreeSet<>(new ValueComparator(collator));
+        final Collator collator = getCollator(contextSequence, contextItem, 2);
+        final DistinctValueSet set = new DistinctValueSet(collator);
         final ValueSequence result = new ValueSequence();
-        Item item;
-        AtomicValue value;
-        boolean hasAlreadyNaN = false;
+        // single pass, each value is emitted when it is first seen
         for (final SequenceIterator i = seq.iterate(); i.hasNext();) {
-            item = i.nextItem();
-            value = item.atomize();
-            if (!set.contains(value)) {
-                if (Type.subTypeOfUnion(value.getType(), Type.NUMBER)) {
-                    if (((NumericValue)value).isNaN()) {
-                        //although NaN does not equal itself, if $arg 
-                        //contains multiple NaN values a single NaN is returned.
-                        if (!hasAlreadyNaN) {
-                            set.add(value);
-                            result.add(value);	
-                            hasAlreadyNaN = true;
-                        }
-                    } else {
-                        set.add(value);
-                        result.add(value);
-                    }
-                } else {
-                    set.add(value);
-                    result.add(value);
-                }
+            final AtomicValue value = i.nextItem().atomize();
+            if (set.add(value)) {
+                result.add(value);
             }
         }
         if (context.getProfiler().isEnabled())
@@ -22,10 +22,12 @@
 package org.exist.xquery.functions.fn;
 
 import org.exist.dom.QName;
+import org.exist.xquery.AnalyzeContextInfo;
 import org.exist.xquery.Cardinality;
 import org.exist.xquery.Dependency;
 import org.exist.xquery.Function;
 import org.exist.xquery.FunctionSignature;
+import org.exist.xquery.LimitableExpression;
 import org.exist.xquery.Profiler;
 import org.exist.xquery.XPathException;
 import org.exist.xquery.XQueryContext;
@@ -37,6 +39,8 @@ import org.exist.xquery.value.Sequence;
 import org.exist.xquery.value.SequenceType;
 import org.exist.xquery.value.Type;
 
+import javax.annotation.Nullable;
+
 /**
  * @author wolf
  */
@@ -53,10 +57,21 @@ public class FunEmpty extends Function {
             new FunctionReturnSequenceType(Type.BOOLEAN, Cardinality.EXACTLY_ONE,
                 "true() if the empty sequence, false() otherwise"));
 
+    /**
+     * The limitable part of a FLWOR argument, of which only the first item is needed.
+     */
+    @Nullable private LimitableExpression limitable = null;
+
     public FunEmpty(final XQueryContext context) {
         super(context, signature);
     }
 
+    @Override
+    public void analyze(final AnalyzeContextInfo contextInfo) throws XPathException {
+        super.analyze(contextInfo);
+        limitable = LimitableExpression.find(getArgument(0));
+    }
+
     @Override
     public Sequence eval(final Sequence contextSequence, final Item contextItem)
             throws XPathException {
@@ -74,7 +89,7 @@ public class FunEmpty extends Function {
             }
         }
 
-        final Sequence seq = getArgument(0).eval(contextSequence, contextItem);
+        final Sequence seq = LimitableExpression.eval(getArgument(0), limitable, 1, contextSequence, contextItem);
         final Sequence result = seq.isEmpty() ? BooleanValue.TRUE : BooleanValue.FALSE;
 
         if (context.getProfiler().isEnabled()) {
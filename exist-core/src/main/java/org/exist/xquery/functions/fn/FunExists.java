@@ -22,10 +22,12 @@
 package org.exist.xquery.functions.fn;
 
 import org.exist.dom.QName;
+import org.exist.xquery.AnalyzeContextInfo;
 import org.exist.xquery.Cardinality;
 import org.exist.xquery.Dependency;
 import org.exist.xquery.Function;
 import org.exist.xquery.FunctionSignature;
+import org.exist.xquery.LimitableExpression;
 import org.exist.xquery.Profiler;
 import org.exist.xquery.XPathException;
 import org.exist.xquery.XQueryContext;
@@ -37,6 +39,8 @@ import org.exist.xquery.value.Sequence;
 import org.exist.xquery.value.SequenceType;
 import org.exist.xquery.value.Type;
 
+import javax.annotation.Nullable;
+
 /**
  * Implements function fn:exists.
  * 
@@ -54,10 +58,21 @@ public class FunExists extends Function {
 			},
 			new FunctionReturnSequenceType(Type.BOOLEAN, Cardinality.EXACTLY_ONE, "true() if not the empty-sequence, false() otherwise"));
 
+	/**
+	 * The limitable part of a FLWOR argument, of which only the first item is needed.
+	 */
+	@Nullable private LimitableExpression limitable = null;
+
 	public FunExists(XQueryContext context) {
 		super(context, signature);
 	}
 
+	@Override
+	public void analyze(AnalyzeContextInfo contextInfo) throws XPathException {
+		super.analyze(contextInfo);
+		limitable = LimitableExpression.find(getArgument(0));
+	}
+
 	/* (non-Javadoc)
 	 * @see org.exist.xquery.Expression#eval(org.exist.dom.persistent.DocumentSet, org.exist.xquery.value.Sequence, org.exist.xquery.value.Item)
 	 */
@@ -74,7 +89,7 @@ public class FunExists extends Function {
         //if(contextItem != null)
 			//contextSequence = contextItem.toSequence();
         
-		final Sequence seq = getArgument(0).eval(contextSequence, contextItem);
+		final Sequence seq = LimitableExpression.eval(getArgument(0), limitable, 1, contextSequence, contextItem);
 		final Sequence result = seq.isEmpty() ? BooleanValue.FALSE : BooleanValue.TRUE;
         
         if (context.getProfiler().isEnabled()) 
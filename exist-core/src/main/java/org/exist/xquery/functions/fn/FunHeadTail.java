@@ -28,14 +28,18 @@ import org.exist.xquery.Cardinality;
 import org.exist.xquery.ErrorCodes;
 import org.exist.xquery.Function;
 import org.exist.xquery.FunctionSignature;
+import org.exist.xquery.LimitableExpression;
 import org.exist.xquery.XPathException;
 import org.exist.xquery.XQueryContext;
 import org.exist.xquery.value.FunctionParameterSequenceType;
 import org.exist.xquery.value.FunctionReturnSequenceType;
+import org.exist.xquery.value.Item;
 import org.exist.xquery.value.Sequence;
 import org.exist.xquery.value.SequenceType;
 import org.exist.xquery.value.Type;
 
+import javax.annotation.Nullable;
+
 public class FunHeadTail extends BasicFunction {
 
 	public final static FunctionSignature[] signatures = {
@@ -56,6 +60,11 @@ public class FunHeadTail extends BasicFunction {
                     },
                 new FunctionReturnSequenceType(Type.ITEM, Cardinality.ZERO_OR_MORE, "the resulting sequence")) };
 	
+	/**
+	 * For fn:head, the limitable part of a FLWOR argument, of which only the first item is needed.
+	 */
+	@Nullable private LimitableExpression limitable = null;
+
 	public FunHeadTail(XQueryContext context, FunctionSignature signature) {
 		super(context, signature);
 	}
@@ -67,6 +76,21 @@ public class FunHeadTail extends BasicFunction {
 			throw new XPathException(this, ErrorCodes.EXXQDY0003, "Function " + 
 					getSignature().getName() + " is only supported for xquery version \"3.0\" and later.");
 		}
+		if (isCalledAs("head")) {
+			limitable = LimitableExpression.find(getArgument(0));
+		}
+	}
+
+	@Override
+	public Sequence eval(Sequence contextSequence, final Item contextItem) throws XPathException {
+		if (limitable == null) {
+			return super.eval(contextSequence, contextItem);
+		}
+		if (contextItem != null) {
+			contextSequence = contextItem.toSequence();
+		}
+		final Sequence seq = LimitableExpression.eval(getArgument(0), limitable, 1, contextSequence, contextItem);
+		return eval(new Sequence[] { seq }, contextSequence);
 	}
 	
 	@Override
@@ -57,6 +57,12 @@ public class FunSubSequence extends Function {
                     },
                     new FunctionReturnSequenceType(Type.ITEM, Cardinality.ZERO_OR_MORE, "the subsequence"))};
 
+    /**
+     * The limitable part of the source FLWOR expression, if any,
+     * which only needs to produce the items up to the end of the subsequence.
+     */
+    @Nullable private LimitableExpression limitable = null;
+
     public FunSubSequence(final XQueryContext context, final FunctionSignature signature) {
         super(context, signature);
     }
@@ -89,6 +95,10 @@ public class FunSubSequence extends Function {
             }
         }
         argumentsChecked = true;
+
+        if (getArgumentCount() == 3) {
+            limitable = LimitableExpression.find(getArgument(0));
+        }
     }
 
     @Override
@@ -109,6 +119,19 @@ public class FunSubSequence extends Function {
         }
 
         final Sequence result;
+        if (limitable != null) {
+            // evaluate the positions first, so that the source only produces the items which are needed
+            final DoubleValue startLoc = (DoubleValue) getArgument(1).eval(contextSequence, contextItem).convertTo(Type.DOUBLE);
+            final DoubleValue length = (DoubleValue) getArgument(2).eval(contextSequence, contextItem).convertTo(Type.DOUBLE);
+            final Sequence seq = LimitableExpression.eval(getArgument(0), limitable, getLimit(startLoc, length),
+                    contextSequence, contextItem);
+            result = seq.isEmpty() ? Sequence.EMPTY_SEQUENCE : subsequence(seq, startLoc, length);
+            if (context.getProfiler().isEnabled()) {
+                context.getProfiler().end(this, "", result);
+            }
+            return result;
+        }
+
         final Sequence seq = getArgument(0).eval(contextSequence, contextItem);
         if (seq.isEmpty()) {
             result = Sequence.EMPTY_SEQUENCE;
@@ -126,6 +149,26 @@ public class FunSubSequence extends Function {
         return result;
     }
 
+    /**
+     * Get the number of items which the source sequence must provide for
+     * a subsequence, i.e. the position of the last item in the subsequence.
+     *
+     * @param startLoc the starting position.
+     * @param length the length of the subsequence.
+     *
+     * @return the number of items, or 0 if all items are needed.
+     */
+    private static int getLimit(final DoubleValue startLoc, final DoubleValue length) {
+        final long start = startLoc.getLong();
+        final long len = length.getLong();
+        if (start < Integer.MIN_VALUE || start > Integer.MAX_VALUE / 2
+                || len < Integer.MIN_VALUE || len > Integer.MAX_VALUE / 2) {
+            return 0;
+        }
+        final long end = start + len - 1;
+        return end < 1 ? 0 : (int) end;
+    }
+
     /**
      * Creates a Subsequence from a sequence
      *
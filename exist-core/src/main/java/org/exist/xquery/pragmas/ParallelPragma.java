@@ -0,0 +1,685 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.xquery.pragmas;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.exist.EXistException;
+import org.exist.Namespaces;
+import org.exist.dom.QName;
+import org.exist.dom.persistent.NewArrayNodeSet;
+import org.exist.dom.persistent.NodeProxy;
+import org.exist.dom.persistent.NodeSet;
+import org.exist.security.PermissionDeniedException;
+import org.exist.security.Subject;
+import org.exist.source.DBSource;
+import org.exist.source.FileSource;
+import org.exist.source.Source;
+import org.exist.storage.BrokerPool;
+import org.exist.storage.DBBroker;
+import org.exist.util.NamedThreadFactory;
+import org.exist.xmldb.XmldbURI;
+import org.exist.xquery.*;
+import org.exist.xquery.Module;
+import org.exist.xquery.value.AnyURIValue;
+import org.exist.xquery.value.Item;
+import org.exist.xquery.value.Sequence;
+import org.exist.xquery.value.SequenceIterator;
+import org.exist.xquery.value.ValueSequence;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Evaluates the bindings of a FLWOR expression in parallel:
+ *
+ * <pre>
+ * (# exist:parallel threads=4 #) {
+ *     for $doc in collection("/db/data")
+ *     return local:transform($doc)
+ * }
+ * </pre>
+ *
+ * The input sequence of the first "for" clause is split into parts,
+ * which are evaluated concurrently by the calling thread and up to
+ * {@code threads - 1} worker threads of a pool owned by the pragma.
+ * The results of the parts are concatenated in the order of the input
+ * sequence. The query author asserts that the "return" clause has no
+ * side effects which depend on the order of evaluation.
+ *
+ * As expression trees hold evaluation state, every worker evaluates its
+ * parts with its own copy of the expression, which is made by compiling the
+ * enclosing module again with a new {@link XQueryContext}. A copy is compiled
+ * once and reused by later evaluations of the pragma, until the query is reset.
+ * The calling thread evaluates parts with the original expression. Before
+ * a copy is used, the global variables of the main module and of the library
+ * modules, the local variables in scope and the context sequence are copied
+ * to it. Their values are copied as well, as node sets are not safe to be
+ * read by several threads at once.
+ *
+ * The expression is evaluated serially if it is not a FLWOR expression
+ * which can be split (see {@link ForExpr#isSplittable()}), if the
+ * enclosing module cannot be compiled again, or if no broker is
+ * available for a worker.
+ */
+public class ParallelPragma extends Pragma {
+
+    public static final String PARALLEL_PRAGMA_LOCAL_NAME = "parallel";
+    public static final QName PARALLEL_PRAGMA = new QName(PARALLEL_PRAGMA_LOCAL_NAME, Namespaces.EXIST_NS, "exist");
+
+    /**
+     * Attribute of the root context which holds the parallel pragmas
+     * of each module, in the order in which they were parsed.
+     */
+    private static final String PRAGMAS_ATTRIBUTE = "_eXist_parallel_pragmas";
+
+    /**
+     * Number of parts per thread, so that threads which finish early
+     * can take over parts from slower ones.
+     */
+    private static final int PARTS_PER_THREAD = 4;
+
+    /**
+     * Time after which idle worker threads are stopped.
+     */
+    private static final long WORKER_KEEP_ALIVE = 30;  // seconds
+
+    private static final Logger LOG = LogManager.getLogger(ParallelPragma.class);
+
+    private final XQueryContext context;
+
+    /**
+     * The position of this pragma among the parallel pragmas of its module,
+     * used to find the copy of this pragma in a compiled copy of the module.
+     */
+    private final int ordinal;
+
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    private Expression innerExpression = null;
+
+    private boolean analyzed = false;
+
+    /**
+     * The worker threads, created on first use.
+     */
+    private @Nullable ThreadPoolExecutor executor = null;
+
+    /**
+     * Compiled copies which are not in use by a worker.
+     */
+    private final Deque<Copy> copies = new ConcurrentLinkedDeque<>();
+
+    /**
+     * Set if a copy could not be compiled, the expression is then
+     * evaluated serially until the query is reset.
+     */
+    private volatile boolean serial = false;
+
+    public ParallelPragma(final XQueryContext context, final QName qname, final String contents) throws XPathException {
+        this(null, context, qname, contents);
+    }
+
+    public ParallelPragma(final Expression expression, final XQueryContext context, final QName qname, final String contents) throws XPathException {
+        super(expression, qname, contents);
+        this.context = context;
+        if (contents != null && !contents.isEmpty()) {
+            final String[] options = Option.tokenize(contents);
+            for (final String option : options) {
+                final String[] param = Option.parseKeyValuePair(option);
+                if (param == null) {
+                    throw new XPathException((Expression) null, "Invalid content found for pragma " + PARALLEL_PRAGMA.getStringValue() +
+                            ": " + contents);
+                }
+                if ("threads".equals(param[0])) {
+                    try {
+                        threads = Integer.parseInt(param[1]);
+                    } catch (final NumberFormatException e) {
+                        throw new XPathException((Expression) null, "Invalid value for option threads of pragma " +
+                                PARALLEL_PRAGMA.getStringValue() + ": " + param[1]);
+                    }
+                    if (threads < 1) {
+                        throw new XPathException((Expression) null, "Option threads of pragma " +
+                                PARALLEL_PRAGMA.getStringValue() + " must be at least 1: " + param[1]);
+                    }
+                }
+            }
+        }
+        this.ordinal = register(context);
+    }
+
+    private int register(final XQueryContext context) {
+        final XQueryContext rootContext = context.getRootContext();
+        @SuppressWarnings("unchecked")
+        Map<XQueryContext, List<ParallelPragma>> pragmas = (Map<XQueryContext, List<ParallelPragma>>) rootContext.getAttribute(PRAGMAS_ATTRIBUTE);
+        if (pragmas == null) {
+            pragmas = new IdentityHashMap<>();
+            rootContext.setAttribute(PRAGMAS_ATTRIBUTE, pragmas);
+        }
+        final List<ParallelPragma> modulePragmas = pragmas.computeIfAbsent(context, k -> new ArrayList<>());
+        modulePragmas.add(this);
+        return modulePragmas.size() - 1;
+    }
+
+    @Override
+    public void setInnerExpression(final Expression innerExpression) {
+        this.innerExpression = innerExpression;
+    }
+
+    @Override
+    public void analyze(final AnalyzeContextInfo contextInfo) throws XPathException {
+        super.analyze(contextInfo);
+        analyzed = true;
+    }
+
+    @Override
+    public Sequence eval(final Sequence contextSequence, final Item contextItem) throws XPathException {
+        final ForExpr forExpr = getForExpr(innerExpression);
+        if (forExpr == null || !forExpr.isSplittable()) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("{} does not apply to expression, evaluating serially", PARALLEL_PRAGMA.getStringValue());
+            }
+            return null;
+        }
+
+        final Sequence input = forExpr.evalInput(contextSequence);
+        final int count = input.getItemCount();
+        final Source source = context.getSource();
+        if (threads == 1 || count < 2 || serial || !canCompile(source)) {
+            return forExpr.evalPart(input, 0, contextSequence, contextItem);
+        }
+
+        final Sequence[] parts = split(input, count, Math.max(1, count / (threads * PARTS_PER_THREAD)));
+        final Sequence[] results = new Sequence[parts.length];
+        final Tasks tasks = new Tasks(parts, results);
+
+        final BrokerPool brokerPool = context.getBroker().getBrokerPool();
+        final Subject subject = context.getBroker().getCurrentSubject();
+        final ThreadPoolExecutor executor = getExecutor(brokerPool);
+        final int workers = Math.min(threads, parts.length) - 1;
+        final List<Worker> started = new ArrayList<>(workers);
+        for (int i = 0; i < workers; i++) {
+            // each worker gets its own copy of the values of the calling thread
+            final Bindings bindings = new Bindings(context, contextSequence, contextItem);
+            final Worker worker = new Worker(brokerPool, subject, source, tasks, bindings);
+            worker.future = executor.submit(worker);
+            started.add(worker);
+        }
+
+        try {
+            tasks.run(forExpr, contextSequence, contextItem);
+        } catch (final XPathException | RuntimeException e) {
+            tasks.fail(e);
+        } finally {
+            for (final Worker worker : started) {
+                worker.await();
+                if (worker.compiled != null) {
+                    // make sure the resources of the copy are cleaned up with the query
+                    context.addImportedContext(worker.compiled.rootContext);
+                }
+            }
+        }
+
+        final Throwable failure = tasks.failure.get();
+        if (failure instanceof XPathException) {
+            throw (XPathException) failure;
+        } else if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure != null) {
+            throw new XPathException(forExpr, "Parallel evaluation failed: " + failure.getMessage(), failure);
+        }
+
+        final ValueSequence result = new ValueSequence();
+        for (final Sequence partResult : results) {
+            result.addAll(partResult);
+        }
+        return result;
+    }
+
+    private boolean canCompile(@Nullable final Source source) {
+        return source != null && (!(context instanceof ModuleContext) || getLocation(source) != null);
+    }
+
+    private ThreadPoolExecutor getExecutor(final BrokerPool brokerPool) {
+        if (executor == null) {
+            executor = new ThreadPoolExecutor(threads - 1, threads - 1, WORKER_KEEP_ALIVE, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), new NamedThreadFactory(brokerPool, "parallel-pragma"));
+            executor.allowCoreThreadTimeOut(true);
+        }
+        return executor;
+    }
+
+    private static Sequence[] split(final Sequence input, final int count, final int partSize) throws XPathException {
+        final boolean nodes = input instanceof NodeSet;
+        final Sequence[] parts = new Sequence[(count + partSize - 1) / partSize];
+        final SequenceIterator i = input.iterate();
+        for (int p = 0; p < parts.length; p++) {
+            final Sequence part = nodes ? new NewArrayNodeSet() : new ValueSequence(partSize);
+            for (int j = 0; j < partSize && i.hasNext(); j++) {
+                part.add(i.nextItem());
+            }
+            parts[p] = part;
+        }
+        return parts;
+    }
+
+    private static @Nullable ForExpr getForExpr(@Nullable Expression expression) {
+        while (expression instanceof PathExpr && ((PathExpr) expression).getLength() == 1) {
+            expression = ((PathExpr) expression).getExpression(0);
+        }
+        return expression instanceof ForExpr ? (ForExpr) expression : null;
+    }
+
+    /**
+     * The parts of the input sequence, which are claimed one by one
+     * by the calling thread and the workers.
+     */
+    private static class Tasks {
+        private final Sequence[] parts;
+        private final Sequence[] results;
+        private final int[] offsets;
+        private final AtomicInteger next = new AtomicInteger();
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        Tasks(final Sequence[] parts, final Sequence[] results) {
+            this.parts = parts;
+            this.results = results;
+            this.offsets = new int[parts.length];
+            for (int i = 1; i < parts.length; i++) {
+                offsets[i] = offsets[i - 1] + parts[i - 1].getItemCount();
+            }
+        }
+
+        boolean hasNext() {
+            return next.get() < parts.length && failure.get() == null;
+        }
+
+        void run(final ForExpr forExpr, final Sequence contextSequence, final Item contextItem) throws XPathException {
+            int p;
+            while (failure.get() == null && (p = next.getAndIncrement()) < parts.length) {
+                results[p] = forExpr.evalPart(parts[p], offsets[p], contextSequence, contextItem);
+            }
+        }
+
+        void fail(final Throwable t) {
+            failure.compareAndSet(null, t);
+        }
+    }
+
+    /**
+     * The variables and the context of the calling thread which are visible
+     * to the extension expression, copied for the use by one worker. They
+     * are collected by the calling thread, as its context must not be
+     * accessed by the workers.
+     */
+    private static class Bindings {
+        private final List<Variable> globalVariables = new ArrayList<>();
+        private final List<ExternalModule> modules = new ArrayList<>();
+        private final List<List<Variable>> moduleVariables = new ArrayList<>();
+        private final List<LocalVariable> localVariables = new ArrayList<>();
+        private final Sequence contextSequence;
+        private final Item contextItem;
+
+        Bindings(final XQueryContext context, final Sequence contextSequence, final Item contextItem) throws XPathException {
+            for (final Variable var : context.getRootContext().getGlobalVariables().values()) {
+                globalVariables.add(isolatedCopyOf(var));
+            }
+            for (final Iterator<Module> i = context.getRootContext().getAllModules(); i.hasNext(); ) {
+                final Module module = i.next();
+                if (module instanceof ExternalModule) {
+                    final List<Variable> variables = resolveVariables(module);
+                    if (!variables.isEmpty()) {
+                        modules.add((ExternalModule) module);
+                        moduleVariables.add(variables);
+                    }
+                }
+            }
+            // the stack is ordered newest first
+            final List<ClosureVariable> stack = context.getLocalStack();
+            if (stack != null) {
+                for (final ClosureVariable var : stack) {
+                    final LocalVariable copy = new LocalVariable(var);
+                    copy.setValue(isolate(var.getValue()));
+                    localVariables.add(copy);
+                }
+            }
+            this.contextSequence = isolate(contextSequence);
+            this.contextItem = contextItem instanceof NodeProxy ? new NodeProxy((NodeProxy) contextItem) : contextItem;
+        }
+
+        /**
+         * Resolve the global variables of a library module, so that the
+         * workers see the same values as the calling thread, rather than
+         * evaluating the declarations again.
+         */
+        private static List<Variable> resolveVariables(final Module module) throws XPathException {
+            final List<Variable> variables = new ArrayList<>();
+            for (final Iterator<QName> i = module.getGlobalVariables(); i.hasNext(); ) {
+                final QName name = i.next();
+                final Variable var;
+                try {
+                    var = module.resolveVariable(name);
+                } catch (final XPathException e) {
+                    // not copied, a worker raises the error if it uses the variable
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("Unable to resolve variable ${}: {}", name.getStringValue(), e.getMessage());
+                    }
+                    continue;
+                }
+                if (var != null && var.getValue() != null) {
+                    variables.add(isolatedCopyOf(var));
+                }
+            }
+            return variables;
+        }
+
+        /**
+         * Declare the variables in a copy of the enclosing module.
+         *
+         * @return the marker of the local variables, which must be popped after use
+         */
+        LocalVariable declare(final Copy copy) throws XPathException {
+            for (final Variable var : globalVariables) {
+                copy.rootContext.declareGlobalVariable(copyOf(var));
+            }
+
+            for (int i = 0; i < modules.size(); i++) {
+                final ExternalModule module = modules.get(i);
+                final Module[] copyModules = copy.rootContext.getRootModules(module.getNamespaceURI());
+                if (copyModules == null) {
+                    continue;
+                }
+                for (final Module copyModule : copyModules) {
+                    if (copyModule instanceof ExternalModule && module.getSource().equals(((ExternalModule) copyModule).getSource())) {
+                        for (final Variable var : moduleVariables.get(i)) {
+                            copyModule.declareVariable(copyOf(var));
+                        }
+                    }
+                }
+            }
+
+            final LocalVariable mark = copy.moduleContext.markLocalVariables(true);
+            for (int i = localVariables.size() - 1; i >= 0; i--) {
+                copy.moduleContext.declareVariableBinding(new ClosureVariable(localVariables.get(i)));
+            }
+            return mark;
+        }
+
+        private static Variable copyOf(final Variable var) {
+            return var instanceof VariableImpl ? new VariableImpl((VariableImpl) var) : var;
+        }
+
+        private static Variable isolatedCopyOf(final Variable var) throws XPathException {
+            if (!(var instanceof VariableImpl)) {
+                return var;
+            }
+            final VariableImpl copy = new VariableImpl((VariableImpl) var);
+            copy.setValue(isolate(var.getValue()));
+            return copy;
+        }
+
+        /**
+         * Copy a value of the calling thread for a worker. Node sets sort and
+         * remove duplicates in place when they are first iterated, and node
+         * proxies collect context nodes and matches, so neither may be read
+         * by several threads at once. The copy is made by the calling thread,
+         * before any worker has started.
+         *
+         * @param value the value, or null.
+         *
+         * @return a copy of the value, which is not shared with another thread.
+         *
+         * @throws XPathException if the value cannot be iterated.
+         */
+        private static @Nullable Sequence isolate(@Nullable final Sequence value) throws XPathException {
+            if (value == null) {
+                return null;
+            }
+            final Sequence copy = value instanceof NodeSet ? new NewArrayNodeSet() : new ValueSequence(value.getItemCount());
+            for (final SequenceIterator i = value.iterate(); i.hasNext(); ) {
+                final Item item = i.nextItem();
+                copy.add(item instanceof NodeProxy ? new NodeProxy((NodeProxy) item) : item);
+            }
+            return copy;
+        }
+    }
+
+    /**
+     * A compiled copy of the enclosing module, used by one worker at a time.
+     */
+    private static class Copy {
+        private final XQueryContext rootContext;
+        private final XQueryContext moduleContext;
+        private final ParallelPragma pragma;
+        private final ForExpr forExpr;
+
+        Copy(final XQueryContext rootContext, final XQueryContext moduleContext, final ParallelPragma pragma, final ForExpr forExpr) {
+            this.rootContext = rootContext;
+            this.moduleContext = moduleContext;
+            this.pragma = pragma;
+            this.forExpr = forExpr;
+        }
+    }
+
+    /**
+     * Evaluates parts of the input sequence with a copy of the
+     * enclosing module.
+     */
+    private class Worker implements Runnable {
+        private final BrokerPool brokerPool;
+        private final Subject subject;
+        private final Source source;
+        private final Tasks tasks;
+        private final Bindings bindings;
+
+        /**
+         * Set by whoever comes first, the worker when it starts to
+         * run or the calling thread when all parts are done.
+         */
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        private Future<?> future;
+
+        /**
+         * The copy compiled by this worker, if it did not reuse one.
+         */
+        private volatile Copy compiled = null;
+
+        Worker(final BrokerPool brokerPool, final Subject subject, final Source source, final Tasks tasks,
+                final Bindings bindings) {
+            this.brokerPool = brokerPool;
+            this.subject = subject;
+            this.source = source;
+            this.tasks = tasks;
+            this.bindings = bindings;
+        }
+
+        @Override
+        public void run() {
+            if (!claimed.compareAndSet(false, true) || !tasks.hasNext() || serial) {
+                return;
+            }
+            // do not wait for a broker, the calling thread takes care of the remaining parts
+            try (final DBBroker broker = brokerPool.get(Optional.of(subject), 0, TimeUnit.MILLISECONDS)) {
+                Copy copy = copies.pollFirst();
+                if (copy == null) {
+                    try {
+                        copy = compile();
+                    } catch (final XPathException | PermissionDeniedException | IOException e) {
+                        LOG.warn("Unable to compile a copy of {} for {}, evaluating serially: {}",
+                                source.pathOrShortIdentifier(), PARALLEL_PRAGMA.getStringValue(), e.getMessage(), e);
+                        serial = true;
+                        return;
+                    }
+                    if (copy == null) {
+                        LOG.warn("Unable to find {} in a copy of {}, evaluating serially",
+                                PARALLEL_PRAGMA.getStringValue(), source.pathOrShortIdentifier());
+                        serial = true;
+                        return;
+                    }
+                    compiled = copy;
+                }
+
+                try {
+                    evaluate(copy);
+                } finally {
+                    copies.offerFirst(copy);
+                }
+            } catch (final XPathException | RuntimeException e) {
+                tasks.fail(e);
+            } catch (final EXistException e) {
+                LOG.debug("No broker available for parallel evaluation: {}", e.getMessage());
+            }
+        }
+
+        private void evaluate(final Copy copy) throws XPathException {
+            // the watchdog is set for each use, as compiling may reset the context
+            copy.rootContext.setWatchDog(context.getWatchDog());
+            final LocalVariable mark = bindings.declare(copy);
+            try {
+                if (!copy.pragma.analyzed) {
+                    // functions of library modules are analyzed when they are called
+                    copy.pragma.innerExpression.analyze(new AnalyzeContextInfo());
+                    copy.pragma.analyzed = true;
+                }
+                tasks.run(copy.forExpr, bindings.contextSequence, bindings.contextItem);
+            } finally {
+                copy.moduleContext.popLocalVariables(mark);
+            }
+        }
+
+        /**
+         * Compile the enclosing module again and find the copy of the
+         * "for" clause in it.
+         */
+        private @Nullable Copy compile() throws XPathException, PermissionDeniedException, IOException {
+            final XQueryContext rootContext = new XQueryContext(brokerPool);
+            rootContext.setModuleLoadPath(context.getModuleLoadPath());
+            rootContext.setCalendar(context.getCalendar());
+            rootContext.setTimeZone(context.getImplicitTimeZone());
+            rootContext.setHttpContext(context.getHttpContext());
+            if (context.getStaticDocs() != null) {
+                rootContext.setStaticallyKnownDocuments(context.getStaticDocs());
+            }
+            if (context.isBaseURIDeclared()) {
+                rootContext.setBaseURI(context.getBaseURI());
+            }
+
+            // registered before compiling, as the optimizer may reset the context and clear its attributes
+            final Map<XQueryContext, List<ParallelPragma>> pragmas = new IdentityHashMap<>();
+            rootContext.setAttribute(PRAGMAS_ATTRIBUTE, pragmas);
+
+            final XQueryContext moduleContext;
+            if (context instanceof ModuleContext) {
+                final Module[] modules = rootContext.importModule(null, null, new AnyURIValue[] { new AnyURIValue(getLocation(source)) });
+                if (modules == null || modules.length == 0 || !(modules[0] instanceof ExternalModule)) {
+                    return null;
+                }
+                moduleContext = ((ExternalModule) modules[0]).getContext();
+            } else {
+                brokerPool.getXQueryService().compile(rootContext, source);
+                moduleContext = rootContext;
+            }
+
+            final List<ParallelPragma> modulePragmas = pragmas.get(moduleContext);
+            if (modulePragmas == null || modulePragmas.size() <= ordinal) {
+                return null;
+            }
+            final ParallelPragma pragma = modulePragmas.get(ordinal);
+            final ForExpr forExpr = getForExpr(pragma.innerExpression);
+            if (forExpr == null || !forExpr.isSplittable()) {
+                return null;
+            }
+            return new Copy(rootContext, moduleContext, pragma, forExpr);
+        }
+
+        void await() {
+            if (claimed.compareAndSet(false, true)) {
+                // never started, so there is nothing to wait for
+                return;
+            }
+            try {
+                future.get();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                tasks.fail(e);
+            } catch (final ExecutionException e) {
+                tasks.fail(e.getCause());
+            }
+        }
+    }
+
+    private static @Nullable String getLocation(final Source source) {
+        if (source instanceof DBSource) {
+            return XmldbURI.EMBEDDED_SERVER_URI.append(((DBSource) source).getDocumentPath()).toString();
+        } else if (source instanceof FileSource) {
+            return ((FileSource) source).getPath().toUri().toString();
+        }
+        return null;
+    }
+
+    @Override
+    public void resetState(final boolean postOptimization) {
+        super.resetState(postOptimization);
+        if (!postOptimization) {
+            // the copies belong to this execution of the query
+            copies.clear();
+            serial = false;
+            if (executor != null) {
+                executor.shutdown();
+                executor = null;
+            }
+        }
+    }
+
+    @Override
+    public void before(final XQueryContext context, final Sequence contextSequence) throws XPathException {
+    }
+
+    @Override
+    public void before(final XQueryContext context, final Expression expression, final Sequence contextSequence) throws XPathException {
+    }
+
+    @Override
+    public void after(final XQueryContext context) throws XPathException {
+    }
+
+    @Override
+    public void after(final XQueryContext context, final Expression expression) throws XPathException {
+    }
+}
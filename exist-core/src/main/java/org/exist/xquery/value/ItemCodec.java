@@ -0,0 +1,190 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.xquery.value;
+
+import org.exist.dom.persistent.DocumentImpl;
+import org.exist.dom.persistent.NodeProxy;
+import org.exist.numbering.NodeIdFactory;
+import org.exist.storage.io.VariableByteInput;
+import org.exist.storage.io.VariableByteOutputStream;
+import org.exist.xquery.Expression;
+import org.exist.xquery.XPathException;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes items to, and reads them back from, the temporary files
+ * used by query operators which spill to disk.
+ *
+ * Atomic values are written as their type and lexical form. Stored
+ * nodes are written as a reference to their document and their node id;
+ * the documents are remembered by the codec, so an item can only be read
+ * back by the codec which wrote it, while the query is still running.
+ * Other items, e.g. constructed nodes or function items, cannot be
+ * written, see {@link #isSpillable(Sequence)}. Neither can stored nodes
+ * which carry index matches, e.g. of a full text query, as the matches
+ * are needed later on to highlight them.
+ */
+public class ItemCodec {
+
+    private static final byte EMPTY = 0;
+    private static final byte ATOMIC = 1;
+    private static final byte NODE = 2;
+
+    private final @Nullable Expression expression;
+    private final NodeIdFactory nodeIdFactory;
+    private final Map<Integer, DocumentImpl> documents = new HashMap<>();
+
+    public ItemCodec(@Nullable final Expression expression, final NodeIdFactory nodeIdFactory) {
+        this.expression = expression;
+        this.nodeIdFactory = nodeIdFactory;
+    }
+
+    /**
+     * Determine if all items of a sequence can be written.
+     *
+     * @param seq the sequence to check.
+     *
+     * @return true if the sequence can be written.
+     *
+     * @throws XPathException if the sequence cannot be iterated.
+     */
+    public static boolean isSpillable(final Sequence seq) throws XPathException {
+        for (final SequenceIterator i = seq.iterate(); i.hasNext(); ) {
+            if (!isSpillableItem(i.nextItem())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Determine if an item can be written.
+     *
+     * @param item the item to check.
+     *
+     * @return true if the item can be written.
+     */
+    public static boolean isSpillableItem(final Item item) {
+        if (item instanceof NodeProxy) {
+            // the matches of a node are not written
+            return ((NodeProxy) item).getMatches() == null;
+        }
+        if (item == AtomicValue.EMPTY_VALUE) {
+            return true;
+        }
+        final int type = item.getType();
+        return Type.subTypeOf(type, Type.NUMBER)
+                || Type.subTypeOf(type, Type.STRING)
+                || type == Type.UNTYPED_ATOMIC
+                || type == Type.BOOLEAN
+                || type == Type.ANY_URI
+                || Type.subTypeOf(type, Type.DATE_TIME)
+                || type == Type.DATE
+                || type == Type.TIME
+                || Type.subTypeOf(type, Type.DURATION)
+                || type == Type.GYEAR
+                || type == Type.GMONTH
+                || type == Type.GDAY
+                || type == Type.GYEARMONTH
+                || type == Type.GMONTHDAY;
+    }
+
+    public void writeSequence(final VariableByteOutputStream os, @Nullable final Sequence seq) throws XPathException, IOException {
+        if (seq == null) {
+            os.writeInt(0);
+            return;
+        }
+        os.writeInt(seq.getItemCount());
+        for (final SequenceIterator i = seq.iterate(); i.hasNext(); ) {
+            writeItem(os, i.nextItem());
+        }
+    }
+
+    public void writeItem(final VariableByteOutputStream os, final Item item) throws XPathException, IOException {
+        if (item == AtomicValue.EMPTY_VALUE) {
+            os.writeByte(EMPTY);
+        } else if (item instanceof NodeProxy) {
+            final NodeProxy node = (NodeProxy) item;
+            final DocumentImpl doc = node.getOwnerDocument();
+            documents.putIfAbsent(doc.getDocId(), doc);
+            os.writeByte(NODE);
+            os.writeInt(doc.getDocId());
+            os.writeShort(node.getNodeType());
+            os.writeLong(node.getInternalAddress());
+            node.getNodeId().write(os);
+        } else {
+            os.writeByte(ATOMIC);
+            os.writeInt(item.getType());
+            os.writeUTF(item.getStringValue());
+        }
+    }
+
+    public Sequence readSequence(final VariableByteInput is) throws XPathException, IOException {
+        final int count = is.readInt();
+        if (count == 0) {
+            return Sequence.EMPTY_SEQUENCE;
+        }
+        final ValueSequence seq = new ValueSequence(count);
+        for (int i = 0; i < count; i++) {
+            seq.add(readItem(is));
+        }
+        return seq;
+    }
+
+    public Item readItem(final VariableByteInput is) throws XPathException, IOException {
+        final byte tag = is.readByte();
+        switch (tag) {
+            case EMPTY:
+                return AtomicValue.EMPTY_VALUE;
+
+            case NODE:
+                final DocumentImpl doc = documents.get(is.readInt());
+                final short nodeType = is.readShort();
+                final long address = is.readLong();
+                return new NodeProxy(expression, doc, nodeIdFactory.createFromStream(is), nodeType, address);
+
+            case ATOMIC:
+                final int type = is.readInt();
+                final String value = is.readUTF();
+                if (type == Type.UNTYPED_ATOMIC) {
+                    return new UntypedAtomicValue(expression, value);
+                } else if (type == Type.STRING) {
+                    return new StringValue(expression, value);
+                }
+                return new StringValue(expression, value).convertTo(type);
+
+            default:
+                throw new IOException("Unknown item tag: " + tag);
+        }
+    }
+
+    /**
+     * Forget the documents of the nodes written so far.
+     */
+    public void clear() {
+        documents.clear();
+    }
+}
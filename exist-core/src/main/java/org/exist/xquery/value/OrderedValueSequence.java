@@ -27,6 +27,10 @@ import org.exist.dom.persistent.AVLTreeNodeSet;
 import org.exist.dom.persistent.NodeProxy;
 import org.exist.dom.persistent.NodeSet;
 import org.exist.numbering.NodeId;
+import org.exist.numbering.NodeIdFactory;
+import org.exist.storage.io.VariableByteInputStream;
+import org.exist.storage.io.VariableByteOutputStream;
+import org.exist.util.io.TemporaryFileManager;
 import org.exist.xquery.Constants;
 import org.exist.xquery.Expression;
 import org.exist.xquery.OrderSpec;
@@ -35,9 +39,21 @@ import org.exist.xquery.util.ExpressionDumper;
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
 
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Objects;
-import java.util.stream.Stream;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
 
 /**
  * A sequence that sorts its entries in the order specified by the order specs of
@@ -47,36 +63,104 @@ import java.util.stream.Stream;
  * all order expressions are evaluated once for each item in the sequence
  * <b>while</b> items are added.
  *
+ * If a limit is given, only the first <i>limit</i> items of the sorted
+ * sequence are kept (top-K): whenever twice as many items have been
+ * collected, they are sorted and the surplus is dropped.
+ *
+ * If a spill threshold is given, the collected items are sorted and written
+ * to a temporary file (a run) each time the threshold is reached; {@link #sort()}
+ * then merges the runs lazily while the sequence is iterated. Runs are only
+ * written as long as all items and sort keys can be written by an
+ * {@link ItemCodec}, otherwise they are read back and the sequence is sorted
+ * in memory. Run files are removed when the sequence is materialized or
+ * becomes unreachable. A failure to write or read a run is reported as an
+ * {@link XPathException} of the order by expression; as the runs are merged
+ * whilst the sequence is iterated, a failure to read during iteration is
+ * thrown as an {@link IllegalStateException} caused by such an exception.
+ *
  * @author wolf
  */
 public class OrderedValueSequence extends AbstractSequence {
 
+    private static final Cleaner RUN_CLEANER = Cleaner.create();
+    private static final int RUN_BUFFER_SIZE = 32 * 1024;
+
+    private final @Nullable Expression expression;
     private final OrderSpec[] orderSpecs;
     private Entry[] items;
     private int count = 0;
     private int state = 0;
 
+    /**
+     * The position of the next added item in the unsorted sequence.
+     */
+    private int nextPosition = 0;
+
+    private final int limit;
+    private final int spillThreshold;
+    private final @Nullable NodeIdFactory nodeIdFactory;
+    private boolean spillable;
+    private @Nullable ItemCodec codec = null;
+    private @Nullable Runs runs = null;
+    private @Nullable Cleaner.Cleanable runsCleanable = null;
+
+    /**
+     * True if the items are in the runs only and in sorted order.
+     */
+    private boolean merged = false;
+
     // used to keep track of the type of added items.
     private int itemType = Type.ANY_TYPE;
 
     public OrderedValueSequence(final OrderSpec orderSpecs[], final int size) {
+        this(null, orderSpecs, size, 0, 0, null);
+    }
+
+    /**
+     * @param expression the expression which orders the sequence, for error reporting.
+     * @param orderSpecs the order specs.
+     * @param size the initial capacity.
+     * @param limit the number of items which are needed from the start of the sorted sequence, or 0 for all items.
+     * @param spillThreshold the number of items after which a sorted run is written to a temporary file, or 0 to always sort in memory.
+     * @param nodeIdFactory the node id factory for reading back stored nodes from runs, required if a spill threshold is given.
+     */
+    public OrderedValueSequence(@Nullable final Expression expression, final OrderSpec orderSpecs[], final int size,
+            final int limit, final int spillThreshold, @Nullable final NodeIdFactory nodeIdFactory) {
+        this.expression = expression;
         this.orderSpecs = orderSpecs;
         this.items = new Entry[size == 0 ? 1 : size];
+        this.limit = limit;
+        this.spillThreshold = spillThreshold;
+        this.nodeIdFactory = nodeIdFactory;
+        this.spillable = limit <= 0 && spillThreshold > 0 && nodeIdFactory != null;
     }
 
     @Override
     public SequenceIterator iterate() {
+        if (runs != null) {
+            if (merged) {
+                try {
+                    return new MergingIterator();
+                } catch (final XPathException e) {
+                    throw new IllegalStateException(e.getMessage(), e);
+                }
+            }
+            materializeUnchecked();
+        }
         return new OrderedValueSequenceIterator();
     }
 
     @Override
     public SequenceIterator unorderedIterator() {
-        return new OrderedValueSequenceIterator();
+        return iterate();
     }
 
     @Override
     public long getItemCountLong() {
-        return (items == null) ? 0 : count;
+        if (items == null) {
+            return 0;
+        }
+        return runs == null ? count : runs.itemCount + count;
     }
 
     @Override
@@ -98,6 +182,25 @@ public class OrderedValueSequence extends AbstractSequence {
             hasOne = true;
         }
         isEmpty = false;
+        final Entry entry = new Entry(item, nextPosition++);
+        if (spillable && !entry.isSpillable()) {
+            spillable = false;
+            // continue in memory
+            materialize();
+        }
+        append(entry);
+        checkItemType(item.getType());
+        setHasChanged();
+
+        if (limit > 0 && count >= limit * 2) {
+            sortInMemory();
+            truncate(limit);
+        } else if (spillable && count >= spillThreshold) {
+            writeRun();
+        }
+    }
+
+    private void append(final Entry entry) {
         if (count == 0 && items.length == 1) {
             items = new Entry[2];
         } else if (count == items.length) {
@@ -105,9 +208,14 @@ public class OrderedValueSequence extends AbstractSequence {
             System.arraycopy(items, 0, newItems, 0, count);
             items = newItems;
         }
-        items[count] = new Entry(item, count++);
-        checkItemType(item.getType());
-        setHasChanged();
+        items[count++] = entry;
+    }
+
+    private void truncate(final int size) {
+        if (count > size) {
+            Arrays.fill(items, size, count, null);
+            count = size;
+        }
     }
 
     @Override
@@ -124,15 +232,109 @@ public class OrderedValueSequence extends AbstractSequence {
         }
     }
 
-    public void sort() {
+    /**
+     * Sort the sequence.
+     *
+     * @throws XPathException if the last run cannot be written to a temporary file.
+     */
+    public void sort() throws XPathException {
+        if (runs != null) {
+            // the remaining items become the last run, which are then merged on iteration
+            writeRun();
+            merged = true;
+            return;
+        }
+
+        sortInMemory();
+        if (limit > 0) {
+            truncate(limit);
+        }
+        Arrays.stream(items, 0, count).parallel().forEach(Entry::clear);
+    }
+
+    private void sortInMemory() {
 //		FastQSort.sort(items, 0, count - 1);
 
         Arrays.parallelSort(items, 0, count);
-        Arrays.stream(items, 0, count).parallel().forEach(Entry::clear);
+    }
+
+    /**
+     * Sort the items collected in memory and write them to a new run.
+     */
+    private void writeRun() throws XPathException {
+        if (count == 0) {
+            return;
+        }
+        if (runs == null) {
+            codec = new ItemCodec(expression, nodeIdFactory);
+            runs = new Runs();
+            runsCleanable = RUN_CLEANER.register(this, runs);
+        }
+
+        sortInMemory();
+        try {
+            runs.write(codec, items, count);
+        } catch (final IOException e) {
+            throw new XPathException(expression, "Unable to write sorted run to temporary file: " + e.getMessage(), e);
+        }
+        Arrays.fill(items, 0, count, null);
+        count = 0;
+    }
+
+    /**
+     * Read the runs back into memory and release them.
+     *
+     * If the runs have been merged, the items are read in sorted order,
+     * otherwise they are appended to the items in memory which have not
+     * been sorted yet.
+     *
+     * @throws XPathException if the runs cannot be read.
+     */
+    private void materialize() throws XPathException {
+        if (runs == null) {
+            return;
+        }
+
+        if (merged) {
+            final Entry[] sorted = new Entry[(int) runs.itemCount];
+            final MergingIterator iterator = new MergingIterator();
+            int i = 0;
+            while (iterator.hasNext()) {
+                sorted[i++] = iterator.nextEntry();
+            }
+            items = sorted;
+            count = i;
+            Arrays.stream(items, 0, count).forEach(Entry::clear);
+        } else {
+            for (final RunReader reader : openRuns()) {
+                while (reader.current != null) {
+                    append(reader.current);
+                    reader.advance();
+                }
+            }
+        }
+
+        runsCleanable.clean();
+        runsCleanable = null;
+        runs = null;
+        codec = null;
+        merged = false;
+    }
+
+    /**
+     * As {@link #materialize()}, for the methods of {@link Sequence} which cannot throw an XPathException.
+     */
+    private void materializeUnchecked() {
+        try {
+            materialize();
+        } catch (final XPathException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
     }
 
     @Override
     public Item itemAt(final int pos) {
+        materializeUnchecked();
         if (items != null && pos > -1 && pos < count) {
             return items[pos].item;
         } else {
@@ -161,6 +363,7 @@ public class OrderedValueSequence extends AbstractSequence {
         if (isEmpty()) {
             return NodeSet.EMPTY_SET;
         }
+        materialize();
         // for this method to work, all items have to be nodes
         if (itemType != Type.ANY_TYPE && Type.subTypeOf(itemType, Type.NODE)) {
             //Was ExtArrayNodeset() which orders the nodes in document order
@@ -225,6 +428,7 @@ public class OrderedValueSequence extends AbstractSequence {
 
     @Override
     public boolean isPersistentSet() {
+        materializeUnchecked();
         if (count == 0) {
             return true;
         }
@@ -242,6 +446,7 @@ public class OrderedValueSequence extends AbstractSequence {
 
     @Override
     public MemoryNodeSet toMemNodeSet() throws XPathException {
+        materialize();
         if (count == 0) {
             return MemoryNodeSet.EMPTY;
         }
@@ -260,6 +465,7 @@ public class OrderedValueSequence extends AbstractSequence {
 
     @Override
     public String toString() {
+        materializeUnchecked();
         final StringBuilder builder = new StringBuilder();
         for (int i = 0; i < count; i++) {
             builder.append(items[i].toString());
@@ -341,6 +547,29 @@ public class OrderedValueSequence extends AbstractSequence {
             }
         }
 
+        /**
+         * @param item     the item in the sequence
+         * @param values   the values of the order expressions
+         * @param position the original position of the item in the result sequence
+         */
+        Entry(final Item item, final AtomicValue[] values, final int position) {
+            this.item = item;
+            this.values = values;
+            this.pos = position;
+        }
+
+        boolean isSpillable() {
+            if (!ItemCodec.isSpillableItem(item)) {
+                return false;
+            }
+            for (final AtomicValue value : values) {
+                if (!ItemCodec.isSpillableItem(value)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
         @Override
         public int compareTo(final Entry other) {
             int cmp = 0;
@@ -449,4 +678,173 @@ public class OrderedValueSequence extends AbstractSequence {
             return skip;
         }
     }
+
+    private List<RunReader> openRuns() throws XPathException {
+        final List<RunReader> readers = new ArrayList<>(runs.files.size());
+        for (int i = 0; i < runs.files.size(); i++) {
+            readers.add(new RunReader(runs.files.get(i), runs.sizes.get(i)));
+        }
+        return readers;
+    }
+
+    /**
+     * Iterates over the sorted sequence by merging the runs.
+     */
+    private class MergingIterator implements SequenceIterator {
+        private final PriorityQueue<RunReader> queue;
+
+        MergingIterator() throws XPathException {
+            final List<RunReader> readers = openRuns();
+            queue = new PriorityQueue<>(Math.max(1, readers.size()), (r1, r2) -> r1.current.compareTo(r2.current));
+            for (final RunReader reader : readers) {
+                if (reader.current != null) {
+                    queue.add(reader);
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !queue.isEmpty();
+        }
+
+        @Override
+        public Item nextItem() {
+            if (queue.isEmpty()) {
+                return null;
+            }
+            try {
+                return nextEntry().item;
+            } catch (final XPathException e) {
+                throw new IllegalStateException(e.getMessage(), e);
+            }
+        }
+
+        Entry nextEntry() throws XPathException {
+            final RunReader reader = queue.poll();
+            if (reader == null) {
+                throw new NoSuchElementException();
+            }
+            final Entry entry = reader.current;
+            reader.advance();
+            if (reader.current != null) {
+                queue.add(reader);
+            }
+            return entry;
+        }
+    }
+
+    /**
+     * Reads the entries of a run one at a time.
+     */
+    private class RunReader {
+        private final VariableByteInputStream input;
+        private int remaining;
+        private @Nullable Entry current;
+
+        RunReader(final Path file, final int entries) throws XPathException {
+            this.input = new VariableByteInputStream(new RunInputStream(file));
+            this.remaining = entries;
+            advance();
+        }
+
+        void advance() throws XPathException {
+            if (remaining == 0) {
+                current = null;
+                return;
+            }
+            remaining--;
+            try {
+                final int position = input.readInt();
+                final AtomicValue[] values = new AtomicValue[orderSpecs.length];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = (AtomicValue) codec.readItem(input);
+                }
+                final Item item = codec.readItem(input);
+                current = new Entry(item, values, position);
+            } catch (final IOException e) {
+                throw new XPathException(expression, "Unable to read sorted run from temporary file: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * The run files of a sequence. Also the cleanup action which
+     * removes the files, it must therefore not refer to the sequence.
+     */
+    private static class Runs implements Runnable {
+        private final List<Path> files = new ArrayList<>();
+        private final List<Integer> sizes = new ArrayList<>();
+        private long itemCount = 0;
+
+        void write(final ItemCodec codec, final Entry[] entries, final int count) throws IOException, XPathException {
+            final Path file = TemporaryFileManager.getInstance().getTemporaryFile();
+            files.add(file);
+            sizes.add(count);
+            itemCount += count;
+
+            final VariableByteOutputStream buffer = new VariableByteOutputStream(RUN_BUFFER_SIZE);
+            try (final OutputStream os = Files.newOutputStream(file)) {
+                for (int i = 0; i < count; i++) {
+                    final Entry entry = entries[i];
+                    buffer.writeInt(entry.pos);
+                    for (final AtomicValue value : entry.values) {
+                        codec.writeItem(buffer, value);
+                    }
+                    codec.writeItem(buffer, entry.item);
+                    if (buffer.size() >= RUN_BUFFER_SIZE) {
+                        os.write(buffer.toByteArray());
+                        buffer.clear();
+                    }
+                }
+                os.write(buffer.toByteArray());
+            }
+        }
+
+        @Override
+        public void run() {
+            for (final Path file : files) {
+                TemporaryFileManager.getInstance().returnTemporaryFile(file);
+            }
+            files.clear();
+        }
+    }
+
+    /**
+     * Reads a run file in blocks, without keeping the file open in between,
+     * so that abandoned iterators do not hold on to file handles.
+     */
+    private static class RunInputStream extends InputStream {
+        private final Path file;
+        private final ByteBuffer buffer = ByteBuffer.allocate(RUN_BUFFER_SIZE);
+        private long position = 0;
+
+        RunInputStream(final Path file) {
+            this.file = file;
+            buffer.flip();
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!buffer.hasRemaining() && !fill()) {
+                return -1;
+            }
+            return buffer.get() & 0xff;
+        }
+
+        private boolean fill() throws IOException {
+            buffer.clear();
+            final int read;
+            try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                read = channel.read(buffer, position);
+            }
+            if (read <= 0) {
+                buffer.limit(0);
+                return false;
+            }
+            position += read;
+            buffer.flip();
+            return true;
+        }
+    }
 }
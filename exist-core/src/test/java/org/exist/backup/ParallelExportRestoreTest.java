@@ -0,0 +1,149 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.backup;
+
+import org.exist.EXistException;
+import org.exist.backup.restore.listener.LogRestoreListener;
+import org.exist.collections.Collection;
+import org.exist.security.PermissionDeniedException;
+import org.exist.storage.BrokerPool;
+import org.exist.storage.DBBroker;
+import org.exist.storage.txn.Txn;
+import org.exist.test.ExistEmbeddedServer;
+import org.exist.util.LockException;
+import org.exist.util.MimeType;
+import org.exist.util.StringInputSource;
+import org.exist.xmldb.XmldbURI;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Optional;
+
+import static org.exist.test.TestConstants.TEST_COLLECTION_URI;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Exports and restores a tree of collections with several worker threads.
+ */
+@RunWith(Parameterized.class)
+public class ParallelExportRestoreTest {
+
+    private static final int COLLECTIONS = 8;
+    private static final int SUB_COLLECTIONS = 3;
+    private static final int DOCUMENTS = 5;
+
+    @Parameters(name = "zip:{0}")
+    public static java.util.Collection<Object[]> data() {
+        return Arrays.asList(new Object[][]{
+                {false},
+                {true}
+        });
+    }
+
+    @Parameter
+    public boolean zip;
+
+    @ClassRule
+    public static TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @ClassRule
+    public static final ExistEmbeddedServer existEmbeddedServer = new ExistEmbeddedServer(true, true);
+
+    @Test
+    public void exportRestore() throws EXistException, IOException, PermissionDeniedException, SAXException {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+
+        final Path file;
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()));
+                final Txn transaction = pool.getTransactionManager().beginTransaction()) {
+            final SystemExport sysexport = new SystemExport(broker, transaction, null, null, true);
+            sysexport.setParallelism(4);
+            file = sysexport.export(temporaryFolder.newFolder().getAbsolutePath(), false, zip, null);
+            transaction.commit();
+        }
+        assertNotNull(file);
+
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()));
+                final Txn transaction = pool.getTransactionManager().beginTransaction()) {
+            broker.removeCollection(transaction, broker.getCollection(TEST_COLLECTION_URI));
+            transaction.commit();
+        }
+
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()))) {
+            assertNull(broker.getCollection(TEST_COLLECTION_URI));
+
+            final Restore restore = new Restore(4);
+            restore.restore(broker, null, null, file, new LogRestoreListener(), true);
+
+            for (int i = 0; i < COLLECTIONS; i++) {
+                final XmldbURI colUri = TEST_COLLECTION_URI.append("col" + i);
+                assertDocuments(broker, colUri);
+                for (int j = 0; j < SUB_COLLECTIONS; j++) {
+                    assertDocuments(broker, colUri.append("sub" + j));
+                }
+            }
+        }
+    }
+
+    private static void assertDocuments(final DBBroker broker, final XmldbURI colUri) throws PermissionDeniedException {
+        final Collection col = broker.getCollection(colUri);
+        assertNotNull("collection " + colUri + " was not restored", col);
+        assertEquals(DOCUMENTS, col.getDocumentCount(broker));
+    }
+
+    @BeforeClass
+    public static void setup() throws EXistException, PermissionDeniedException, IOException, SAXException, LockException {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()));
+                final Txn transaction = pool.getTransactionManager().beginTransaction()) {
+            for (int i = 0; i < COLLECTIONS; i++) {
+                final XmldbURI colUri = TEST_COLLECTION_URI.append("col" + i);
+                storeDocuments(broker, transaction, colUri);
+                for (int j = 0; j < SUB_COLLECTIONS; j++) {
+                    storeDocuments(broker, transaction, colUri.append("sub" + j));
+                }
+            }
+            transaction.commit();
+        }
+    }
+
+    private static void storeDocuments(final DBBroker broker, final Txn transaction, final XmldbURI colUri) throws EXistException, PermissionDeniedException, IOException, SAXException, LockException {
+        final Collection col = broker.getOrCreateCollection(transaction, colUri);
+        broker.saveCollection(transaction, col);
+        for (int k = 0; k < DOCUMENTS; k++) {
+            broker.storeDocument(transaction, XmldbURI.create("doc" + k + ".xml"),
+                    new StringInputSource("<doc n=\"" + k + "\"><col>" + colUri + "</col></doc>"), MimeType.XML_TYPE, col);
+        }
+    }
+}
@@ -24,7 +24,9 @@ package org.exist.dom.memtree;
 
 import com.googlecode.junittoolbox.ParallelParameterized;
 import org.exist.Namespaces;
+import org.exist.dom.QName;
 import org.exist.util.ExistSAXParserFactory;
+import org.exist.util.serializer.SAXSerializer;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
@@ -41,13 +43,18 @@ import org.xmlunit.diff.Diff;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
+import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Source;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
+import java.io.StringWriter;
 import java.util.Arrays;
+import java.util.Properties;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 @RunWith(ParallelParameterized.class)
 public class MemtreeBuilderTest {
@@ -82,6 +89,79 @@ public class MemtreeBuilderTest {
         assertFalse(diff.toString(), diff.hasDifferences());
     }
 
+    @Test
+    public void streamWhileBuilding() throws SAXException {
+        // serialize the complete document
+        final MemTreeBuilder builder = new MemTreeBuilder();
+        builder.startDocument();
+        buildItems(builder, 1000);
+        builder.endDocument();
+        final DocumentImpl doc = builder.getDocument();
+        final StringWriter expected = new StringWriter();
+        final SAXSerializer expectedSerializer = new SAXSerializer(expected, outputProperties());
+        expectedSerializer.startDocument();
+        doc.streamTo(null, (NodeImpl) doc.getFirstChild(), expectedSerializer);
+        expectedSerializer.endDocument();
+
+        for (int level = 1; level <= 4; level++) {
+            final MemTreeBuilder streamingBuilder = new MemTreeBuilder();
+            streamingBuilder.startDocument();
+            final StringWriter actual = new StringWriter();
+            final SAXSerializer serializer = new SAXSerializer(actual, outputProperties());
+            serializer.startDocument();
+            streamingBuilder.streamTo(null, serializer, level);
+            buildItems(streamingBuilder, 1000);
+            streamingBuilder.endDocument();
+            serializer.endDocument();
+
+            assertEquals("streamed at level " + level, expected.toString(), actual.toString());
+            // only the document node is left
+            assertEquals(1, streamingBuilder.getDocument().getSize());
+        }
+    }
+
+    @Test
+    public void streamingDiscardsCompletedSubtrees() {
+        final MemTreeBuilder builder = new MemTreeBuilder();
+        builder.startDocument();
+        final SAXSerializer serializer = new SAXSerializer(new StringWriter(), outputProperties());
+        builder.streamTo(null, serializer, 2);
+        builder.startElement(new QName("root"), null);
+        for (int i = 0; i < 1000; i++) {
+            builder.startElement(new QName("item"), null);
+            builder.characters("item " + i);
+            builder.endElement();
+            // the document node, the root element and at most one item with its text
+            assertTrue(builder.getDocument().getSize() <= 4);
+        }
+        builder.endElement();
+        builder.endDocument();
+    }
+
+    private static void buildItems(final MemTreeBuilder builder, final int count) {
+        builder.startElement(new QName("root"), null);
+        builder.addAttribute(new QName("version"), "1");
+        builder.characters("head");
+        for (int i = 0; i < count; i++) {
+            builder.startElement(new QName("item"), null);
+            builder.addAttribute(new QName("n"), Integer.toString(i));
+            builder.characters("text " + i);
+            builder.startElement(new QName("sub"), null);
+            builder.comment("comment " + i);
+            builder.endElement();
+            builder.characters("tail");
+            builder.endElement();
+        }
+        builder.characters("end");
+        builder.endElement();
+    }
+
+    private static Properties outputProperties() {
+        final Properties properties = new Properties();
+        properties.setProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+        return properties;
+    }
+
     private DocumentImpl parse(final String xml) throws ParserConfigurationException, SAXException, IOException {
         final SAXParserFactory saxParserFactory = ExistSAXParserFactory.getSAXParserFactory();
         saxParserFactory.setNamespaceAware(namespaceAware);
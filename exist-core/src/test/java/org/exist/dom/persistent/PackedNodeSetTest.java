@@ -0,0 +1,148 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.dom.persistent;
+
+import org.exist.numbering.DLNFactory;
+import org.exist.numbering.NodeId;
+import org.exist.numbering.NodeIdFactory;
+import org.exist.xquery.Expression;
+import org.junit.Test;
+import org.w3c.dom.Node;
+
+import static org.easymock.EasyMock.*;
+import static org.junit.Assert.*;
+
+public class PackedNodeSetTest {
+
+    private static final NodeIdFactory NODE_ID_FACTORY = new DLNFactory();
+
+    @Test
+    public void getAndContains() {
+        final DocumentImpl doc = mockDocument(1);
+        final PackedNodeSet set = new PackedNodeSet(NODE_ID_FACTORY, Node.ELEMENT_NODE, null);
+        add(set, doc, "1", "1.1", "1.1.2", "1.2");
+
+        assertEquals(4, set.getLength());
+        assertEquals("1.1.2", set.get(2).getNodeId().toString());
+        assertSame(set.get(2), set.get(2));
+
+        final NodeProxy found = set.get(doc, NODE_ID_FACTORY.createFromString("1.2"));
+        assertNotNull(found);
+        assertEquals(Node.ELEMENT_NODE, found.getNodeType());
+        assertNull(set.get(doc, NODE_ID_FACTORY.createFromString("1.1.1")));
+        assertTrue(set.contains(new NodeProxy(doc, NODE_ID_FACTORY.createFromString("1.1"))));
+        assertFalse(set.contains(new NodeProxy(mockDocument(2), NODE_ID_FACTORY.createFromString("1.1"))));
+    }
+
+    @Test
+    public void documentsAreSorted() {
+        final DocumentImpl doc1 = mockDocument(1);
+        final DocumentImpl doc2 = mockDocument(2);
+        final PackedNodeSet set = new PackedNodeSet(NODE_ID_FACTORY, Node.ELEMENT_NODE, null);
+        add(set, doc2, "1", "1.3");
+        add(set, doc1, "1.1", "1.2");
+
+        assertEquals(4, set.getLength());
+        assertEquals(1, set.get(0).getOwnerDocument().getDocId());
+        assertEquals("1.2", set.get(1).getNodeId().toString());
+        assertEquals(2, set.get(2).getOwnerDocument().getDocId());
+        assertEquals("1.3", set.get(3).getNodeId().toString());
+        assertEquals(2, set.getDocumentCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nodesInDocumentOrder() {
+        final PackedNodeSet set = new PackedNodeSet(NODE_ID_FACTORY, Node.ELEMENT_NODE, null);
+        add(set, mockDocument(1), "1.2", "1.1");
+    }
+
+    @Test
+    public void selectParentChild() {
+        final DocumentImpl doc = mockDocument(1);
+        final PackedNodeSet set = new PackedNodeSet(NODE_ID_FACTORY, Node.ELEMENT_NODE, null);
+        // 1.2/1 is a sibling inserted after 1.2, its id lies between 1.2 and 1.3
+        add(set, doc, "1.1", "1.2", "1.2.1", "1.2.1.1", "1.2.2", "1.2/1", "1.2/1.1", "1.3.1");
+
+        final NewArrayNodeSet parents = new NewArrayNodeSet();
+        parents.add(new NodeProxy(doc, NODE_ID_FACTORY.createFromString("1.2")));
+
+        final NodeSet children = set.selectParentChild(parents, NodeSet.DESCENDANT, Expression.NO_CONTEXT_ID);
+        assertEquals(2, children.getLength());
+        assertEquals("1.2.1", children.get(0).getNodeId().toString());
+        assertEquals("1.2.2", children.get(1).getNodeId().toString());
+
+        final NodeSet descendants = set.selectAncestorDescendant(parents, NodeSet.DESCENDANT, true, Expression.NO_CONTEXT_ID, true);
+        assertEquals(4, descendants.getLength());
+        assertEquals("1.2", descendants.get(0).getNodeId().toString());
+        assertEquals("1.2.1.1", descendants.get(2).getNodeId().toString());
+    }
+
+    @Test
+    public void addConvertsSet() {
+        final DocumentImpl doc1 = mockDocument(1);
+        final DocumentImpl doc2 = mockDocument(2);
+        final PackedNodeSet set = new PackedNodeSet(NODE_ID_FACTORY, Node.ELEMENT_NODE, null);
+        add(set, doc1, "1.1", "1.3");
+        final NodeProxy accessed = set.get(0);
+        final int state = set.getState();
+
+        set.add(new NodeProxy(doc1, NODE_ID_FACTORY.createFromString("1.2")));
+        final NewArrayNodeSet other = new NewArrayNodeSet();
+        other.add(new NodeProxy(doc2, NODE_ID_FACTORY.createFromString("1.1")));
+        set.addAll(other);
+
+        assertTrue(set.hasChanged(state));
+        assertEquals(4, set.getLength());
+        assertEquals(2, set.getDocumentCount());
+        assertSame(accessed, set.get(0));
+        assertEquals("1.2", set.get(1).getNodeId().toString());
+        assertEquals("1.3", set.get(2).getNodeId().toString());
+        assertEquals(2, set.get(3).getOwnerDocument().getDocId());
+        assertTrue(set.contains(new NodeProxy(doc2, NODE_ID_FACTORY.createFromString("1.1"))));
+        assertNotNull(set.get(doc1, NODE_ID_FACTORY.createFromString("1.2")));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void noPackedNodesAfterConversion() {
+        final DocumentImpl doc = mockDocument(1);
+        final PackedNodeSet set = new PackedNodeSet(NODE_ID_FACTORY, Node.ELEMENT_NODE, null);
+        set.add(new NodeProxy(doc, NODE_ID_FACTORY.createFromString("1.1")));
+        add(set, doc, "1.2");
+    }
+
+    private static void add(final PackedNodeSet set, final DocumentImpl doc, final String... nodeIds) {
+        for (final String nodeId : nodeIds) {
+            final NodeId id = NODE_ID_FACTORY.createFromString(nodeId);
+            final byte[] data = new byte[id.size()];
+            id.serialize(data, 0);
+            set.add(doc, id.units(), data, 0, StoredNode.UNKNOWN_NODE_IMPL_ADDRESS);
+        }
+    }
+
+    private static DocumentImpl mockDocument(final int docId) {
+        final DocumentImpl doc = createMock(DocumentImpl.class);
+        expect(doc.getDocId()).andReturn(docId).anyTimes();
+        expect(doc.getExpression()).andReturn(null).anyTimes();
+        replay(doc);
+        return doc;
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.http;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class ByteRangeTest {
+
+    @Test
+    public void firstAndLast() {
+        final ByteRange range = ByteRange.parse("bytes=0-499", 1000);
+        assertEquals(0, range.first);
+        assertEquals(499, range.last);
+        assertEquals(500, range.length());
+        assertEquals("bytes 0-499/1000", range.toContentRange(1000));
+    }
+
+    @Test
+    public void openEnded() {
+        final ByteRange range = ByteRange.parse("bytes=900-", 1000);
+        assertEquals(900, range.first);
+        assertEquals(999, range.last);
+    }
+
+    @Test
+    public void lastBeyondLength() {
+        final ByteRange range = ByteRange.parse("bytes=900-5000", 1000);
+        assertEquals(900, range.first);
+        assertEquals(999, range.last);
+    }
+
+    @Test
+    public void suffix() {
+        ByteRange range = ByteRange.parse("bytes=-100", 1000);
+        assertEquals(900, range.first);
+        assertEquals(999, range.last);
+
+        range = ByteRange.parse("bytes=-5000", 1000);
+        assertEquals(0, range.first);
+        assertEquals(999, range.last);
+    }
+
+    @Test
+    public void unsatisfiable() {
+        assertSame(ByteRange.UNSATISFIABLE, ByteRange.parse("bytes=1000-", 1000));
+        assertSame(ByteRange.UNSATISFIABLE, ByteRange.parse("bytes=-0", 1000));
+        assertSame(ByteRange.UNSATISFIABLE, ByteRange.parse("bytes=-10", 0));
+    }
+
+    @Test
+    public void completeRepresentation() {
+        assertNull(ByteRange.parse(null, 1000));
+        assertNull(ByteRange.parse("items=0-10", 1000));
+        assertNull(ByteRange.parse("bytes=500-100", 1000));
+        assertNull(ByteRange.parse("bytes=a-b", 1000));
+        assertNull(ByteRange.parse("bytes=0-10,20-30", 1000));
+    }
+}
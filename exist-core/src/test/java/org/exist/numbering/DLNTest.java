@@ -247,6 +247,42 @@ public class DLNTest {
         assertTrue(id0.isSiblingOf(id3));
     }
 
+    @Test
+    public void serializedRelations() {
+        final String[] ids = { "1", "1.3", "1.3.1", "1.3.2", "1.3.2.5.6", "1.3.2.5.6.7777", "1.3.1/1", "1.3.1/1.1",
+                "1.3.1/1.2.2", "1.4", "1.6.6.65.1", "1.6.6.66", "1.1/0/35" };
+        for (final String id : ids) {
+            final DLN dln = new DLN(id);
+            final byte[] data = serialize(dln, 0);
+            assertEquals(id, dln.getTreeLevel(), DLN.getTreeLevel(dln.units(), data, 0));
+
+            for (final String otherId : ids) {
+                final DLN other = new DLN(otherId);
+                // serialize at an offset, as in the keys of an index
+                final byte[] otherData = serialize(other, 5);
+                final String msg = id + " - " + otherId;
+                assertEquals(msg, Integer.signum(dln.compareTo(other)),
+                        Integer.signum(DLN.compare(dln.units(), data, 0, other.units(), otherData, 5)));
+                assertEquals(msg, dln.computeRelation(other),
+                        DLN.computeRelation(dln.units(), data, 0, other.units(), otherData, 5));
+                assertEquals(msg, Integer.signum(dln.getParentId().compareTo(other.getParentId())),
+                        Integer.signum(dln.compareParentTo(other)));
+            }
+        }
+
+        final DLN dln = new DLN("1.3.1/1.2");
+        final byte[] data = serialize(dln, 0);
+        final int parentUnits = DLN.getParentUnits(dln.units(), data, 0);
+        assertEquals(0, DLN.compare(parentUnits, data, 0, dln.getParentId().units(), serialize((DLN) dln.getParentId(), 0), 0));
+        assertEquals(0, DLN.getParentUnits(new DLN("1").units(), serialize(new DLN("1"), 0), 0));
+    }
+
+    private static byte[] serialize(final DLN dln, final int offset) {
+        final byte[] data = new byte[offset + dln.size()];
+        dln.serialize(data, offset);
+        return data;
+    }
+
     @Test
     public void insertion() {
         DLN left = new DLN("1.1"); 
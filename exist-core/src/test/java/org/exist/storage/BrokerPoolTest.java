@@ -32,9 +32,11 @@ import org.xmldb.api.base.XMLDBException;
 
 import java.util.Optional;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static junit.framework.TestCase.assertTrue;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.fail;
 
 /**
@@ -187,6 +189,101 @@ public class BrokerPoolTest {
         }
     }
 
+    /**
+     * Checks that when all broker leases are taken,
+     * a timed lease fails after the timeout has elapsed.
+     */
+    @Test
+    public void timedLeaseWhenSaturated() throws InterruptedException, ExecutionException {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        final int maxBrokers = pool.getMax();
+
+        final CountDownLatch releaseLatch = new CountDownLatch(1);
+        try {
+
+            // lease all brokers
+            final CountDownLatch acquiredLatch = new CountDownLatch(maxBrokers);
+            for (int i = 0; i < maxBrokers; i++) {
+                new Thread(new BrokerUser(pool, acquiredLatch, releaseLatch)).start();
+            }
+
+            // wait for all brokers to be acquired
+            acquiredLatch.await();
+            assertEquals(0, pool.available());
+
+            final long timeouts = pool.getBrokerLeaseTimeoutCount();
+            final ExecutorService executorService = Executors.newSingleThreadExecutor();
+            try {
+                final Future<Boolean> timedLease = executorService.submit(() -> {
+                    try (final DBBroker broker = pool.get(Optional.empty(), 200, TimeUnit.MILLISECONDS)) {
+                        return true;
+                    } catch (final EXistException e) {
+                        return false;
+                    }
+                });
+
+                // we should not be able to acquire an additional broker, as we have already leased max
+                assertFalse(timedLease.get());
+                assertEquals(timeouts + 1, pool.getBrokerLeaseTimeoutCount());
+                assertEquals(0, pool.countWaitingForBroker());
+            } finally {
+                executorService.shutdownNow();
+            }
+
+        } finally {
+            releaseLatch.countDown();
+        }
+    }
+
+    /**
+     * Checks that threads which lease brokers whilst the database
+     * is shutting down either hold their broker before the database
+     * files are closed, or are refused a broker.
+     */
+    @Test
+    public void leaseDuringShutdown() throws InterruptedException {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        final int threads = pool.getMax() * 2;
+
+        final CountDownLatch startedLatch = new CountDownLatch(threads);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final Thread[] brokerUsers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            brokerUsers[i] = new Thread(() -> {
+                startedLatch.countDown();
+                while (true) {
+                    try (final DBBroker broker = pool.getBroker()) {
+                        // the files may only be closed once all brokers have been returned
+                        if (pool.isShutDown()) {
+                            failure.compareAndSet(null, new IllegalStateException("Leased a broker from a shutdown database"));
+                            return;
+                        }
+                        broker.getCollection(XmldbURI.ROOT_COLLECTION_URI);
+                    } catch (final EXistException e) {
+                        // refused, the database is shutting down
+                        return;
+                    } catch (final Throwable t) {
+                        failure.compareAndSet(null, t);
+                        return;
+                    }
+                }
+            }, "lease-during-shutdown-" + i);
+            brokerUsers[i].start();
+        }
+
+        startedLatch.await();
+        pool.shutdown();
+
+        for (final Thread brokerUser : brokerUsers) {
+            brokerUser.join(10_000);
+            assertFalse(brokerUser.getName() + " did not complete", brokerUser.isAlive());
+        }
+        assertTrue(pool.isShutDown());
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+    }
+
     public static class BrokerUser implements Runnable {
 
         final BrokerPool brokerPool;
@@ -0,0 +1,183 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.storage;
+
+import org.exist.EXistException;
+import org.exist.backup.ConsistencyCheck;
+import org.exist.backup.ErrorReport;
+import org.exist.collections.Collection;
+import org.exist.dom.persistent.DocumentImpl;
+import org.exist.dom.persistent.LockedDocument;
+import org.exist.security.PermissionDeniedException;
+import org.exist.storage.lock.Lock.LockMode;
+import org.exist.storage.serializers.Serializer;
+import org.exist.storage.sync.CheckpointTask;
+import org.exist.storage.txn.TransactionManager;
+import org.exist.storage.txn.Txn;
+import org.exist.test.ExistEmbeddedServer;
+import org.exist.util.DatabaseConfigurationException;
+import org.exist.util.LockException;
+import org.exist.util.MimeType;
+import org.exist.util.StringInputSource;
+import org.exist.xmldb.XmldbURI;
+import org.exist.xquery.TerminatedException;
+import org.junit.After;
+import org.junit.Test;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Flushes the database files and writes checkpoints whilst other
+ * threads commit transactions, and then checks that recovery after
+ * a crash restores every committed document.
+ */
+public class ConcurrentSyncRecoveryTest {
+
+    private static final XmldbURI TEST_COLLECTION_URI = XmldbURI.ROOT_COLLECTION_URI.append("concurrent-sync");
+    private static final int WRITERS = 3;
+    private static final int DOCUMENTS_PER_WRITER = 60;
+
+    // we don't use @ClassRule/@Rule as we want to force corruption
+    private final ExistEmbeddedServer existEmbeddedServer = new ExistEmbeddedServer(true, true);
+
+    @Test
+    public void recoverAfterConcurrentFlush() throws EXistException, IOException, DatabaseConfigurationException, PermissionDeniedException, SAXException, InterruptedException, TerminatedException, LockException {
+        BrokerPool.FORCE_CORRUPTION = true;
+        existEmbeddedServer.startDb();
+        BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        final TransactionManager transact = pool.getTransactionManager();
+
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()));
+                final Txn transaction = transact.beginTransaction()) {
+            final Collection test = broker.getOrCreateCollection(transaction, TEST_COLLECTION_URI);
+            broker.saveCollection(transaction, test);
+            transaction.commit();
+        }
+
+        final Set<String> committed = ConcurrentHashMap.newKeySet();
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final CountDownLatch writersDone = new CountDownLatch(WRITERS);
+        for (int w = 0; w < WRITERS; w++) {
+            final int writer = w;
+            final BrokerPool writerPool = pool;
+            new Thread(() -> {
+                try (final DBBroker broker = writerPool.get(Optional.of(writerPool.getSecurityManager().getSystemSubject()))) {
+                    for (int i = 0; i < DOCUMENTS_PER_WRITER; i++) {
+                        final String name = "doc-" + writer + "-" + i + ".xml";
+                        try (final Txn transaction = transact.beginTransaction()) {
+                            final Collection test = broker.getCollection(TEST_COLLECTION_URI);
+                            broker.storeDocument(transaction, XmldbURI.create(name), new StringInputSource(content(name)), MimeType.XML_TYPE, test);
+                            transaction.commit();
+                        }
+                        committed.add(name);
+                    }
+                } catch (final Throwable t) {
+                    failure.compareAndSet(null, t);
+                } finally {
+                    writersDone.countDown();
+                }
+            }, "concurrent-sync-writer-" + w).start();
+        }
+
+        // flush the dirty pages and request checkpoints whilst the writers commit
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()))) {
+            while (writersDone.getCount() > 0) {
+                pool.flush(broker);
+                pool.triggerSystemTask(new CheckpointTask());
+                Thread.sleep(20);
+            }
+        }
+        writersDone.await();
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+        assertEquals(WRITERS * DOCUMENTS_PER_WRITER, committed.size());
+
+        // crash, and recover on restart
+        existEmbeddedServer.stopDb(false);
+        BrokerPool.FORCE_CORRUPTION = false;
+        existEmbeddedServer.startDb();
+        pool = existEmbeddedServer.getBrokerPool();
+
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()));
+                final Txn transaction = pool.getTransactionManager().beginTransaction()) {
+            final Collection test = broker.getCollection(TEST_COLLECTION_URI);
+            assertNotNull(test);
+            assertEquals(committed.size(), test.getDocumentCount(broker));
+
+            final Serializer serializer = broker.borrowSerializer();
+            try {
+                for (final String name : committed) {
+                    try (final LockedDocument lockedDoc = test.getDocumentWithLock(broker, XmldbURI.create(name), LockMode.READ_LOCK)) {
+                        assertNotNull("document " + name + " was not recovered", lockedDoc);
+                        final DocumentImpl doc = lockedDoc.getDocument();
+                        final String serialized = serializer.serialize(doc);
+                        assertTrue(serialized, serialized.contains(name) && serialized.contains("concurrent sync"));
+                    }
+                }
+            } finally {
+                broker.returnSerializer(serializer);
+            }
+
+            final List<ErrorReport> errors = new ConsistencyCheck(broker, transaction, false, true).checkAll(new NoopProgressCallback());
+            assertTrue("consistency check reported: " + errors, errors.isEmpty());
+
+            transaction.commit();
+        }
+    }
+
+    private static String content(final String name) {
+        return "<doc name=\"" + name + "\"><para>concurrent sync</para></doc>";
+    }
+
+    @After
+    public void stopDb() {
+        BrokerPool.FORCE_CORRUPTION = false;
+        existEmbeddedServer.stopDb();
+    }
+
+    private static class NoopProgressCallback implements ConsistencyCheck.ProgressCallback {
+        @Override
+        public void startDocument(final String name, final int current, final int count) {
+        }
+
+        @Override
+        public void startCollection(final String path) {
+        }
+
+        @Override
+        public void error(final ErrorReport error) {
+        }
+    }
+}
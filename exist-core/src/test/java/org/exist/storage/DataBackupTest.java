@@ -23,23 +23,56 @@
 package org.exist.storage;
 
 import org.exist.EXistException;
+import org.exist.backup.ConsistencyCheck;
+import org.exist.backup.ErrorReport;
+import org.exist.collections.Collection;
+import org.exist.dom.persistent.LockedDocument;
+import org.exist.security.PermissionDeniedException;
+import org.exist.storage.journal.Journal;
+import org.exist.storage.journal.JournalManager;
+import org.exist.storage.lock.Lock.LockMode;
+import org.exist.storage.serializers.Serializer;
+import org.exist.storage.txn.TransactionException;
+import org.exist.storage.txn.TransactionManager;
 import org.exist.storage.txn.Txn;
 import org.exist.test.ExistEmbeddedServer;
+import org.exist.util.DatabaseConfigurationException;
+import org.exist.util.FileUtils;
+import org.exist.util.LockException;
+import org.exist.util.MimeType;
+import org.exist.util.StringInputSource;
+import org.exist.xmldb.XmldbURI;
+import org.exist.xquery.TerminatedException;
 import org.junit.ClassRule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
+import org.xml.sax.SAXException;
 
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
-import java.util.zip.ZipEntry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.zip.ZipFile;
 
+import static org.exist.util.PropertiesBuilder.propertiesBuilder;
+
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 public class DataBackupTest {
 
+    private static final XmldbURI ONLINE_COLLECTION_URI = XmldbURI.ROOT_COLLECTION_URI.append("online-backup");
+    private static final int WRITERS = 3;
+
     @ClassRule
     public static ExistEmbeddedServer existEmbeddedServer = new ExistEmbeddedServer(true, true);
 
@@ -67,6 +100,176 @@ public class DataBackupTest {
         assertNotNull(zipFile.getEntry("blob.dbx"));
     }
 
+    /**
+     * Makes an online backup whilst other threads store documents,
+     * then starts a database on the restored files, which has to
+     * recover from the journal in the backup.
+     */
+    @Test
+    public void onlineBackup() throws EXistException, PermissionDeniedException, IOException, SAXException, LockException,
+            InterruptedException, DatabaseConfigurationException, TerminatedException {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        final TransactionManager transact = pool.getTransactionManager();
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()));
+                final Txn transaction = transact.beginTransaction()) {
+            final Collection test = broker.getOrCreateCollection(transaction, ONLINE_COLLECTION_URI);
+            broker.saveCollection(transaction, test);
+            transaction.commit();
+        }
+
+        final Set<String> committed = ConcurrentHashMap.newKeySet();
+        final AtomicBoolean stop = new AtomicBoolean();
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final CountDownLatch writersDone = new CountDownLatch(WRITERS);
+        for (int w = 0; w < WRITERS; w++) {
+            final int writer = w;
+            new Thread(() -> {
+                try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()))) {
+                    for (int i = 0; !stop.get(); i++) {
+                        final String name = "doc-" + writer + "-" + i + ".xml";
+                        try (final Txn transaction = transact.beginTransaction()) {
+                            final Collection test = broker.getCollection(ONLINE_COLLECTION_URI);
+                            broker.storeDocument(transaction, XmldbURI.create(name), new StringInputSource(content(name)), MimeType.XML_TYPE, test);
+                            transaction.commit();
+                        }
+                        committed.add(name);
+                    }
+                } catch (final Throwable t) {
+                    failure.compareAndSet(null, t);
+                } finally {
+                    writersDone.countDown();
+                }
+            }, "online-backup-writer-" + w).start();
+        }
+
+        final Set<String> committedBeforeBackup;
+        final Optional<Path> lastBackup;
+        try {
+            while (committed.size() < 30 && writersDone.getCount() == WRITERS) {
+                Thread.sleep(10);
+            }
+            committedBeforeBackup = new HashSet<>(committed);
+
+            // an online backup does not wait for the database to become idle
+            final TestableDataBackup dataBackup = new TestableDataBackup(folder.newFolder("online-backup").toPath(), true);
+            pool.triggerSystemTask(dataBackup);
+            assertTrue(dataBackup.isCompleted());
+            lastBackup = dataBackup.getLastBackup();
+        } finally {
+            stop.set(true);
+            writersDone.await();
+        }
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+        assertTrue(lastBackup.isPresent());
+
+        try (final ZipFile zipFile = new ZipFile(lastBackup.get().toFile())) {
+            assertNotNull(zipFile.getEntry("dom.dbx"));
+            assertNotNull(zipFile.getEntry("symbols.dbx"));
+            assertTrue(zipFile.stream().anyMatch(entry -> entry.getName().startsWith(Journal.BACKUP_ENTRY_DIR + '/')));
+        }
+
+        final Path dataDir = folder.newFolder("restored-data").toPath();
+        final Path journalDir = folder.newFolder("restored-journal").toPath();
+        DataBackup.restore(lastBackup.get(), dataDir, journalDir);
+
+        assertTrue(Files.exists(dataDir.resolve("dom.dbx")));
+        assertTrue(Files.exists(dataDir.resolve("collections.dbx")));
+        assertEquals(1, FileUtils.list(journalDir, path -> FileUtils.fileName(path).endsWith('.' + Journal.LOG_FILE_SUFFIX)).size());
+
+        // start a database on the restored files, it recovers from the journal of the backup
+        final ExistEmbeddedServer restoredServer = new ExistEmbeddedServer(
+                propertiesBuilder()
+                        .put(BrokerPool.PROPERTY_DATA_DIR, dataDir)
+                        .put(Journal.PROPERTY_RECOVERY_JOURNAL_DIR, journalDir)
+                        .build(),
+                true,
+                false);
+        restoredServer.startDb();
+        try {
+            final BrokerPool restoredPool = restoredServer.getBrokerPool();
+            try (final DBBroker broker = restoredPool.get(Optional.of(restoredPool.getSecurityManager().getSystemSubject()));
+                    final Txn transaction = restoredPool.getTransactionManager().beginTransaction()) {
+                final Collection test = broker.getCollection(ONLINE_COLLECTION_URI);
+                assertNotNull(test);
+                assertTrue(test.getDocumentCount(broker) >= committedBeforeBackup.size());
+
+                final Serializer serializer = broker.borrowSerializer();
+                try {
+                    for (final String name : committedBeforeBackup) {
+                        try (final LockedDocument lockedDoc = test.getDocumentWithLock(broker, XmldbURI.create(name), LockMode.READ_LOCK)) {
+                            assertNotNull("document " + name + " was not restored", lockedDoc);
+                            final String serialized = serializer.serialize(lockedDoc.getDocument());
+                            assertTrue(serialized, serialized.contains(name) && serialized.contains("online backup"));
+                        }
+                    }
+                } finally {
+                    broker.returnSerializer(serializer);
+                }
+
+                final List<ErrorReport> errors = new ConsistencyCheck(broker, transaction, false, true).checkAll(new NoopProgressCallback());
+                assertTrue("consistency check reported: " + errors, errors.isEmpty());
+
+                transaction.commit();
+            }
+        } finally {
+            restoredServer.stopDb();
+        }
+    }
+
+    /**
+     * A checkpoint which is requested whilst checkpoints are suspended
+     * for an online backup must be run once they are resumed.
+     */
+    @Test
+    public void checkpointDeferredWhilstSuspended() throws EXistException, TransactionException {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        final JournalManager journalManager = pool.getJournalManager().get();
+        final AtomicInteger checkpoints = new AtomicInteger();
+        final AtomicBoolean listening = new AtomicBoolean(true);
+        journalManager.listen(txnId -> {
+            checkpoints.incrementAndGet();
+            return listening.get();
+        });
+
+        try {
+            journalManager.suspendCheckpoints();
+            try {
+                pool.getTransactionManager().checkpoint(false);
+                assertEquals(0, checkpoints.get());
+            } finally {
+                journalManager.resumeCheckpoints();
+            }
+
+            // the deferred checkpoint is run with the next sync, when the broker is released
+            try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()))) {
+                assertNotNull(broker);
+            }
+            assertTrue(checkpoints.get() > 0);
+        } finally {
+            listening.set(false);
+        }
+    }
+
+    private static String content(final String name) {
+        return "<doc name=\"" + name + "\"><para>online backup</para></doc>";
+    }
+
+    private static class NoopProgressCallback implements ConsistencyCheck.ProgressCallback {
+        @Override
+        public void startDocument(final String name, final int current, final int count) {
+        }
+
+        @Override
+        public void startCollection(final String path) {
+        }
+
+        @Override
+        public void error(final ErrorReport error) {
+        }
+    }
+
     private class TestableDataBackup extends DataBackup {
         private volatile boolean completed = false;
 
@@ -74,6 +277,10 @@ public class DataBackupTest {
             super(destination);
         }
 
+        public TestableDataBackup(final Path destination, final boolean online) {
+            super(destination, online);
+        }
+
         @Override
         public void execute(final DBBroker broker, final Txn transaction) throws EXistException {
             super.execute(broker, transaction);
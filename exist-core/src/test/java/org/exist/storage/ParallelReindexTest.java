@@ -0,0 +1,182 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.storage;
+
+import org.exist.EXistException;
+import org.exist.collections.Collection;
+import org.exist.collections.CollectionConfigurationException;
+import org.exist.collections.triggers.TriggerException;
+import org.exist.security.PermissionDeniedException;
+import org.exist.storage.lock.Lock;
+import org.exist.storage.txn.Txn;
+import org.exist.test.ExistEmbeddedServer;
+import org.exist.util.DatabaseConfigurationException;
+import org.exist.util.LockException;
+import org.exist.util.MimeType;
+import org.exist.util.StringInputSource;
+import org.exist.xmldb.XmldbURI;
+import org.exist.xquery.XPathException;
+import org.exist.xquery.value.Sequence;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Checks that a parallel reindex produces the same indexes as a serial reindex.
+ */
+public class ParallelReindexTest {
+
+    private static final XmldbURI TEST_COLLECTION = XmldbURI.create("/db/parallel-reindex-test");
+    private static final XmldbURI CHILD_COLLECTION = TEST_COLLECTION.append("child");
+
+    private static final int DOCUMENTS = 64;
+    private static final int CHILD_DOCUMENTS = 16;
+    private static final int REINDEX_THREADS = 4;
+
+    private static final String COLLECTION_CONFIG =
+            "<collection xmlns=\"http://exist-db.org/collection-config/1.0\">" +
+            "    <index>" +
+            "        <create qname=\"value\" type=\"xs:string\"/>" +
+            "    </index>" +
+            "</collection>";
+
+    private static final String INDEX_KEYS_QUERY =
+            "string-join(util:index-keys(collection('" + TEST_COLLECTION + "')//value, '', " +
+            "function($key, $data) { $key || '=' || $data[1] }, 100), ' ')";
+
+    private static final String COUNT_QUERY =
+            "string-join(for $v in ('v0', 'v1', 'v2', 'v3') " +
+            "return count(collection('" + TEST_COLLECTION + "')//item[value = $v]), ' ')";
+
+    private static final String EXPECTED_COUNTS = "20 20 20 20";
+
+    @Rule
+    public final ExistEmbeddedServer existEmbeddedServer = new ExistEmbeddedServer(true, true);
+
+    @Test
+    public void parallelReindexMatchesSerialReindex() throws EXistException, PermissionDeniedException, IOException, LockException, XPathException {
+        final String indexKeys = query(INDEX_KEYS_QUERY);
+        assertEquals(EXPECTED_COUNTS, query(COUNT_QUERY));
+
+        reindex(1);
+        assertEquals(indexKeys, query(INDEX_KEYS_QUERY));
+        assertEquals(EXPECTED_COUNTS, query(COUNT_QUERY));
+
+        reindex(REINDEX_THREADS);
+        assertEquals(indexKeys, query(INDEX_KEYS_QUERY));
+        assertEquals(EXPECTED_COUNTS, query(COUNT_QUERY));
+    }
+
+    /**
+     * The workers make their changes within the transaction of the caller,
+     * so after a crash recovery redoes them together with the committed transaction.
+     */
+    @Test
+    public void parallelReindexIsRecovered() throws EXistException, PermissionDeniedException, IOException, LockException, XPathException, DatabaseConfigurationException {
+        final String indexKeys = query(INDEX_KEYS_QUERY);
+
+        reindex(REINDEX_THREADS);
+
+        // simulate a crash
+        BrokerPool.FORCE_CORRUPTION = true;
+        try {
+            existEmbeddedServer.stopDb(false);
+        } finally {
+            BrokerPool.FORCE_CORRUPTION = false;
+        }
+        existEmbeddedServer.startDb();
+
+        assertEquals(indexKeys, query(INDEX_KEYS_QUERY));
+        assertEquals(EXPECTED_COUNTS, query(COUNT_QUERY));
+    }
+
+    private void reindex(final int reindexThreads) throws EXistException, PermissionDeniedException, IOException, LockException {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        pool.getConfiguration().setProperty(NativeBroker.PROPERTY_REINDEX_THREADS, reindexThreads);
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()));
+             final Txn transaction = pool.getTransactionManager().beginTransaction()) {
+            broker.reindexCollection(transaction, TEST_COLLECTION);
+            transaction.commit();
+        }
+    }
+
+    private String query(final String query) throws EXistException, PermissionDeniedException, XPathException {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()))) {
+            final Sequence result = pool.getXQueryService().execute(broker, query, null);
+            assertEquals(1, result.getItemCount());
+            return result.getStringValue();
+        }
+    }
+
+    private static String item(final int i) {
+        return "<item><id>" + i + "</id><value>v" + (i % 4) + "</value></item>";
+    }
+
+    @Before
+    public void setup() throws EXistException, PermissionDeniedException, IOException, SAXException, LockException, CollectionConfigurationException {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()));
+             final Txn transaction = pool.getTransactionManager().beginTransaction()) {
+
+            final Collection collection = broker.getOrCreateCollection(transaction, TEST_COLLECTION);
+            assertNotNull(collection);
+            pool.getConfigurationManager().addConfiguration(transaction, broker, collection, COLLECTION_CONFIG);
+            broker.saveCollection(transaction, collection);
+            for (int i = 0; i < DOCUMENTS; i++) {
+                broker.storeDocument(transaction, XmldbURI.create("item-" + i + ".xml"), new StringInputSource(item(i)), MimeType.XML_TYPE, collection);
+            }
+
+            final Collection child = broker.getOrCreateCollection(transaction, CHILD_COLLECTION);
+            assertNotNull(child);
+            broker.saveCollection(transaction, child);
+            for (int i = 0; i < CHILD_DOCUMENTS; i++) {
+                broker.storeDocument(transaction, XmldbURI.create("child-item-" + i + ".xml"), new StringInputSource(item(i)), MimeType.XML_TYPE, child);
+            }
+
+            transaction.commit();
+        }
+    }
+
+    @After
+    public void cleanup() throws EXistException, PermissionDeniedException, IOException, TriggerException, LockException {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()));
+             final Txn transaction = pool.getTransactionManager().beginTransaction();
+             final Collection collection = broker.openCollection(TEST_COLLECTION, Lock.LockMode.WRITE_LOCK)) {
+
+            if (collection != null) {
+                broker.removeCollection(transaction, collection);
+            }
+
+            transaction.commit();
+        }
+    }
+}
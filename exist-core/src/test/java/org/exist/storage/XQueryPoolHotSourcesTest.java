@@ -0,0 +1,83 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.storage;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class XQueryPoolHotSourcesTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void writeThenRead() throws IOException {
+        final XQueryPool.HotSource controller = new XQueryPool.HotSource(XQueryPool.HotSource.TYPE_DB, "/db/apps/app/controller.xql", "xmldb:exist:///db/apps/app", Arrays.asList("exist:path", "exist:resource"));
+        controller.hits.add(42);
+        final XQueryPool.HotSource file = new XQueryPool.HotSource(XQueryPool.HotSource.TYPE_FILE, "/opt/exist/webapp/controller.xql", null, Collections.emptyList());
+        file.hits.add(7);
+
+        final Path hotSourcesFile = temporaryFolder.getRoot().toPath().resolve(XQueryPool.HOT_SOURCES_FILE_NAME);
+        XQueryPool.writeHotSources(hotSourcesFile, Arrays.asList(controller, file));
+
+        final List<XQueryPool.HotSource> sources = XQueryPool.readHotSources(hotSourcesFile);
+        assertEquals(2, sources.size());
+
+        assertEquals(XQueryPool.HotSource.TYPE_DB, sources.get(0).type);
+        assertEquals("/db/apps/app/controller.xql", sources.get(0).path);
+        assertEquals("xmldb:exist:///db/apps/app", sources.get(0).moduleLoadPath);
+        assertEquals(Arrays.asList("exist:path", "exist:resource"), sources.get(0).variables);
+        assertEquals(42, sources.get(0).getHits());
+
+        assertEquals(XQueryPool.HotSource.TYPE_FILE, sources.get(1).type);
+        assertNull(sources.get(1).moduleLoadPath);
+        assertEquals(Collections.emptyList(), sources.get(1).variables);
+        assertEquals(7, sources.get(1).getHits());
+    }
+
+    @Test
+    public void malformedLinesAreIgnored() throws IOException {
+        final Path hotSourcesFile = temporaryFolder.newFile().toPath();
+        Files.write(hotSourcesFile, Arrays.asList(
+                "not a hot source",
+                "x\tdb\t/db/a.xql\t\t",
+                "1\tstring\tsome query\t\t",
+                "3\tdb\t/db/b.xql\t\t"
+        ), StandardCharsets.UTF_8);
+
+        final List<XQueryPool.HotSource> sources = XQueryPool.readHotSources(hotSourcesFile);
+        assertEquals(1, sources.size());
+        assertEquals("/db/b.xql", sources.get(0).path);
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.storage;
+
+import org.exist.EXistException;
+import org.exist.security.PermissionDeniedException;
+import org.exist.source.StringSource;
+import org.exist.test.ExistEmbeddedServer;
+import org.exist.xquery.CompiledXQuery;
+import org.exist.xquery.XPathException;
+import org.exist.xquery.XQuery;
+import org.exist.xquery.XQueryContext;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class XQueryPoolTest {
+
+    @ClassRule
+    public static final ExistEmbeddedServer existEmbeddedServer = new ExistEmbeddedServer(true, true);
+
+    /**
+     * max-stack-size is not a limit on the number of copies of a query
+     * which are returned to the pool, every returned copy can be borrowed again.
+     */
+    @Test
+    public void copiesBeyondMaxStackSizeAreKept() throws EXistException, XPathException, PermissionDeniedException {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        final XQueryPool xqueryPool = pool.getXQueryPool();
+        final XQuery xquery = pool.getXQueryService();
+        final StringSource source = new StringSource("declare variable $local:copies := 70; $local:copies");
+        final int copies = 70;  // more than the default max-stack-size of 64
+
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()))) {
+            final Set<CompiledXQuery> returned = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (int i = 0; i < copies; i++) {
+                final CompiledXQuery compiled = xquery.compile(new XQueryContext(pool), source);
+                returned.add(compiled);
+            }
+            for (final CompiledXQuery compiled : returned) {
+                xqueryPool.returnCompiledXQuery(source, compiled);
+            }
+
+            for (int i = 0; i < copies; i++) {
+                final CompiledXQuery borrowed = xqueryPool.borrowCompiledXQuery(broker, source);
+                assertNotNull("copy " + i + " was released", borrowed);
+                assertTrue(returned.remove(borrowed));
+            }
+            assertNull(xqueryPool.borrowCompiledXQuery(broker, source));
+        }
+    }
+
+    @Test
+    public void idleCopiesAreKeptIfDisabled() {
+        final Deque<XQueryPool.PooledXQuery> deque = pooled(0, 10, 20);
+        assertEquals(0, XQueryPool.releaseIdle(deque, Long.MAX_VALUE, -1));
+        assertEquals(3, deque.size());
+    }
+
+    @Test
+    public void idleCopiesAreReleased() {
+        // returned at 30, 20, 10 and 0 ms; most recently returned first
+        final Deque<XQueryPool.PooledXQuery> deque = pooled(30, 20, 10, 0);
+        final XQueryPool.PooledXQuery mostRecent = deque.peekFirst();
+        final XQueryPool.PooledXQuery secondMostRecent = deque.stream().skip(1).findFirst().get();
+
+        // nothing has been idle for more than 20 ms at 30 ms
+        assertEquals(0, XQueryPool.releaseIdle(deque, 30, 20));
+        assertEquals(4, deque.size());
+
+        // the copies returned at 0 and 10 ms have been idle for more than 15 ms at 30 ms
+        assertEquals(2, XQueryPool.releaseIdle(deque, 30, 15));
+        assertEquals(2, deque.size());
+        assertSame(mostRecent, deque.peekFirst());
+        assertSame(secondMostRecent, deque.peekLast());
+    }
+
+    @Test
+    public void mostRecentCopyIsKept() {
+        final Deque<XQueryPool.PooledXQuery> deque = pooled(10, 0);
+        final XQueryPool.PooledXQuery mostRecent = deque.peekFirst();
+
+        assertEquals(1, XQueryPool.releaseIdle(deque, 1_000, 100));
+        assertEquals(1, deque.size());
+        assertSame(mostRecent, deque.peekFirst());
+
+        assertEquals(0, XQueryPool.releaseIdle(deque, 1_000, 0));
+        assertEquals(1, deque.size());
+    }
+
+    private static Deque<XQueryPool.PooledXQuery> pooled(final long... returned) {
+        final Deque<XQueryPool.PooledXQuery> deque = new ArrayDeque<>();
+        for (final long time : returned) {
+            deque.offerLast(new XQueryPool.PooledXQuery(null, time));
+        }
+        return deque;
+    }
+}
@@ -49,6 +49,8 @@ import org.junit.rules.TemporaryFolder;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
@@ -133,6 +135,78 @@ public class BlobStoreImplTest {
         assertEquals(expectedBlobDbxLen, actualBlobDbxLen);
     }
 
+    @Test
+    public void dedupStatistics() throws IOException {
+        final Path blobDbx = temporaryFolder.getRoot().toPath().resolve("blob.dbx");
+        final Path blobDir = temporaryFolder.newFolder("blob").toPath();
+
+        final Tuple2<byte[], MessageDigest> testFile1 = generateTestFile();
+        final Tuple2<byte[], MessageDigest> testFile2 = generateTestFile();
+
+        try (final BlobStore blobStore = newBlobStore(blobDbx, blobDir)) {
+            blobStore.open();
+
+            final BlobId blobId1 = addAndVerify(blobStore, testFile1);
+            addAndVerify(blobStore, testFile2);
+            addAndVerify(blobStore, testFile1);
+            addAndVerify(blobStore, testFile1);
+            blobStore.copy(null, blobId1);
+
+            final BlobStore.Statistics statistics = blobStore.getStatistics();
+            assertEquals(4, statistics.getAddCount());
+            assertEquals(2, statistics.getDedupHitCount());
+            assertEquals(0.5, statistics.getDedupHitRate(), 0.0);
+            assertEquals(4L * testFile1._1.length, statistics.getBytesAdded());
+            assertEquals(2L * testFile1._1.length, statistics.getBytesDeduplicated());
+            assertEquals(1, statistics.getCopyCount());
+        }
+    }
+
+    @Test
+    public void transferTo() throws IOException {
+        final Path blobDbx = temporaryFolder.getRoot().toPath().resolve("blob.dbx");
+        final Path blobDir = temporaryFolder.newFolder("blob").toPath();
+
+        final Tuple2<byte[], MessageDigest> testFile = generateTestFile();
+        final byte[] data = testFile._1;
+
+        try (final BlobStore blobStore = newBlobStore(blobDbx, blobDir)) {
+            blobStore.open();
+
+            final BlobId blobId = addAndVerify(blobStore, testFile);
+
+            // whole blob, to an arbitrary channel from mapped regions
+            try (final UnsynchronizedByteArrayOutputStream os = new UnsynchronizedByteArrayOutputStream()) {
+                assertEquals(data.length, blobStore.transferTo(null, blobId, 0, Long.MAX_VALUE, Channels.newChannel(os)));
+                assertArrayEquals(data, os.toByteArray());
+            }
+
+            // small range, to an arbitrary channel
+            try (final UnsynchronizedByteArrayOutputStream os = new UnsynchronizedByteArrayOutputStream()) {
+                assertEquals(100, blobStore.transferTo(null, blobId, 1000, 100, Channels.newChannel(os)));
+                assertArrayEquals(Arrays.copyOfRange(data, 1000, 1100), os.toByteArray());
+            }
+
+            // range to the end, to a file channel
+            final Path file = temporaryFolder.newFile().toPath();
+            try (final FileChannel channel = FileChannel.open(file, java.nio.file.StandardOpenOption.WRITE)) {
+                assertEquals(data.length - 500_000, blobStore.transferTo(null, blobId, 500_000, data.length, channel));
+            }
+            assertArrayEquals(Arrays.copyOfRange(data, 500_000, data.length), Files.readAllBytes(file));
+
+            // beyond the end
+            try (final UnsynchronizedByteArrayOutputStream os = new UnsynchronizedByteArrayOutputStream()) {
+                assertEquals(0, blobStore.transferTo(null, blobId, data.length, 10, Channels.newChannel(os)));
+            }
+
+            // non-existent
+            final BlobId nonExistent = new BlobId(reverse(blobId.getId()));
+            try (final UnsynchronizedByteArrayOutputStream os = new UnsynchronizedByteArrayOutputStream()) {
+                assertEquals(-1, blobStore.transferTo(null, nonExistent, 0, 10, Channels.newChannel(os)));
+            }
+        }
+    }
+
     @Test
     public void getNonExistent() throws IOException {
         final Path blobDbx = temporaryFolder.getRoot().toPath().resolve("blob.dbx");
@@ -0,0 +1,123 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.storage.btree;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+@RunWith(Parameterized.class)
+public class PageIOTest {
+
+    @Parameterized.Parameters(name = "{0}")
+    public static java.util.Collection<Object[]> data() {
+        return Arrays.asList(new Object[][] {
+                { PageIO.Mode.RANDOM_ACCESS_FILE },
+                { PageIO.Mode.CHANNEL },
+                { PageIO.Mode.MAPPED }
+        });
+    }
+
+    @Parameterized.Parameter
+    public PageIO.Mode mode;
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void writeThenRead() throws IOException {
+        final byte[] page = pattern(4096, (byte) 7);
+        try (final PageIO pageIO = open(temporaryFolder.newFile().toPath())) {
+            pageIO.write(4096, page, 0, page.length);
+            assertEquals(8192, pageIO.size());
+
+            final byte[] read = new byte[page.length];
+            assertEquals(page.length, pageIO.read(4096, read, 0, read.length));
+            assertArrayEquals(page, read);
+        }
+    }
+
+    @Test
+    public void readBeyondEnd() throws IOException {
+        final byte[] page = pattern(100, (byte) 3);
+        try (final PageIO pageIO = open(temporaryFolder.newFile().toPath())) {
+            pageIO.write(0, page, 0, page.length);
+
+            final byte[] read = new byte[200];
+            assertEquals(100, pageIO.read(0, read, 0, read.length));
+            assertArrayEquals(page, Arrays.copyOf(read, 100));
+            assertEquals(0, read[150]);
+
+            assertEquals(-1, pageIO.read(1000, read, 0, read.length));
+        }
+    }
+
+    @Test
+    public void readFromMappedSegment() throws IOException {
+        final int len = MappedPageIO.SEGMENT_SIZE + 4096;
+        final byte[] page = pattern(4096, (byte) 11);
+        try (final PageIO pageIO = open(temporaryFolder.newFile().toPath())) {
+            pageIO.write(len - page.length, page, 0, page.length);
+            pageIO.write(8192, page, 0, page.length);
+
+            final byte[] read = new byte[page.length];
+            assertEquals(page.length, pageIO.read(8192, read, 0, read.length));
+            assertArrayEquals(page, read);
+
+            // writes after mapping must be visible to reads
+            final byte[] updated = pattern(4096, (byte) 13);
+            pageIO.write(8192, updated, 0, updated.length);
+            assertEquals(updated.length, pageIO.read(8192, read, 0, read.length));
+            assertArrayEquals(updated, read);
+        }
+    }
+
+    private PageIO open(final Path file) throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw");
+        switch (mode) {
+            case CHANNEL:
+                return new ChannelPageIO(raf.getChannel());
+            case MAPPED:
+                return new MappedPageIO(raf.getChannel());
+            default:
+                return new RandomAccessFilePageIO(raf);
+        }
+    }
+
+    private static byte[] pattern(final int len, final byte seed) {
+        final byte[] data = new byte[len];
+        for (int i = 0; i < len; i++) {
+            data[i] = (byte) (seed + i);
+        }
+        return data;
+    }
+}
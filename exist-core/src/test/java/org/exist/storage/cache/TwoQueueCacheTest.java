@@ -0,0 +1,214 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.storage.cache;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TwoQueueCacheTest {
+
+    @Test
+    public void hotSetSurvivesScan() {
+        final TwoQueueCache<TestPage> cache = new TwoQueueCache<>("test", 64, 0.0, 1.0, Cache.CacheType.DATA, 1);
+
+        // reference the hot set twice, so that it is promoted to the main queue
+        final TestPage[] hot = new TestPage[16];
+        for (int i = 0; i < hot.length; i++) {
+            hot[i] = new TestPage(i, false);
+            cache.add(hot[i]);
+        }
+        // push the hot set through A1in, its keys are remembered in A1out
+        for (int i = 0; i < 64; i++) {
+            cache.add(new TestPage(1000 + i, false));
+        }
+        for (final TestPage page : hot) {
+            cache.add(page);
+        }
+        for (final TestPage page : hot) {
+            cache.add(page);
+        }
+
+        // a large scan of pages which are each referenced once
+        for (int i = 0; i < 10_000; i++) {
+            cache.add(new TestPage(100_000 + i, false));
+        }
+
+        for (final TestPage page : hot) {
+            assertNotNull("hot page " + page.getKey() + " was evicted by the scan", cache.get(page.getKey()));
+        }
+        assertTrue(cache.getUsedBuffers() <= cache.getBuffers());
+    }
+
+    @Test
+    public void evictedPagesAreSynced() {
+        final TwoQueueCache<TestPage> cache = new TwoQueueCache<>("test", 16, 0.0, 1.0, Cache.CacheType.DATA, 1);
+        final TestPage first = new TestPage(1, false);
+        first.dirty = true;
+        cache.add(first);
+        for (int i = 0; i < 100; i++) {
+            cache.add(new TestPage(100 + i, false));
+        }
+        assertNull(cache.get(1));
+        assertFalse(first.dirty);
+        assertEquals(16, cache.getUsedBuffers());
+    }
+
+    @Test
+    public void pagesWhichMayNotUnloadAreKept() {
+        final TwoQueueCache<TestPage> cache = new TwoQueueCache<>("test", 16, 0.0, 1.0, Cache.CacheType.DATA, 1);
+        final TestPage pinned = new TestPage(1, false);
+        pinned.allowUnload = false;
+        cache.add(pinned);
+        for (int i = 0; i < 100; i++) {
+            cache.add(new TestPage(100 + i, false));
+        }
+        assertNotNull(cache.get(1));
+    }
+
+    @Test
+    public void innerPagesPreferredOverLeafPages() {
+        final TwoQueueCache<TestPage> cache = new TwoQueueCache<>("test", 16, 0.0, 1.0, Cache.CacheType.BTREE, 1);
+        final TestPage inner = new TestPage(1, true);
+
+        // cyclic access to more pages than fit in the cache, only the inner page is reliably kept
+        final TestPage[] pages = new TestPage[20];
+        pages[0] = inner;
+        for (int i = 1; i < pages.length; i++) {
+            pages[i] = new TestPage(1 + i, false);
+        }
+        for (int round = 0; round < 10; round++) {
+            for (final TestPage page : pages) {
+                cache.add(page);
+            }
+            for (int i = pages.length - 1; i > 0; i--) {
+                cache.add(pages[i]);
+            }
+        }
+
+        assertNotNull(cache.get(1));
+    }
+
+    @Test
+    public void resize() {
+        final TwoQueueCache<TestPage> cache = new TwoQueueCache<>("test", 64, 1.5, 0.0, Cache.CacheType.DATA, 4);
+        for (int i = 0; i < 64; i++) {
+            cache.add(new TestPage(i, false));
+        }
+        cache.resize(32);
+        assertEquals(32, cache.getBuffers());
+        assertTrue(cache.getUsedBuffers() <= 32);
+
+        cache.resize(128);
+        for (int i = 0; i < 128; i++) {
+            cache.add(new TestPage(1000 + i, false));
+        }
+        assertEquals(128, cache.getBuffers());
+        assertTrue(cache.getUsedBuffers() <= 128);
+    }
+
+    @Test
+    public void remove() {
+        final TwoQueueCache<TestPage> cache = new TwoQueueCache<>("test", 64, 0.0, 1.0, Cache.CacheType.DATA, 4);
+        final TestPage page = new TestPage(7, false);
+        cache.add(page);
+        assertNotNull(cache.get(7));
+        cache.remove(page);
+        assertNull(cache.get(7));
+        assertEquals(0, cache.getUsedBuffers());
+    }
+
+    private static class TestPage implements BTreeCacheable {
+        private final long key;
+        private final boolean inner;
+        private int refCount;
+        private int timestamp;
+        boolean dirty;
+        boolean allowUnload = true;
+
+        TestPage(final long key, final boolean inner) {
+            this.key = key;
+            this.inner = inner;
+        }
+
+        @Override
+        public boolean isInnerPage() {
+            return inner;
+        }
+
+        @Override
+        public long getKey() {
+            return key;
+        }
+
+        @Override
+        public int getReferenceCount() {
+            return refCount;
+        }
+
+        @Override
+        public int incReferenceCount() {
+            return ++refCount;
+        }
+
+        @Override
+        public int decReferenceCount() {
+            return refCount > 0 ? --refCount : 0;
+        }
+
+        @Override
+        public void setReferenceCount(final int count) {
+            this.refCount = count;
+        }
+
+        @Override
+        public void setTimestamp(final int timestamp) {
+            this.timestamp = timestamp;
+        }
+
+        @Override
+        public int getTimestamp() {
+            return timestamp;
+        }
+
+        @Override
+        public boolean sync(final boolean syncJournal) {
+            final boolean wasDirty = dirty;
+            dirty = false;
+            return wasDirty;
+        }
+
+        @Override
+        public boolean allowUnload() {
+            return allowUnload;
+        }
+
+        @Override
+        public boolean isDirty() {
+            return dirty;
+        }
+    }
+}
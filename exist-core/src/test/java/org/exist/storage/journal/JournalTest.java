@@ -26,6 +26,8 @@ import org.easymock.CaptureType;
 import org.exist.EXistException;
 import org.exist.scheduler.Scheduler;
 import org.exist.storage.BrokerPool;
+import org.exist.storage.txn.TransactionManager;
+import org.exist.storage.txn.TxnCommit;
 import org.exist.util.Configuration;
 import org.exist.util.FileUtils;
 import org.exist.util.ReadOnlyException;
@@ -39,9 +41,15 @@ import java.nio.channels.SeekableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -287,6 +295,7 @@ public class JournalTest {
         expect(mockConfiguration.getProperty(Journal.PROPERTY_RECOVERY_JOURNAL_DIR)).andReturn(null);
         expect(mockConfiguration.getProperty(Journal.PROPERTY_RECOVERY_SIZE_MIN, Journal.DEFAULT_MIN_SIZE)).andReturn(Journal.DEFAULT_MIN_SIZE);
         expect(mockConfiguration.getProperty(Journal.PROPERTY_RECOVERY_SIZE_LIMIT, Journal.DEFAULT_MAX_SIZE)).andReturn(Journal.DEFAULT_MAX_SIZE);
+        expect(mockConfiguration.getProperty(Journal.PROPERTY_RECOVERY_GROUP_COMMIT_MAX_DELAY, Journal.DEFAULT_GROUP_COMMIT_MAX_DELAY)).andReturn(Journal.DEFAULT_GROUP_COMMIT_MAX_DELAY);
         expect(mockBrokerPool.getScheduler()).andReturn(mockScheduler);
 
         replay(mockBrokerPool, mockConfiguration);
@@ -331,6 +340,7 @@ public class JournalTest {
         expect(mockConfiguration.getProperty(Journal.PROPERTY_RECOVERY_JOURNAL_DIR)).andReturn(null);
         expect(mockConfiguration.getProperty(Journal.PROPERTY_RECOVERY_SIZE_MIN, Journal.DEFAULT_MIN_SIZE)).andReturn(Journal.DEFAULT_MIN_SIZE);
         expect(mockConfiguration.getProperty(Journal.PROPERTY_RECOVERY_SIZE_LIMIT, Journal.DEFAULT_MAX_SIZE)).andReturn(Journal.DEFAULT_MAX_SIZE);
+        expect(mockConfiguration.getProperty(Journal.PROPERTY_RECOVERY_GROUP_COMMIT_MAX_DELAY, Journal.DEFAULT_GROUP_COMMIT_MAX_DELAY)).andReturn(Journal.DEFAULT_GROUP_COMMIT_MAX_DELAY);
         expect(mockBrokerPool.getScheduler()).andReturn(mockScheduler);
 
         replay(mockBrokerPool, mockConfiguration);
@@ -373,6 +383,7 @@ public class JournalTest {
         expect(mockConfiguration.getProperty(Journal.PROPERTY_RECOVERY_JOURNAL_DIR)).andReturn(null);
         expect(mockConfiguration.getProperty(Journal.PROPERTY_RECOVERY_SIZE_MIN, Journal.DEFAULT_MIN_SIZE)).andReturn(Journal.DEFAULT_MIN_SIZE);
         expect(mockConfiguration.getProperty(Journal.PROPERTY_RECOVERY_SIZE_LIMIT, Journal.DEFAULT_MAX_SIZE)).andReturn(Journal.DEFAULT_MAX_SIZE);
+        expect(mockConfiguration.getProperty(Journal.PROPERTY_RECOVERY_GROUP_COMMIT_MAX_DELAY, Journal.DEFAULT_GROUP_COMMIT_MAX_DELAY)).andReturn(Journal.DEFAULT_GROUP_COMMIT_MAX_DELAY);
         expect(mockBrokerPool.getScheduler()).andReturn(mockScheduler);
 
         replay(mockBrokerPool, mockConfiguration);
@@ -412,6 +423,143 @@ public class JournalTest {
         verify(mockBrokerPool, mockConfiguration);
     }
 
+    /**
+     * Commits which arrive whilst the leader of a group commit is waiting
+     * for the group to form must be woken by the single flush of the leader.
+     */
+    @Test
+    public void groupCommitWakesWaiters() throws Exception {
+        // the leader waits for 1 second before it flushes
+        final Journal journal = newGroupCommitJournal(1_000_000);
+        journal.switchFiles();
+
+        final int committers = 4;
+        final ExecutorService executorService = Executors.newFixedThreadPool(committers);
+        try {
+            final CountDownLatch start = new CountDownLatch(1);
+            final List<Future<Lsn>> commits = new ArrayList<>();
+            for (int i = 0; i < committers; i++) {
+                final long txnId = i + 1;
+                commits.add(executorService.submit(() -> {
+                    start.await();
+                    return commit(journal, txnId);
+                }));
+            }
+            start.countDown();
+
+            for (final Future<Lsn> commit : commits) {
+                final Lsn lsn = commit.get(30, TimeUnit.SECONDS);
+                assertTrue(lsn.compareTo(journal.lastWrittenLsn()) <= 0);
+            }
+
+            // all commits joined the group of the first leader
+            assertEquals(1, journal.getGroupCommits());
+        } finally {
+            executorService.shutdownNow();
+            journal.close();
+        }
+    }
+
+    /**
+     * Commits whose record was not covered by the flush of the leader
+     * must elect a new leader between them, and none may wait forever.
+     */
+    @Test
+    public void groupCommitElectsNewLeader() throws Exception {
+        final Journal journal = newGroupCommitJournal(0);
+        journal.switchFiles();
+
+        final int committers = 8;
+        final int commitsPerCommitter = 200;
+        final ExecutorService executorService = Executors.newFixedThreadPool(committers);
+        try {
+            final List<Future<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < committers; i++) {
+                final long firstTxnId = (long) i * commitsPerCommitter;
+                futures.add(executorService.submit(() -> {
+                    for (int j = 0; j < commitsPerCommitter; j++) {
+                        final Lsn lsn = commit(journal, firstTxnId + j);
+                        // the commit record must have been flushed before the commit returns
+                        assertTrue(lsn.compareTo(journal.lastWrittenLsn()) <= 0);
+                    }
+                    return null;
+                }));
+            }
+
+            for (final Future<Void> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+
+            final long groupCommits = journal.getGroupCommits();
+            assertTrue(groupCommits > 1);
+            assertTrue(groupCommits <= committers * commitsPerCommitter);
+        } finally {
+            executorService.shutdownNow();
+            journal.close();
+        }
+    }
+
+    /**
+     * Once a group commit returns, the commit record must be in the journal file.
+     */
+    @Test
+    public void groupCommitWritesCommitRecord() throws Exception {
+        final Journal journal = newGroupCommitJournal(0);
+        journal.switchFiles();
+        final short fileNumber = journal.getCurrentJournalFileNumber();
+
+        try {
+            final TxnCommit txnCommit = new TxnCommit(42);
+            journal.writeToLog(txnCommit);
+
+            // the commit record is still only in the buffer
+            try (final JournalReader reader = new JournalReader(null, journal.getFile(fileNumber), fileNumber)) {
+                assertNull(reader.nextEntry());
+            }
+
+            journal.groupCommit(txnCommit.getLsn());
+
+            try (final JournalReader reader = new JournalReader(null, journal.getFile(fileNumber), fileNumber)) {
+                final Loggable entry = reader.nextEntry();
+                assertNotNull(entry);
+                assertEquals(TxnCommit.class, entry.getClass());
+                assertEquals(42, entry.getTransactionId());
+                assertEquals(txnCommit.getLsn(), entry.getLsn());
+            }
+        } finally {
+            journal.close();
+        }
+    }
+
+    private static Lsn commit(final Journal journal, final long txnId) throws JournalException {
+        final TxnCommit txnCommit = new TxnCommit(txnId);
+        journal.writeToLog(txnCommit);
+        journal.groupCommit(txnCommit.getLsn());
+        return txnCommit.getLsn();
+    }
+
+    private static Journal newGroupCommitJournal(final long groupCommitMaxDelay) throws IOException, EXistException, ReadOnlyException {
+        final BrokerPool mockBrokerPool = mock(BrokerPool.class);
+        final Configuration mockConfiguration = mock(Configuration.class);
+        final Scheduler mockScheduler = createNiceMock(Scheduler.class);
+        final TransactionManager mockTransactionManager = createNiceMock(TransactionManager.class);
+        expect(mockBrokerPool.getConfiguration()).andReturn(mockConfiguration);
+        expect(mockConfiguration.getProperty(Journal.PROPERTY_RECOVERY_SYNC_ON_COMMIT, Journal.DEFAULT_SYNC_ON_COMMIT)).andReturn(true);
+        expect(mockConfiguration.getProperty(Journal.PROPERTY_RECOVERY_JOURNAL_DIR)).andReturn(null);
+        expect(mockConfiguration.getProperty(Journal.PROPERTY_RECOVERY_SIZE_MIN, Journal.DEFAULT_MIN_SIZE)).andReturn(Journal.DEFAULT_MIN_SIZE);
+        expect(mockConfiguration.getProperty(Journal.PROPERTY_RECOVERY_SIZE_LIMIT, Journal.DEFAULT_MAX_SIZE)).andReturn(Journal.DEFAULT_MAX_SIZE);
+        expect(mockConfiguration.getProperty(Journal.PROPERTY_RECOVERY_GROUP_COMMIT_MAX_DELAY, Journal.DEFAULT_GROUP_COMMIT_MAX_DELAY)).andReturn(groupCommitMaxDelay);
+        expect(mockBrokerPool.getScheduler()).andReturn(mockScheduler);
+        expect(mockBrokerPool.getTransactionManager()).andReturn(mockTransactionManager).anyTimes();
+
+        replay(mockBrokerPool, mockConfiguration, mockTransactionManager);
+
+        final Path tempJournalDir = TEMPORARY_FOLDER.newFolder().toPath();
+        final Journal journal = new Journal(mockBrokerPool, tempJournalDir);
+        journal.initialize();
+        return journal;
+    }
+
     private static Path createTempDirWithFiles(final List<String> fileNames) throws IOException {
         final Path tempFolder = TEMPORARY_FOLDER.newFolder().toPath();
         Files.createDirectories(tempFolder);
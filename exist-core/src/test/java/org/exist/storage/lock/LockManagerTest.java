@@ -44,8 +44,14 @@ import uk.ac.ic.doc.slurp.multilock.MultiLock;
 import javax.annotation.Nullable;
 import java.util.Arrays;
 import java.util.Stack;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import static org.junit.Assert.*;
 
@@ -686,19 +692,19 @@ public class LockManagerTest {
     public void getBtreeLock_isStripedByPath() {
         final LockManager lockManager = new LockManager(CONCURRENCY_LEVEL);
 
-        final ReentrantLock btree1Lock1 = lockManager.getBTreeLock("btree1.dbx");
+        final ReentrantReadWriteLock btree1Lock1 = lockManager.getBTreeLock("btree1.dbx");
         assertNotNull(btree1Lock1);
 
-        final ReentrantLock btree1Lock2 = lockManager.getBTreeLock("btree1.dbx");
+        final ReentrantReadWriteLock btree1Lock2 = lockManager.getBTreeLock("btree1.dbx");
         assertNotNull(btree1Lock2);
 
         assertTrue(btree1Lock1 == btree1Lock2);
 
-        final ReentrantLock btree2Lock = lockManager.getBTreeLock("btree2.dbx");
+        final ReentrantReadWriteLock btree2Lock = lockManager.getBTreeLock("btree2.dbx");
         assertNotNull(btree2Lock);
         assertFalse(btree1Lock1 == btree2Lock);
 
-        final ReentrantLock btree3Lock = lockManager.getBTreeLock("btree3.dbx");
+        final ReentrantReadWriteLock btree3Lock = lockManager.getBTreeLock("btree3.dbx");
         assertNotNull(btree3Lock);
         assertFalse(btree1Lock1 == btree3Lock);
 
@@ -716,7 +722,7 @@ public class LockManagerTest {
 
         final LockManager lockManager = new LockManager(CONCURRENCY_LEVEL);
         final Stack<LockAction> events = recordLockEvents(lockManager, () -> {
-            try (final ManagedLock<ReentrantLock> btree1Lock
+            try (final ManagedLock<ReentrantReadWriteLock> btree1Lock
                          = lockManager.acquireBtreeReadLock(btree1Name)) {
                 assertNotNull(btree1Lock);
             }
@@ -752,7 +758,7 @@ public class LockManagerTest {
 
         final LockManager lockManager = new LockManager(CONCURRENCY_LEVEL);
         final Stack<LockAction> events = recordLockEvents(lockManager, () -> {
-            try (final ManagedLock<ReentrantLock> btree1Lock
+            try (final ManagedLock<ReentrantReadWriteLock> btree1Lock
                          = lockManager.acquireBtreeWriteLock(btree1Name)) {
                 assertNotNull(btree1Lock);
             }
@@ -778,6 +784,71 @@ public class LockManagerTest {
     }
 
 
+    /**
+     * By default a READ lock on a BTree is exclusive
+     */
+    @Test
+    public void acquireBTreeReadLock_isExclusive() throws LockException {
+        final String btree1Name = "btree1.dbx";
+
+        final LockManager lockManager = new LockManager(CONCURRENCY_LEVEL);
+        final ReentrantReadWriteLock lock = lockManager.getBTreeLock(btree1Name);
+        try (final ManagedLock<ReentrantReadWriteLock> btree1Lock = lockManager.acquireBtreeReadLock(btree1Name)) {
+            assertTrue(lock.isWriteLockedByCurrentThread());
+            assertTrue(lockManager.isBtreeLockedForWrite(btree1Name));
+
+            // the lock is reentrant, so the reader may also write
+            try (final ManagedLock<ReentrantReadWriteLock> btree1WriteLock = lockManager.acquireBtreeWriteLock(btree1Name)) {
+                assertEquals(2, lock.getWriteHoldCount());
+            }
+        }
+        assertFalse(lockManager.isBtreeLocked(btree1Name));
+    }
+
+    /**
+     * With shared reads, concurrent readers of a BTree
+     * share its lock
+     */
+    @Test
+    public void acquireBTreeReadLock_shared() throws LockException, InterruptedException, ExecutionException, TimeoutException {
+        final String btree1Name = "btree1.dbx";
+
+        final LockManager lockManager = new LockManager(CONCURRENCY_LEVEL, true);
+        final ReentrantReadWriteLock lock = lockManager.getBTreeLock(btree1Name);
+        final ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try (final ManagedLock<ReentrantReadWriteLock> btree1Lock = lockManager.acquireBtreeReadLock(btree1Name)) {
+            assertFalse(lockManager.isBtreeLockedForWrite(btree1Name));
+
+            final Future<Integer> readers = executorService.submit(() -> {
+                try (final ManagedLock<ReentrantReadWriteLock> otherLock = lockManager.acquireBtreeReadLock(btree1Name)) {
+                    return lock.getReadLockCount();
+                }
+            });
+            assertEquals(2, (int) readers.get(10, TimeUnit.SECONDS));
+
+            // a writer has to wait for the reader
+            final Future<Boolean> writer = executorService.submit(() -> lock.writeLock().tryLock());
+            assertFalse(writer.get(10, TimeUnit.SECONDS));
+        } finally {
+            executorService.shutdownNow();
+        }
+        assertFalse(lockManager.isBtreeLocked(btree1Name));
+    }
+
+    /**
+     * With shared reads, a READ lock on a BTree cannot be upgraded
+     */
+    @Test(expected = LockException.class)
+    public void acquireBTreeWriteLock_sharedReadIsNotUpgraded() throws LockException {
+        final String btree1Name = "btree1.dbx";
+
+        final LockManager lockManager = new LockManager(CONCURRENCY_LEVEL, true);
+        try (final ManagedLock<ReentrantReadWriteLock> btree1Lock = lockManager.acquireBtreeReadLock(btree1Name);
+             final ManagedLock<ReentrantReadWriteLock> btree1WriteLock = lockManager.acquireBtreeWriteLock(btree1Name)) {
+            fail("READ_LOCK was upgraded to WRITE_LOCK");
+        }
+    }
+
     private Stack<LockAction> recordLockEvents(final LockManager lockManager, final RunnableE<LockException> runnable) throws LockException{
         final LockTable lockTable = lockManager.getLockTable();
         final LockEventRecordingListener lockEventRecordingListener = new LockEventRecordingListener();
@@ -0,0 +1,153 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.storage.lock;
+
+import org.exist.storage.lock.Lock.LockMode;
+import org.exist.storage.lock.Lock.LockType;
+import org.exist.storage.lock.LockStatistics.LockTypeStatistics;
+import org.junit.Test;
+
+import java.util.Iterator;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LockStatisticsTest {
+
+    @Test
+    public void waitAndHoldTimes() {
+        final LockStatistics statistics = new LockStatistics();
+        for (int i = 0; i < 100; i++) {
+            final long start = i * 1_000_000L;
+            statistics.attempt(start);
+            // one in ten acquisitions waits for 100 µs
+            final long acquired = start + (i % 10 == 0 ? 100_000 : 100);
+            statistics.acquired("/db/test", LockType.COLLECTION, LockMode.READ_LOCK, acquired);
+            statistics.released("/db/test", LockType.COLLECTION, LockMode.READ_LOCK, acquired + 5_000);
+        }
+
+        final Map<LockType, LockTypeStatistics> types = statistics.getStatistics();
+        assertEquals(1, types.size());
+        final LockTypeStatistics collection = types.get(LockType.COLLECTION);
+        assertEquals(100, collection.getAcquired());
+        assertEquals(10, collection.getContended());
+        assertEquals(0, collection.getFailed());
+
+        assertEquals(127, collection.getWaitTimeMedian());
+        assertEquals(127, collection.getWaitTime90thPercentile());
+        assertEquals(131_071, collection.getWaitTime99thPercentile());
+        assertEquals(131_071, collection.getWaitTimeMax());
+        assertEquals(8_191, collection.getHoldTimeMedian());
+        assertEquals(8_191, collection.getHoldTimeMax());
+    }
+
+    @Test
+    public void nestedLocksReleasedOutOfOrder() {
+        final LockStatistics statistics = new LockStatistics();
+        statistics.attempt(0);
+        statistics.acquired("/db", LockType.COLLECTION, LockMode.READ_LOCK, 0);
+        statistics.attempt(10);
+        statistics.acquired("/db/a.xml", LockType.DOCUMENT, LockMode.WRITE_LOCK, 10);
+
+        statistics.released("/db", LockType.COLLECTION, LockMode.READ_LOCK, 1_000);
+        statistics.released("/db/a.xml", LockType.DOCUMENT, LockMode.WRITE_LOCK, 1_000_000);
+
+        final Map<LockType, LockTypeStatistics> types = statistics.getStatistics();
+        assertEquals(1_023, types.get(LockType.COLLECTION).getHoldTimeMax());
+        assertEquals(1_048_575, types.get(LockType.DOCUMENT).getHoldTimeMax());
+    }
+
+    @Test
+    public void failedAttempts() {
+        final LockStatistics statistics = new LockStatistics();
+        statistics.attempt(0);
+        statistics.attemptFailed(LockType.BTREE);
+        statistics.attempt(1_000_000);
+        statistics.acquired("dom.dbx", LockType.BTREE, LockMode.WRITE_LOCK, 1_000_001);
+
+        final LockTypeStatistics btree = statistics.getStatistics().get(LockType.BTREE);
+        assertEquals(1, btree.getFailed());
+        assertEquals(1, btree.getAcquired());
+        assertEquals(0, btree.getContended());
+    }
+
+    @Test
+    public void mostContended() {
+        final LockStatistics statistics = new LockStatistics();
+        contend(statistics, "/db/a", 3);
+        contend(statistics, "/db/b", 7);
+        contend(statistics, "/db/c", 1);
+
+        final Map<String, Long> mostContended = statistics.getMostContended(2);
+        assertEquals(2, mostContended.size());
+        final Iterator<Map.Entry<String, Long>> it = mostContended.entrySet().iterator();
+        final Map.Entry<String, Long> first = it.next();
+        assertEquals("/db/b", first.getKey());
+        assertEquals(7L, (long) first.getValue());
+        assertEquals("/db/a", it.next().getKey());
+    }
+
+    @Test
+    public void reset() {
+        final LockStatistics statistics = new LockStatistics();
+        contend(statistics, "/db/a", 3);
+        assertFalse(statistics.getStatistics().isEmpty());
+
+        statistics.reset();
+        assertTrue(statistics.getStatistics().isEmpty());
+        assertTrue(statistics.getMostContended(10).isEmpty());
+
+        contend(statistics, "/db/a", 1);
+        assertEquals(1, statistics.getStatistics().get(LockType.COLLECTION).getAcquired());
+    }
+
+    @Test
+    public void terminatedThreadsAreRetired() throws InterruptedException {
+        final LockStatistics statistics = new LockStatistics();
+        for (int i = 0; i < 10; i++) {
+            final Thread thread = new Thread(() -> contend(statistics, "/db/a", 2));
+            thread.start();
+            thread.join();
+        }
+        contend(statistics, "/db/a", 1);
+
+        // the figures of the terminated threads are kept, but not per thread
+        assertEquals(21, statistics.getStatistics().get(LockType.COLLECTION).getAcquired());
+        assertEquals(1, statistics.getThreadCount());
+
+        statistics.reset();
+        final Thread thread = new Thread(() -> contend(statistics, "/db/a", 2));
+        thread.start();
+        thread.join();
+        assertEquals(2, statistics.getStatistics().get(LockType.COLLECTION).getAcquired());
+    }
+
+    private static void contend(final LockStatistics statistics, final String id, final int times) {
+        for (int i = 0; i < times; i++) {
+            statistics.attempt(0);
+            statistics.acquired(id, LockType.COLLECTION, LockMode.WRITE_LOCK, LockStatistics.CONTENDED_NANOS);
+            statistics.released(id, LockType.COLLECTION, LockMode.WRITE_LOCK, LockStatistics.CONTENDED_NANOS + 1);
+        }
+    }
+}
@@ -21,20 +21,47 @@
  */
 package org.exist.storage.statistics;
 
+import java.io.IOException;
+import java.io.StringWriter;
 import java.net.URISyntaxException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Optional;
 
+import org.exist.EXistException;
+import org.exist.collections.Collection;
+import org.exist.collections.triggers.TriggerException;
+import org.exist.dom.QName;
+import org.exist.security.PermissionDeniedException;
 import org.exist.storage.BrokerPool;
+import org.exist.storage.DBBroker;
+import org.exist.storage.txn.TransactionManager;
+import org.exist.storage.txn.Txn;
 import org.exist.test.ExistEmbeddedServer;
+import org.exist.util.LockException;
+import org.exist.util.MimeType;
+import org.exist.util.StringInputSource;
+import org.exist.xmldb.XmldbURI;
+import org.exist.xquery.CompiledXQuery;
+import org.exist.xquery.XPathException;
+import org.exist.xquery.XQueryContext;
+import org.exist.xquery.value.Sequence;
 import org.junit.*;
+import org.xml.sax.SAXException;
 
 import static org.exist.storage.NativeBroker.DEFAULT_DATA_DIR;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 public class StatisticsIndexTest {
 
+    private static final String XML =
+            "<root>" +
+            "   <group><item><name>a</name><type>x</type></item><item><name>b</name><type>x</type></item></group>" +
+            "   <item><name>c</name><type>y</type><flag>y</flag></item>" +
+            "</root>";
+
     private static Path configFile;
 
     @BeforeClass
@@ -54,4 +81,74 @@ public class StatisticsIndexTest {
         final Path dataDir = existEmbeddedServer.getBrokerPool().getConfiguration().getProperty(BrokerPool.PROPERTY_DATA_DIR, Paths.get(DEFAULT_DATA_DIR));
         assertTrue(Files.exists(dataDir.resolve("stats.dbx")));
     }
+
+    @Test
+    public void nodeCounts() throws EXistException, PermissionDeniedException, TriggerException, SAXException,
+            LockException, IOException {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        storeDocument(pool);
+
+        final IndexStatistics index = (IndexStatistics) pool.getIndexManager().getIndexById(IndexStatistics.ID);
+        assertEquals(3, index.getNodeCount(new QName("item")));
+        assertEquals(1, index.getNodeCount(new QName("group")));
+        assertEquals(0, index.getNodeCount(new QName("missing")));
+    }
+
+    @Test
+    public void reorderedPredicates() throws EXistException, PermissionDeniedException, TriggerException, SAXException,
+            LockException, IOException, XPathException {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        storeDocument(pool);
+
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()))) {
+            final Sequence result = pool.getXQueryService().execute(broker,
+                    "//item[type = 'x'][flag = 'y' or name = 'b'][1]/name/string(), " +
+                    "count(//item[name = ('a', 'c')][flag = 'y'])",
+                    null);
+            assertEquals(2, result.getItemCount());
+            assertEquals("b", result.itemAt(0).getStringValue());
+            assertEquals("1", result.itemAt(1).getStringValue());
+        }
+    }
+
+    /**
+     * There is a single flag element but three name elements, so the
+     * predicate on flag is estimated to select fewer nodes and must be
+     * moved before the predicate on name.
+     */
+    @Test
+    public void predicateOrder() throws EXistException, PermissionDeniedException, TriggerException, SAXException,
+            LockException, IOException, XPathException {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        storeDocument(pool);
+
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()))) {
+            final XQueryContext context = new XQueryContext(pool);
+            final CompiledXQuery compiled = pool.getXQueryService().compile(context, "//item[name = 'a'][flag = 'y']");
+            final StringWriter writer = new StringWriter();
+            compiled.dump(writer);
+            final String plan = writer.toString();
+
+            final int flag = plan.indexOf("flag");
+            final int name = plan.indexOf("name");
+            assertTrue("flag predicate missing in: " + plan, flag > -1);
+            assertTrue("name predicate missing in: " + plan, name > -1);
+            assertTrue("flag predicate must be evaluated first: " + plan, flag < name);
+
+            final Sequence result = pool.getXQueryService().execute(broker, compiled, null);
+            assertEquals(0, result.getItemCount());
+        }
+    }
+
+    private static void storeDocument(final BrokerPool pool) throws EXistException, PermissionDeniedException, TriggerException,
+            SAXException, LockException, IOException {
+        final TransactionManager transact = pool.getTransactionManager();
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()));
+                final Txn transaction = transact.beginTransaction()) {
+            final Collection root = broker.getOrCreateCollection(transaction, XmldbURI.create(XmldbURI.ROOT_COLLECTION + "/test"));
+            broker.saveCollection(transaction, root);
+            broker.storeDocument(transaction, XmldbURI.create("test.xml"), new StringInputSource(XML), MimeType.XML_TYPE, root);
+            transact.commit(transaction);
+        }
+    }
 }
@@ -0,0 +1,115 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.xquery;
+
+import org.exist.EXistException;
+import org.exist.security.PermissionDeniedException;
+import org.exist.storage.BrokerPool;
+import org.exist.storage.DBBroker;
+import org.exist.test.ExistEmbeddedServer;
+import org.exist.xquery.value.Sequence;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.util.Optional;
+
+import static org.exist.util.PropertiesBuilder.propertiesBuilder;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Runs group by clauses which exceed the spill threshold.
+ */
+public class GroupBySpillTest {
+
+    @ClassRule
+    public static final ExistEmbeddedServer existEmbeddedServer = new ExistEmbeddedServer(
+            propertiesBuilder()
+                    .put(GroupByClause.PROPERTY_GROUP_BY_SPILL_THRESHOLD, 16)
+                    .build(),
+            true,
+            true);
+
+    @Test
+    public void spilledGroups() throws EXistException, PermissionDeniedException, XPathException {
+        final StringBuilder expected = new StringBuilder();
+        for (int k = 0; k < 7; k++) {
+            int count = 0;
+            long sum = 0;
+            final StringBuilder first = new StringBuilder();
+            for (int i = 1; i <= 1000; i++) {
+                if (i % 7 == k) {
+                    if (count < 3) {
+                        first.append(count > 0 ? " " : "").append(i);
+                    }
+                    count++;
+                    sum += i;
+                }
+            }
+            expected.append(k > 0 ? "," : "").append(k).append(':').append(count).append(':').append(sum).append(':').append(first);
+        }
+
+        final String query =
+                "string-join(" +
+                "  for $i in 1 to 1000" +
+                "  let $s := string($i)" +
+                "  group by $k := $i mod 7" +
+                "  order by $k" +
+                "  return $k || ':' || count($i) || ':' || sum($i) || ':' || string-join(subsequence($s, 1, 3), ' ')," +
+                "  ',')";
+        assertEquals(expected.toString(), execute(query));
+    }
+
+    @Test
+    public void spilledGroupsWithCollation() throws EXistException, PermissionDeniedException, XPathException {
+        final String query =
+                "string-join(" +
+                "  for $i in 1 to 200" +
+                "  let $s := ('a', 'A', 'b', 'B')[$i mod 4 + 1]" +
+                "  group by $k := $s collation '?strength=primary'" +
+                "  order by lower-case($k)" +
+                "  return lower-case($k) || ':' || count($i)," +
+                "  ',')";
+        assertEquals("a:100,b:100", execute(query));
+    }
+
+    @Test
+    public void unspillableItemsAfterSpill() throws EXistException, PermissionDeniedException, XPathException {
+        final String query =
+                "string-join(" +
+                "  for $i in 1 to 100" +
+                "  let $e := if ($i gt 50) then <e>{$i}</e> else $i" +
+                "  group by $k := $i mod 3" +
+                "  order by $k" +
+                "  return $k || ':' || count($e) || ':' || sum($e)," +
+                "  ',')";
+        assertEquals("0:33:1683,1:34:1717,2:33:1650", execute(query));
+    }
+
+    private static String execute(final String query) throws EXistException, PermissionDeniedException, XPathException {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()))) {
+            final Sequence result = pool.getXQueryService().execute(broker, query, Sequence.EMPTY_SEQUENCE);
+            assertEquals(1, result.getItemCount());
+            return result.itemAt(0).getStringValue();
+        }
+    }
+}
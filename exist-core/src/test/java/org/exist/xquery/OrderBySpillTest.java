@@ -0,0 +1,123 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.xquery;
+
+import org.exist.EXistException;
+import org.exist.security.PermissionDeniedException;
+import org.exist.storage.BrokerPool;
+import org.exist.storage.DBBroker;
+import org.exist.test.ExistEmbeddedServer;
+import org.exist.xquery.value.Sequence;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static org.exist.util.PropertiesBuilder.propertiesBuilder;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Runs order by clauses which exceed the sort spill threshold,
+ * or of which only the first items are used.
+ */
+public class OrderBySpillTest {
+
+    @ClassRule
+    public static final ExistEmbeddedServer existEmbeddedServer = new ExistEmbeddedServer(
+            propertiesBuilder()
+                    .put(OrderByClause.PROPERTY_SORT_SPILL_THRESHOLD, 16)
+                    .build(),
+            true,
+            true);
+
+    @Test
+    public void mergeSpilledRuns() throws EXistException, PermissionDeniedException, XPathException {
+        final List<Integer> expected = new ArrayList<>();
+        for (int i = 1; i <= 1000; i++) {
+            expected.add(i);
+        }
+        expected.sort(Comparator.<Integer>comparingInt(i -> i % 10).thenComparing(Comparator.reverseOrder()));
+
+        final String query =
+                "string-join(" +
+                "  for $i in 1 to 1000" +
+                "  order by $i mod 10, $i descending" +
+                "  return string($i)," +
+                "  ' ')";
+        assertEquals(expected.stream().map(String::valueOf).collect(Collectors.joining(" ")), execute(query));
+    }
+
+    @Test
+    public void stableOrderOfSpilledRuns() throws EXistException, PermissionDeniedException, XPathException {
+        final String query =
+                "let $s := for $i in 1 to 100 order by $i mod 2 return $i " +
+                "return string-join(subsequence(for $i in $s where $i mod 2 = 1 return string($i), 1, 5), ' ') || '|' || count($s)";
+        assertEquals("1 3 5 7 9|100", execute(query));
+    }
+
+    @Test
+    public void unspillableItems() throws EXistException, PermissionDeniedException, XPathException {
+        final String query =
+                "string-join(" +
+                "  for $i in 1 to 100" +
+                "  order by $i descending" +
+                "  return if ($i lt 50) then <e>{$i}</e> else $i," +
+                "  ' ')";
+        final StringBuilder expected = new StringBuilder();
+        for (int i = 100; i > 0; i--) {
+            expected.append(i < 100 ? " " : "").append(i);
+        }
+        assertEquals(expected.toString(), execute(query));
+    }
+
+    @Test
+    public void topKSubsequence() throws EXistException, PermissionDeniedException, XPathException {
+        final String query =
+                "string-join(" +
+                "  subsequence(for $i in 1 to 1000 order by -$i return string($i), 3, 4)," +
+                "  ' ')";
+        assertEquals("998 997 996 995", execute(query));
+    }
+
+    @Test
+    public void topKPositionalPredicate() throws EXistException, PermissionDeniedException, XPathException {
+        assertEquals("1000 999 998", execute(
+                "string-join((for $i in 1 to 1000 order by $i descending return string($i))[position() le 3], ' ')"));
+        assertEquals("1000 999", execute(
+                "string-join((for $i in 1 to 1000 order by $i descending return string($i))[position() lt 3], ' ')"));
+        assertEquals("999", execute(
+                "string-join((for $i in 1 to 1000 order by $i descending return string($i))[2], ' ')"));
+    }
+
+    private static String execute(final String query) throws EXistException, PermissionDeniedException, XPathException {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()))) {
+            final Sequence result = pool.getXQueryService().execute(broker, query, Sequence.EMPTY_SEQUENCE);
+            assertEquals(1, result.getItemCount());
+            return result.itemAt(0).getStringValue();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.xquery.value;
+
+import org.exist.dom.persistent.Match;
+import org.exist.dom.persistent.NodeProxy;
+import org.exist.numbering.DLN;
+import org.exist.numbering.NodeId;
+import org.exist.xquery.XPathException;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ItemCodecTest {
+
+    @Test
+    public void atomicValuesAreSpillable() throws XPathException {
+        assertTrue(ItemCodec.isSpillableItem(new IntegerValue(1)));
+        assertTrue(ItemCodec.isSpillableItem(new StringValue("a")));
+        assertTrue(ItemCodec.isSpillableItem(AtomicValue.EMPTY_VALUE));
+        assertTrue(ItemCodec.isSpillable(new ValueSequence(new IntegerValue(1), new StringValue("a"))));
+    }
+
+    @Test
+    public void storedNodeIsSpillable() {
+        assertTrue(ItemCodec.isSpillableItem(new NodeProxy(null, new DLN("1.1"))));
+    }
+
+    /**
+     * The matches of a node are not written, the node must therefore be kept in memory.
+     */
+    @Test
+    public void storedNodeWithMatchesIsNotSpillable() throws XPathException {
+        final NodeProxy node = new NodeProxy(null, new DLN("1.1"));
+        node.addMatch(new TestMatch(node.getNodeId()));
+        assertFalse(ItemCodec.isSpillableItem(node));
+
+        final ValueSequence seq = new ValueSequence(new NodeProxy(null, new DLN("1.2")), node);
+        assertFalse(ItemCodec.isSpillable(seq));
+    }
+
+    private static class TestMatch extends Match {
+        TestMatch(final NodeId nodeId) {
+            super(0, nodeId, "term");
+        }
+
+        @Override
+        public Match createInstance(final int contextId, final NodeId nodeId, final String matchTerm) {
+            return new TestMatch(nodeId);
+        }
+
+        @Override
+        public Match newCopy() {
+            return new TestMatch(getNodeId());
+        }
+
+        @Override
+        public String getIndexId() {
+            return "test";
+        }
+    }
+}
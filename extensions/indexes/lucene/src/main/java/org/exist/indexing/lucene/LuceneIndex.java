@@ -43,6 +43,7 @@ import org.exist.storage.DBBroker;
 import org.exist.storage.btree.DBException;
 import org.exist.util.DatabaseConfigurationException;
 import org.exist.util.FileUtils;
+import org.exist.util.NamedThreadFactory;
 import org.exist.xquery.XPathException;
 import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
@@ -51,6 +52,12 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Stream;
 
 public class LuceneIndex extends AbstractIndex implements RawBackupSupport {
@@ -64,6 +71,25 @@ public class LuceneIndex extends AbstractIndex implements RawBackupSupport {
 	private static final String DIR_NAME = "lucene";
 	private static final String TAXONOMY_DIR_NAME = "taxonomy";
 
+    /**
+     * Interval in milliseconds at which pending changes are committed by a
+     * background thread. 0 (the default) commits only when the database syncs.
+     */
+    public static final String COMMIT_INTERVAL_ATTRIBUTE = "commit-interval";
+
+    /**
+     * Number of pending updates after which a commit is started in the
+     * background. 0 (the default) disables size based commits.
+     */
+    public static final String COMMIT_MAX_UPDATES_ATTRIBUTE = "commit-max-updates";
+
+    /**
+     * Interval in milliseconds at which the near-real-time readers are
+     * refreshed by a background thread. 0 (the default) refreshes the
+     * readers before every query, so that a query always sees all changes.
+     */
+    public static final String REFRESH_INTERVAL_ATTRIBUTE = "refresh-interval";
+
     protected Directory directory;
     protected Directory taxoDirectory;
 
@@ -77,6 +103,18 @@ public class LuceneIndex extends AbstractIndex implements RawBackupSupport {
     protected SearcherTaxonomyManager searcherManager = null;
     protected ReaderManager readerManager = null;
 
+    protected long commitInterval = 0;
+    protected long commitMaxUpdates = 0;
+    protected long refreshInterval = 0;
+
+    /**
+     * Number of updates made through the writer since the last commit.
+     */
+    private final AtomicLong pendingUpdates = new AtomicLong();
+    private final AtomicBoolean commitScheduled = new AtomicBoolean();
+    private final Object commitLock = new Object();
+    private volatile ScheduledExecutorService backgroundExecutor = null;
+
     public String getDirName() {
         return DIR_NAME;
     }
@@ -97,6 +135,13 @@ public class LuceneIndex extends AbstractIndex implements RawBackupSupport {
 
         if (LOG.isDebugEnabled())
             LOG.debug("Using buffer size: {}", bufferSize);
+
+        commitInterval = parseLongAttribute(config, COMMIT_INTERVAL_ATTRIBUTE, commitInterval);
+        commitMaxUpdates = parseLongAttribute(config, COMMIT_MAX_UPDATES_ATTRIBUTE, commitMaxUpdates);
+        refreshInterval = parseLongAttribute(config, REFRESH_INTERVAL_ATTRIBUTE, refreshInterval);
+        if (LOG.isDebugEnabled())
+            LOG.debug("Using commit interval: {}ms, commit max updates: {}, refresh interval: {}ms",
+                    commitInterval, commitMaxUpdates, refreshInterval);
         
         NodeList nl = config.getElementsByTagName("analyzer");
         if (nl.getLength() > 0) {
@@ -110,6 +155,23 @@ public class LuceneIndex extends AbstractIndex implements RawBackupSupport {
             LOG.debug("Using default analyzer: {}", defaultAnalyzer.getClass().getName());
     }
 
+    private static long parseLongAttribute(final Element config, final String name, final long defaultValue) {
+        final String value = config.getAttribute(name);
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            final long parsed = Long.parseLong(value);
+            if (parsed >= 0) {
+                return parsed;
+            }
+        } catch (final NumberFormatException e) {
+            // handled below
+        }
+        LOG.warn("Invalid {} setting for Lucene index: {}", name, value);
+        return defaultValue;
+    }
+
     @Override
     public void open() throws DatabaseConfigurationException {
         Path dir = getDataDir().resolve(getDirName());
@@ -137,6 +199,8 @@ public class LuceneIndex extends AbstractIndex implements RawBackupSupport {
 
             searcherManager = new SearcherTaxonomyManager(cachedWriter, true, null, cachedTaxonomyWriter);
             readerManager = new ReaderManager(cachedWriter, true);
+
+            startBackgroundTasks();
         } catch (IOException e) {
             throw new DatabaseConfigurationException("Exception while reading Lucene index directory: " +
                 e.getMessage(), e);
@@ -145,8 +209,64 @@ public class LuceneIndex extends AbstractIndex implements RawBackupSupport {
         }
     }
 
+    private void startBackgroundTasks() {
+        if (commitInterval <= 0 && commitMaxUpdates <= 0 && refreshInterval <= 0) {
+            return;
+        }
+
+        backgroundExecutor = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory(pool, getDirName() + "-index.background"));
+        if (commitInterval > 0) {
+            backgroundExecutor.scheduleWithFixedDelay(this::backgroundCommit, commitInterval, commitInterval, TimeUnit.MILLISECONDS);
+        }
+        if (refreshInterval > 0) {
+            backgroundExecutor.scheduleWithFixedDelay(this::backgroundRefresh, refreshInterval, refreshInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void stopBackgroundTasks() {
+        if (backgroundExecutor == null) {
+            return;
+        }
+        backgroundExecutor.shutdown();
+        try {
+            if (!backgroundExecutor.awaitTermination(1, TimeUnit.MINUTES)) {
+                LOG.warn("Background tasks of the Lucene index did not finish in time");
+                backgroundExecutor.shutdownNow();
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            backgroundExecutor.shutdownNow();
+        }
+        backgroundExecutor = null;
+    }
+
+    private void backgroundCommit() {
+        commitScheduled.set(false);
+        commit();
+        if (refreshInterval > 0) {
+            backgroundRefresh();
+        }
+    }
+
+    private void backgroundRefresh() {
+        try {
+            // non-blocking, if a query is refreshing already we do not need to
+            final ReaderManager readerManager = this.readerManager;
+            if (readerManager != null) {
+                readerManager.maybeRefresh();
+            }
+            final SearcherTaxonomyManager searcherManager = this.searcherManager;
+            if (searcherManager != null) {
+                searcherManager.maybeRefresh();
+            }
+        } catch (final IOException e) {
+            LOG.warn("Failed to refresh Lucene index readers: {}", e.getMessage(), e);
+        }
+    }
+
     @Override
     public synchronized void close() throws DBException {
+        stopBackgroundTasks();
         try {
             if (searcherManager != null) {
                 searcherManager.close();
@@ -171,9 +291,13 @@ public class LuceneIndex extends AbstractIndex implements RawBackupSupport {
         }
     }
 
+    /**
+     * Commits all pending changes. This is called when the database syncs,
+     * e.g. on a checkpoint, so the Lucene index is always durable
+     * at a checkpoint, regardless of the background commits.
+     */
     @Override
-    public synchronized void sync() throws DBException {
-        //Nothing special to do
+    public void sync() throws DBException {
         commit();
     }
 
@@ -203,8 +327,6 @@ public class LuceneIndex extends AbstractIndex implements RawBackupSupport {
         return defaultAnalyzer;
     }
     
-    protected boolean needsCommit = false;
-
     public IndexWriter getWriter() throws IOException {
         return getWriter(false);
     }
@@ -217,34 +339,64 @@ public class LuceneIndex extends AbstractIndex implements RawBackupSupport {
         return cachedTaxonomyWriter;
     }
 
-    public synchronized void releaseWriter(IndexWriter writer) {
+    public void releaseWriter(IndexWriter writer) {
         if (writer == null)
             return;
-        needsCommit = true;
+        final long pending = pendingUpdates.incrementAndGet();
+        final ScheduledExecutorService backgroundExecutor = this.backgroundExecutor;
+        if (backgroundExecutor != null && commitMaxUpdates > 0 && pending >= commitMaxUpdates
+                && commitScheduled.compareAndSet(false, true)) {
+            try {
+                backgroundExecutor.execute(this::backgroundCommit);
+            } catch (final RejectedExecutionException e) {
+                // shutting down, close() will commit
+                commitScheduled.set(false);
+            }
+        }
+    }
+
+    /**
+     * Get the number of updates which have not been committed yet.
+     *
+     * @return the number of pending updates.
+     */
+    long getPendingUpdates() {
+        return pendingUpdates.get();
     }
 
+    /**
+     * Commits the pending changes, if any.
+     *
+     * Writers are not blocked while the commit is in progress, changes
+     * which are released during the commit are picked up by the next one.
+     */
     protected void commit() {
-    	if (!needsCommit) {
-            return;
-        }
-        try {
-            if(LOG.isDebugEnabled()) {
-                LOG.debug("Committing Lucene index");
+        synchronized (commitLock) {
+            final long pending = pendingUpdates.get();
+            if (pending == 0) {
+                return;
             }
-        	if (cachedWriter != null) {
-                cachedTaxonomyWriter.commit();
-                cachedWriter.commit();
+            try {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Committing Lucene index, {} pending updates", pending);
+                }
+                if (cachedWriter != null) {
+                    cachedTaxonomyWriter.commit();
+                    cachedWriter.commit();
+                }
+                pendingUpdates.addAndGet(-pending);
+            } catch(CorruptIndexException cie) {
+                LOG.error("Detected corrupt Lucene index on writer release and commit: {}", cie.getMessage(), cie);
+            } catch(IOException ioe) {
+                LOG.error("Detected Lucene index issue on writer release and commit: {}", ioe.getMessage(), ioe);
             }
-            needsCommit = false;
-        } catch(CorruptIndexException cie) {
-            LOG.error("Detected corrupt Lucene index on writer release and commit: {}", cie.getMessage(), cie);
-        } catch(IOException ioe) {
-            LOG.error("Detected Lucene index issue on writer release and commit: {}", ioe.getMessage(), ioe);
         }
     }
 
     public <R> R withReader(FunctionE<IndexReader, R, IOException> fn) throws IOException {
-        readerManager.maybeRefreshBlocking();
+        if (refreshInterval <= 0) {
+            readerManager.maybeRefreshBlocking();
+        }
         final DirectoryReader reader = readerManager.acquire();
         try {
             return fn.apply(reader);
@@ -254,7 +406,9 @@ public class LuceneIndex extends AbstractIndex implements RawBackupSupport {
     }
 
     public <R> R withSearcher(Function2E<SearcherTaxonomyManager.SearcherAndTaxonomy, R, IOException, XPathException> consumer) throws IOException, XPathException {
-        searcherManager.maybeRefreshBlocking();
+        if (refreshInterval <= 0) {
+            searcherManager.maybeRefreshBlocking();
+        }
         final SearcherTaxonomyManager.SearcherAndTaxonomy searcher = searcherManager.acquire();
         try {
             return consumer.apply(searcher);
@@ -202,6 +202,17 @@ public class Query extends Function implements Optimizable {
         return axis;
     }
 
+    @Override
+    public QName getOptimizeQName() {
+        return contextQName;
+    }
+
+    @Override
+    public double getSelectivity() {
+        // full text queries usually match few of the indexed nodes
+        return CostModel.EQUALITY_SELECTIVITY;
+    }
+
     public NodeSet preSelect(Sequence contextSequence, boolean useContext) throws XPathException {
         // guard against an empty contextSequence
     	if (contextSequence == null || !contextSequence.isPersistentSet()) {
@@ -0,0 +1,158 @@
+/*
+ * eXist-db Open Source Native XML Database
+ * Copyright (C) 2001 The eXist-db Authors
+ *
+ * info@exist-db.org
+ * http://www.exist-db.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.exist.indexing.lucene;
+
+import org.exist.EXistException;
+import org.exist.collections.Collection;
+import org.exist.collections.CollectionConfigurationException;
+import org.exist.security.PermissionDeniedException;
+import org.exist.storage.BrokerPool;
+import org.exist.storage.DBBroker;
+import org.exist.storage.txn.TransactionManager;
+import org.exist.storage.txn.Txn;
+import org.exist.test.ExistEmbeddedServer;
+import org.exist.test.TestConstants;
+import org.exist.util.DatabaseConfigurationException;
+import org.exist.util.LockException;
+import org.exist.util.MimeType;
+import org.exist.util.StringInputSource;
+import org.exist.xmldb.XmldbURI;
+import org.exist.xquery.XPathException;
+import org.exist.xquery.value.Sequence;
+import org.junit.Rule;
+import org.junit.Test;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Optional;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the background commits and the interval based refresh of the near-real-time readers.
+ */
+public class LuceneBackgroundCommitTest {
+
+    private static final long COMMIT_INTERVAL = 200;
+    private static final long REFRESH_INTERVAL = 200;
+    private static final long TIMEOUT = 30_000;
+
+    private static final String COLLECTION_CONFIG =
+            "<collection xmlns=\"http://exist-db.org/collection-config/1.0\">" +
+            "    <index>" +
+            "        <lucene>" +
+            "            <text qname=\"p\"/>" +
+            "        </lucene>" +
+            "    </index>" +
+            "</collection>";
+
+    private static final String XML =
+            "<section>" +
+            "    <p>A paragraph about background commits</p>" +
+            "</section>";
+
+    private static final String QUERY = "count(collection('" + TestConstants.TEST_COLLECTION_URI + "')//p[ft:query(., 'background')])";
+
+    @Rule
+    public final ExistEmbeddedServer existEmbeddedServer = new ExistEmbeddedServer(null, backgroundCommitConfig(), null, true, true);
+
+    /**
+     * Creates a copy of the test configuration which enables the background
+     * commits and the interval based refresh of the Lucene index.
+     */
+    private static Path backgroundCommitConfig() {
+        try {
+            final Path conf = Paths.get(LuceneBackgroundCommitTest.class.getResource("/conf.xml").toURI());
+            final String original = new String(Files.readAllBytes(conf), UTF_8);
+            final String configured = original.replace(
+                    "<module id=\"lucene-index\" buffer=\"32\"",
+                    "<module id=\"lucene-index\" buffer=\"32\" commit-interval=\"" + COMMIT_INTERVAL + "\" refresh-interval=\"" + REFRESH_INTERVAL + "\"");
+            if (configured.equals(original)) {
+                throw new IllegalStateException("Unable to configure lucene-index module in: " + conf);
+            }
+            final Path backgroundCommitConf = conf.resolveSibling("lucene-background-commit-conf.xml");
+            Files.write(backgroundCommitConf, configured.getBytes(UTF_8));
+            return backgroundCommitConf;
+        } catch (final URISyntaxException | IOException e) {
+            throw new IllegalStateException("Unable to create configuration: " + e.getMessage(), e);
+        }
+    }
+
+    @Test
+    public void searchableAfterRefreshInterval() throws EXistException, PermissionDeniedException, IOException, SAXException, LockException, CollectionConfigurationException, XPathException, InterruptedException {
+        configureAndStore();
+
+        final long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (count() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(REFRESH_INTERVAL / 2);
+        }
+        assertEquals(1, count());
+    }
+
+    @Test
+    public void committedInBackground() throws EXistException, PermissionDeniedException, IOException, SAXException, LockException, CollectionConfigurationException, XPathException, InterruptedException, DatabaseConfigurationException {
+        configureAndStore();
+
+        final LuceneIndex index = (LuceneIndex) existEmbeddedServer.getBrokerPool().getIndexManager().getIndexById(LuceneIndex.ID);
+        final long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (index.getPendingUpdates() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(COMMIT_INTERVAL / 2);
+        }
+        assertEquals(0, index.getPendingUpdates());
+
+        existEmbeddedServer.restart();
+
+        final long restartDeadline = System.currentTimeMillis() + TIMEOUT;
+        while (count() == 0 && System.currentTimeMillis() < restartDeadline) {
+            Thread.sleep(REFRESH_INTERVAL / 2);
+        }
+        assertEquals(1, count());
+    }
+
+    private void configureAndStore() throws EXistException, PermissionDeniedException, IOException, SAXException, LockException, CollectionConfigurationException {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        final TransactionManager transact = pool.getTransactionManager();
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()));
+             final Txn transaction = transact.beginTransaction()) {
+
+            final Collection root = broker.getOrCreateCollection(transaction, TestConstants.TEST_COLLECTION_URI);
+            pool.getConfigurationManager().addConfiguration(transaction, broker, root, COLLECTION_CONFIG);
+            broker.storeDocument(transaction, XmldbURI.create("test.xml"), new StringInputSource(XML), MimeType.XML_TYPE, root);
+
+            transact.commit(transaction);
+        }
+    }
+
+    private int count() throws EXistException, PermissionDeniedException, XPathException {
+        final BrokerPool pool = existEmbeddedServer.getBrokerPool();
+        try (final DBBroker broker = pool.get(Optional.of(pool.getSecurityManager().getSystemSubject()))) {
+            final Sequence result = pool.getXQueryService().execute(broker, QUERY, null);
+            assertEquals(1, result.getItemCount());
+            return result.itemAt(0).toJavaObject(Integer.class);
+        }
+    }
+}
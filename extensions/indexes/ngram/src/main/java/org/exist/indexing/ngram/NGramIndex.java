@@ -32,13 +32,16 @@ import org.exist.storage.DBBroker;
 import org.exist.storage.btree.BTree;
 import org.exist.storage.btree.DBException;
 import org.exist.storage.index.BFile;
+import org.exist.storage.lock.ManagedLock;
 import org.exist.util.DatabaseConfigurationException;
 import org.exist.util.FileUtils;
+import org.exist.util.LockException;
 import org.w3c.dom.Element;
 
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.file.Path;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  */
@@ -90,7 +93,12 @@ public class NGramIndex extends AbstractIndex implements RawBackupSupport {
     @Override
     public void sync() throws DBException {
         LOG.debug("SYNC NGRAM");
-        db.flush();
+        // a sync may run concurrently with transactions which update the index
+        try(final ManagedLock<ReentrantReadWriteLock> bfileLock = pool.getLockManager().acquireBtreeWriteLock(db.getLockName())) {
+            db.flush();
+        } catch (final LockException e) {
+            LOG.warn("Failed to acquire lock for '{}'", FileUtils.fileName(db.getFile()), e);
+        }
     }
 
     @Override
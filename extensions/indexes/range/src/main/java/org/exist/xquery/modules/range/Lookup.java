@@ -486,6 +486,27 @@ public class Lookup extends Function implements Optimizable {
         return axis;
     }
 
+    @Override
+    public QName getOptimizeQName() {
+        return contextQName;
+    }
+
+    @Override
+    public double getSelectivity() {
+        final RangeIndex.Operator operator = getOperator();
+        if (operator == null) {
+            return CostModel.DEFAULT_SELECTIVITY;
+        }
+        switch (operator) {
+            case EQ:
+                return CostModel.EQUALITY_SELECTIVITY;
+            case NE:
+                return 1 - CostModel.EQUALITY_SELECTIVITY;
+            default:
+                return CostModel.RANGE_SELECTIVITY;
+        }
+    }
+
     @Override
     public int getDependencies() {
         final Expression stringArg = getArgument(0);